@@ -0,0 +1,76 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+import com.pervasivecode.utils.time.TimeSource;
+
+/**
+ * Throughput of BatchingWorker and PeriodicBatchingWorker, with one producer thread feeding the
+ * worker and one consumer thread taking batches from it. Scores are input elements per second.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BatchingWorkerBenchmark {
+  public enum WorkerType {
+    BATCHING, PERIODIC_BATCHING
+  }
+
+  private static final int NUM_ELEMENTS = 100_000;
+  private static final TimeSource TIME_SOURCE = () -> Instant.now();
+
+  @Param({"BATCHING", "PERIODIC_BATCHING"})
+  public WorkerType workerType;
+
+  @Param({"10", "100"})
+  public int batchSize;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void startExecutor() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @TearDown
+  public void stopExecutor() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public long batchingWorker() throws Exception {
+    BufferingChute<String> input = new BufferingChute<>(256, NANOS_SOURCE);
+    BufferingChute<List<String>> output = new BufferingChute<>(256, NANOS_SOURCE);
+    Runnable worker = (workerType == WorkerType.BATCHING)
+        ? Workers.batchingWorker(input, output, batchSize, true)
+        : Workers.periodicBatchingWorker(input, output, batchSize, true, TIME_SOURCE,
+            Duration.ofMillis(10));
+    Future<?> workerResult = executor.submit(worker);
+
+    long numTaken = ChuteBenchmarkHarness.run(executor, ImmutableList.of(input), output,
+        List::size, 1, NUM_ELEMENTS, true);
+    workerResult.get(10, TimeUnit.SECONDS);
+    ChuteBenchmarkHarness.checkCount(NUM_ELEMENTS, numTaken);
+    return numTaken;
+  }
+}
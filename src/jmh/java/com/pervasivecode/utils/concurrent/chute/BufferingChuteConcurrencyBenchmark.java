@@ -0,0 +1,65 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Throughput of BufferingChute with single or multiple producers and consumers (SPSC, MPSC, SPMC,
+ * and MPMC), across a range of buffer sizes. Scores are elements per second.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BufferingChuteConcurrencyBenchmark {
+  private static final int NUM_ELEMENTS = 100_000;
+
+  @Param({"1", "4"})
+  public int producers;
+
+  @Param({"1", "4"})
+  public int consumers;
+
+  @Param({"16", "256", "4096"})
+  public int bufferSize;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void startExecutor() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @TearDown
+  public void stopExecutor() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public long bufferingChute() throws Exception {
+    BufferingChute<String> chute = new BufferingChute<>(bufferSize, NANOS_SOURCE);
+    ImmutableList.Builder<ChuteEntrance<String>> entrances = ImmutableList.builder();
+    for (int i = 0; i < producers; i++) {
+      entrances.add(chute);
+    }
+    long numTaken = ChuteBenchmarkHarness.run(executor, entrances.build(), chute, consumers,
+        NUM_ELEMENTS, false);
+    ChuteBenchmarkHarness.checkCount(NUM_ELEMENTS, numTaken);
+    return numTaken;
+  }
+}
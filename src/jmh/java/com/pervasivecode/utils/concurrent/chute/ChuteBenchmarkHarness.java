@@ -0,0 +1,154 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import com.pervasivecode.utils.time.CurrentNanosSource;
+
+/**
+ * Shared code for benchmarks that move a fixed number of elements from producer threads to consumer
+ * threads through a chute (or some other arrangement of ChuteEntrances and ChuteExits).
+ */
+final class ChuteBenchmarkHarness {
+  static final CurrentNanosSource NANOS_SOURCE = () -> System.nanoTime();
+
+  /** The element that producers put; a shared instance, so that allocation isn't measured. */
+  static final String ELEMENT = "element";
+
+  private static final long TIMEOUT_SECONDS = 60;
+
+  private ChuteBenchmarkHarness() {}
+
+  /**
+   * Put elements into the specified entrances from one producer thread per entrance, and take them
+   * from the exit with the specified number of consumer threads, until the exit is closed and
+   * empty.
+   *
+   * @param executor The executor in which producers and consumers run. It must be able to run all
+   *        of them at the same time.
+   * @param entrances The entrances to put elements into, one per producer thread.
+   * @param exit The exit from which consumers take elements.
+   * @param numConsumers The number of consumer threads.
+   * @param numElements The total number of elements to put, divided evenly between producers.
+   * @param eachProducerCloses If true, each producer closes its own entrance when it is done (as
+   *        with the entrances of a multiplexer). Otherwise, the first entrance is closed after all
+   *        producers are done.
+   * @return The number of elements that were taken by consumers.
+   * @throws Exception if any producer or consumer failed, or they took too long.
+   */
+  static long run(ExecutorService executor, List<? extends ChuteEntrance<String>> entrances,
+      ChuteExit<?> exit, int numConsumers, int numElements, boolean eachProducerCloses)
+      throws Exception {
+    return run(executor, entrances, exit, e -> 1, numConsumers, numElements, eachProducerCloses);
+  }
+
+  /**
+   * Like {@link #run(ExecutorService, List, ChuteExit, int, int, boolean)}, but for exits whose
+   * elements each represent some number of the elements that were put, such as batches.
+   *
+   * @param executor The executor in which producers and consumers run.
+   * @param entrances The entrances to put elements into, one per producer thread.
+   * @param exit The exit from which consumers take elements.
+   * @param elementCounter A function that returns the number of elements that were put, which are
+   *        represented by an element taken from the exit.
+   * @param numConsumers The number of consumer threads.
+   * @param numElements The total number of elements to put, divided evenly between producers.
+   * @param eachProducerCloses Whether each producer closes its own entrance.
+   * @param <T> The type of element taken from the exit.
+   * @return The number of elements that were put, as counted by elementCounter.
+   * @throws Exception if any producer or consumer failed, or they took too long.
+   */
+  static <T> long run(ExecutorService executor, List<? extends ChuteEntrance<String>> entrances,
+      ChuteExit<T> exit, ToLongFunction<? super T> elementCounter, int numConsumers,
+      int numElements, boolean eachProducerCloses) throws Exception {
+    return run(executor, entrances, Collections.nCopies(numConsumers, exit), elementCounter,
+        numElements, eachProducerCloses);
+  }
+
+  /**
+   * Like {@link #run(ExecutorService, List, ChuteExit, int, int, boolean)}, but with a separate
+   * exit for each consumer thread, such as the per-consumer exits of a work-stealing group.
+   *
+   * @param executor The executor in which producers and consumers run.
+   * @param entrances The entrances to put elements into, one per producer thread.
+   * @param exits The exits from which consumers take elements, one per consumer thread.
+   * @param numElements The total number of elements to put, divided evenly between producers.
+   * @param eachProducerCloses Whether each producer closes its own entrance.
+   * @param <T> The type of element taken from the exits.
+   * @return The number of elements that were taken by consumers.
+   * @throws Exception if any producer or consumer failed, or they took too long.
+   */
+  static <T> long run(ExecutorService executor, List<? extends ChuteEntrance<String>> entrances,
+      List<? extends ChuteExit<T>> exits, int numElements, boolean eachProducerCloses)
+      throws Exception {
+    return run(executor, entrances, exits, e -> 1, numElements, eachProducerCloses);
+  }
+
+  private static <T> long run(ExecutorService executor,
+      List<? extends ChuteEntrance<String>> entrances, List<? extends ChuteExit<T>> exits,
+      ToLongFunction<? super T> elementCounter, int numElements, boolean eachProducerCloses)
+      throws Exception {
+    int numProducers = entrances.size();
+    CountDownLatch producersDone = new CountDownLatch(numProducers);
+    AtomicLong numTaken = new AtomicLong();
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int i = 0; i < numProducers; i++) {
+      ChuteEntrance<String> entrance = entrances.get(i);
+      int numToPut = numElements / numProducers + (i < numElements % numProducers ? 1 : 0);
+      futures.add(executor.submit(() -> {
+        for (int j = 0; j < numToPut; j++) {
+          entrance.put(ELEMENT);
+        }
+        if (eachProducerCloses) {
+          entrance.close();
+        }
+        producersDone.countDown();
+        return null;
+      }));
+    }
+    if (!eachProducerCloses) {
+      futures.add(executor.submit(() -> {
+        producersDone.await();
+        entrances.get(0).close();
+        return null;
+      }));
+    }
+    for (ChuteExit<T> exit : exits) {
+      futures.add(executor.submit(() -> {
+        long numTakenByThisConsumer = 0;
+        Optional<T> taken;
+        while ((taken = exit.take()).isPresent()) {
+          numTakenByThisConsumer += elementCounter.applyAsLong(taken.get());
+        }
+        numTaken.addAndGet(numTakenByThisConsumer);
+        return null;
+      }));
+    }
+
+    for (Future<?> future : futures) {
+      future.get(TIMEOUT_SECONDS, SECONDS);
+    }
+    return numTaken.get();
+  }
+
+  /**
+   * Verify that the expected number of elements made it through.
+   *
+   * @param expected The number of elements that were put.
+   * @param actual The number of elements that were taken.
+   */
+  static void checkCount(long expected, long actual) {
+    if (expected != actual) {
+      throw new IllegalStateException(
+          String.format("Expected %d elements to be taken, but got %d.", expected, actual));
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.ELEMENT;
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Optional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-element cost of iterating over a ChuteExit via {@link Chutes#asIterable(ChuteExit)},
+ * compared to calling take() in a loop. The chute is filled and closed before each invocation, so
+ * only taking is measured.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ChuteIteratorBenchmark {
+  private static final int NUM_ELEMENTS = 10_000;
+
+  private BufferingChute<String> chute;
+
+  @Setup(Level.Invocation)
+  public void fillChute() throws InterruptedException {
+    // One extra slot for the end-of-stream marker, so close() does not block.
+    chute = new BufferingChute<>(NUM_ELEMENTS + 1, NANOS_SOURCE);
+    for (int i = 0; i < NUM_ELEMENTS; i++) {
+      chute.put(ELEMENT);
+    }
+    chute.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public void iterator(Blackhole blackhole) {
+    for (String element : Chutes.asIterable(chute)) {
+      blackhole.consume(element);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public void takeLoop(Blackhole blackhole) throws InterruptedException {
+    Optional<String> taken;
+    while ((taken = chute.take()).isPresent()) {
+      blackhole.consume(taken.get());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.nio.file.Path;
+
+/**
+ * The chute implementations that latency benchmarks can be run against, selected by name via a JMH
+ * {@code @Param}. This is public because JMH-generated code refers to it.
+ * <p>
+ * DurableChute and SharedMemoryChute are not included, because they are benchmarked separately by
+ * DurableChuteBenchmark and SharedMemoryChuteBenchmark: a DurableChute's log only shrinks when its
+ * consumer acknowledges elements, and a SharedMemoryChute is meant to be shared with another
+ * process.
+ */
+public enum ChuteType {
+  BUFFERING_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new BufferingChute<>(capacity, NANOS_SOURCE);
+    }
+  },
+
+  /** A SpillingChute holding Strings, spilling to the scratch directory. */
+  SPILLING_CHUTE {
+    @SuppressWarnings("unchecked")
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return (Chute<E>) new SpillingChute<>(capacity, scratchDirectory, 1 << 20, 64 << 20,
+          ElementSerializers.utf8Strings());
+    }
+  },
+
+  /** An OffHeapChute holding Strings, with 64 bytes of ring buffer per element of capacity. */
+  OFF_HEAP_CHUTE {
+    @SuppressWarnings("unchecked")
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return (Chute<E>) new OffHeapChute<>(capacity * 64, ElementSerializers.utf8Strings());
+    }
+  },
+
+  /** A RingBufferChute that blocks producers when it is full, as the other chute types do. */
+  RING_BUFFER_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new RingBufferChute<>(capacity, OverflowPolicy.block());
+    }
+  },
+
+  /**
+   * A PriorityChute without aging, whose elements all have the same priority, so that they are
+   * taken in the order in which they were put.
+   */
+  PRIORITY_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new PriorityChute<>(capacity, (a, b) -> 0, NANOS_SOURCE);
+    }
+  },
+
+  /**
+   * A ConflatingChute in which every element has its own key, so that no elements are replaced and
+   * the chute holds up to its capacity, like the other chute types.
+   */
+  CONFLATING_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new ConflatingChute<>(capacity, e -> new Object());
+    }
+  },
+
+  /**
+   * A SegmentedChute whose segments hold the specified capacity. The chute itself is unbounded, so
+   * producers never block.
+   */
+  SEGMENTED_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new SegmentedChute<>(capacity);
+    }
+  },
+
+  /**
+   * A RendezvousChute, which has no capacity, so the requested capacity is ignored and each put
+   * waits for a taker.
+   */
+  RENDEZVOUS_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new RendezvousChute<>();
+    }
+  },
+
+  /** A ResizableChute whose capacity is left at its initial value. */
+  RESIZABLE_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new ResizableChute<>(capacity);
+    }
+  },
+
+  /**
+   * A StripedChute with 4 lanes, each of which can hold the specified capacity, since each producer
+   * thread only puts elements into one lane.
+   */
+  STRIPED_CHUTE {
+    @Override
+    <E> Chute<E> create(int capacity, Path scratchDirectory) {
+      return new StripedChute<>(4, capacity);
+    }
+  };
+
+  /**
+   * Create a new, empty chute of this type.
+   *
+   * @param capacity The number of elements the chute should be able to hold (in memory, for chutes
+   *        that can hold more elements elsewhere).
+   * @param scratchDirectory An existing directory in which the chute may create files. The caller
+   *        is responsible for deleting it and its contents once the chute is no longer in use.
+   * @param <E> The type of element the chute will hold.
+   * @return The new chute.
+   */
+  abstract <E> Chute<E> create(int capacity, Path scratchDirectory);
+}
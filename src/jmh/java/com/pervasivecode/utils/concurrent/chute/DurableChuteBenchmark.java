@@ -0,0 +1,99 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of put() into a DurableChute under each kind of FsyncPolicy, with one producer thread
+ * and with several (which share fsyncs when the policy is ALWAYS).
+ * <p>
+ * A consumer thread takes and acknowledges elements as fast as it can, so that segment files are
+ * deleted and the log does not grow without bound.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DurableChuteBenchmark {
+  public enum Policy {
+    ALWAYS(FsyncPolicy.always()),
+    PERIODICALLY_10MS(FsyncPolicy.periodically(10, MILLISECONDS)),
+    NEVER(FsyncPolicy.never());
+
+    final FsyncPolicy fsyncPolicy;
+
+    Policy(FsyncPolicy fsyncPolicy) {
+      this.fsyncPolicy = fsyncPolicy;
+    }
+  }
+
+  private static final int SEGMENT_SIZE_BYTES = 16 << 20;
+  private static final int ACK_EVERY = 1000;
+
+  @Param({"ALWAYS", "PERIODICALLY_10MS", "NEVER"})
+  public Policy policy;
+
+  private Path logDirectory;
+  private DurableChute<String> chute;
+  private Thread consumer;
+
+  @Setup(Level.Trial)
+  public void openChute() throws IOException {
+    logDirectory = Files.createTempDirectory("durable-chute-benchmark");
+    chute = DurableChute.open(logDirectory, SEGMENT_SIZE_BYTES, ElementSerializers.utf8Strings(),
+        policy.fsyncPolicy, ChuteBenchmarkHarness.NANOS_SOURCE);
+    consumer = new Thread(() -> {
+      try {
+        Optional<DurableChute.Entry<String>> entry;
+        while ((entry = chute.takeEntry()).isPresent()) {
+          if (entry.get().position() % ACK_EVERY == 0) {
+            chute.acknowledge(entry.get().position());
+          }
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        return;
+      }
+    }, "DurableChuteBenchmark consumer");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void releaseChute() throws Exception {
+    chute.close();
+    consumer.join(SECONDS.toMillis(30));
+    chute.release();
+    try (Stream<Path> paths = Files.walk(logDirectory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void put_1thread() throws InterruptedException {
+    chute.put(ChuteBenchmarkHarness.ELEMENT);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void put_4threads() throws InterruptedException {
+    chute.put(ChuteBenchmarkHarness.ELEMENT);
+  }
+}
@@ -0,0 +1,123 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of handing one element from a thread calling put() to another thread calling take(),
+ * reported as a distribution (p50, p99, p99.9, p99.99 etc.) rather than as throughput.
+ * <p>
+ * The benchmark thread puts an element into a request chute, and an echo thread takes it and puts
+ * it into a response chute, which the benchmark thread then takes from. Each measured operation is
+ * therefore a round trip consisting of two handoffs, with only one element in flight at a time.
+ * <p>
+ * The {@code sampledRoundTrip} benchmark uses JMH's SampleTime mode to build a latency histogram
+ * over many round trips. The {@code singleShotRoundTrip} benchmark uses SingleShotTime mode with no
+ * warmup, in which each iteration is a single round trip. The chutes and the echo thread are
+ * created anew for each iteration, so every measured shot is the first round trip through its
+ * chutes, which shows the cost of a round trip through a cold chute.
+ * <p>
+ * Set the {@code benchmarkCpu} and {@code echoCpu} parameters to pin the two threads to specific
+ * CPUs (on Linux), e.g. {@code -p benchmarkCpu=2 -p echoCpu=3}. The default of -1 leaves them
+ * unpinned.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HandoffLatencyBenchmark {
+  @Param({"BUFFERING_CHUTE", "SPILLING_CHUTE", "OFF_HEAP_CHUTE", "RING_BUFFER_CHUTE",
+      "PRIORITY_CHUTE", "CONFLATING_CHUTE", "SEGMENTED_CHUTE", "RENDEZVOUS_CHUTE",
+      "RESIZABLE_CHUTE", "STRIPED_CHUTE"})
+  public ChuteType chuteType;
+
+  @Param({"-1"})
+  public int benchmarkCpu;
+
+  @Param({"-1"})
+  public int echoCpu;
+
+  private Path scratchDirectory;
+  private Chute<String> requests;
+  private Chute<String> responses;
+  private Thread echoThread;
+
+  @Setup(Level.Iteration)
+  public void startEchoThread() throws IOException {
+    scratchDirectory = Files.createTempDirectory("chute-benchmark");
+    // One element in flight at a time, plus the end-of-stream marker when closing.
+    requests = chuteType.create(2, scratchDirectory);
+    responses = chuteType.create(2, scratchDirectory);
+    echoThread = new Thread(() -> {
+      ThreadPinning.pinCurrentThread(echoCpu);
+      try {
+        Optional<String> request;
+        while ((request = requests.take()).isPresent()) {
+          responses.put(request.get());
+        }
+        responses.close();
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        return;
+      }
+    }, "HandoffLatencyBenchmark echo");
+    echoThread.setDaemon(true);
+    echoThread.start();
+  }
+
+  @Setup(Level.Iteration)
+  public void pinBenchmarkThread() {
+    ThreadPinning.pinCurrentThread(benchmarkCpu);
+  }
+
+  @TearDown(Level.Iteration)
+  public void stopEchoThread() throws InterruptedException, IOException {
+    requests.close();
+    echoThread.join(SECONDS.toMillis(5));
+    if (echoThread.isAlive()) {
+      echoThread.interrupt();
+      throw new IllegalStateException("The echo thread did not stop.");
+    }
+    try (Stream<Path> paths = Files.walk(scratchDirectory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private String roundTrip() throws InterruptedException {
+    requests.put(ChuteBenchmarkHarness.ELEMENT);
+    return responses.take().get();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 5)
+  public String sampledRoundTrip() throws InterruptedException {
+    return roundTrip();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1000)
+  public String singleShotRoundTrip() throws InterruptedException {
+    return roundTrip();
+  }
+}
@@ -0,0 +1,46 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.ELEMENT;
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of putting an element into a ListenableChute with a varying number of listeners, each of
+ * which runs in a direct executor and does a trivial amount of work. Each operation is one put and
+ * one take on a single thread.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ListenableChuteAdapterBenchmark {
+  @Param({"0", "1", "4"})
+  public int listeners;
+
+  private ListenableChute<String> chute;
+  private long numNotifications;
+
+  @Setup
+  public void setup() {
+    chute = Chutes.asListenableChute(new BufferingChute<>(16, NANOS_SOURCE));
+    Executor directExecutor = Runnable::run;
+    for (int i = 0; i < listeners; i++) {
+      chute.addListener(() -> numNotifications++, directExecutor);
+    }
+  }
+
+  @Benchmark
+  public Optional<String> putAndTake() throws InterruptedException {
+    chute.put(ELEMENT);
+    return chute.tryTakeNow();
+  }
+}
@@ -0,0 +1,78 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Optional;
+import java.util.OptionalLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-value cost of passing long values through a {@link BufferingLongChute}, one at a time and in
+ * bulk, compared to passing boxed Longs through a {@link BufferingChute}. Each invocation fills
+ * the chute and then empties it on the same thread, so no blocking is involved.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LongChuteBenchmark {
+  private static final int NUM_VALUES = 1_000;
+
+  private BufferingChute<Long> boxedChute;
+  private BufferingLongChute longChute;
+  private long[] values;
+  private long[] drained;
+
+  @Setup
+  public void createChutes() {
+    boxedChute = new BufferingChute<>(NUM_VALUES, NANOS_SOURCE);
+    longChute = new BufferingLongChute(NUM_VALUES);
+    values = new long[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      values[i] = 1_000_000_000L + i;
+    }
+    drained = new long[NUM_VALUES];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_VALUES)
+  public void boxed(Blackhole blackhole) throws InterruptedException {
+    for (int i = 0; i < NUM_VALUES; i++) {
+      boxedChute.put(values[i]);
+    }
+    for (int i = 0; i < NUM_VALUES; i++) {
+      Optional<Long> taken = boxedChute.take();
+      blackhole.consume(taken.get().longValue());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_VALUES)
+  public void primitive(Blackhole blackhole) throws InterruptedException {
+    for (int i = 0; i < NUM_VALUES; i++) {
+      longChute.put(values[i]);
+    }
+    for (int i = 0; i < NUM_VALUES; i++) {
+      OptionalLong taken = longChute.take();
+      blackhole.consume(taken.getAsLong());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_VALUES)
+  public void primitiveBulk(Blackhole blackhole) throws InterruptedException {
+    longChute.putAll(values, 0, NUM_VALUES);
+    int numDrained = 0;
+    while (numDrained < NUM_VALUES) {
+      numDrained += longChute.drainTo(drained, numDrained, NUM_VALUES - numDrained);
+    }
+    blackhole.consume(drained);
+  }
+}
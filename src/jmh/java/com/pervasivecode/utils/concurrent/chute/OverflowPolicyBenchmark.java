@@ -0,0 +1,61 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.ELEMENT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of put() into a RingBufferChute that is saturated (full, with no consumer), under
+ * each of the overflow policies that drop elements, with one producer thread and with several.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class OverflowPolicyBenchmark {
+  public enum Policy {
+    DROP_NEWEST(OverflowPolicy.dropNewest()),
+    DROP_OLDEST(OverflowPolicy.dropOldest()),
+    SAMPLE_HALF(OverflowPolicy.sample(0.5));
+
+    final OverflowPolicy overflowPolicy;
+
+    Policy(OverflowPolicy overflowPolicy) {
+      this.overflowPolicy = overflowPolicy;
+    }
+  }
+
+  private static final int CAPACITY = 1024;
+
+  @Param({"DROP_NEWEST", "DROP_OLDEST", "SAMPLE_HALF"})
+  public Policy policy;
+
+  private RingBufferChute<String> chute;
+
+  @Setup
+  public void fillChute() throws InterruptedException {
+    chute = new RingBufferChute<>(CAPACITY, policy.overflowPolicy);
+    for (int i = 0; i < CAPACITY; i++) {
+      chute.put(ELEMENT);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void put_1thread() throws InterruptedException {
+    chute.put(ELEMENT);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void put_4threads() throws InterruptedException {
+    chute.put(ELEMENT);
+  }
+}
@@ -0,0 +1,87 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a put() followed by a take() on a PriorityChute that is kept at a constant occupancy,
+ * compared to a BufferingChute at the same occupancy. Elements have random priorities, so each
+ * put and take moves an element through the PriorityChute's heap.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PriorityChuteBenchmark {
+  public enum Kind {
+    BUFFERING {
+      @Override
+      Chute<Integer> create(int capacity) {
+        return new BufferingChute<>(capacity, NANOS_SOURCE);
+      }
+    },
+    PRIORITY {
+      @Override
+      Chute<Integer> create(int capacity) {
+        return new PriorityChute<>(capacity, Comparator.naturalOrder(), NANOS_SOURCE);
+      }
+    },
+    PRIORITY_WITH_AGING {
+      @Override
+      Chute<Integer> create(int capacity) {
+        return new PriorityChute<>(capacity, Comparator.naturalOrder(), 1, TimeUnit.SECONDS,
+            NANOS_SOURCE);
+      }
+    };
+
+    abstract Chute<Integer> create(int capacity);
+  }
+
+  private static final int NUM_PRIORITIES = 4096;
+
+  @Param({"BUFFERING", "PRIORITY", "PRIORITY_WITH_AGING"})
+  public Kind kind;
+
+  @Param({"16", "65536"})
+  public int occupancy;
+
+  private Chute<Integer> chute;
+  private Integer[] priorities;
+  private int nextPriority = 0;
+
+  @Setup
+  public void fillChute() throws InterruptedException {
+    Random random = new Random(42);
+    priorities = new Integer[NUM_PRIORITIES];
+    for (int i = 0; i < NUM_PRIORITIES; i++) {
+      priorities[i] = random.nextInt(1000);
+    }
+    // One extra slot for the element put in each invocation before one is taken.
+    chute = kind.create(occupancy + 1);
+    for (int i = 0; i < occupancy; i++) {
+      chute.put(nextPriority());
+    }
+  }
+
+  private Integer nextPriority() {
+    Integer priority = priorities[nextPriority];
+    nextPriority = (nextPriority + 1) % NUM_PRIORITIES;
+    return priority;
+  }
+
+  @Benchmark
+  public Integer putAndTake() throws InterruptedException {
+    chute.put(nextPriority());
+    return chute.take().get();
+  }
+}
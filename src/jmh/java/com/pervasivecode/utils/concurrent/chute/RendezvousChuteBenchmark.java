@@ -0,0 +1,118 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time taken for a round trip of two direct handoffs through a RendezvousChute, compared to a
+ * {@link SynchronousQueue}.
+ * <p>
+ * The benchmark thread puts an element into a request handoff, and an echo thread takes it and
+ * puts it into a response handoff, which the benchmark thread then takes from. Since neither
+ * handoff has a buffer, each put only returns once the other thread has taken the element.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RendezvousChuteBenchmark {
+  private interface Handoff {
+    void put(String element) throws InterruptedException;
+
+    String take() throws InterruptedException;
+  }
+
+  public enum Kind {
+    RENDEZVOUS_CHUTE {
+      @Override
+      Handoff create() {
+        RendezvousChute<String> chute = new RendezvousChute<>();
+        return new Handoff() {
+          @Override
+          public void put(String element) throws InterruptedException {
+            chute.put(element);
+          }
+
+          @Override
+          public String take() throws InterruptedException {
+            return chute.take().get();
+          }
+        };
+      }
+    },
+    SYNCHRONOUS_QUEUE {
+      @Override
+      Handoff create() {
+        SynchronousQueue<String> queue = new SynchronousQueue<>();
+        return new Handoff() {
+          @Override
+          public void put(String element) throws InterruptedException {
+            queue.put(element);
+          }
+
+          @Override
+          public String take() throws InterruptedException {
+            return queue.take();
+          }
+        };
+      }
+    };
+
+    abstract Handoff create();
+  }
+
+  @Param({"RENDEZVOUS_CHUTE", "SYNCHRONOUS_QUEUE"})
+  public Kind kind;
+
+  private Handoff requests;
+  private Handoff responses;
+  private Thread echoThread;
+
+  @Setup(Level.Trial)
+  public void startEchoThread() {
+    requests = kind.create();
+    responses = kind.create();
+    echoThread = new Thread(() -> {
+      try {
+        while (true) {
+          responses.put(requests.take());
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        return;
+      }
+    }, "RendezvousChuteBenchmark echo");
+    echoThread.setDaemon(true);
+    echoThread.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void stopEchoThread() throws InterruptedException {
+    echoThread.interrupt();
+    echoThread.join(SECONDS.toMillis(5));
+    if (echoThread.isAlive()) {
+      throw new IllegalStateException("The echo thread did not stop.");
+    }
+  }
+
+  @Benchmark
+  public String roundTrip() throws InterruptedException {
+    requests.put(ChuteBenchmarkHarness.ELEMENT);
+    return responses.take();
+  }
+}
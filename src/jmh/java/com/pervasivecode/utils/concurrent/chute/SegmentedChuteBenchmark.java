@@ -0,0 +1,76 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.ELEMENT;
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of filling a chute with a large number of elements and then draining it, for a
+ * SegmentedChute compared to a BufferingChute that is big enough to hold all of the elements.
+ * Filling the SegmentedChute links (and, after the first invocation, recycles or allocates)
+ * segments as it grows, whereas the BufferingChute allocates a wrapper object for every element.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SegmentedChuteBenchmark {
+  public enum Kind {
+    BUFFERING {
+      @Override
+      Chute<String> create(int size) {
+        return new BufferingChute<>(size, NANOS_SOURCE);
+      }
+    },
+    SEGMENTED {
+      @Override
+      Chute<String> create(int size) {
+        return new SegmentedChute<>(SEGMENT_SIZE);
+      }
+    };
+
+    abstract Chute<String> create(int size);
+  }
+
+  private static final int SEGMENT_SIZE = 1024;
+
+  @Param({"BUFFERING", "SEGMENTED"})
+  public Kind kind;
+
+  @Param({"65536", "1048576"})
+  public int size;
+
+  private Chute<String> chute;
+
+  @Setup
+  public void createChute() {
+    chute = kind.create(size);
+  }
+
+  @Benchmark
+  public int fillAndDrain() throws InterruptedException {
+    for (int i = 0; i < size; i++) {
+      chute.put(ELEMENT);
+    }
+    int numTaken = 0;
+    while (chute.tryTakeNow().isPresent()) {
+      numTaken++;
+    }
+    return numTaken;
+  }
+}
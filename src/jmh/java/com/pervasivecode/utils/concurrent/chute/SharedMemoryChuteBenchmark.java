@@ -0,0 +1,81 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.ELEMENT;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of put() into a SharedMemoryChute whose elements are taken by a consumer running in a
+ * separate JVM, so that the producer is limited by how fast the other process can take elements.
+ * <p>
+ * The file is created in {@code /dev/shm} when that directory exists, and in the default
+ * temporary-file directory otherwise.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SharedMemoryChuteBenchmark {
+  /**
+   * Takes elements from a SharedMemoryChute until it is closed. Run in a separate JVM by
+   * {@link SharedMemoryChuteBenchmark#startConsumer()}.
+   */
+  public static final class Consumer {
+    public static void main(String[] args) throws Exception {
+      SharedMemoryChute<String> chute = SharedMemoryChute.open(Paths.get(args[0]),
+          Integer.parseInt(args[1]), ElementSerializers.utf8Strings());
+      while (chute.take().isPresent()) {
+        // Just discard the element.
+      }
+    }
+  }
+
+  @Param({"4096", "1048576"})
+  public int capacityBytes;
+
+  private Path file;
+  private SharedMemoryChute<String> chute;
+  private Process consumer;
+
+  @Setup(Level.Trial)
+  public void startConsumer() throws IOException {
+    Path sharedMemoryDirectory = Paths.get("/dev/shm");
+    file = Files.isDirectory(sharedMemoryDirectory)
+        ? Files.createTempFile(sharedMemoryDirectory, "chute-benchmark-", ".shm")
+        : Files.createTempFile("chute-benchmark-", ".shm");
+    // Start from an empty file, so that open() initializes it.
+    Files.delete(file);
+    chute = SharedMemoryChute.open(file, capacityBytes, ElementSerializers.utf8Strings());
+    Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+    consumer = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+        Consumer.class.getName(), file.toString(), Integer.toString(capacityBytes)).inheritIO()
+            .start();
+  }
+
+  @TearDown(Level.Trial)
+  public void stopConsumer() throws Exception {
+    chute.close();
+    if (!consumer.waitFor(10, TimeUnit.SECONDS)) {
+      consumer.destroyForcibly();
+    }
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public void put() throws InterruptedException {
+    chute.put(ELEMENT);
+  }
+}
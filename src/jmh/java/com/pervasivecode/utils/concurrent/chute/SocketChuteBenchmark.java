@@ -0,0 +1,87 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.ELEMENT;
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of put() into a SocketChuteEntrance connected over loopback to a SocketChuteExit,
+ * compared to put() into a local BufferingChute with the same capacity. In both cases a consumer
+ * thread takes elements as fast as it can.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SocketChuteBenchmark {
+  public enum Transport {
+    LOCAL, SOCKET
+  }
+
+  private static final int CAPACITY = 1024;
+  private static final int BATCH_SIZE_BYTES = 16 * 1024;
+
+  @Param({"LOCAL", "SOCKET"})
+  public Transport transport;
+
+  @Param({"0", "1"})
+  public int lingerMillis;
+
+  private ChuteEntrance<String> entrance;
+  private Thread consumer;
+
+  @Setup(Level.Trial)
+  public void connect() throws IOException {
+    ChuteExit<String> exit;
+    if (transport == Transport.LOCAL) {
+      BufferingChute<String> chute = new BufferingChute<>(CAPACITY, NANOS_SOURCE);
+      entrance = chute;
+      exit = chute;
+    } else {
+      try (ServerSocketChannel server = ServerSocketChannel.open()) {
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SocketChannel entranceSocket = SocketChannel.open(server.getLocalAddress());
+        exit = new SocketChuteExit<>(server.accept(), CAPACITY, ElementSerializers.utf8Strings());
+        entrance = new SocketChuteEntrance<>(entranceSocket, ElementSerializers.utf8Strings(),
+            BATCH_SIZE_BYTES, lingerMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    consumer = new Thread(() -> {
+      try {
+        while (exit.take().isPresent()) {
+          // Just discard the element.
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        return;
+      }
+    }, "SocketChuteBenchmark consumer");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void disconnect() throws Exception {
+    entrance.close();
+    consumer.join(TimeUnit.SECONDS.toMillis(10));
+  }
+
+  @Benchmark
+  public void put() throws InterruptedException {
+    entrance.put(ELEMENT);
+  }
+}
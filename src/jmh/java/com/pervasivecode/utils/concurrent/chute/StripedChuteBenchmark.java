@@ -0,0 +1,83 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of StripedChute compared to BufferingChute with many producer and consumer threads
+ * (the same number of each, so 64 threads per side means 128 threads in total). All of the chutes
+ * have the same total capacity. Scores are elements per second.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StripedChuteBenchmark {
+  public enum Kind {
+    BUFFERING {
+      @Override
+      Chute<String> create(int capacity) {
+        return new BufferingChute<>(capacity, NANOS_SOURCE);
+      }
+    },
+    STRIPED_4 {
+      @Override
+      Chute<String> create(int capacity) {
+        return new StripedChute<>(4, capacity / 4);
+      }
+    },
+    STRIPED_16 {
+      @Override
+      Chute<String> create(int capacity) {
+        return new StripedChute<>(16, capacity / 16);
+      }
+    };
+
+    abstract Chute<String> create(int capacity);
+  }
+
+  private static final int NUM_ELEMENTS = 200_000;
+  private static final int CAPACITY = 1024;
+
+  @Param({"BUFFERING", "STRIPED_4", "STRIPED_16"})
+  public Kind kind;
+
+  @Param({"4", "32", "64"})
+  public int threadsPerSide;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void startExecutor() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @TearDown
+  public void stopExecutor() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public long manyProducersAndConsumers() throws Exception {
+    Chute<String> chute = kind.create(CAPACITY);
+    long numTaken = ChuteBenchmarkHarness.run(executor, Collections.nCopies(threadsPerSide, chute),
+        chute, threadsPerSide, NUM_ELEMENTS, false);
+    ChuteBenchmarkHarness.checkCount(NUM_ELEMENTS, numTaken);
+    return numTaken;
+  }
+}
@@ -0,0 +1,76 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fan-in throughput of SynchronousMultiplexer and BufferedMultiplexer, with one producer thread per
+ * input and a single consumer thread taking from the output chute. Scores are elements per second.
+ * <p>
+ * The BufferedMultiplexer uses input buffers of the same size as the output chute, and forwards
+ * batches of up to {@code batchSize} elements from each input.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SynchronousMultiplexerBenchmark {
+  private static final int NUM_ELEMENTS = 100_000;
+
+  @Param({"1", "4", "16"})
+  public int inputs;
+
+  @Param({"256"})
+  public int bufferSize;
+
+  @Param({"64"})
+  public int batchSize;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void startExecutor() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @TearDown
+  public void stopExecutor() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public long synchronousMultiplexer() throws Exception {
+    BufferingChute<String> output = new BufferingChute<>(bufferSize, NANOS_SOURCE);
+    SynchronousMultiplexer<String> mux = new SynchronousMultiplexer<>(inputs, output);
+    long numTaken =
+        ChuteBenchmarkHarness.run(executor, mux.inputChutes(), output, 1, NUM_ELEMENTS, true);
+    ChuteBenchmarkHarness.checkCount(NUM_ELEMENTS, numTaken);
+    return numTaken;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public long bufferedMultiplexer() throws Exception {
+    BufferingChute<String> output = new BufferingChute<>(bufferSize, NANOS_SOURCE);
+    BufferedMultiplexer<String> mux =
+        new BufferedMultiplexer<>(inputs, bufferSize, batchSize, output);
+    long numTaken =
+        ChuteBenchmarkHarness.run(executor, mux.inputChutes(), output, 1, NUM_ELEMENTS, true);
+    ChuteBenchmarkHarness.checkCount(NUM_ELEMENTS, numTaken);
+    return numTaken;
+  }
+}
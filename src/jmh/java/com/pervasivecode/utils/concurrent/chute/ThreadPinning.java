@@ -0,0 +1,49 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Pins the current thread to a single CPU, so that latency benchmarks are not skewed by the OS
+ * scheduler migrating threads between cores.
+ * <p>
+ * The JDK has no API for thread affinity, so this uses the Linux {@code taskset} command on the
+ * native thread ID, which is found via {@code /proc/thread-self}. It only works on Linux.
+ */
+final class ThreadPinning {
+  /** The value of a CPU benchmark parameter that means "don't pin this thread". */
+  static final int UNPINNED = -1;
+
+  private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+
+  private ThreadPinning() {}
+
+  /**
+   * Pin the current thread to the specified CPU.
+   *
+   * @param cpu The zero-based CPU number, or {@link #UNPINNED} to leave the thread alone.
+   * @throws IllegalStateException if the thread could not be pinned.
+   */
+  static void pinCurrentThread(int cpu) {
+    if (cpu == UNPINNED) {
+      return;
+    }
+    try {
+      String nativeThreadId = Files.readSymbolicLink(THREAD_SELF).getFileName().toString();
+      Process taskset = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(cpu),
+          nativeThreadId).redirectErrorStream(true).start();
+      if (!taskset.waitFor(10, SECONDS) || taskset.exitValue() != 0) {
+        throw new IllegalStateException(
+            String.format("taskset could not pin thread %s to CPU %d", nativeThreadId, cpu));
+      }
+    } catch (IOException | UnsupportedOperationException e) {
+      throw new IllegalStateException("Thread pinning is only supported on Linux.", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while pinning thread.", e);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Optional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of TransformingExit and TransformingEntrance, compared to putting and taking directly.
+ * Each operation is one put and one take on a single thread, so that only the per-element cost of
+ * the wrappers is measured, not contention.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TransformingBenchmark {
+  private BufferingChute<Integer> chute;
+  private ChuteExit<Integer> transformingExit;
+  private ChuteEntrance<Integer> transformingEntrance;
+  private Integer element;
+
+  @Setup
+  public void setup() {
+    chute = new BufferingChute<>(16, NANOS_SOURCE);
+    transformingExit = Chutes.transformingExit(chute, i -> i);
+    transformingEntrance = Chutes.transformingEntrance(chute, i -> i);
+    element = Integer.valueOf(12345);
+  }
+
+  @Benchmark
+  public Optional<Integer> direct() throws InterruptedException {
+    chute.put(element);
+    return chute.tryTakeNow();
+  }
+
+  @Benchmark
+  public Optional<Integer> transformingExit() throws InterruptedException {
+    chute.put(element);
+    return transformingExit.tryTakeNow();
+  }
+
+  @Benchmark
+  public Optional<Integer> transformingEntrance() throws InterruptedException {
+    transformingEntrance.put(element);
+    return chute.tryTakeNow();
+  }
+}
@@ -0,0 +1,79 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Optional;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of chains of transforming exits and entrances of increasing depth. The fused chains are
+ * built with {@link Chutes#transformingExit} and {@link Chutes#transformingEntrance}, which
+ * compose nested transformations into a single wrapper; the unfused chains are built by calling
+ * the wrapper constructors directly, giving one wrapper (and, for exits, one Optional) per level.
+ * Each operation is one put and one take on a single thread, as in {@link TransformingBenchmark}.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TransformingChainBenchmark {
+  @Param({"1", "2", "3", "4", "5", "6", "7", "8"})
+  public int depth;
+
+  private BufferingChute<Integer> chute;
+  private ChuteExit<Integer> fusedExit;
+  private ChuteExit<Integer> unfusedExit;
+  private ChuteEntrance<Integer> fusedEntrance;
+  private ChuteEntrance<Integer> unfusedEntrance;
+  private Integer element;
+
+  @Setup
+  public void setup() {
+    chute = new BufferingChute<>(16, NANOS_SOURCE);
+    Function<Integer, Integer> increment = i -> i + 1;
+    fusedExit = chute;
+    unfusedExit = chute;
+    fusedEntrance = chute;
+    unfusedEntrance = chute;
+    for (int i = 0; i < depth; i++) {
+      fusedExit = Chutes.transformingExit(fusedExit, increment);
+      unfusedExit = new TransformingExit<>(unfusedExit, increment);
+      fusedEntrance = Chutes.transformingEntrance(fusedEntrance, increment);
+      unfusedEntrance = new TransformingEntrance<>(unfusedEntrance, increment);
+    }
+    element = Integer.valueOf(12345);
+  }
+
+  @Benchmark
+  public Optional<Integer> fusedExit() throws InterruptedException {
+    chute.put(element);
+    return fusedExit.tryTakeNow();
+  }
+
+  @Benchmark
+  public Optional<Integer> unfusedExit() throws InterruptedException {
+    chute.put(element);
+    return unfusedExit.tryTakeNow();
+  }
+
+  @Benchmark
+  public Optional<Integer> fusedEntrance() throws InterruptedException {
+    fusedEntrance.put(element);
+    return chute.tryTakeNow();
+  }
+
+  @Benchmark
+  public Optional<Integer> unfusedEntrance() throws InterruptedException {
+    unfusedEntrance.put(element);
+    return chute.tryTakeNow();
+  }
+}
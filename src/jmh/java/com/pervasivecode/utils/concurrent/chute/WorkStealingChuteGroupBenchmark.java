@@ -0,0 +1,74 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.pervasivecode.utils.concurrent.chute.ChuteBenchmarkHarness.NANOS_SOURCE;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a WorkStealingChuteGroup, whose consumers each take from their own exit, compared
+ * to a single BufferingChute shared by all of the consumers. Both have the same total capacity.
+ * Scores are elements per second.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WorkStealingChuteGroupBenchmark {
+  private static final int NUM_ELEMENTS = 100_000;
+
+  @Param({"1", "4"})
+  public int producers;
+
+  @Param({"2", "8"})
+  public int consumers;
+
+  @Param({"16", "256"})
+  public int capacityPerConsumer;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void startExecutor() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @TearDown
+  public void stopExecutor() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public long sharedBufferingChute() throws Exception {
+    BufferingChute<String> chute =
+        new BufferingChute<>(capacityPerConsumer * consumers, NANOS_SOURCE);
+    long numTaken = ChuteBenchmarkHarness.run(executor, Collections.nCopies(producers, chute),
+        chute, consumers, NUM_ELEMENTS, false);
+    ChuteBenchmarkHarness.checkCount(NUM_ELEMENTS, numTaken);
+    return numTaken;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ELEMENTS)
+  public long workStealingChuteGroup() throws Exception {
+    WorkStealingChuteGroup<String> group =
+        new WorkStealingChuteGroup<>(consumers, capacityPerConsumer);
+    long numTaken = ChuteBenchmarkHarness.run(executor,
+        Collections.nCopies(producers, group.entrance()), group.exits(), NUM_ELEMENTS, false);
+    ChuteBenchmarkHarness.checkCount(NUM_ELEMENTS, numTaken);
+    return numTaken;
+  }
+}
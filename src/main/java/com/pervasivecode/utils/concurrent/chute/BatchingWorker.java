@@ -26,6 +26,10 @@ class BatchingWorker<E> implements Runnable {
 
   @Override
   public void run() {
+    TraceContext.runPropagating(this::batchUntilInputIsClosed);
+  }
+
+  private void batchUntilInputIsClosed() {
     try {
       boolean inputClosed = false;
       while (!inputClosed) {
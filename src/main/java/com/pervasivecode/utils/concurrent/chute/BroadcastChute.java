@@ -0,0 +1,387 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link ChuteEntrance} that delivers every element put into it to each of its subscribers,
+ * such as an indexer and an archiver that both need the same stream of elements.
+ * <p>
+ * Elements are stored once, in a fixed-size ring buffer that all subscribers read from, and each
+ * subscriber keeps track of its own position in the ring, so elements are never copied per
+ * subscriber. A subscriber only receives elements that were put after it subscribed; elements put
+ * while there are no subscribers are not delivered to anyone.
+ * <p>
+ * When the slowest subscriber is so far behind that the buffer is full of elements it hasn't taken
+ * yet, the chute's {@link LagPolicy} decides whether the producer blocks, the subscriber skips its
+ * oldest untaken element, or the subscriber is disconnected.
+ * <p>
+ * Closing the chute closes all of the subscriptions once their subscribers have taken all of the
+ * elements that were put before it was closed.
+ *
+ * @param <E> The type of object that can be sent through the BroadcastChute.
+ */
+public final class BroadcastChute<E> implements ChuteEntrance<E> {
+  /**
+   * A subscriber's view of a {@link BroadcastChute}, from which it takes elements.
+   *
+   * @param <E> The type of object that can be taken from the Subscription.
+   */
+  public static final class Subscription<E> implements ChuteExit<E> {
+    private final BroadcastChute<E> chute;
+
+    // All of the following fields are guarded by the chute's lock.
+    private long position;
+    private long numDropped = 0;
+    private boolean isDisconnected = false;
+
+    private Subscription(BroadcastChute<E> chute, long position) {
+      this.chute = chute;
+      this.position = position;
+    }
+
+    /**
+     * Stop receiving elements. Afterward, this subscription is closed and empty, and it no longer
+     * holds up the producer.
+     *
+     * @throws InterruptedException if interrupted while waiting for the chute's lock.
+     */
+    public void unsubscribe() throws InterruptedException {
+      chute.lock.lockInterruptibly();
+      try {
+        chute.removeSubscription(this);
+      } finally {
+        chute.lock.unlock();
+      }
+    }
+
+    /**
+     * Get the number of elements that this subscriber skipped because it was too far behind, when
+     * the chute's policy is {@link LagPolicy#DROP_OLDEST}.
+     *
+     * @return The number of skipped elements.
+     */
+    public long numDropped() {
+      chute.lock.lock();
+      try {
+        return numDropped;
+      } finally {
+        chute.lock.unlock();
+      }
+    }
+
+    /**
+     * Find out whether this subscription was disconnected, either because it was too far behind
+     * when the chute's policy is {@link LagPolicy#DISCONNECT}, or because of
+     * {@link #unsubscribe()}.
+     *
+     * @return Whether this subscription was disconnected.
+     */
+    public boolean isDisconnected() {
+      chute.lock.lock();
+      try {
+        return isDisconnected;
+      } finally {
+        chute.lock.unlock();
+      }
+    }
+
+    /**
+     * Find out whether no more elements can be taken right now. The caller must hold the chute's
+     * lock.
+     */
+    private boolean isCaughtUp() {
+      return isDisconnected || position == chute.putPosition;
+    }
+
+    /**
+     * Take the next element, which must exist. The caller must hold the chute's lock.
+     */
+    private E dequeue() {
+      @SuppressWarnings("unchecked")
+      E element = (E) chute.ring[chute.slotOf(position)];
+      if (position == chute.oldestRetainedPosition) {
+        // This may have been the last subscriber that hadn't taken this element.
+        position++;
+        chute.releaseTakenSlots();
+      } else {
+        position++;
+      }
+      if (chute.policy == LagPolicy.BLOCK) {
+        chute.notFull.signalAll();
+      }
+      return element;
+    }
+
+    @Override
+    public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+      long remainingNanos = timeoutUnit.toNanos(timeout);
+      chute.lock.lockInterruptibly();
+      try {
+        while (isCaughtUp()) {
+          if (chute.isClosed || isDisconnected || remainingNanos <= 0) {
+            return Optional.empty();
+          }
+          remainingNanos = chute.notEmpty.awaitNanos(remainingNanos);
+        }
+        return Optional.of(dequeue());
+      } finally {
+        chute.lock.unlock();
+      }
+    }
+
+    @Override
+    public Optional<E> tryTakeNow() {
+      if (!chute.lock.tryLock()) {
+        return Optional.empty();
+      }
+      try {
+        if (isCaughtUp()) {
+          return Optional.empty();
+        }
+        return Optional.of(dequeue());
+      } finally {
+        chute.lock.unlock();
+      }
+    }
+
+    @Override
+    public Optional<E> take() throws InterruptedException {
+      chute.lock.lockInterruptibly();
+      try {
+        while (isCaughtUp()) {
+          if (chute.isClosed || isDisconnected) {
+            return Optional.empty();
+          }
+          chute.notEmpty.await();
+        }
+        return Optional.of(dequeue());
+      } finally {
+        chute.lock.unlock();
+      }
+    }
+
+    @Override
+    public boolean isClosedAndEmpty() {
+      chute.lock.lock();
+      try {
+        return isCaughtUp() && (chute.isClosed || isDisconnected);
+      } finally {
+        chute.lock.unlock();
+      }
+    }
+  }
+
+  private final int capacity;
+  private final LagPolicy policy;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final Object[] ring;
+  private long putPosition = 0;
+  // The position of the oldest element still referenced by the ring. Elements at earlier positions
+  // have been taken by every subscriber, and their slots have been cleared.
+  private long oldestRetainedPosition = 0;
+  private final List<Subscription<E>> subscriptions = new ArrayList<>();
+  private boolean isClosed = false;
+
+  /**
+   * Create a BroadcastChute.
+   *
+   * @param capacity The maximum number of elements that a subscriber can fall behind the producer.
+   * @param policy What to do when a subscriber falls further behind than the capacity.
+   */
+  public BroadcastChute(int capacity, LagPolicy policy) {
+    checkArgument(capacity > 0, "Capacity must be at least 1.");
+    this.capacity = capacity;
+    this.policy = checkNotNull(policy);
+    this.ring = new Object[capacity];
+  }
+
+  /**
+   * Create a new subscription, which will receive every element put into this chute from now on
+   * (subject to the chute's {@link LagPolicy}).
+   *
+   * @return The new subscription.
+   */
+  public Subscription<E> subscribe() {
+    lock.lock();
+    try {
+      Subscription<E> subscription = new Subscription<>(this, putPosition);
+      if (isClosed) {
+        subscription.isDisconnected = true;
+      } else {
+        subscriptions.add(subscription);
+      }
+      return subscription;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of subscriptions that are still receiving elements.
+   *
+   * @return The number of subscriptions that haven't been disconnected.
+   */
+  public int numSubscribers() {
+    lock.lock();
+    try {
+      return subscriptions.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int slotOf(long position) {
+    return (int) (position % capacity);
+  }
+
+  /**
+   * Clear the slots of elements that every subscriber has taken or skipped, so that they can be
+   * garbage-collected. The caller must hold the lock.
+   */
+  private void releaseTakenSlots() {
+    long oldestUntakenPosition = putPosition;
+    for (Subscription<E> subscription : subscriptions) {
+      oldestUntakenPosition = Math.min(oldestUntakenPosition, subscription.position);
+    }
+    while (oldestRetainedPosition < oldestUntakenPosition) {
+      ring[slotOf(oldestRetainedPosition)] = null;
+      oldestRetainedPosition++;
+    }
+  }
+
+  // Visible for testing.
+  int numRetainedElements() {
+    lock.lock();
+    try {
+      int numRetained = 0;
+      for (Object element : ring) {
+        if (element != null) {
+          numRetained++;
+        }
+      }
+      return numRetained;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Disconnect a subscription. The caller must hold the lock.
+   */
+  private void removeSubscription(Subscription<E> subscription) {
+    if (subscriptions.remove(subscription)) {
+      subscription.isDisconnected = true;
+      releaseTakenSlots();
+      // The subscription's taker needs to return Optional.empty(), and a producer blocked by this
+      // subscription may now be able to proceed.
+      notEmpty.signalAll();
+      notFull.signalAll();
+    }
+  }
+
+  /**
+   * Find out whether putting another element would overwrite an element that some subscriber
+   * hasn't taken yet. The caller must hold the lock.
+   */
+  private boolean isAnySubscriberFull() {
+    for (Subscription<E> subscription : subscriptions) {
+      if (putPosition - subscription.position == capacity) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Apply the DROP_OLDEST or DISCONNECT policy to every subscriber that is too far behind to
+   * receive another element. The caller must hold the lock.
+   */
+  private void makeRoomForLaggingSubscribers() {
+    Iterator<Subscription<E>> iterator = subscriptions.iterator();
+    while (iterator.hasNext()) {
+      Subscription<E> subscription = iterator.next();
+      if (putPosition - subscription.position == capacity) {
+        if (policy == LagPolicy.DROP_OLDEST) {
+          subscription.position++;
+          subscription.numDropped++;
+        } else {
+          iterator.remove();
+          subscription.isDisconnected = true;
+          notEmpty.signalAll();
+        }
+      }
+    }
+    releaseTakenSlots();
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // A blocked putter needs to throw IllegalStateException, and blocked takers may need to
+      // return Optional.empty().
+      notFull.signalAll();
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    lock.lockInterruptibly();
+    try {
+      if (policy == LagPolicy.BLOCK) {
+        while (!isClosed && isAnySubscriberFull()) {
+          notFull.await();
+        }
+      }
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      if (policy != LagPolicy.BLOCK) {
+        makeRoomForLaggingSubscribers();
+      }
+      ring[slotOf(putPosition)] = element;
+      putPosition++;
+      // A lagging subscriber may have been skipped past an element that was just overwritten.
+      oldestRetainedPosition = Math.max(oldestRetainedPosition, putPosition - capacity);
+      if (subscriptions.isEmpty()) {
+        // No subscriber will take this element.
+        releaseTakenSlots();
+      }
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
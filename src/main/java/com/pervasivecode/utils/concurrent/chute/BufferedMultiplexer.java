@@ -0,0 +1,260 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A BufferedMultiplexer provides multiple {@link ChuteEntrance} instances which all feed into a
+ * single {@link ChuteEntrance}, all with the same element type, like a
+ * {@link SynchronousMultiplexer}. When all of the provided {@link ChuteEntrance}s are closed, and
+ * all of the elements that were put into them have been forwarded, the output
+ * {@link ChuteEntrance} will be closed.
+ * <p>
+ * Unlike a SynchronousMultiplexer, which puts each element into the output in the producer's
+ * thread (so that all producers contend for the output), each input of a BufferedMultiplexer has
+ * its own fixed-size buffer, and a single merge thread moves elements from the input buffers to the
+ * output. The merge thread visits the inputs in round-robin order, taking a batch of up to a
+ * specified number of elements from each one, so that a busy input can't starve the others.
+ * Producers only contend with other producers using the same input, and only block when their own
+ * input's buffer is full. Each input is intended to be used by one producer thread at a time.
+ * <p>
+ * The merge thread is a daemon thread which is started by the constructor and which stops once all
+ * of the inputs have been closed and drained. If the output is closed by something other than this
+ * multiplexer, the merge thread stops, and the inputs become closed.
+ *
+ * @param <E> The type of object that can be sent through the BufferedMultiplexer.
+ */
+public final class BufferedMultiplexer<E> {
+  private final ImmutableList<BufferedEntrance> inputs;
+  private final ChuteEntrance<E> outputChute;
+  private final int batchSize;
+  private final Thread mergeThread;
+  private final AtomicInteger numInputChutesStillOpen;
+
+  // Set by the merge thread before it parks, and checked by producers after they make a change
+  // that the merge thread has to see.
+  private volatile boolean isMergerIdle = false;
+  // Set if the merge thread stopped because the output could not accept any more elements.
+  private volatile boolean isMergerStopped = false;
+
+  /**
+   * Create a multiplexer with the specified number of inputs, which places elements into the
+   * specified ChuteEntrance.
+   *
+   * @param numInputs The number of separately-closeable ChuteEntrances that this instance will
+   *        provide.
+   * @param bufferSize The maximum number of elements that each input can hold before they are
+   *        forwarded to the output.
+   * @param batchSize The maximum number of elements that the merge thread forwards from one input
+   *        before moving on to the next input.
+   * @param outputChute The ChuteEntrance into which the combined elements from all of the entrances
+   *        presented by this class will be placed.
+   */
+  public BufferedMultiplexer(int numInputs, int bufferSize, int batchSize,
+      ChuteEntrance<E> outputChute) {
+    checkArgument(numInputs > 0, "numInputs must be at least 1.");
+    checkArgument(bufferSize > 0, "Buffer size must be at least 1.");
+    checkArgument(batchSize > 0, "Batch size must be at least 1.");
+    this.outputChute = checkNotNull(outputChute);
+    this.batchSize = batchSize;
+    this.numInputChutesStillOpen = new AtomicInteger(numInputs);
+
+    ImmutableList.Builder<BufferedEntrance> inputsBuilder = ImmutableList.builder();
+    for (int i = 0; i < numInputs; i++) {
+      inputsBuilder.add(new BufferedEntrance(bufferSize));
+    }
+    this.inputs = inputsBuilder.build();
+
+    this.mergeThread = new Thread(this::runMergeLoop, "BufferedMultiplexer merger");
+    mergeThread.setDaemon(true);
+    mergeThread.start();
+  }
+
+  /**
+   * Get all of the input ChuteEntrances provided by this instance. When all of these ChuteEntrances
+   * have been closed, the output chute will be closed.
+   *
+   * @return A list of the input ChuteEntrances provided by this instance.
+   */
+  public List<ChuteEntrance<E>> inputChutes() {
+    return ImmutableList.copyOf(inputs);
+  }
+
+  private void wakeMerger() {
+    if (isMergerIdle) {
+      LockSupport.unpark(mergeThread);
+    }
+  }
+
+  /**
+   * An input with a single-consumer ring buffer, from which only the merge thread takes elements.
+   */
+  final class BufferedEntrance implements ChuteEntrance<E> {
+    private final int capacity;
+    private final AtomicReferenceArray<E> ring;
+    private final AtomicLong putPosition = new AtomicLong();
+    private final AtomicLong takePosition = new AtomicLong();
+    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    // The number of puts that have started but not yet finished, which the merge thread has to
+    // wait for before it can decide that this input has been drained.
+    private final AtomicInteger numPutsInProgress = new AtomicInteger();
+    // A producer that is waiting for the merge thread to make room in the buffer.
+    private volatile @Nullable Thread waitingProducer = null;
+
+    BufferedEntrance(int capacity) {
+      this.capacity = capacity;
+      this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public boolean isClosed() {
+      return isClosed.get() || isMergerStopped;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+      if (isClosed.compareAndSet(false, true)) {
+        numInputChutesStillOpen.decrementAndGet();
+        wakeMerger();
+      }
+    }
+
+    @Override
+    public synchronized void put(E element) throws InterruptedException {
+      checkNotNull(element, "Null elements are not allowed");
+      numPutsInProgress.incrementAndGet();
+      try {
+        if (isClosed.get()) {
+          throw new IllegalStateException("This ChuteEntrance was already closed.");
+        }
+        long position = putPosition.get();
+        while (position - takePosition.get() == capacity) {
+          if (isMergerStopped) {
+            throw new IllegalStateException("The output ChuteEntrance was closed.");
+          }
+          waitingProducer = Thread.currentThread();
+          if (position - takePosition.get() == capacity && !isMergerStopped) {
+            LockSupport.park(this);
+          }
+          waitingProducer = null;
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+        if (isMergerStopped) {
+          throw new IllegalStateException("The output ChuteEntrance was closed.");
+        }
+        ring.lazySet((int) (position % capacity), element);
+        putPosition.set(position + 1);
+      } finally {
+        numPutsInProgress.decrementAndGet();
+        wakeMerger();
+      }
+    }
+
+    /**
+     * Move up to maxElements elements from the buffer into a list. Only called by the merge thread.
+     *
+     * @return The number of elements that were moved.
+     */
+    int drainTo(List<E> batch, int maxElements) {
+      long position = takePosition.get();
+      int numToTake = (int) Math.min(putPosition.get() - position, maxElements);
+      for (int i = 0; i < numToTake; i++) {
+        int slot = (int) ((position + i) % capacity);
+        batch.add(ring.get(slot));
+        ring.lazySet(slot, null);
+      }
+      if (numToTake > 0) {
+        takePosition.set(position + numToTake);
+        wakeProducer();
+      }
+      return numToTake;
+    }
+
+    void wakeProducer() {
+      Thread producer = waitingProducer;
+      if (producer != null) {
+        LockSupport.unpark(producer);
+      }
+    }
+
+    boolean isEmpty() {
+      return putPosition.get() == takePosition.get();
+    }
+
+    /**
+     * Find out whether this input has been closed and all of the elements put into it have been
+     * taken by the merge thread.
+     */
+    boolean isDrained() {
+      return isClosed.get() && numPutsInProgress.get() == 0 && isEmpty();
+    }
+  }
+
+  private void runMergeLoop() {
+    List<E> batch = new ArrayList<>(batchSize);
+    try {
+      while (true) {
+        boolean isAnyForwarded = false;
+        for (BufferedEntrance input : inputs) {
+          if (input.drainTo(batch, batchSize) > 0) {
+            isAnyForwarded = true;
+            for (E element : batch) {
+              outputChute.put(element);
+            }
+            batch.clear();
+          }
+        }
+        if (!isAnyForwarded) {
+          if (areAllInputsDrained()) {
+            break;
+          }
+          isMergerIdle = true;
+          if (areAllInputsEmpty() && !areAllInputsDrained()) {
+            LockSupport.park(this);
+          }
+          isMergerIdle = false;
+        }
+      }
+      outputChute.close();
+    } catch (@SuppressWarnings("unused") IllegalStateException | InterruptedException e) {
+      // The output was closed by something else, or this thread was interrupted, so no more
+      // elements can be forwarded.
+      isMergerStopped = true;
+      for (BufferedEntrance input : inputs) {
+        input.wakeProducer();
+      }
+    }
+  }
+
+  private boolean areAllInputsEmpty() {
+    for (BufferedEntrance input : inputs) {
+      if (!input.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean areAllInputsDrained() {
+    if (numInputChutesStillOpen.get() > 0) {
+      return false;
+    }
+    for (BufferedEntrance input : inputs) {
+      if (!input.isDrained()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -7,20 +7,30 @@ import java.util.Optional;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import com.pervasivecode.utils.time.CurrentNanosSource;
 
 /**
  * A {@link Chute} based on a {@link java.util.concurrent.BlockingQueue BlockingQueue}, providing a
  * fixed-size nonzero-capacity buffer that holds elements that have been put into the
  * {@link ChuteEntrance} but not yet taken from the {@link ChuteExit}.
+ * <p>
+ * Optionally, a BufferingChute can trace the latency of the elements that pass through it, without
+ * changing the type of the elements. Each element is stamped with the time at which it was put into
+ * the chute, and the time at which it (or the element it was derived from) was put into the first
+ * traced chute of a chain of chutes. The origin time is carried from a traced ChuteExit to the next
+ * traced ChuteEntrance by the worker that takes an element and puts the result, if the worker is
+ * one of the {@link Workers}. Each traced chute provides a histogram of the time that elements
+ * spent in that chute, and a histogram of the time since the elements entered the chain.
  *
  * @param <E> The type of object that can be sent through the BufferingChute.
  */
 public final class BufferingChute<E> implements Chute<E> {
-  static final class Datum<L> {
+  static class Datum<L> {
     public final L wrappedElement;
 
     /**
@@ -31,12 +41,12 @@ public final class BufferingChute<E> implements Chute<E> {
     }
 
     @Override
-    public int hashCode() {
+    public final int hashCode() {
       return Objects.hashCode(wrappedElement);
     }
 
     @Override
-    public boolean equals(Object other) {
+    public final boolean equals(Object other) {
       if (other == this) {
         return true;
       }
@@ -48,6 +58,21 @@ public final class BufferingChute<E> implements Chute<E> {
     }
   }
 
+  /**
+   * A Datum used by chutes that trace latency, which records when the element was put into this
+   * chute, and when it was put into the first traced chute in a chain.
+   */
+  static final class StampedDatum<L> extends Datum<L> {
+    public final long enqueuedNanos;
+    public final long originNanos;
+
+    public StampedDatum(L elementToWrap, long enqueuedNanos, long originNanos) {
+      super(elementToWrap);
+      this.enqueuedNanos = enqueuedNanos;
+      this.originNanos = originNanos;
+    }
+  }
+
   private final ArrayBlockingQueue<Datum<E>> buffer;
   private final CurrentNanosSource nanosSource;
 
@@ -55,18 +80,56 @@ public final class BufferingChute<E> implements Chute<E> {
   private final Datum<E> eofDatum;
 
   // Lock used to guard against adding a new, non-EOF datum when the chute is closed or closing:
-  private final Lock putLock = new ReentrantLock();
+  private final ReentrantLock putLock = new ReentrantLock();
 
   // Lock used to guard against accidentally taking the EOF datum out of the buffer when it's the
   // last element.
-  private final Lock takeLock = new ReentrantLock();
-
+  private final ReentrantLock takeLock = new ReentrantLock();
+
+  // Running totals of elements put and taken, for monitoring. (These are only updated while holding
+  // putLock or takeLock respectively.)
+  private final AtomicLong numPut = new AtomicLong();
+  private final AtomicLong numTaken = new AtomicLong();
+
+  // Latency histograms, which are only present when latency tracing is enabled.
+  private final @Nullable LatencyHistogram residenceTimes;
+  private final @Nullable LatencyHistogram endToEndTimes;
+
+  // Used only when tracing latency, by a putter (holding putLock) that waits for space before
+  // stamping its element, so that time spent blocked on a full buffer doesn't count as time spent
+  // in the chute. Takers only acquire spaceLock if isPutterWaitingForSpace is set.
+  private final ReentrantLock spaceLock = new ReentrantLock();
+  private final Condition notFull = spaceLock.newCondition();
+  private final AtomicBoolean isPutterWaitingForSpace = new AtomicBoolean(false);
+
+  /**
+   * Create a BufferingChute that does not trace latency.
+   *
+   * @param bufferSize The maximum number of elements that the chute can hold.
+   * @param nanosSource A source of the current time, used for timeouts.
+   */
   public BufferingChute(int bufferSize, CurrentNanosSource nanosSource) {
+    this(bufferSize, nanosSource, false);
+  }
+
+  /**
+   * Create a BufferingChute that optionally traces the latency of elements passing through it.
+   *
+   * @param bufferSize The maximum number of elements that the chute can hold.
+   * @param nanosSource A source of the current time, used for timeouts and (if enabled) for
+   *        latency tracing. All chutes in a traced chain should use equivalent time sources.
+   * @param traceLatency Whether to record latency histograms. See {@link #residenceTimes()} and
+   *        {@link #endToEndTimes()}.
+   */
+  public BufferingChute(int bufferSize, CurrentNanosSource nanosSource, boolean traceLatency) {
     checkArgument(bufferSize > 0, "Buffer size must be at least 1.");
     this.buffer = new ArrayBlockingQueue<>(bufferSize);
 
     this.nanosSource = checkNotNull(nanosSource);
 
+    this.residenceTimes = traceLatency ? new LatencyHistogram() : null;
+    this.endToEndTimes = traceLatency ? new LatencyHistogram() : null;
+
     // TODO find a way to not use an eofDatum.
     E eofValue = null;
     this.eofDatum = new Datum<>(eofValue);
@@ -75,6 +138,76 @@ public final class BufferingChute<E> implements Chute<E> {
   private boolean isEof(Datum<E> datum) {
     return datum.wrappedElement == null;
   }
+
+  /**
+   * Stamp an element that is about to be put into the buffer. The caller must hold putLock, and
+   * must have waited for space in the buffer.
+   */
+  private Datum<E> stamp(E element) {
+    long nowNanos = nanosSource.currentTimeNanoPrecision();
+    return new StampedDatum<>(element, nowNanos, TraceContext.originForPut(nowNanos));
+  }
+
+  /**
+   * Wait until the buffer has space for an element. The caller must hold putLock, so no other
+   * thread can fill the space before the caller uses it.
+   */
+  private void awaitSpace() throws InterruptedException {
+    if (buffer.remainingCapacity() > 0) {
+      return;
+    }
+    isPutterWaitingForSpace.set(true);
+    spaceLock.lockInterruptibly();
+    try {
+      while (buffer.remainingCapacity() == 0) {
+        notFull.await();
+      }
+    } finally {
+      isPutterWaitingForSpace.set(false);
+      spaceLock.unlock();
+    }
+  }
+
+  private E unwrap(Datum<E> datum) {
+    numTaken.incrementAndGet();
+    if (residenceTimes != null && endToEndTimes != null) {
+      if (isPutterWaitingForSpace.get()) {
+        spaceLock.lock();
+        try {
+          notFull.signal();
+        } finally {
+          spaceLock.unlock();
+        }
+      }
+      StampedDatum<E> stampedDatum = (StampedDatum<E>) datum;
+      long nowNanos = nanosSource.currentTimeNanoPrecision();
+      residenceTimes.recordValue(nowNanos - stampedDatum.enqueuedNanos);
+      endToEndTimes.recordValue(nowNanos - stampedDatum.originNanos);
+      TraceContext.elementTaken(stampedDatum.originNanos);
+    }
+    return datum.wrappedElement;
+  }
+
+  /**
+   * Get the histogram of the amount of time that elements spent in this chute, from the time they
+   * were put into it until they were taken from it.
+   *
+   * @return The histogram, or {@link Optional#empty()} if this chute does not trace latency.
+   */
+  public Optional<LatencyHistogram> residenceTimes() {
+    return Optional.ofNullable(residenceTimes);
+  }
+
+  /**
+   * Get the histogram of the amount of time that elements took to pass through the whole chain of
+   * traced chutes that ends with this one, from the time they (or the elements they were derived
+   * from) were put into the first traced chute until they were taken from this chute.
+   *
+   * @return The histogram, or {@link Optional#empty()} if this chute does not trace latency.
+   */
+  public Optional<LatencyHistogram> endToEndTimes() {
+    return Optional.ofNullable(endToEndTimes);
+  }
   
   //
   // Methods from ChuteEntrance
@@ -103,11 +236,18 @@ public final class BufferingChute<E> implements Chute<E> {
     checkNotNull(element, "Null elements are not allowed");
     putLock.lockInterruptibly();
     try {
-      if (!isClosed()) {
+      if (isClosed()) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      if (residenceTimes == null) {
         buffer.put(new Datum<>(element));
       } else {
-        throw new IllegalStateException("Channel is already closed.");
+        // Only eofDatum is put by any other method, and only while holding putLock after closing,
+        // so once there is space this put can't block, and the stamp excludes the wait.
+        awaitSpace();
+        buffer.put(stamp(element));
       }
+      numPut.incrementAndGet();
     } finally {
       putLock.unlock();
     }
@@ -152,7 +292,7 @@ public final class BufferingChute<E> implements Chute<E> {
         return Optional.empty();
       }
 
-      return Optional.of(datum.wrappedElement);
+      return Optional.of(unwrap(datum));
     } finally {
       takeLock.unlock();
     }
@@ -181,7 +321,7 @@ public final class BufferingChute<E> implements Chute<E> {
       }
       // Remove the head of the queue, which we already have a reference to in datum.
       buffer.poll();
-      return Optional.of(datum.wrappedElement);
+      return Optional.of(unwrap(datum));
     } finally {
       takeLock.unlock();
     }
@@ -199,7 +339,7 @@ public final class BufferingChute<E> implements Chute<E> {
         buffer.put(takenDatum);
         return Optional.empty();
       }
-      return Optional.of(takenDatum.wrappedElement);
+      return Optional.of(unwrap(takenDatum));
     } finally {
       takeLock.unlock();
     }
@@ -216,9 +356,40 @@ public final class BufferingChute<E> implements Chute<E> {
     return false;
   }
 
+  //
+  // Monitoring methods, used by BufferingChuteMonitor
+  //
+
+  int capacity() {
+    // The eofDatum is only added by close(), which waits for space, so the whole remaining
+    // capacity is available to elements.
+    return buffer.size() + buffer.remainingCapacity();
+  }
+
+  long numPut() {
+    return numPut.get();
+  }
+
+  long numTaken() {
+    return numTaken.get();
+  }
+
+  int numBlockedPutters() {
+    // Threads queued for the putLock are blocked, as is the lock holder if the buffer is full.
+    boolean holderIsBlocked = putLock.isLocked() && buffer.remainingCapacity() == 0;
+    return putLock.getQueueLength() + (holderIsBlocked ? 1 : 0);
+  }
+
+  int numBlockedTakers() {
+    // Threads queued for the takeLock are blocked, as is the lock holder if the buffer is empty.
+    boolean holderIsBlocked = takeLock.isLocked() && buffer.isEmpty();
+    return takeLock.getQueueLength() + (holderIsBlocked ? 1 : 0);
+  }
+
   @Override
   public int hashCode() {
-    return Objects.hash(buffer, nanosSource, isOpen, eofDatum, putLock, takeLock);
+    return Objects.hash(buffer, nanosSource, isOpen, eofDatum, putLock, takeLock, numPut,
+        numTaken, residenceTimes, endToEndTimes, spaceLock, notFull, isPutterWaitingForSpace);
   }
 
   @Override
@@ -235,6 +406,13 @@ public final class BufferingChute<E> implements Chute<E> {
         && Objects.equals(otherChute.isOpen, this.isOpen)
         && Objects.equals(otherChute.eofDatum, this.eofDatum)
         && Objects.equals(otherChute.putLock, this.putLock)
-        && Objects.equals(otherChute.takeLock, this.takeLock);
+        && Objects.equals(otherChute.takeLock, this.takeLock)
+        && Objects.equals(otherChute.numPut, this.numPut)
+        && Objects.equals(otherChute.numTaken, this.numTaken)
+        && Objects.equals(otherChute.residenceTimes, this.residenceTimes)
+        && Objects.equals(otherChute.endToEndTimes, this.endToEndTimes)
+        && Objects.equals(otherChute.spaceLock, this.spaceLock)
+        && Objects.equals(otherChute.notFull, this.notFull)
+        && Objects.equals(otherChute.isPutterWaitingForSpace, this.isPutterWaitingForSpace);
   }
 }
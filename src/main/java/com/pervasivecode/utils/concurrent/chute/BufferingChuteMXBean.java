@@ -0,0 +1,62 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+/**
+ * The management interface of a {@link BufferingChute} that has been registered with a
+ * {@link ChuteRegistry}, for use by JMX clients such as jconsole.
+ * <p>
+ * All values are snapshots that may already be out of date by the time they are returned, since
+ * the chute may be in use by other threads.
+ */
+public interface BufferingChuteMXBean {
+  /**
+   * @return The maximum number of elements that the chute can hold.
+   */
+  public int getCapacity();
+
+  /**
+   * @return The number of elements that have been put into the chute but not yet taken.
+   */
+  public long getSize();
+
+  /**
+   * @return Whether the chute has been closed.
+   * @see ChuteEntrance#isClosed()
+   */
+  public boolean isClosed();
+
+  /**
+   * @return Whether the chute has been closed and all of its elements have been taken.
+   * @see ChuteExit#isClosedAndEmpty()
+   */
+  public boolean isClosedAndEmpty();
+
+  /**
+   * @return The total number of elements that have been put into the chute. Sampling this value
+   *         periodically yields the put throughput of the chute.
+   */
+  public long getPutCount();
+
+  /**
+   * @return The total number of elements that have been taken from the chute. Sampling this value
+   *         periodically yields the take throughput of the chute.
+   */
+  public long getTakeCount();
+
+  /**
+   * @return An estimate of the number of threads that are blocked trying to put an element into
+   *         the chute.
+   */
+  public int getBlockedPutterCount();
+
+  /**
+   * @return An estimate of the number of threads that are blocked trying to take an element from
+   *         the chute.
+   */
+  public int getBlockedTakerCount();
+
+  /**
+   * @return Whether the chute has been garbage collected. If true, all of the other attributes
+   *         will have default values.
+   */
+  public boolean isCollected();
+}
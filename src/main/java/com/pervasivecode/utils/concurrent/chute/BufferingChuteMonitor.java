@@ -0,0 +1,67 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import java.lang.ref.ReferenceQueue;
+import javax.management.ObjectName;
+
+final class BufferingChuteMonitor extends RegisteredMonitor<BufferingChute<?>>
+    implements BufferingChuteMXBean {
+
+  public BufferingChuteMonitor(BufferingChute<?> chute, ObjectName objectName,
+      ReferenceQueue<Object> collectedQueue) {
+    super(chute, objectName, collectedQueue);
+  }
+
+  @Override
+  public int getCapacity() {
+    BufferingChute<?> chute = get();
+    return chute == null ? 0 : chute.capacity();
+  }
+
+  @Override
+  public long getSize() {
+    BufferingChute<?> chute = get();
+    if (chute == null) {
+      return 0;
+    }
+    // A put is counted after its element is in the buffer, so a taker can take the element and
+    // count it before the put is counted. Clamp the size so that it never appears negative.
+    long numTaken = chute.numTaken();
+    return Math.max(0, chute.numPut() - numTaken);
+  }
+
+  @Override
+  public boolean isClosed() {
+    BufferingChute<?> chute = get();
+    return chute == null ? false : chute.isClosed();
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    BufferingChute<?> chute = get();
+    return chute == null ? false : chute.isClosedAndEmpty();
+  }
+
+  @Override
+  public long getPutCount() {
+    BufferingChute<?> chute = get();
+    return chute == null ? 0 : chute.numPut();
+  }
+
+  @Override
+  public long getTakeCount() {
+    BufferingChute<?> chute = get();
+    return chute == null ? 0 : chute.numTaken();
+  }
+
+  @Override
+  public int getBlockedPutterCount() {
+    BufferingChute<?> chute = get();
+    return chute == null ? 0 : chute.numBlockedPutters();
+  }
+
+  @Override
+  public int getBlockedTakerCount() {
+    BufferingChute<?> chute = get();
+    return chute == null ? 0 : chute.numBlockedTakers();
+  }
+}
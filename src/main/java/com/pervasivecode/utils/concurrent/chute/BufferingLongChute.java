@@ -0,0 +1,238 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link LongChute} that holds its values in a fixed-size long[] ring buffer, so that putting and
+ * taking values neither boxes them nor allocates any objects.
+ *
+ * @see BufferingChute for the equivalent implementation for objects.
+ */
+public final class BufferingLongChute implements LongChute {
+  private final long[] ring;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private int takeIndex = 0;
+  private int count = 0;
+  private boolean isClosed = false;
+
+  /**
+   * Create a BufferingLongChute.
+   *
+   * @param bufferSize The maximum number of values that the chute can hold.
+   */
+  public BufferingLongChute(int bufferSize) {
+    checkArgument(bufferSize > 0, "Buffer size must be at least 1.");
+    this.ring = new long[bufferSize];
+  }
+
+  /**
+   * Get the number of values currently in the chute.
+   *
+   * @return The number of values.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int putIndex() {
+    int index = takeIndex + count;
+    return index < ring.length ? index : index - ring.length;
+  }
+
+  private long dequeue() {
+    long value = ring[takeIndex];
+    takeIndex = (takeIndex + 1 == ring.length) ? 0 : takeIndex + 1;
+    count--;
+    notFull.signal();
+    return value;
+  }
+
+  //
+  // Methods from LongChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Blocked putters need to throw IllegalStateException, and blocked takers need to return.
+      notFull.signalAll();
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait until there is room for at least one value. The caller must hold lock.
+   *
+   * @return false if the chute was closed (so no value can be put).
+   */
+  private boolean awaitSpace() throws InterruptedException {
+    while (!isClosed && count == ring.length) {
+      notFull.await();
+    }
+    return !isClosed;
+  }
+
+  @Override
+  public void put(long value) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      if (!awaitSpace()) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      ring[putIndex()] = value;
+      count++;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int putAll(long[] values, int offset, int length) throws InterruptedException {
+    checkNotNull(values);
+    checkPositionIndexes(offset, offset + length, values.length);
+    int numPut = 0;
+    lock.lockInterruptibly();
+    try {
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      while (numPut < length) {
+        if (!awaitSpace()) {
+          // Closed while waiting for space; the caller finds out how many values were put.
+          return numPut;
+        }
+        int putIndex = putIndex();
+        // Copy as much as will fit, up to the end of the ring.
+        int numToCopy = Math.min(length - numPut, ring.length - count);
+        numToCopy = Math.min(numToCopy, ring.length - putIndex);
+        System.arraycopy(values, offset + numPut, ring, putIndex, numToCopy);
+        count += numToCopy;
+        numPut += numToCopy;
+        notEmpty.signalAll();
+      }
+      return numPut;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods from LongChuteExit
+  //
+
+  @Override
+  public OptionalLong tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        if (isClosed || remainingNanos <= 0) {
+          return OptionalLong.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      return OptionalLong.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public OptionalLong tryTakeNow() {
+    if (!lock.tryLock()) {
+      return OptionalLong.empty();
+    }
+    try {
+      if (count == 0) {
+        return OptionalLong.empty();
+      }
+      return OptionalLong.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public OptionalLong take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        if (isClosed) {
+          return OptionalLong.empty();
+        }
+        notEmpty.await();
+      }
+      return OptionalLong.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(long[] destination, int offset, int maxValues) throws InterruptedException {
+    checkNotNull(destination);
+    checkArgument(maxValues > 0, "maxValues must be greater than 0. Got %s", maxValues);
+    checkPositionIndexes(offset, offset + maxValues, destination.length);
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        if (isClosed) {
+          return 0;
+        }
+        notEmpty.await();
+      }
+      int numTaken = Math.min(count, maxValues);
+      // Copy in up to two pieces, since the values may wrap around the end of the ring.
+      int firstPieceLength = Math.min(numTaken, ring.length - takeIndex);
+      System.arraycopy(ring, takeIndex, destination, offset, firstPieceLength);
+      System.arraycopy(ring, 0, destination, offset + firstPieceLength,
+          numTaken - firstPieceLength);
+      takeIndex = (takeIndex + numTaken) % ring.length;
+      count -= numTaken;
+      notFull.signalAll();
+      return numTaken;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && count == 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
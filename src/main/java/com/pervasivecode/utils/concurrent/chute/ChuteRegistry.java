@@ -0,0 +1,182 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+
+/**
+ * An opt-in registry that exposes {@link BufferingChute}s, {@link SynchronousMultiplexer}s, and
+ * worker {@link Runnable}s as JMX MXBeans, so that a chute topology can be observed with jconsole
+ * or a JMX-scraping metrics agent.
+ * <p>
+ * Each registered object is exposed under an ObjectName of the form
+ * {@code com.pervasivecode.utils.concurrent.chute:type=<Type>,name="<name>"}, with attributes
+ * described by {@link BufferingChuteMXBean}, {@link SynchronousMultiplexerMXBean}, or
+ * {@link WorkerMXBean}.
+ * <p>
+ * The registry only holds weak references to the objects that are registered with it, so
+ * registration never prevents a discarded chute from being garbage collected. The MXBeans of
+ * collected objects are unregistered the next time anything is registered, or when
+ * {@link #purgeCollected()} is called.
+ */
+public final class ChuteRegistry {
+  /** The ObjectName domain under which all MXBeans are registered. */
+  public static final String DOMAIN = "com.pervasivecode.utils.concurrent.chute";
+
+  private final MBeanServer mbeanServer;
+  private final ReferenceQueue<Object> collectedQueue = new ReferenceQueue<>();
+  private final Set<ObjectName> registeredNames = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Create a registry that registers MXBeans with the platform MBeanServer.
+   */
+  public ChuteRegistry() {
+    this(ManagementFactory.getPlatformMBeanServer());
+  }
+
+  /**
+   * Create a registry that registers MXBeans with the specified MBeanServer.
+   *
+   * @param mbeanServer The MBeanServer with which MXBeans will be registered.
+   */
+  public ChuteRegistry(MBeanServer mbeanServer) {
+    this.mbeanServer = checkNotNull(mbeanServer);
+  }
+
+  /**
+   * Register a BufferingChute, exposing it as a {@link BufferingChuteMXBean}.
+   *
+   * @param name The name under which the chute will be registered.
+   * @param chute The chute to register.
+   * @return The ObjectName of the chute's MXBean.
+   * @throws IllegalArgumentException if a BufferingChute is already registered with that name.
+   */
+  public ObjectName register(String name, BufferingChute<?> chute) {
+    checkNotNull(chute);
+    ObjectName objectName = objectName("BufferingChute", name);
+    registerMonitor(new BufferingChuteMonitor(chute, objectName, collectedQueue));
+    return objectName;
+  }
+
+  /**
+   * Register a SynchronousMultiplexer, exposing it as a {@link SynchronousMultiplexerMXBean}.
+   *
+   * @param name The name under which the multiplexer will be registered.
+   * @param multiplexer The multiplexer to register.
+   * @return The ObjectName of the multiplexer's MXBean.
+   * @throws IllegalArgumentException if a SynchronousMultiplexer is already registered with that
+   *         name.
+   */
+  public ObjectName register(String name, SynchronousMultiplexer<?> multiplexer) {
+    checkNotNull(multiplexer);
+    ObjectName objectName = objectName("SynchronousMultiplexer", name);
+    registerMonitor(new SynchronousMultiplexerMonitor(multiplexer, objectName, collectedQueue));
+    return objectName;
+  }
+
+  /**
+   * Register a worker Runnable, such as one obtained from {@link Workers}, exposing it as a
+   * {@link WorkerMXBean}.
+   * <p>
+   * Only executions of the returned Runnable are observed, so callers must run the returned
+   * Runnable instead of the original worker.
+   *
+   * @param name The name under which the worker will be registered.
+   * @param worker The worker to register.
+   * @return A Runnable that runs the specified worker, keeping track of the threads that are
+   *         running it.
+   * @throws IllegalArgumentException if a worker is already registered with that name.
+   */
+  public Runnable registerWorker(String name, Runnable worker) {
+    MonitoredWorker monitoredWorker = new MonitoredWorker(worker);
+    ObjectName objectName = objectName("Worker", name);
+    registerMonitor(new MonitoredWorker.Monitor(monitoredWorker, objectName, collectedQueue));
+    return monitoredWorker;
+  }
+
+  /**
+   * Unregister the MXBean with the specified ObjectName, if it was registered by this registry.
+   *
+   * @param objectName The ObjectName returned when the MXBean was registered.
+   * @return Whether an MXBean was unregistered.
+   */
+  public boolean unregister(ObjectName objectName) {
+    if (!registeredNames.remove(objectName)) {
+      return false;
+    }
+    try {
+      mbeanServer.unregisterMBean(objectName);
+      return true;
+    } catch (@SuppressWarnings("unused") InstanceNotFoundException infe) {
+      // Someone else already unregistered it.
+      return false;
+    } catch (MBeanRegistrationException mre) {
+      throw new IllegalStateException("Could not unregister " + objectName, mre);
+    }
+  }
+
+  /**
+   * Unregister all of the MXBeans that were registered by this registry.
+   */
+  public void unregisterAll() {
+    for (ObjectName objectName : registeredNames) {
+      unregister(objectName);
+    }
+  }
+
+  /**
+   * Unregister the MXBeans of all registered objects that have been garbage collected.
+   *
+   * @return The number of MXBeans that were unregistered.
+   */
+  public int purgeCollected() {
+    int numPurged = 0;
+    Reference<?> collected;
+    while ((collected = collectedQueue.poll()) != null) {
+      if (unregister(((RegisteredMonitor<?>) collected).objectName())) {
+        numPurged++;
+      }
+    }
+    return numPurged;
+  }
+
+  /**
+   * @return The ObjectNames of all of the MXBeans currently registered by this registry.
+   */
+  public Set<ObjectName> registeredNames() {
+    return Collections.unmodifiableSet(registeredNames);
+  }
+
+  private static ObjectName objectName(String type, String name) {
+    checkNotNull(name);
+    try {
+      return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    } catch (MalformedObjectNameException mone) {
+      throw new IllegalArgumentException("Invalid name: " + name, mone);
+    }
+  }
+
+  private void registerMonitor(RegisteredMonitor<?> monitor) {
+    purgeCollected();
+    ObjectName objectName = monitor.objectName();
+    try {
+      mbeanServer.registerMBean(monitor, objectName);
+    } catch (InstanceAlreadyExistsException iaee) {
+      throw new IllegalArgumentException("Already registered: " + objectName, iaee);
+    } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
+      throw new IllegalStateException("Could not register " + objectName, e);
+    }
+    registeredNames.add(objectName);
+  }
+}
@@ -2,6 +2,7 @@ package com.pervasivecode.utils.concurrent.chute;
 
 import java.util.Iterator;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Factory methods for representing {@link Chutes}, {@link ChuteEntrance}s, and {@link ChuteExit}s
@@ -65,11 +66,13 @@ public class Chutes {
    * @param <V> The type of object that the function produces, which must also be the type that the
    *        receiver ChuteEntrance accepts.
    * @return A ChuteEntrance that will apply the specified function and put the resulting objects
-   *         into the receiver ChuteEntrance.
+   *         into the receiver ChuteEntrance. If the receiver was also returned by this method, the
+   *         two functions are composed into one, so that a chain of transforming entrances is a
+   *         single wrapper around the innermost receiver.
    */
   public static <T, V> ChuteEntrance<T> transformingEntrance(ChuteEntrance<V> receiver,
       Function<T, V> transformer) {
-    return new TransformingEntrance<T, V>(receiver, transformer);
+    return TransformingEntrance.create(receiver, transformer);
   }
 
   /**
@@ -84,11 +87,58 @@ public class Chutes {
    * @param <V> The type of object that the function produces, which will also be the type that the
    *        returned ChuteExit provides.
    * @return A ChuteExit that applies the specified function to objects taken from the supplier
-   *         ChuteExit.
+   *         ChuteExit. If the supplier was also returned by this method, the two functions are
+   *         composed into one, so that a chain of transforming exits is a single wrapper around the
+   *         innermost supplier, which creates one Optional per element taken.
    */
   public static <T, V> ChuteExit<V> transformingExit(ChuteExit<T> supplier,
       Function<T, V> transformer) {
-    return new TransformingExit<T, V>(supplier, transformer);
+    return TransformingExit.create(supplier, transformer);
+  }
+
+  /**
+   * Wrap a given ChuteExit with a ChuteExit that only provides the elements of the supplier
+   * ChuteExit that match a predicate. Elements that don't match are taken from the supplier and
+   * discarded.
+   * <p>
+   * A timed take from the returned ChuteExit keeps taking and discarding elements until an element
+   * matches or the timeout elapses, rather than returning as soon as it discards an element. The
+   * returned ChuteExit's {@link ChuteExit#isClosedAndEmpty()} method returns false while the
+   * supplier still holds elements, even if none of them match.
+   *
+   * @param supplier The ChuteExit from which the elements are taken.
+   * @param predicate The predicate that elements must match in order to be provided.
+   * @param <T> The type of object that the supplier ChuteExit and the returned ChuteExit provide.
+   * @return A ChuteExit that provides the matching elements of the supplier ChuteExit.
+   */
+  public static <T> ChuteExit<T> filteringExit(ChuteExit<T> supplier,
+      Predicate<? super T> predicate) {
+    return new FilteringExit<T>(supplier, predicate);
+  }
+
+  /**
+   * Wrap a given ChuteExit with a ChuteExit that applies a function to each element of the supplier
+   * ChuteExit, and provides each of the resulting elements in turn. The function may produce any
+   * number of results for an element, including none, and must not produce nulls.
+   * <p>
+   * All of the results for one element are provided before the next element is taken from the
+   * supplier, even if several consumers share the returned ChuteExit. A timed take keeps taking
+   * elements that produce no results until there is a result or the timeout elapses, rather than
+   * returning as soon as it takes such an element.
+   *
+   * @param supplier The ChuteExit from which the objects are taken, before the function is applied.
+   * @param mapper The function that will be applied to each object taken from the supplier
+   *        ChuteExit, producing the objects that the returned ChuteExit provides.
+   * @param <T> The type of object that the function accepts, which must also be the type that the
+   *        supplier ChuteExit provides.
+   * @param <V> The type of object that the function produces Iterables of, which will also be the
+   *        type that the returned ChuteExit provides.
+   * @return A ChuteExit that provides the results of applying the specified function to objects
+   *         taken from the supplier ChuteExit.
+   */
+  public static <T, V> ChuteExit<V> flatMappingExit(ChuteExit<T> supplier,
+      Function<? super T, ? extends Iterable<? extends V>> mapper) {
+    return new FlatMappingExit<T, V>(supplier, mapper);
   }
 
   /**
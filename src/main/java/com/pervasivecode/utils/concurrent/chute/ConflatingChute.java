@@ -0,0 +1,211 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Chute} that holds at most one element per key, so that consumers only see the latest
+ * element for each key rather than every element that was put.
+ * <p>
+ * The key of each element is determined by a key-extractor function. When an element is put while
+ * another element with the same key is waiting in the chute, the new element replaces the waiting
+ * element in its place in the queue, so elements are taken in the order in which their keys first
+ * arrived. Replacing an element takes O(1) time, and never blocks, since it doesn't increase the
+ * number of elements in the chute.
+ * <p>
+ * The capacity of the chute is a number of distinct keys: an element with a new key blocks while
+ * the chute already holds the maximum number of keys.
+ *
+ * @param <E> The type of object that can be sent through the ConflatingChute.
+ */
+public final class ConflatingChute<E> implements Chute<E> {
+  private final int maxKeys;
+  private final Function<? super E, ?> keyExtractor;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  // Replacing the value of an existing key doesn't change its position in a LinkedHashMap's
+  // insertion order.
+  private final LinkedHashMap<Object, E> elementsByKey;
+  private long numReplaced = 0;
+  private boolean isClosed = false;
+
+  /**
+   * Create a ConflatingChute.
+   *
+   * @param maxKeys The maximum number of distinct keys that the chute can hold.
+   * @param keyExtractor A function that returns the key of an element. Keys must have consistent
+   *        {@link Object#equals(Object) equals} and {@link Object#hashCode() hashCode} methods,
+   *        and must not be null.
+   */
+  public ConflatingChute(int maxKeys, Function<? super E, ?> keyExtractor) {
+    checkArgument(maxKeys > 0, "Max keys must be at least 1.");
+    this.maxKeys = maxKeys;
+    this.keyExtractor = checkNotNull(keyExtractor);
+    this.elementsByKey = new LinkedHashMap<>();
+  }
+
+  /**
+   * Get the number of elements in the chute, which is also the number of distinct keys.
+   *
+   * @return The number of elements that are waiting to be taken.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return elementsByKey.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of elements that were replaced by newer elements with the same key before they
+   * could be taken.
+   *
+   * @return The number of replaced elements.
+   */
+  public long numReplaced() {
+    lock.lock();
+    try {
+      return numReplaced;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the element whose key arrived first, which must exist. The caller must hold the lock.
+   */
+  private E dequeue() {
+    Iterator<Map.Entry<Object, E>> iterator = elementsByKey.entrySet().iterator();
+    E element = iterator.next().getValue();
+    iterator.remove();
+    notFull.signal();
+    return element;
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Blocked putters need to throw IllegalStateException, and blocked takers may need to return
+      // Optional.empty().
+      notFull.signalAll();
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    Object key = checkNotNull(keyExtractor.apply(element), "Null keys are not allowed");
+    lock.lockInterruptibly();
+    try {
+      // Wait only if the key is new, since the element would otherwise replace an existing one.
+      while (!isClosed && elementsByKey.size() == maxKeys && !elementsByKey.containsKey(key)) {
+        notFull.await();
+      }
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      if (elementsByKey.put(key, element) != null) {
+        numReplaced++;
+      } else {
+        notEmpty.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (elementsByKey.isEmpty()) {
+        if (isClosed || remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      if (elementsByKey.isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (elementsByKey.isEmpty()) {
+        if (isClosed) {
+          return Optional.empty();
+        }
+        notEmpty.await();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && elementsByKey.isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,898 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.pervasivecode.utils.time.CurrentNanosSource;
+
+/**
+ * A {@link Chute} that stores its elements in an append-only log on disk, so that elements which
+ * have not been acknowledged by consumers are not lost when the JVM restarts.
+ * <p>
+ * Every element put into the chute is assigned a position (0 for the first element ever put, 1 for
+ * the next, and so on), serialized via an {@link ElementSerializer}, and appended to the current
+ * segment file of the log. When a segment file is full, a new one is started. Consumers can take
+ * elements along with their positions via {@link #takeEntry()} or
+ * {@link #tryTakeEntry(long, TimeUnit)}, and call {@link #acknowledge(long)} when they have
+ * finished processing them. Segment files are deleted once all of their elements have been
+ * acknowledged.
+ * <p>
+ * When a DurableChute is opened on a directory that already contains a log, all of the elements
+ * that were not acknowledged are taken again, in order, starting with the oldest one. (So, if a
+ * consumer took an element but did not acknowledge it before the JVM exited, that element will be
+ * delivered again: delivery is at-least-once.) If the chute had been closed, it is still closed
+ * when reopened. A partially-written record at the end of the log, as left by a crash, is
+ * discarded.
+ * <p>
+ * How often the log is forced onto the storage device is controlled by a {@link FsyncPolicy}.
+ * Consumers read elements directly from memory-mapped segment files, so the serializer can
+ * deserialize them without copying.
+ * <p>
+ * Since {@link #close()} just closes the entrance of the chute, the files used by the chute must
+ * be released via {@link #release()} when the chute is no longer needed.
+ *
+ * @param <E> The type of object that can be sent through the DurableChute.
+ */
+public final class DurableChute<E> implements Chute<E> {
+  /**
+   * An element taken from a DurableChute, along with its position in the log.
+   *
+   * @param <E> The type of the element.
+   */
+  public static final class Entry<E> {
+    private final long position;
+    private final E element;
+
+    Entry(long position, E element) {
+      this.position = position;
+      this.element = checkNotNull(element);
+    }
+
+    /**
+     * Get the position of the element, which can be passed to {@link DurableChute#acknowledge}.
+     *
+     * @return The position.
+     */
+    public long position() {
+      return position;
+    }
+
+    /**
+     * Get the element.
+     *
+     * @return The element.
+     */
+    public E element() {
+      return element;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(position, element);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other == this) {
+        return true;
+      }
+      if (!(other instanceof Entry)) {
+        return false;
+      }
+      Entry<?> otherEntry = (Entry<?>) other;
+      return otherEntry.position == this.position
+          && Objects.equals(otherEntry.element, this.element);
+    }
+  }
+
+  // Each record is a 4-byte header, a 4-byte CRC32 of the serialized element, and the serialized
+  // element. The header is the size of the serialized element plus one, so that the zeroes in the
+  // unused part of a segment file can be distinguished from a record.
+  private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+  private static final int NO_RECORD = 0;
+  private static final int EOF_RECORD = -1;
+
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String ACK_FILE_NAME = "ack";
+  private static final int ACK_FILE_SIZE = Long.BYTES + Integer.BYTES;
+
+  /**
+   * A segment file, which is mapped into memory for reading and written via its FileChannel.
+   */
+  private static final class Segment {
+    private final long basePosition;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer contents;
+    private final int capacity;
+    private int endOffset = 0;
+    private int numRecords = 0;
+    private boolean isSealed = false;
+
+    Segment(Path path, long basePosition, int sizeBytes) throws IOException {
+      this.basePosition = basePosition;
+      this.path = path;
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      int existingSize = (int) Math.min(channel.size(), Integer.MAX_VALUE);
+      this.capacity = existingSize > 0 ? existingSize : sizeBytes;
+      // Mapping the whole segment extends a new file to its full size, filled with zeroes. On the
+      // platforms the JDK supports, the mapping reflects data written via the channel.
+      this.contents = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    static Path pathFor(Path directory, long basePosition) {
+      return directory.resolve(String.format("%020d%s", basePosition, SEGMENT_SUFFIX));
+    }
+
+    boolean hasRoomFor(int recordSize) {
+      return !isSealed && capacity - endOffset >= recordSize;
+    }
+
+    int recordSizeAt(int offset) {
+      return RECORD_HEADER_SIZE + contents.getInt(offset) - 1;
+    }
+
+    /**
+     * Find the end of the valid records in this segment, discarding any partially-written record.
+     *
+     * @return Whether the segment ends with an EOF record.
+     */
+    boolean recover() throws IOException {
+      int offset = 0;
+      while (offset + RECORD_HEADER_SIZE <= capacity) {
+        int header = contents.getInt(offset);
+        if (header == NO_RECORD) {
+          break;
+        }
+        if (header == EOF_RECORD) {
+          endOffset = offset;
+          return true;
+        }
+        int size = header - 1;
+        boolean isValid = size >= 0 && size <= capacity - offset - RECORD_HEADER_SIZE
+            && contents.getInt(offset + Integer.BYTES) == crcOf(contents, offset, size);
+        if (!isValid) {
+          // Torn write. Zero it out, so it isn't mistaken for part of a record appended later.
+          ByteBuffer zeroes = ByteBuffer.allocate(capacity - offset);
+          while (zeroes.hasRemaining()) {
+            channel.write(zeroes, offset + zeroes.position());
+          }
+          break;
+        }
+        offset += RECORD_HEADER_SIZE + size;
+        numRecords++;
+      }
+      endOffset = offset;
+      return false;
+    }
+
+    void append(ByteBuffer record, boolean isElement) throws IOException {
+      int recordSize = record.remaining();
+      while (record.hasRemaining()) {
+        channel.write(record, endOffset + record.position());
+      }
+      endOffset += recordSize;
+      if (isElement) {
+        numRecords++;
+      }
+    }
+
+    void delete() {
+      try {
+        channel.close();
+        Files.deleteIfExists(path);
+      } catch (@SuppressWarnings("unused") IOException e) {
+        // Some platforms can't delete a file that's still mapped. Try again later.
+        path.toFile().deleteOnExit();
+      }
+    }
+  }
+
+  private static int crcOf(ByteBuffer contents, int recordOffset, int size) {
+    ByteBuffer data = contents.duplicate();
+    data.limit(recordOffset + RECORD_HEADER_SIZE + size);
+    data.position(recordOffset + RECORD_HEADER_SIZE);
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    return (int) crc.getValue();
+  }
+
+  private final Path directory;
+  private final int segmentSizeBytes;
+  private final ElementSerializer<E> serializer;
+  private final FsyncPolicy fsyncPolicy;
+  private final CurrentNanosSource nanosSource;
+  private final FileChannel ackChannel;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final TreeMap<Long, Segment> segments = new TreeMap<>();
+  private @Nullable Segment readSegment;
+  private int readOffset;
+  private long readPosition;
+  private long appendedPosition;
+  private long ackedPosition;
+  private boolean isClosed = false;
+  private boolean isReleased = false;
+  // Whether any record has been appended since the log was last forced.
+  private boolean hasUnsyncedRecords = false;
+  // Segments that were full when a new segment was started, and have not been forced since then.
+  private final List<Segment> sealedSegmentsToSync = new ArrayList<>();
+  private ByteBuffer recordBuffer = ByteBuffer.allocateDirect(4096);
+
+  // Used to share one fsync between concurrent putters. Never acquired while holding lock.
+  private final ReentrantLock syncLock = new ReentrantLock();
+  private volatile long syncedPosition;
+  private volatile long lastSyncNanos;
+
+  // Used to write the ack file. Never acquired while holding lock.
+  private final ReentrantLock ackLock = new ReentrantLock();
+  private long persistedAckPosition;
+  private long syncedAckPosition;
+  private long lastAckSyncNanos;
+
+  // Only present with FsyncPolicy.periodically(), to force data written since the last fsync even
+  // if no more puts or acknowledgements arrive.
+  private final @Nullable ScheduledExecutorService syncScheduler;
+
+  /**
+   * Open a DurableChute, creating a new log if the directory does not contain one, or recovering
+   * the unacknowledged elements and closed state of the existing log otherwise.
+   *
+   * @param directory The directory containing the log. It will be created if necessary. Only one
+   *        DurableChute at a time may use a given directory.
+   * @param segmentSizeBytes The size of each segment file. The largest element that can be put is
+   *        8 bytes smaller than this.
+   * @param serializer The serializer used to write elements to the log and read them back.
+   * @param fsyncPolicy How often to force written data onto the storage device.
+   * @param nanosSource A source of the current time, used by {@link FsyncPolicy#periodically}.
+   * @param <E> The type of object that can be sent through the DurableChute.
+   * @return The chute.
+   * @throws IOException if the log could not be opened or recovered.
+   */
+  public static <E> DurableChute<E> open(Path directory, int segmentSizeBytes,
+      ElementSerializer<E> serializer, FsyncPolicy fsyncPolicy, CurrentNanosSource nanosSource)
+      throws IOException {
+    checkNotNull(directory);
+    checkArgument(segmentSizeBytes > RECORD_HEADER_SIZE,
+        "Segment size must be greater than %s bytes.", RECORD_HEADER_SIZE);
+    checkNotNull(serializer);
+    checkNotNull(fsyncPolicy);
+    checkNotNull(nanosSource);
+    Files.createDirectories(directory);
+    DurableChute<E> chute =
+        new DurableChute<>(directory, segmentSizeBytes, serializer, fsyncPolicy, nanosSource);
+    if (chute.syncScheduler != null) {
+      long intervalNanos = fsyncPolicy.intervalNanos();
+      chute.syncScheduler.scheduleWithFixedDelay(chute::syncPeriodically, intervalNanos,
+          intervalNanos, TimeUnit.NANOSECONDS);
+    }
+    return chute;
+  }
+
+  private DurableChute(Path directory, int segmentSizeBytes, ElementSerializer<E> serializer,
+      FsyncPolicy fsyncPolicy, CurrentNanosSource nanosSource) throws IOException {
+    this.directory = directory;
+    this.segmentSizeBytes = segmentSizeBytes;
+    this.serializer = serializer;
+    this.fsyncPolicy = fsyncPolicy;
+    this.nanosSource = nanosSource;
+    this.ackChannel = FileChannel.open(directory.resolve(ACK_FILE_NAME),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.lastSyncNanos = nanosSource.currentTimeNanoPrecision();
+    this.lastAckSyncNanos = lastSyncNanos;
+    recover();
+    this.syncScheduler = (fsyncPolicy.kind() == FsyncPolicy.Kind.PERIODICALLY)
+        ? Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("durable-chute-sync-%d").setDaemon(true).build())
+        : null;
+  }
+
+  private void recover() throws IOException {
+    ackedPosition = readAckFile();
+    persistedAckPosition = ackedPosition;
+    syncedAckPosition = ackedPosition;
+
+    try (DirectoryStream<Path> segmentPaths =
+        Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path path : segmentPaths) {
+        String fileName = path.getFileName().toString();
+        long basePosition =
+            Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+        Segment segment = new Segment(path, basePosition, segmentSizeBytes);
+        segments.put(basePosition, segment);
+      }
+    }
+    for (Segment segment : segments.values()) {
+      if (segment.recover()) {
+        isClosed = true;
+      }
+    }
+    // Keep the last segment, since new elements are appended to it.
+    while (segments.size() > 1 && segments.higherKey(segments.firstKey()) <= ackedPosition) {
+      segments.pollFirstEntry().getValue().delete();
+    }
+
+    if (segments.isEmpty()) {
+      appendedPosition = ackedPosition;
+      readPosition = ackedPosition;
+    } else {
+      Segment last = segments.lastEntry().getValue();
+      appendedPosition = last.basePosition + last.numRecords;
+      if (ackedPosition > appendedPosition) {
+        // Elements that were acknowledged were lost (for example, by an OS crash with
+        // FsyncPolicy.never()). Start a new segment, so that positions stay consistent with
+        // segment file names.
+        appendedPosition = ackedPosition;
+        last.isSealed = true;
+      }
+      // If an acknowledged segment was deleted but the ack file was not updated, start with the
+      // oldest element that still exists.
+      readPosition = Math.max(ackedPosition, segments.firstKey());
+      readSegment = segments.floorEntry(readPosition).getValue();
+      readOffset = 0;
+      long numToSkip = Math.min(readPosition - readSegment.basePosition, readSegment.numRecords);
+      for (long i = 0; i < numToSkip; i++) {
+        readOffset += readSegment.recordSizeAt(readOffset);
+      }
+    }
+    syncedPosition = appendedPosition;
+  }
+
+  private long readAckFile() throws IOException {
+    ByteBuffer ackRecord = ByteBuffer.allocate(ACK_FILE_SIZE);
+    while (ackRecord.hasRemaining()) {
+      if (ackChannel.read(ackRecord, ackRecord.position()) < 0) {
+        // Nothing has been acknowledged yet.
+        return 0;
+      }
+    }
+    long position = ackRecord.getLong(0);
+    if (ackRecord.getInt(Long.BYTES) != ackCrcOf(position)) {
+      // Torn write. Replaying everything is safe, since delivery is at-least-once anyway.
+      return 0;
+    }
+    return position;
+  }
+
+  private static int ackCrcOf(long position) {
+    CRC32 crc = new CRC32();
+    ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES);
+    bytes.putLong(position);
+    bytes.flip();
+    crc.update(bytes);
+    return (int) crc.getValue();
+  }
+
+  private void checkNotReleased() {
+    if (isReleased) {
+      throw new IllegalStateException("DurableChute has been released.");
+    }
+  }
+
+  private ByteBuffer recordBuffer(int recordSize) {
+    if (recordBuffer.capacity() < recordSize) {
+      recordBuffer = ByteBuffer.allocateDirect(Math.max(recordSize, 2 * recordBuffer.capacity()));
+    }
+    recordBuffer.clear();
+    recordBuffer.limit(recordSize);
+    return recordBuffer;
+  }
+
+  private void appendRecord(ByteBuffer record, boolean isElement) throws IOException {
+    Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+    if (last == null || !last.hasRoomFor(record.remaining())) {
+      if (last != null) {
+        // The next sync forces this segment too, outside of lock so takers aren't stalled.
+        sealedSegmentsToSync.add(last);
+      }
+      last = new Segment(Segment.pathFor(directory, appendedPosition), appendedPosition,
+          segmentSizeBytes);
+      segments.put(appendedPosition, last);
+      if (readSegment == null) {
+        readSegment = last;
+        readOffset = 0;
+      }
+    }
+    last.append(record, isElement);
+    hasUnsyncedRecords = true;
+  }
+
+  private void syncThrough(long position) {
+    if (syncedPosition >= position) {
+      return;
+    }
+    syncLock.lock();
+    try {
+      if (syncedPosition >= position) {
+        // Another thread's fsync covered this position while this thread waited.
+        return;
+      }
+      long positionToSync;
+      List<Segment> segmentsToSync;
+      lock.lock();
+      try {
+        checkNotReleased();
+        positionToSync = appendedPosition;
+        hasUnsyncedRecords = false;
+        segmentsToSync = new ArrayList<>(sealedSegmentsToSync);
+        if (!segments.isEmpty()) {
+          segmentsToSync.add(segments.lastEntry().getValue());
+        }
+      } finally {
+        lock.unlock();
+      }
+      for (Segment segment : segmentsToSync) {
+        force(segment);
+      }
+      lock.lock();
+      try {
+        // Only forget these once they have all been forced, so that a failed sync is retried.
+        sealedSegmentsToSync.removeAll(segmentsToSync);
+      } finally {
+        lock.unlock();
+      }
+      syncedPosition = positionToSync;
+      lastSyncNanos = nanosSource.currentTimeNanoPrecision();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not sync the log.", e);
+    } finally {
+      syncLock.unlock();
+    }
+  }
+
+  /**
+   * Force a segment onto the storage device. The caller must hold syncLock, but not lock.
+   */
+  private void force(Segment segment) throws IOException {
+    try {
+      segment.channel.force(false);
+    } catch (ClosedChannelException e) {
+      lock.lock();
+      try {
+        // A segment's channel is only closed once all of its elements have been acknowledged and
+        // it has been removed, or by release(), which forces it first. Either way, there is
+        // nothing left to force.
+        if (!isReleased && segments.get(segment.basePosition) == segment) {
+          throw e;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private void syncAccordingToPolicy(long position) {
+    switch (fsyncPolicy.kind()) {
+      case ALWAYS:
+        syncThrough(position);
+        break;
+      case PERIODICALLY:
+        long nanosSinceSync = nanosSource.currentTimeNanoPrecision() - lastSyncNanos;
+        if (nanosSinceSync >= fsyncPolicy.intervalNanos()) {
+          syncThrough(position);
+        }
+        break;
+      case NEVER:
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Force any records and acknowledgements written since the last fsync onto the storage device.
+   * Run periodically by syncScheduler.
+   */
+  private void syncPeriodically() {
+    try {
+      boolean shouldSyncLog;
+      lock.lock();
+      try {
+        if (isReleased) {
+          return;
+        }
+        shouldSyncLog = hasUnsyncedRecords;
+      } finally {
+        lock.unlock();
+      }
+      if (shouldSyncLog) {
+        syncThrough(Long.MAX_VALUE);
+      }
+      ackLock.lock();
+      try {
+        if (syncedAckPosition < persistedAckPosition && ackChannel.isOpen()) {
+          ackChannel.force(false);
+          syncedAckPosition = persistedAckPosition;
+          lastAckSyncNanos = nanosSource.currentTimeNanoPrecision();
+        }
+      } finally {
+        ackLock.unlock();
+      }
+    } catch (IOException | RuntimeException e) {
+      // There is no caller to report this to. (If the chute was released concurrently, there is
+      // nothing left to sync.) A real I/O failure will also be thrown by the next put, sync(), or
+      // acknowledgement that forces the log.
+    }
+  }
+
+  /**
+   * Force all of the elements that have been put so far onto the storage device, regardless of
+   * the {@link FsyncPolicy}.
+   */
+  public void sync() {
+    syncThrough(Long.MAX_VALUE);
+  }
+
+  /**
+   * Force all data onto the storage device, and close the files used by this chute. After this
+   * has been called, all other methods of this chute will throw IllegalStateException. (The log
+   * can be reopened via {@link #open}.)
+   *
+   * @throws IOException if the files could not be forced or closed.
+   */
+  public void release() throws IOException {
+    if (syncScheduler != null) {
+      // Not shutdownNow(), since interrupting a thread that is forcing a FileChannel closes the
+      // channel.
+      syncScheduler.shutdown();
+    }
+    lock.lock();
+    try {
+      if (isReleased) {
+        return;
+      }
+      for (Segment segment : sealedSegmentsToSync) {
+        // Acknowledged segments are removed before they are deleted, and need no forcing.
+        if (segments.get(segment.basePosition) == segment) {
+          segment.channel.force(false);
+        }
+      }
+      if (!segments.isEmpty()) {
+        segments.lastEntry().getValue().channel.force(false);
+      }
+      isReleased = true;
+      // Wake up blocked takers so that they can fail.
+      notEmpty.signalAll();
+      for (Segment segment : segments.values()) {
+        segment.channel.close();
+      }
+    } finally {
+      lock.unlock();
+    }
+    ackLock.lock();
+    try {
+      ackChannel.force(false);
+      ackChannel.close();
+    } finally {
+      ackLock.unlock();
+    }
+  }
+
+  /**
+   * Acknowledge that the element at the specified position, and all elements at earlier
+   * positions, have been processed, so that they will not be taken again if the log is reopened.
+   *
+   * @param position The position of the most recent element that has been processed.
+   * @throws IllegalArgumentException if no element at that position has been taken.
+   */
+  public void acknowledge(long position) {
+    List<Segment> acknowledgedSegments = new ArrayList<>();
+    long newAckedPosition;
+    lock.lock();
+    try {
+      checkNotReleased();
+      checkArgument(position >= 0 && position < readPosition,
+          "Position %s has not been taken yet.", position);
+      if (position < ackedPosition) {
+        return;
+      }
+      ackedPosition = position + 1;
+      newAckedPosition = ackedPosition;
+      while (segments.size() > 1 && segments.higherKey(segments.firstKey()) <= ackedPosition) {
+        acknowledgedSegments.add(segments.pollFirstEntry().getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+    persistAck(newAckedPosition);
+    // Delete segments only after the ack file no longer refers to them.
+    for (Segment segment : acknowledgedSegments) {
+      segment.delete();
+    }
+  }
+
+  /**
+   * Acknowledge all of the elements that have been taken so far. This is convenient when there is
+   * only one consumer.
+   */
+  public void acknowledgeAllTaken() {
+    long lastTakenPosition;
+    lock.lock();
+    try {
+      checkNotReleased();
+      if (readPosition == ackedPosition) {
+        return;
+      }
+      lastTakenPosition = readPosition - 1;
+    } finally {
+      lock.unlock();
+    }
+    acknowledge(lastTakenPosition);
+  }
+
+  private void persistAck(long newAckedPosition) {
+    ackLock.lock();
+    try {
+      if (newAckedPosition <= persistedAckPosition) {
+        return;
+      }
+      ByteBuffer ackRecord = ByteBuffer.allocate(ACK_FILE_SIZE);
+      ackRecord.putLong(newAckedPosition);
+      ackRecord.putInt(ackCrcOf(newAckedPosition));
+      ackRecord.flip();
+      while (ackRecord.hasRemaining()) {
+        ackChannel.write(ackRecord, ackRecord.position());
+      }
+      long nowNanos = nanosSource.currentTimeNanoPrecision();
+      boolean shouldSync = fsyncPolicy.kind() == FsyncPolicy.Kind.ALWAYS
+          || (fsyncPolicy.kind() == FsyncPolicy.Kind.PERIODICALLY
+              && nowNanos - lastAckSyncNanos >= fsyncPolicy.intervalNanos());
+      if (shouldSync) {
+        ackChannel.force(false);
+        syncedAckPosition = newAckedPosition;
+        lastAckSyncNanos = nowNanos;
+      }
+      persistedAckPosition = newAckedPosition;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write the ack file.", e);
+    } finally {
+      ackLock.unlock();
+    }
+  }
+
+  /**
+   * Get the position that will be assigned to the next element put into this chute.
+   *
+   * @return The position.
+   */
+  public long nextPutPosition() {
+    lock.lock();
+    try {
+      return appendedPosition;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of segment files that currently exist.
+   *
+   * @return The number of segment files.
+   */
+  public int numSegments() {
+    lock.lock();
+    try {
+      return segments.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Visible for testing.
+  long syncedPosition() {
+    return syncedPosition;
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      checkNotReleased();
+      if (isClosed) {
+        return;
+      }
+      ByteBuffer record = recordBuffer(RECORD_HEADER_SIZE);
+      record.putInt(EOF_RECORD);
+      record.putInt(0);
+      record.flip();
+      appendRecord(record, false);
+      isClosed = true;
+      // Wake up all blocked takers, since they may need to return Optional.empty().
+      notEmpty.signalAll();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not append to the log.", e);
+    } finally {
+      lock.unlock();
+    }
+    syncAccordingToPolicy(Long.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    int size = serializer.serializedSize(element);
+    int recordSize = RECORD_HEADER_SIZE + size;
+    checkArgument(size >= 0 && recordSize <= segmentSizeBytes,
+        "Element needs %s bytes, which is too large for a %s-byte segment.", recordSize,
+        segmentSizeBytes);
+    long position;
+    lock.lockInterruptibly();
+    try {
+      checkNotReleased();
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      ByteBuffer record = recordBuffer(recordSize);
+      record.putInt(size + 1);
+      record.putInt(0); // Placeholder for the CRC.
+      serializer.serialize(element, record);
+      if (record.position() != recordSize) {
+        throw new IllegalStateException(
+            String.format("Serializer wrote %d bytes, but said it would write %d bytes.",
+                record.position() - RECORD_HEADER_SIZE, size));
+      }
+      record.putInt(Integer.BYTES, crcOf(record, 0, size));
+      record.flip();
+      appendRecord(record, true);
+      position = appendedPosition++;
+      notEmpty.signal();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not append to the log.", e);
+    } finally {
+      lock.unlock();
+    }
+    syncAccordingToPolicy(position + 1);
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  private boolean isEmpty() {
+    return readPosition == appendedPosition;
+  }
+
+  private Entry<E> dequeue() {
+    while (readOffset >= readSegment.endOffset) {
+      // This segment has been read completely, so move on to the next one. (This segment may
+      // already have been deleted, but its key still leads to the next one.)
+      Map.Entry<Long, Segment> next = segments.higherEntry(readSegment.basePosition);
+      readSegment = next.getValue();
+      readOffset = 0;
+    }
+    int recordSize = readSegment.recordSizeAt(readOffset);
+    ByteBuffer data = readSegment.contents.asReadOnlyBuffer();
+    data.limit(readOffset + recordSize);
+    data.position(readOffset + RECORD_HEADER_SIZE);
+    E element = serializer.deserialize(data.slice());
+    readOffset += recordSize;
+    return new Entry<>(readPosition++, element);
+  }
+
+  /**
+   * Block for up to a specified amount of time, taking an element and its position.
+   *
+   * @param timeout The magnitude of the timeout value.
+   * @param timeoutUnit The units of the timeout value.
+   * @return An entry (if one was available in time), or {@link Optional#empty()} otherwise.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public Optional<Entry<E>> tryTakeEntry(long timeout, TimeUnit timeoutUnit)
+      throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (isEmpty()) {
+        checkNotReleased();
+        if (isClosed || remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      checkNotReleased();
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Block for an unlimited amount of time, taking an element and its position.
+   *
+   * @return An entry if one was available before the chute was closed, or
+   *         {@link Optional#empty()} if none became available before it was closed.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public Optional<Entry<E>> takeEntry() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (isEmpty()) {
+        checkNotReleased();
+        if (isClosed) {
+          return Optional.empty();
+        }
+        notEmpty.await();
+      }
+      checkNotReleased();
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    return tryTakeEntry(timeout, timeoutUnit).map(Entry::element);
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      checkNotReleased();
+      if (isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(dequeue().element());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    return takeEntry().map(Entry::element);
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nonnull;
+
+/**
+ * Converts elements to and from a binary form, so that chutes can store them outside of the Java
+ * heap (for example, in a memory-mapped file).
+ *
+ * @param <E> The type of element that can be serialized.
+ * @see ElementSerializers for implementations for common element types.
+ */
+public interface ElementSerializer<E> {
+  /**
+   * Get the number of bytes that {@link #serialize(Object, ByteBuffer)} will write for the
+   * specified element.
+   *
+   * @param element The element to be serialized.
+   * @return The exact number of bytes needed to serialize the element.
+   */
+  public int serializedSize(@Nonnull E element);
+
+  /**
+   * Write the binary form of an element into a buffer, starting at the buffer's position. Exactly
+   * {@link #serializedSize(Object)} bytes must be written, advancing the buffer's position.
+   *
+   * @param element The element to serialize.
+   * @param destination The buffer to write into, which will have at least
+   *        {@link #serializedSize(Object)} bytes remaining.
+   */
+  public void serialize(@Nonnull E element, @Nonnull ByteBuffer destination);
+
+  /**
+   * Read an element from a buffer containing exactly the bytes that were written by
+   * {@link #serialize(Object, ByteBuffer)}.
+   *
+   * @param source A buffer whose remaining bytes are the binary form of one element.
+   * @return The element.
+   */
+  public @Nonnull E deserialize(@Nonnull ByteBuffer source);
+}
@@ -0,0 +1,66 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.ByteBuffer;
+
+/**
+ * Factory methods for {@link ElementSerializer}s of common element types.
+ */
+public final class ElementSerializers {
+  private ElementSerializers() {}
+
+  private static final ElementSerializer<String> UTF8_STRINGS = new ElementSerializer<String>() {
+    @Override
+    public int serializedSize(String element) {
+      // Encoding the string twice is wasteful, but the encoded length can't be known otherwise.
+      return element.getBytes(UTF_8).length;
+    }
+
+    @Override
+    public void serialize(String element, ByteBuffer destination) {
+      destination.put(element.getBytes(UTF_8));
+    }
+
+    @Override
+    public String deserialize(ByteBuffer source) {
+      byte[] bytes = new byte[source.remaining()];
+      source.get(bytes);
+      return new String(bytes, UTF_8);
+    }
+  };
+
+  private static final ElementSerializer<Long> LONGS = new ElementSerializer<Long>() {
+    @Override
+    public int serializedSize(Long element) {
+      return Long.BYTES;
+    }
+
+    @Override
+    public void serialize(Long element, ByteBuffer destination) {
+      destination.putLong(element);
+    }
+
+    @Override
+    public Long deserialize(ByteBuffer source) {
+      return source.getLong();
+    }
+  };
+
+  /**
+   * Get a serializer that stores Strings as UTF-8 bytes.
+   *
+   * @return The serializer.
+   */
+  public static ElementSerializer<String> utf8Strings() {
+    return UTF8_STRINGS;
+  }
+
+  /**
+   * Get a serializer that stores Longs as 8 big-endian bytes.
+   *
+   * @return The serializer.
+   */
+  public static ElementSerializer<Long> longs() {
+    return LONGS;
+  }
+}
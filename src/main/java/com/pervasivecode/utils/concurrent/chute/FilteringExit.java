@@ -0,0 +1,75 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+final class FilteringExit<E> implements ChuteExit<E> {
+  private final ChuteExit<E> supplier;
+  private final Predicate<? super E> predicate;
+
+  public FilteringExit(ChuteExit<E> supplier, Predicate<? super E> predicate) {
+    this.supplier = checkNotNull(supplier);
+    this.predicate = checkNotNull(predicate);
+  }
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    long deadlineNanos = System.nanoTime() + remainingNanos;
+    Optional<E> taken = supplier.tryTake(remainingNanos, TimeUnit.NANOSECONDS);
+    // Rejected elements don't end the wait; keep taking until an element matches, the supplier is
+    // closed and empty, or the deadline has passed and no more elements are immediately available.
+    while (taken.isPresent() && !predicate.test(taken.get())) {
+      remainingNanos = deadlineNanos - System.nanoTime();
+      taken = (remainingNanos > 0) ? supplier.tryTake(remainingNanos, TimeUnit.NANOSECONDS)
+          : supplier.tryTakeNow();
+    }
+    return taken;
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    Optional<E> taken;
+    do {
+      taken = supplier.tryTakeNow();
+    } while (taken.isPresent() && !predicate.test(taken.get()));
+    return taken;
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    Optional<E> taken;
+    do {
+      taken = supplier.take();
+    } while (taken.isPresent() && !predicate.test(taken.get()));
+    return taken;
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    // If the supplier only holds elements that will be rejected, this exit won't know that it is
+    // closed and empty until they have been taken.
+    return supplier.isClosedAndEmpty();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(supplier, predicate);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof FilteringExit)) {
+      return false;
+    }
+    FilteringExit<?> otherExit = (FilteringExit<?>) other;
+    return Objects.equals(this.supplier, otherExit.supplier)
+        && Objects.equals(this.predicate, otherExit.predicate);
+  }
+}
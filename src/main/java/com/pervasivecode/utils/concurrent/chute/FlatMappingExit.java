@@ -0,0 +1,139 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+final class FlatMappingExit<T, V> implements ChuteExit<V> {
+  private final ChuteExit<T> supplier;
+  private final Function<? super T, ? extends Iterable<? extends V>> mapper;
+
+  // Consumers that share this exit have to take the remaining results of one input element before
+  // the next input element is taken, so takes are serialized by this lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  // Guarded by lock. The results of the last input element that haven't been taken yet.
+  private Iterator<? extends V> pending = Collections.emptyIterator();
+  // Written while holding lock, and read without it, since a consumer can hold the lock while it
+  // waits for the supplier.
+  private volatile boolean hasPending = false;
+
+  public FlatMappingExit(ChuteExit<T> supplier,
+      Function<? super T, ? extends Iterable<? extends V>> mapper) {
+    this.supplier = checkNotNull(supplier);
+    this.mapper = checkNotNull(mapper);
+  }
+
+  /**
+   * Make the results of an input element pending. The caller must hold the lock.
+   */
+  private void map(T element) {
+    pending = mapper.apply(element).iterator();
+    hasPending = pending.hasNext();
+  }
+
+  /**
+   * Take the next pending result. The caller must hold the lock, and pending must have a next
+   * result.
+   */
+  private Optional<V> takePending() {
+    V result = pending.next();
+    hasPending = pending.hasNext();
+    return Optional.of(checkNotNull(result, "The mapper produced a null result."));
+  }
+
+  @Override
+  public Optional<V> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    long deadlineNanos = System.nanoTime() + remainingNanos;
+    if (!lock.tryLock(remainingNanos, TimeUnit.NANOSECONDS)) {
+      return Optional.empty();
+    }
+    try {
+      // Input elements that map to no results don't end the wait; keep taking until there is a
+      // result, the supplier is closed and empty, or the deadline has passed and no more input
+      // elements are immediately available.
+      while (!pending.hasNext()) {
+        remainingNanos = deadlineNanos - System.nanoTime();
+        Optional<T> taken = (remainingNanos > 0)
+            ? supplier.tryTake(remainingNanos, TimeUnit.NANOSECONDS)
+            : supplier.tryTakeNow();
+        if (!taken.isPresent()) {
+          return Optional.empty();
+        }
+        map(taken.get());
+      }
+      return takePending();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<V> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      while (!pending.hasNext()) {
+        Optional<T> taken = supplier.tryTakeNow();
+        if (!taken.isPresent()) {
+          return Optional.empty();
+        }
+        map(taken.get());
+      }
+      return takePending();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<V> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (!pending.hasNext()) {
+        Optional<T> taken = supplier.take();
+        if (!taken.isPresent()) {
+          return Optional.empty();
+        }
+        map(taken.get());
+      }
+      return takePending();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    // If the supplier only holds elements that map to no results, this exit won't know that it is
+    // closed and empty until they have been taken.
+    return !hasPending && supplier.isClosedAndEmpty();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(supplier, mapper, lock, pending, hasPending);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof FlatMappingExit)) {
+      return false;
+    }
+    FlatMappingExit<?, ?> otherExit = (FlatMappingExit<?, ?>) other;
+    return Objects.equals(this.supplier, otherExit.supplier)
+        && Objects.equals(this.mapper, otherExit.mapper)
+        && Objects.equals(this.lock, otherExit.lock)
+        && Objects.equals(this.pending, otherExit.pending)
+        && this.hasPending == otherExit.hasPending;
+  }
+}
@@ -0,0 +1,95 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Specifies how often a {@link DurableChute} forces the data it has written to its log files onto
+ * the storage device (via {@link java.nio.channels.FileChannel#force(boolean) fsync}).
+ * <p>
+ * Data that has been written but not forced will survive a restart of the JVM, since it is in the
+ * operating system's page cache, but may be lost if the operating system crashes or the machine
+ * loses power.
+ */
+public final class FsyncPolicy {
+  enum Kind {
+    ALWAYS, PERIODICALLY, NEVER
+  }
+
+  private static final FsyncPolicy ALWAYS = new FsyncPolicy(Kind.ALWAYS, 0);
+  private static final FsyncPolicy NEVER = new FsyncPolicy(Kind.NEVER, 0);
+
+  private final Kind kind;
+  private final long intervalNanos;
+
+  private FsyncPolicy(Kind kind, long intervalNanos) {
+    this.kind = kind;
+    this.intervalNanos = intervalNanos;
+  }
+
+  /**
+   * Force data to disk before each call to put() or acknowledge() returns. Concurrent callers share
+   * a single fsync (group commit), so throughput improves with the number of concurrent producers.
+   *
+   * @return The policy.
+   */
+  public static FsyncPolicy always() {
+    return ALWAYS;
+  }
+
+  /**
+   * Force data to disk once per interval. A background thread owned by the {@link DurableChute}
+   * forces any elements and acknowledgements written since the last fsync, so they become durable
+   * even if producers and consumers go quiet; a put() or acknowledge() made when at least the
+   * interval has passed since data was last forced also forces it inline. Elements put during the
+   * most recent interval may be lost if the operating system crashes.
+   *
+   * @param interval The magnitude of the minimum time between fsyncs.
+   * @param unit The unit of the interval.
+   * @return The policy.
+   */
+  public static FsyncPolicy periodically(long interval, TimeUnit unit) {
+    checkArgument(interval > 0, "Interval must be positive.");
+    checkNotNull(unit);
+    return new FsyncPolicy(Kind.PERIODICALLY, unit.toNanos(interval));
+  }
+
+  /**
+   * Never force data to disk, except when {@link DurableChute#sync()} or
+   * {@link DurableChute#release()} is called, leaving it to the operating system to write data
+   * back to the storage device.
+   *
+   * @return The policy.
+   */
+  public static FsyncPolicy never() {
+    return NEVER;
+  }
+
+  Kind kind() {
+    return kind;
+  }
+
+  long intervalNanos() {
+    return intervalNanos;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(kind, intervalNanos);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof FsyncPolicy)) {
+      return false;
+    }
+    FsyncPolicy otherPolicy = (FsyncPolicy) other;
+    return Objects.equals(otherPolicy.kind, this.kind)
+        && otherPolicy.intervalNanos == this.intervalNanos;
+  }
+}
@@ -0,0 +1,64 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+
+/**
+ * The output side of an {@link IntChute}, allowing callers to take int values from the chute
+ * without boxing them, until it is closed.
+ *
+ * @see ChuteExit for the equivalent interface for objects.
+ */
+public interface IntChuteExit {
+  /**
+   * Block for up to a specified amount of time, taking a value. If the timeout expires, or if the
+   * chute is closed while the caller is blocked waiting for a value, the return value will be
+   * empty.
+   *
+   * @param timeout The magnitude of the timeout value.
+   * @param timeoutUnit The units of the timeout value.
+   * @return A value (if one was available in time), or {@link OptionalInt#empty()} otherwise.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public @Nonnull OptionalInt tryTake(long timeout, @Nonnull TimeUnit timeoutUnit)
+      throws InterruptedException;
+
+  /**
+   * Take a value if it's available immediately.
+   *
+   * @return An immediately-available value, or {@link OptionalInt#empty()} if no value was
+   *         available.
+   */
+  public @Nonnull OptionalInt tryTakeNow();
+
+  /**
+   * Block for an unlimited amount of time, taking a value.
+   *
+   * @return A value if one was available before the chute was closed, or
+   *         {@link OptionalInt#empty()} if none became available before it was closed.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public @Nonnull OptionalInt take() throws InterruptedException;
+
+  /**
+   * Block until at least one value is available, then take as many values as are available (up to
+   * the specified maximum), copying them into an array in order.
+   *
+   * @param destination The array into which values are copied.
+   * @param offset The index in the array at which to put the first value.
+   * @param maxValues The maximum number of values to take. Must be at least 1.
+   * @return The number of values taken, which is 0 only if the chute is closed and empty.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public int drainTo(int[] destination, int offset, int maxValues) throws InterruptedException;
+
+  /**
+   * Returns true if the chute has been closed and there are no remaining values in it, which means
+   * that this chute will never return a value again.
+   *
+   * @return Whether the chute is both closed and empty.
+   * @see ChuteExit#isClosedAndEmpty()
+   */
+  public boolean isClosedAndEmpty();
+}
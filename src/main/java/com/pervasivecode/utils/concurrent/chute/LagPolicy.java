@@ -0,0 +1,27 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+/**
+ * Specifies what a {@link BroadcastChute} does when one of its subscribers falls so far behind
+ * that the chute's buffer is full of elements that the subscriber hasn't taken yet.
+ * <p>
+ * With {@link #BLOCK}, the slowest subscriber limits the rate of the producer, so every subscriber
+ * receives every element. The other policies keep a slow subscriber from holding up the producer
+ * and the other subscribers, at the cost of that subscriber missing elements.
+ */
+public enum LagPolicy {
+  /**
+   * Block the producer until the slowest subscriber has taken the oldest element in the buffer.
+   */
+  BLOCK,
+
+  /**
+   * Make a subscriber that is too far behind skip the oldest element that it hasn't taken yet, so
+   * that it receives the most recent elements.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Disconnect a subscriber that is too far behind, so that it receives no more elements.
+   */
+  DISCONNECT
+}
@@ -0,0 +1,137 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latency values (in nanoseconds) that uses a constant amount of memory
+ * regardless of how many values are recorded.
+ * <p>
+ * Like HdrHistogram, values are counted in log-linear buckets: values below 128 are counted
+ * exactly, and larger values are counted in buckets whose width is no more than 1/64 of the
+ * smallest value they contain. So, the values reported by {@link #getValueAtPercentile(double)}
+ * are within about 1.6% of the true value.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  // Positive long values have their most significant bit at position 62 or lower, so the largest
+  // shift applied to a value is 62 - (SUB_BUCKET_BITS - 1).
+  private static final int MAX_SHIFT = 62 - (SUB_BUCKET_BITS - 1);
+  private static final int NUM_BUCKETS = SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a single value.
+   *
+   * @param value The value to record. Negative values (which can be produced by a clock going
+   *        backward) are recorded as zero.
+   */
+  public void recordValue(long value) {
+    long nonNegativeValue = Math.max(value, 0);
+    counts.incrementAndGet(bucketIndex(nonNegativeValue));
+    sum.add(nonNegativeValue);
+    long currentMax = max.get();
+    while (nonNegativeValue > currentMax && !max.compareAndSet(currentMax, nonNegativeValue)) {
+      currentMax = max.get();
+    }
+  }
+
+  /**
+   * @return The number of values that have been recorded.
+   */
+  public long getTotalCount() {
+    long total = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * @return The largest value that has been recorded, or zero if no values have been recorded.
+   */
+  public long getMaxValue() {
+    return max.get();
+  }
+
+  /**
+   * @return The arithmetic mean of all values that have been recorded, or zero if no values have
+   *         been recorded.
+   */
+  public double getMean() {
+    long totalCount = getTotalCount();
+    return totalCount == 0 ? 0.0 : ((double) sum.sum()) / totalCount;
+  }
+
+  /**
+   * Get the value at or below which the specified percentage of recorded values fall.
+   *
+   * @param percentile The percentile, from 0.0 to 100.0 inclusive. For example, 99.9 yields the
+   *        value that 99.9% of recorded values are equal to or smaller than.
+   * @return The highest value that is equivalent (within the precision of this histogram) to the
+   *         value at the specified percentile, or zero if no values have been recorded.
+   */
+  public long getValueAtPercentile(double percentile) {
+    checkArgument(percentile >= 0.0 && percentile <= 100.0,
+        "percentile must be between 0.0 and 100.0. Got %s", percentile);
+    long[] snapshot = new long[NUM_BUCKETS];
+    long totalCount = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      totalCount += snapshot[i];
+    }
+    if (totalCount == 0) {
+      return 0;
+    }
+    long countAtPercentile = Math.max((long) Math.ceil(percentile / 100.0 * totalCount), 1);
+    long cumulativeCount = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      cumulativeCount += snapshot[i];
+      if (cumulativeCount >= countAtPercentile) {
+        return Math.min(highestEquivalentValue(i), getMaxValue());
+      }
+    }
+    return getMaxValue();
+  }
+
+  /**
+   * Discard all recorded values.
+   * <p>
+   * Values recorded concurrently with a call to this method may or may not be discarded.
+   */
+  public void reset() {
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    sum.reset();
+    max.set(0);
+  }
+
+  static int bucketIndex(long nonNegativeValue) {
+    if (nonNegativeValue < SUB_BUCKET_COUNT) {
+      return (int) nonNegativeValue;
+    }
+    int mostSignificantBit = 63 - Long.numberOfLeadingZeros(nonNegativeValue);
+    int shift = mostSignificantBit - (SUB_BUCKET_BITS - 1);
+    int subBucket = (int) (nonNegativeValue >>> shift);
+    return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+        + (subBucket - SUB_BUCKET_HALF_COUNT);
+  }
+
+  static long highestEquivalentValue(int bucketIndex) {
+    if (bucketIndex < SUB_BUCKET_COUNT) {
+      return bucketIndex;
+    }
+    int offset = bucketIndex - SUB_BUCKET_COUNT;
+    int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+    long subBucket = offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,11 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+/**
+ * A closable conduit between producers and consumers of long values, which avoids the cost of
+ * boxing them.
+ *
+ * @see Chute for the equivalent interface for objects.
+ */
+public interface LongChute extends LongChuteEntrance, LongChuteExit {
+  // This interface is just composed of LongChuteEntrance and LongChuteExit.
+}
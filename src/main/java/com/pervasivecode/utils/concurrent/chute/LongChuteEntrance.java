@@ -0,0 +1,55 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+/**
+ * The input side of a {@link LongChute}, allowing callers to put long values into the chute without
+ * boxing them, or to close the chute so that no more values can be put into it.
+ *
+ * @see ChuteEntrance for the equivalent interface for objects.
+ */
+public interface LongChuteEntrance {
+  /**
+   * Close the entrance of the chute. After this has been called, no more values will be accepted,
+   * but any values that have not yet been taken from the corresponding {@link LongChuteExit} will
+   * still be available.
+   *
+   * @throws InterruptedException if the calling thread was interrupted when closing the chute.
+   */
+  public void close() throws InterruptedException;
+
+  /**
+   * Returns true if the entrance to the chute has been closed.
+   *
+   * @return whether the entrance has been closed.
+   */
+  public boolean isClosed();
+
+  /**
+   * Put a value into the chute, blocking as long as needed.
+   *
+   * @param value A value to put in the chute.
+   * @throws InterruptedException if the blocked thread is interrupted.
+   * @throws IllegalStateException if the chute is already closed.
+   */
+  public void put(long value) throws InterruptedException;
+
+  /**
+   * Put a range of values from an array into the chute, in order, blocking as long as needed. If
+   * there is not enough space in the chute for all of them at once, values put by other threads
+   * may be interleaved with them.
+   * <p>
+   * If the chute is closed while this method is waiting for space, it stops and returns the number
+   * of values that were put before the chute was closed; those values can still be taken, and the
+   * rest of the range was not put.
+   *
+   * @param values An array containing the values to put in the chute.
+   * @param offset The index of the first value to put.
+   * @param length The number of values to put.
+   * @return The number of values that were put, which is less than length only if the chute was
+   *         closed before all of them could be put.
+   * @throws InterruptedException if the blocked thread is interrupted. Some of the values may have
+   *         been put already.
+   * @throws IllegalStateException if the chute was already closed when this method was called, in
+   *         which case no values were put.
+   */
+  public int putAll(long[] values, int offset, int length) throws InterruptedException;
+}
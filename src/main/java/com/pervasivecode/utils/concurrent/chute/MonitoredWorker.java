@@ -0,0 +1,96 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+
+/**
+ * A worker Runnable that keeps track of the threads running the worker it wraps, so that they can
+ * be observed via {@link WorkerMXBean}.
+ */
+final class MonitoredWorker implements Runnable {
+  private final Runnable worker;
+  private final Set<Thread> runningThreads = ConcurrentHashMap.newKeySet();
+  private final AtomicLong numCompletedRuns = new AtomicLong();
+  private final AtomicLong numFailedRuns = new AtomicLong();
+
+  public MonitoredWorker(Runnable worker) {
+    this.worker = checkNotNull(worker);
+  }
+
+  @Override
+  public void run() {
+    Thread currentThread = Thread.currentThread();
+    runningThreads.add(currentThread);
+    boolean completed = false;
+    try {
+      worker.run();
+      completed = true;
+    } finally {
+      runningThreads.remove(currentThread);
+      (completed ? numCompletedRuns : numFailedRuns).incrementAndGet();
+    }
+  }
+
+  int numActiveThreads() {
+    return runningThreads.size();
+  }
+
+  int numBlockedThreads() {
+    int numBlocked = 0;
+    for (Thread thread : runningThreads) {
+      switch (thread.getState()) {
+        case BLOCKED:
+        case WAITING:
+        case TIMED_WAITING:
+          numBlocked++;
+          break;
+        default:
+          break;
+      }
+    }
+    return numBlocked;
+  }
+
+  long numCompletedRuns() {
+    return numCompletedRuns.get();
+  }
+
+  long numFailedRuns() {
+    return numFailedRuns.get();
+  }
+
+  static final class Monitor extends RegisteredMonitor<MonitoredWorker> implements WorkerMXBean {
+    public Monitor(MonitoredWorker worker, ObjectName objectName,
+        ReferenceQueue<Object> collectedQueue) {
+      super(worker, objectName, collectedQueue);
+    }
+
+    @Override
+    public int getActiveThreadCount() {
+      MonitoredWorker worker = get();
+      return worker == null ? 0 : worker.numActiveThreads();
+    }
+
+    @Override
+    public int getBlockedThreadCount() {
+      MonitoredWorker worker = get();
+      return worker == null ? 0 : worker.numBlockedThreads();
+    }
+
+    @Override
+    public long getCompletedRunCount() {
+      MonitoredWorker worker = get();
+      return worker == null ? 0 : worker.numCompletedRuns();
+    }
+
+    @Override
+    public long getFailedRunCount() {
+      MonitoredWorker worker = get();
+      return worker == null ? 0 : worker.numFailedRuns();
+    }
+  }
+}
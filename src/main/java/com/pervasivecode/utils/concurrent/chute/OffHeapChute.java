@@ -0,0 +1,343 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Chute} that stores its elements in serialized form, in a fixed-size ring buffer that is
+ * allocated outside of the Java heap (via {@link ByteBuffer#allocateDirect(int)}).
+ * <p>
+ * Elements are serialized by an {@link ElementSerializer} when they are put, and deserialized when
+ * they are taken via the {@link ChuteExit} methods, so the amount of heap memory used by the chute
+ * does not depend on how many elements it holds. The capacity of the chute is specified in bytes
+ * rather than elements; producers block when there is not enough space left in the ring for the
+ * element being put.
+ * <p>
+ * Consumers that can work with the serialized form of an element directly can avoid deserializing
+ * it (and the resulting heap allocation) by taking it via {@link #takeSerialized(Function)} or
+ * {@link #tryTakeSerialized(long, TimeUnit, Function)}, which pass a read-only view of the
+ * element's bytes in the ring to a callback.
+ *
+ * @param <E> The type of object that can be sent through the OffHeapChute.
+ */
+public final class OffHeapChute<E> implements Chute<E> {
+  // Each record is a 4-byte length followed by the serialized element, padded so that the next
+  // record is 8-byte aligned. A record never wraps around the end of the ring: if it won't fit,
+  // a PADDING marker is written in its place, and the record is written at the start of the ring.
+  private static final int ALIGNMENT = Long.BYTES;
+  private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+  private static final int PADDING = -1;
+
+  private final ByteBuffer ring;
+  private final int capacityBytes;
+  private final ElementSerializer<E> serializer;
+
+  // As in LinkedBlockingQueue, producers and consumers use separate locks, so that they don't
+  // block each other unless the ring is full or empty.
+  private final ReentrantLock putLock = new ReentrantLock();
+  private final Condition notFull = putLock.newCondition();
+  private final ReentrantLock takeLock = new ReentrantLock();
+  private final Condition notEmpty = takeLock.newCondition();
+
+  // The total number of bytes ever written to and read from the ring. writePosition is only
+  // modified while holding putLock, and readPosition only while holding takeLock. Since they are
+  // volatile, the record bytes written before updating writePosition are visible to consumers, and
+  // the bytes of consumed records are not overwritten until after readPosition has been updated.
+  private volatile long writePosition = 0;
+  private volatile long readPosition = 0;
+  private volatile boolean isClosed = false;
+
+  /**
+   * Create an OffHeapChute.
+   *
+   * @param capacityBytes The size of the ring buffer in bytes, which will be rounded up to a
+   *        multiple of 8. Each element uses 4 bytes more than its serialized size, rounded up to a
+   *        multiple of 8, and may use at most half of the ring.
+   * @param serializer The serializer used to convert elements to and from bytes.
+   */
+  public OffHeapChute(int capacityBytes, ElementSerializer<E> serializer) {
+    checkArgument(capacityBytes > 0, "Capacity must be at least 1 byte.");
+    checkArgument(capacityBytes <= Integer.MAX_VALUE - ALIGNMENT, "Capacity is too large.");
+    this.capacityBytes = alignedSize(capacityBytes);
+    this.serializer = checkNotNull(serializer);
+    this.ring = ByteBuffer.allocateDirect(this.capacityBytes);
+  }
+
+  private static int alignedSize(int size) {
+    return (size + ALIGNMENT - 1) & -ALIGNMENT;
+  }
+
+  private int offsetOf(long position) {
+    return (int) (position % capacityBytes);
+  }
+
+  private long usedBytes(long currentWritePosition) {
+    return currentWritePosition - readPosition;
+  }
+
+  /**
+   * Get the size of the ring buffer.
+   *
+   * @return The capacity of the chute, in bytes.
+   */
+  public int capacityBytes() {
+    return capacityBytes;
+  }
+
+  /**
+   * Get the number of bytes of the ring buffer that are currently in use by elements (including
+   * their length prefixes and alignment padding).
+   *
+   * @return The number of bytes in use.
+   */
+  public long usedBytes() {
+    return usedBytes(writePosition);
+  }
+
+  private void signalNotEmpty() {
+    takeLock.lock();
+    try {
+      notEmpty.signal();
+    } finally {
+      takeLock.unlock();
+    }
+  }
+
+  private void signalNotFull() {
+    putLock.lock();
+    try {
+      notFull.signal();
+    } finally {
+      putLock.unlock();
+    }
+  }
+
+  /**
+   * Wait until the specified number of bytes are free. The caller must hold putLock.
+   */
+  private void awaitFreeBytes(long currentWritePosition, int numBytes)
+      throws InterruptedException {
+    while (!isClosed && capacityBytes - usedBytes(currentWritePosition) < numBytes) {
+      notFull.await();
+    }
+    if (isClosed) {
+      throw new IllegalStateException("Channel is already closed.");
+    }
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    putLock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Blocked putters need to throw IllegalStateException.
+      notFull.signalAll();
+    } finally {
+      putLock.unlock();
+    }
+    takeLock.lockInterruptibly();
+    try {
+      // Blocked takers may need to return Optional.empty().
+      notEmpty.signalAll();
+    } finally {
+      takeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    return isClosed;
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    int size = serializer.serializedSize(element);
+    int recordSize = alignedSize(LENGTH_PREFIX_SIZE + size);
+    checkArgument(size >= 0 && recordSize <= capacityBytes / 2,
+        "Element needs %s bytes, which is too large for a %s-byte chute.", recordSize,
+        capacityBytes);
+    putLock.lockInterruptibly();
+    try {
+      long position = writePosition;
+      int offset = offsetOf(position);
+      int bytesToEnd = capacityBytes - offset;
+      // If the record won't fit before the end of the ring, fill the rest of the ring with padding
+      // and put the record at offset 0. (Since a record is at most half of the ring, the padding
+      // and the record always fit in an empty ring.)
+      int paddingSize = (recordSize > bytesToEnd) ? bytesToEnd : 0;
+      awaitFreeBytes(position, paddingSize + recordSize);
+      if (paddingSize > 0) {
+        ring.putInt(offset, PADDING);
+        offset = 0;
+      }
+      ring.putInt(offset, size);
+      ByteBuffer destination = ring.duplicate();
+      destination.limit(offset + LENGTH_PREFIX_SIZE + size);
+      destination.position(offset + LENGTH_PREFIX_SIZE);
+      destination = destination.slice();
+      serializer.serialize(element, destination);
+      if (destination.position() != size) {
+        throw new IllegalStateException(
+            String.format("Serializer wrote %d bytes, but said it would write %d bytes.",
+                destination.position(), size));
+      }
+      long newPosition = position + paddingSize + recordSize;
+      writePosition = newPosition;
+      if (usedBytes(newPosition) < capacityBytes) {
+        // Let the next blocked putter (if any) see whether its element fits in the space left.
+        notFull.signal();
+      }
+    } finally {
+      putLock.unlock();
+    }
+    signalNotEmpty();
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  /**
+   * Take the element at readPosition, which must exist. The caller must hold takeLock.
+   */
+  private <R> R readRecord(Function<? super ByteBuffer, ? extends R> reader) {
+    long position = readPosition;
+    int offset = offsetOf(position);
+    int paddingSize = 0;
+    int size = ring.getInt(offset);
+    if (size == PADDING) {
+      paddingSize = capacityBytes - offset;
+      offset = 0;
+      size = ring.getInt(offset);
+    }
+    ByteBuffer view = ring.asReadOnlyBuffer();
+    view.limit(offset + LENGTH_PREFIX_SIZE + size);
+    view.position(offset + LENGTH_PREFIX_SIZE);
+    try {
+      return reader.apply(view.slice());
+    } finally {
+      // The element is consumed even if the reader fails, so that it doesn't fail again forever.
+      readPosition = position + paddingSize + alignedSize(LENGTH_PREFIX_SIZE + size);
+    }
+  }
+
+  private <R> Optional<R> takeRecord(long timeoutNanos, boolean waitForever,
+      Function<? super ByteBuffer, ? extends R> reader) throws InterruptedException {
+    boolean isRecordConsumed = false;
+    takeLock.lockInterruptibly();
+    try {
+      long remainingNanos = timeoutNanos;
+      while (writePosition == readPosition) {
+        if (isClosed || (!waitForever && remainingNanos <= 0)) {
+          return Optional.empty();
+        }
+        if (waitForever) {
+          notEmpty.await();
+        } else {
+          remainingNanos = notEmpty.awaitNanos(remainingNanos);
+        }
+      }
+      isRecordConsumed = true;
+      try {
+        return Optional.of(readRecord(reader));
+      } finally {
+        // The record is consumed even if the reader threw, so wake the next taker and a putter.
+        if (writePosition != readPosition) {
+          // Let the next blocked taker (if any) take the next record.
+          notEmpty.signal();
+        }
+      }
+    } finally {
+      takeLock.unlock();
+      if (isRecordConsumed) {
+        signalNotFull();
+      }
+    }
+  }
+
+  /**
+   * Block for an unlimited amount of time, taking an element without deserializing it.
+   * <p>
+   * The reader is passed a read-only buffer containing the serialized element, which is a view of
+   * the chute's ring buffer. The buffer must not be used after the reader returns, since the space
+   * it occupies will then be reused for other elements. Other consumers are blocked while the
+   * reader runs, so it should return quickly. If the reader throws an exception, the element is
+   * still considered to have been taken.
+   *
+   * @param reader A function that extracts a non-null result from the serialized element.
+   * @param <R> The type of result returned by the reader.
+   * @return The result of the reader, or {@link Optional#empty()} if the chute was closed before
+   *         an element became available.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public <R> Optional<R> takeSerialized(Function<? super ByteBuffer, ? extends R> reader)
+      throws InterruptedException {
+    checkNotNull(reader);
+    return takeRecord(0, true, reader);
+  }
+
+  /**
+   * Block for up to a specified amount of time, taking an element without deserializing it. See
+   * {@link #takeSerialized(Function)} for restrictions on the reader.
+   *
+   * @param timeout The magnitude of the timeout value.
+   * @param timeoutUnit The units of the timeout value.
+   * @param reader A function that extracts a non-null result from the serialized element.
+   * @param <R> The type of result returned by the reader.
+   * @return The result of the reader, or {@link Optional#empty()} if no element was available in
+   *         time.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public <R> Optional<R> tryTakeSerialized(long timeout, TimeUnit timeoutUnit,
+      Function<? super ByteBuffer, ? extends R> reader) throws InterruptedException {
+    checkNotNull(reader);
+    return takeRecord(timeoutUnit.toNanos(timeout), false, reader);
+  }
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    return takeRecord(timeoutUnit.toNanos(timeout), false, serializer::deserialize);
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!takeLock.tryLock()) {
+      return Optional.empty();
+    }
+    boolean isRecordConsumed = false;
+    try {
+      if (writePosition == readPosition) {
+        return Optional.empty();
+      }
+      isRecordConsumed = true;
+      return Optional.of(readRecord(serializer::deserialize));
+    } finally {
+      takeLock.unlock();
+      if (isRecordConsumed) {
+        signalNotFull();
+      }
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    return takeRecord(0, true, serializer::deserialize);
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    return isClosed && writePosition == readPosition;
+  }
+}
@@ -18,6 +18,14 @@ final class OptionalTransformer<I, O> implements Function<Optional<I>, Optional<
         : Optional.empty();
   }
 
+  /**
+   * Compose this transformer's function with another function, so that a chain of transformations
+   * only wraps the final result in an Optional, rather than the result of each step.
+   */
+  public <V> OptionalTransformer<I, V> thenApply(Function<O, V> next) {
+    return new OptionalTransformer<>(transformer.andThen(next));
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(transformer);
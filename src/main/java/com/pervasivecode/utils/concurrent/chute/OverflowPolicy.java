@@ -0,0 +1,101 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import java.util.Objects;
+
+/**
+ * Specifies what a {@link RingBufferChute} does with an element that is put while the chute is
+ * full (or, for {@link #sample(double)}, nearly full).
+ * <p>
+ * All of the policies other than {@link #block()} drop elements rather than making producers
+ * wait, which is useful for streams such as telemetry, where losing some elements is better than
+ * slowing down the code that produces them.
+ */
+public final class OverflowPolicy {
+  enum Kind {
+    BLOCK, DROP_NEWEST, DROP_OLDEST, SAMPLE
+  }
+
+  private static final OverflowPolicy BLOCK = new OverflowPolicy(Kind.BLOCK, 1.0);
+  private static final OverflowPolicy DROP_NEWEST = new OverflowPolicy(Kind.DROP_NEWEST, 1.0);
+  private static final OverflowPolicy DROP_OLDEST = new OverflowPolicy(Kind.DROP_OLDEST, 1.0);
+
+  private final Kind kind;
+  private final double samplingThreshold;
+
+  private OverflowPolicy(Kind kind, double samplingThreshold) {
+    this.kind = kind;
+    this.samplingThreshold = samplingThreshold;
+  }
+
+  /**
+   * Block the producer until there is room for the element, as {@link BufferingChute} does.
+   *
+   * @return The policy.
+   */
+  public static OverflowPolicy block() {
+    return BLOCK;
+  }
+
+  /**
+   * Drop the element being put, leaving the elements already in the chute alone.
+   *
+   * @return The policy.
+   */
+  public static OverflowPolicy dropNewest() {
+    return DROP_NEWEST;
+  }
+
+  /**
+   * Drop the oldest element in the chute to make room for the element being put, so that the
+   * chute holds the most recent elements.
+   *
+   * @return The policy.
+   */
+  public static OverflowPolicy dropOldest() {
+    return DROP_OLDEST;
+  }
+
+  /**
+   * Drop a random sample of the elements put while the chute is under pressure. While the chute
+   * is less full than the threshold, every element is accepted. Above the threshold, each element
+   * is accepted with a probability that falls linearly from 1 at the threshold to 0 when the chute
+   * is full (as in Random Early Detection), so that a growing backlog thins out the stream
+   * gradually instead of dropping everything once the chute is full.
+   *
+   * @param threshold The fraction of the chute's capacity (from 0.0 up to but not including 1.0)
+   *        above which elements may be dropped.
+   * @return The policy.
+   */
+  public static OverflowPolicy sample(double threshold) {
+    checkArgument(threshold >= 0.0 && threshold < 1.0,
+        "Threshold must be at least 0.0 and less than 1.0. Got %s", threshold);
+    return new OverflowPolicy(Kind.SAMPLE, threshold);
+  }
+
+  Kind kind() {
+    return kind;
+  }
+
+  double samplingThreshold() {
+    return samplingThreshold;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(kind, samplingThreshold);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof OverflowPolicy)) {
+      return false;
+    }
+    OverflowPolicy otherPolicy = (OverflowPolicy) other;
+    return Objects.equals(otherPolicy.kind, this.kind)
+        && Double.compare(otherPolicy.samplingThreshold, this.samplingThreshold) == 0;
+  }
+}
@@ -0,0 +1,90 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+import com.google.common.collect.ImmutableList;
+
+class PartitioningWorker<E> implements Runnable {
+  private final ChuteExit<E> input;
+  private final ImmutableList<ChuteEntrance<E>> outputs;
+  private final ToIntFunction<? super E> partitioner;
+  private final int maxBatchSize;
+  private final boolean closeOutputsWhenDone;
+  // Elements that have been routed to each output but not yet put into it.
+  private final List<List<E>> batches;
+
+  public PartitioningWorker(ChuteExit<E> input, List<? extends ChuteEntrance<E>> outputs,
+      ToIntFunction<? super E> partitioner, int maxBatchSize, boolean closeOutputsWhenDone) {
+    this.input = checkNotNull(input);
+    this.outputs = ImmutableList.copyOf(outputs);
+    checkArgument(!this.outputs.isEmpty(), "There must be at least one output.");
+    this.partitioner = checkNotNull(partitioner);
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be greater than 0. Got %s", maxBatchSize);
+    this.maxBatchSize = maxBatchSize;
+    this.closeOutputsWhenDone = closeOutputsWhenDone;
+    this.batches = new ArrayList<>(this.outputs.size());
+    for (int i = 0; i < this.outputs.size(); i++) {
+      batches.add(new ArrayList<>(maxBatchSize));
+    }
+  }
+
+  @Override
+  public void run() {
+    TraceContext.runPropagating(this::partitionUntilInputIsClosed);
+  }
+
+  private void partitionUntilInputIsClosed() {
+    try {
+      while (true) {
+        // Route elements without blocking for as long as they are available, then flush partial
+        // batches before blocking, so that elements don't wait in a batch while the input is idle.
+        Optional<E> taken = input.tryTakeNow();
+        if (!taken.isPresent()) {
+          flushAll();
+          taken = input.take();
+          if (!taken.isPresent()) {
+            break;
+          }
+        }
+        E element = taken.get();
+        int partition = partitioner.applyAsInt(element);
+        checkElementIndex(partition, outputs.size(), "partition");
+        List<E> batch = batches.get(partition);
+        batch.add(element);
+        if (batch.size() >= maxBatchSize) {
+          flush(partition);
+        }
+      }
+      flushAll();
+      if (closeOutputsWhenDone) {
+        for (ChuteEntrance<E> output : outputs) {
+          output.close();
+        }
+      }
+    } catch (@SuppressWarnings("unused") InterruptedException ie) {
+      // Just stop processing and exit.
+    }
+  }
+
+  private void flush(int partition) throws InterruptedException {
+    List<E> batch = batches.get(partition);
+    ChuteEntrance<E> output = outputs.get(partition);
+    for (E element : batch) {
+      output.put(element);
+    }
+    batch.clear();
+  }
+
+  private void flushAll() throws InterruptedException {
+    for (int i = 0; i < outputs.size(); i++) {
+      if (!batches.get(i).isEmpty()) {
+        flush(i);
+      }
+    }
+  }
+}
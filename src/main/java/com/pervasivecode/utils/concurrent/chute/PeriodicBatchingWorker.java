@@ -40,6 +40,10 @@ class PeriodicBatchingWorker<E> implements Runnable {
 
   @Override
   public void run() {
+    TraceContext.runPropagating(this::batchUntilInputIsClosed);
+  }
+
+  private void batchUntilInputIsClosed() {
     try {
       boolean inputClosed = false;
       while (!inputClosed) {
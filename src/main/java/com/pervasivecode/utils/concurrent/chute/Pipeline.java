@@ -0,0 +1,512 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A chain of processing stages that takes elements from a source, passes them through operations
+ * such as map, filter, and batch, and delivers the results to a sink, with the chutes and threads
+ * between stages allocated automatically. For example:
+ *
+ * <pre>
+ * Pipeline pipeline = Pipeline.from(files)
+ *     .filter(file -&gt; file.length() &gt; 0)
+ *     .parallel(4)
+ *     .map(scanner::scan)
+ *     .batch(100)
+ *     .into(reportChute);
+ * pipeline.start();
+ * pipeline.await();
+ * </pre>
+ * <p>
+ * Each call to {@link Builder#parallel(int)} ends a segment of the pipeline and starts a new one
+ * that runs in the specified number of threads. All of the operations within a segment are fused:
+ * each thread of the segment applies them one after another to each element, without any chutes
+ * or threads between them. Segments are connected by {@link BufferingChute}s with room for
+ * {@value #BUFFER_SIZE_PER_THREAD} elements per thread of the larger of the two segments, and the
+ * output of a segment with several threads is closed when the last of its threads is done, via a
+ * {@link SynchronousMultiplexer}. The first segment runs in one thread, unless it has no
+ * operations and the source is a {@link ChuteExit}, in which case the next segment's threads take
+ * elements from the source directly.
+ * <p>
+ * Operations in a segment with several threads are applied concurrently, so their functions must
+ * be thread-safe, and a batch operation in such a segment collects a separate batch in each
+ * thread. A batch is only delivered before it is full when its thread's input is closed and
+ * empty.
+ * <p>
+ * A Pipeline can only be run once. If any operation throws an exception, the rest of the pipeline
+ * is cancelled, and the exception is reported by {@link #await()}.
+ */
+public final class Pipeline {
+  private static final int BUFFER_SIZE_PER_THREAD = 16;
+
+  /**
+   * One step of a segment, which one thread uses to process each element and pass the results on
+   * to the next step.
+   */
+  private abstract static class Step {
+    private final Step next;
+
+    Step(Step next) {
+      this.next = next;
+    }
+
+    abstract void accept(Object element) throws InterruptedException;
+
+    /**
+     * Called once the step's thread has processed the last input element.
+     */
+    void finish() throws InterruptedException {
+      next.finish();
+    }
+  }
+
+  /**
+   * An operation of a segment, which creates a Step for each thread of the segment.
+   */
+  private interface Operation {
+    Step bind(Step next);
+  }
+
+  /**
+   * The end of the pipeline, which creates the last Step for each thread of the last segment.
+   */
+  private interface Terminal {
+    List<Step> bind(int numThreads);
+  }
+
+  private static final class Segment {
+    private final int numThreads;
+    private final ImmutableList<Operation> operations;
+
+    Segment(int numThreads, ImmutableList<Operation> operations) {
+      this.numThreads = numThreads;
+      this.operations = operations;
+    }
+  }
+
+  /**
+   * Builds a {@link Pipeline} one stage at a time. Builders are immutable, so each method returns a
+   * new Builder.
+   *
+   * @param <T> The type of element produced by the stages so far.
+   */
+  public static final class Builder<T> {
+    // Either a ChuteExit or an Iterable.
+    private final Object source;
+    private final ImmutableList<Segment> completedSegments;
+    private final int numThreads;
+    private final ImmutableList<Operation> operations;
+
+    private Builder(Object source, ImmutableList<Segment> completedSegments, int numThreads,
+        ImmutableList<Operation> operations) {
+      this.source = source;
+      this.completedSegments = completedSegments;
+      this.numThreads = numThreads;
+      this.operations = operations;
+    }
+
+    private <R> Builder<R> then(Operation operation) {
+      ImmutableList<Operation> newOperations =
+          ImmutableList.<Operation>builder().addAll(operations).add(operation).build();
+      return new Builder<>(source, completedSegments, numThreads, newOperations);
+    }
+
+    private ImmutableList<Segment> segments() {
+      return ImmutableList.<Segment>builder().addAll(completedSegments)
+          .add(new Segment(numThreads, operations)).build();
+    }
+
+    /**
+     * Apply a function to each element.
+     *
+     * @param mapper The function to apply.
+     * @param <R> The type of element that the function produces.
+     * @return A Builder for the rest of the pipeline.
+     */
+    public <R> Builder<R> map(Function<? super T, ? extends R> mapper) {
+      checkNotNull(mapper);
+      return then(next -> new Step(next) {
+        @Override
+        void accept(Object element) throws InterruptedException {
+          next.accept(mapper.apply(cast(element)));
+        }
+      });
+    }
+
+    /**
+     * Discard the elements that don't match a predicate.
+     *
+     * @param predicate The predicate that elements must match in order to be kept.
+     * @return A Builder for the rest of the pipeline.
+     */
+    public Builder<T> filter(Predicate<? super T> predicate) {
+      checkNotNull(predicate);
+      return then(next -> new Step(next) {
+        @Override
+        void accept(Object element) throws InterruptedException {
+          if (predicate.test(cast(element))) {
+            next.accept(element);
+          }
+        }
+      });
+    }
+
+    /**
+     * Apply a function that produces any number of results (including none) to each element, and
+     * pass each of the results on.
+     *
+     * @param mapper The function to apply.
+     * @param <R> The type of element that the function produces Iterables of.
+     * @return A Builder for the rest of the pipeline.
+     */
+    public <R> Builder<R> flatMap(Function<? super T, ? extends Iterable<? extends R>> mapper) {
+      checkNotNull(mapper);
+      return then(next -> new Step(next) {
+        @Override
+        void accept(Object element) throws InterruptedException {
+          for (R result : mapper.apply(cast(element))) {
+            next.accept(result);
+          }
+        }
+      });
+    }
+
+    /**
+     * Group elements into batches. Every batch is full except for the last one that each thread of
+     * the segment collects.
+     *
+     * @param maxBatchSize The maximum number of elements in a batch.
+     * @return A Builder for the rest of the pipeline.
+     */
+    public Builder<List<T>> batch(int maxBatchSize) {
+      checkArgument(maxBatchSize > 0, "maxBatchSize must be greater than 0. Got %s", maxBatchSize);
+      return then(next -> new Step(next) {
+        private List<T> batch = new ArrayList<>(maxBatchSize);
+
+        @Override
+        void accept(Object element) throws InterruptedException {
+          batch.add(cast(element));
+          if (batch.size() == maxBatchSize) {
+            flush();
+          }
+        }
+
+        private void flush() throws InterruptedException {
+          List<T> fullBatch = batch;
+          batch = new ArrayList<>(maxBatchSize);
+          next.accept(fullBatch);
+        }
+
+        @Override
+        void finish() throws InterruptedException {
+          if (!batch.isEmpty()) {
+            flush();
+          }
+          next.finish();
+        }
+      });
+    }
+
+    /**
+     * Run the following stages in a new segment of the pipeline, using the specified number of
+     * threads.
+     *
+     * @param numThreads The number of threads that the new segment will use.
+     * @return A Builder for the rest of the pipeline.
+     */
+    public Builder<T> parallel(int numThreads) {
+      checkArgument(numThreads > 0, "numThreads must be at least 1.");
+      return new Builder<>(source, segments(), numThreads, ImmutableList.of());
+    }
+
+    /**
+     * Finish the pipeline by putting the resulting elements into a ChuteEntrance, which will be
+     * closed once the pipeline has put the last element into it.
+     *
+     * @param output The ChuteEntrance to put the resulting elements into.
+     * @return The pipeline, which has not been started yet.
+     */
+    public Pipeline into(ChuteEntrance<? super T> output) {
+      checkNotNull(output);
+      @SuppressWarnings("unchecked")
+      ChuteEntrance<Object> objectOutput = (ChuteEntrance<Object>) output;
+      return new Pipeline(source, segments(),
+          numThreads -> entranceSteps(objectOutput, numThreads));
+    }
+
+    /**
+     * Finish the pipeline by performing an action on each resulting element. If the last segment
+     * has several threads, the action will be performed concurrently.
+     *
+     * @param action The action to perform on each resulting element.
+     * @return The pipeline, which has not been started yet.
+     */
+    public Pipeline forEach(Consumer<? super T> action) {
+      checkNotNull(action);
+      return new Pipeline(source, segments(), numThreads -> {
+        List<Step> steps = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+          steps.add(new Step(null) {
+            @Override
+            void accept(Object element) {
+              action.accept(cast(element));
+            }
+
+            @Override
+            void finish() {}
+          });
+        }
+        return steps;
+      });
+    }
+  }
+
+  /**
+   * Start building a pipeline that takes its elements from a ChuteExit.
+   *
+   * @param source The ChuteExit from which elements are taken.
+   * @param <T> The type of element provided by the source.
+   * @return A Builder for the rest of the pipeline.
+   */
+  public static <T> Builder<T> from(ChuteExit<T> source) {
+    return new Builder<>(checkNotNull(source), ImmutableList.of(), 1, ImmutableList.of());
+  }
+
+  /**
+   * Start building a pipeline that takes its elements from an Iterable, which will be iterated in
+   * a single thread.
+   *
+   * @param source The Iterable from which elements are taken.
+   * @param <T> The type of element provided by the source.
+   * @return A Builder for the rest of the pipeline.
+   */
+  public static <T> Builder<T> from(Iterable<T> source) {
+    return new Builder<>(checkNotNull(source), ImmutableList.of(), 1, ImmutableList.of());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T cast(Object element) {
+    return (T) element;
+  }
+
+  /**
+   * Create the final Step for each thread of a segment that puts its results into a ChuteEntrance.
+   * If there are several threads, each one gets its own entrance that it closes when it is done,
+   * and the output is closed when all of them are done.
+   */
+  private static List<Step> entranceSteps(ChuteEntrance<Object> output, int numThreads) {
+    List<ChuteEntrance<Object>> entrances = numThreads == 1 ? ImmutableList.of(output)
+        : new SynchronousMultiplexer<>(numThreads, output).inputChutes();
+    List<Step> steps = new ArrayList<>(numThreads);
+    for (ChuteEntrance<Object> entrance : entrances) {
+      steps.add(new Step(null) {
+        @Override
+        void accept(Object element) throws InterruptedException {
+          entrance.put(element);
+        }
+
+        @Override
+        void finish() throws InterruptedException {
+          entrance.close();
+        }
+      });
+    }
+    return steps;
+  }
+
+  private final List<Runnable> tasks = new ArrayList<>();
+  private final CountDownLatch done;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private volatile boolean isCancelled = false;
+
+  // Guarded by this.
+  private boolean isStarted = false;
+  private ExecutorService executor = null;
+
+  private Pipeline(Object source, List<Segment> segments, Terminal terminal) {
+    Object input = source;
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      boolean isLast = (i == segments.size() - 1);
+      if (!isLast && segment.operations.isEmpty() && input instanceof ChuteExit) {
+        // The next segment's threads can take from the input directly.
+        continue;
+      }
+
+      List<Step> outputSteps;
+      Object nextInput = null;
+      if (isLast) {
+        outputSteps = terminal.bind(segment.numThreads);
+      } else {
+        int bufferSize = BUFFER_SIZE_PER_THREAD
+            * Math.max(segment.numThreads, segments.get(i + 1).numThreads);
+        BufferingChute<Object> chute = new BufferingChute<>(bufferSize, () -> System.nanoTime());
+        outputSteps = entranceSteps(chute, segment.numThreads);
+        nextInput = chute;
+      }
+
+      for (Step outputStep : outputSteps) {
+        Step firstStep = outputStep;
+        for (Operation operation : segment.operations.reverse()) {
+          firstStep = operation.bind(firstStep);
+        }
+        tasks.add(task(input, firstStep));
+      }
+      input = nextInput;
+    }
+    this.done = new CountDownLatch(tasks.size());
+  }
+
+  private Runnable task(Object input, Step firstStep) {
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        if (input instanceof ChuteExit) {
+          ChuteExit<?> exit = (ChuteExit<?>) input;
+          Optional<?> taken;
+          while ((taken = exit.take()).isPresent()) {
+            firstStep.accept(taken.get());
+          }
+        } else {
+          for (Object element : (Iterable<?>) input) {
+            if (Thread.currentThread().isInterrupted()) {
+              throw new InterruptedException();
+            }
+            firstStep.accept(element);
+          }
+        }
+        firstStep.finish();
+      } catch (InterruptedException e) {
+        if (!isCancelled) {
+          // Something other than cancel() interrupted this thread, so the rest of the pipeline
+          // would wait forever for it.
+          fail(e);
+        }
+      } catch (RuntimeException | Error e) {
+        fail(e);
+      } finally {
+        done.countDown();
+      }
+    });
+  }
+
+  private void fail(Throwable cause) {
+    failure.compareAndSet(null, cause);
+    cancel();
+  }
+
+  /**
+   * Get the number of threads that the pipeline uses.
+   *
+   * @return The number of threads.
+   */
+  public int numThreads() {
+    return tasks.size();
+  }
+
+  /**
+   * Start the threads of the pipeline.
+   *
+   * @throws IllegalStateException if the pipeline was already started or cancelled.
+   */
+  public synchronized void start() {
+    checkState(!isStarted, "The pipeline was already started.");
+    checkState(!isCancelled, "The pipeline was cancelled.");
+    isStarted = true;
+    executor = Executors.newFixedThreadPool(tasks.size(),
+        new ThreadFactoryBuilder().setNameFormat("chute-pipeline-%d").build());
+    for (Runnable task : tasks) {
+      executor.execute(task);
+    }
+    // Let the threads exit once their tasks are done.
+    executor.shutdown();
+  }
+
+  /**
+   * Stop all of the threads of the pipeline by interrupting them. Elements that were in the
+   * pipeline are discarded, and the sink is not closed. This has no effect if the pipeline is
+   * already done.
+   */
+  public synchronized void cancel() {
+    if (isDone()) {
+      return;
+    }
+    isCancelled = true;
+    if (isStarted) {
+      executor.shutdownNow();
+    } else {
+      // No threads will run, so await() should not wait for them.
+      while (done.getCount() > 0) {
+        done.countDown();
+      }
+    }
+  }
+
+  /**
+   * Find out whether all of the pipeline's threads are done, because the pipeline finished,
+   * failed, or was cancelled.
+   *
+   * @return Whether the pipeline is done.
+   */
+  public boolean isDone() {
+    return done.getCount() == 0;
+  }
+
+  private void checkOutcome() throws ExecutionException {
+    Throwable cause = failure.get();
+    if (cause != null) {
+      throw new ExecutionException(cause);
+    }
+    if (isCancelled) {
+      throw new CancellationException("The pipeline was cancelled.");
+    }
+  }
+
+  /**
+   * Wait for the pipeline to finish. If it hasn't been started yet, this waits until it has been
+   * started (or cancelled) and has finished.
+   *
+   * @throws InterruptedException if interrupted while waiting.
+   * @throws ExecutionException if a stage of the pipeline threw an exception.
+   * @throws CancellationException if the pipeline was cancelled.
+   */
+  public void await() throws InterruptedException, ExecutionException {
+    done.await();
+    checkOutcome();
+  }
+
+  /**
+   * Wait for the pipeline to finish, or until the timeout elapses.
+   *
+   * @param timeout The maximum amount of time to wait.
+   * @param timeoutUnit The unit of the timeout value.
+   * @return True if the pipeline finished, or false if the timeout elapsed first.
+   * @throws InterruptedException if interrupted while waiting.
+   * @throws ExecutionException if a stage of the pipeline threw an exception.
+   * @throws CancellationException if the pipeline was cancelled.
+   */
+  public boolean await(long timeout, TimeUnit timeoutUnit)
+      throws InterruptedException, ExecutionException {
+    if (!done.await(timeout, timeoutUnit)) {
+      return false;
+    }
+    checkOutcome();
+    return true;
+  }
+}
@@ -0,0 +1,316 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nonnull;
+import com.pervasivecode.utils.time.CurrentNanosSource;
+
+/**
+ * A {@link Chute} with a fixed-size buffer, from which elements are taken in priority order rather
+ * than in the order in which they were put.
+ * <p>
+ * The priority of elements is specified by a {@link Comparator}, where lesser elements have
+ * higher priority (as with {@link PriorityQueue}), or by a priority-level function via
+ * {@link #byPriorityLevel(int, ToIntFunction, long, TimeUnit, CurrentNanosSource)}. Elements of
+ * equal priority are taken in the order in which they were put, so no element can be starved by
+ * other elements of the same priority.
+ * <p>
+ * To keep a steady stream of high-priority elements from starving lower-priority elements, a
+ * maximum wait time can be specified. Once the oldest element in the chute has waited for at least
+ * that long, it is taken next regardless of its priority (this is a simple form of aging). Putting
+ * and taking elements takes O(log n) time, where n is the number of elements in the chute.
+ * <p>
+ * As with {@link BufferingChute}, producers block while the chute is full, consumers block while
+ * it is empty, and elements that were put before the chute was closed can still be taken after it
+ * was closed.
+ *
+ * @param <E> The type of object that can be sent through the PriorityChute.
+ */
+public final class PriorityChute<E> implements Chute<E> {
+  private static final class Entry<E> {
+    final E element;
+    final long sequence;
+    final long putTimeNanos;
+    // Set when the entry is taken via one index, so that it can be skipped in the other.
+    boolean isTaken = false;
+
+    Entry(E element, long sequence, long putTimeNanos) {
+      this.element = element;
+      this.sequence = sequence;
+      this.putTimeNanos = putTimeNanos;
+    }
+  }
+
+  private final int capacity;
+  private final CurrentNanosSource nanosSource;
+  private final boolean isAgingEnabled;
+  private final long maxWaitNanos;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  // All entries in priority order, with ties broken by sequence number.
+  private final PriorityQueue<Entry<E>> byPriority;
+  // All entries in the order in which they were put. Only used when aging is enabled.
+  private final ArrayDeque<Entry<E>> byAge;
+  // The number of entries that have been taken via one index but not yet removed from the other.
+  private int numTakenInByPriority = 0;
+  private int numTakenInByAge = 0;
+  private int size = 0;
+  private long nextSequence = 0;
+  private boolean isClosed = false;
+
+  /**
+   * Create a PriorityChute without aging, so that elements are always taken in priority order.
+   *
+   * @param capacity The maximum number of elements that the chute can hold.
+   * @param comparator The comparator that determines the priority of elements. Lesser elements are
+   *        taken first.
+   * @param nanosSource A source of the current time.
+   */
+  public PriorityChute(int capacity, Comparator<? super E> comparator,
+      CurrentNanosSource nanosSource) {
+    this(capacity, comparator, false, 0, nanosSource);
+  }
+
+  /**
+   * Create a PriorityChute with aging, so that elements are taken in priority order unless the
+   * oldest element has waited for longer than a specified time.
+   *
+   * @param capacity The maximum number of elements that the chute can hold.
+   * @param comparator The comparator that determines the priority of elements. Lesser elements are
+   *        taken first.
+   * @param maxWait The magnitude of the wait time after which the oldest element is taken next,
+   *        regardless of its priority.
+   * @param maxWaitUnit The unit of the maximum wait time.
+   * @param nanosSource A source of the current time.
+   */
+  public PriorityChute(int capacity, Comparator<? super E> comparator, long maxWait,
+      TimeUnit maxWaitUnit, CurrentNanosSource nanosSource) {
+    this(capacity, comparator, true, maxWaitUnit.toNanos(maxWait), nanosSource);
+    checkArgument(maxWait >= 0, "Max wait time cannot be negative.");
+  }
+
+  private PriorityChute(int capacity, Comparator<? super E> comparator, boolean isAgingEnabled,
+      long maxWaitNanos, CurrentNanosSource nanosSource) {
+    checkArgument(capacity > 0, "Capacity must be at least 1.");
+    checkNotNull(comparator);
+    this.capacity = capacity;
+    this.nanosSource = checkNotNull(nanosSource);
+    this.isAgingEnabled = isAgingEnabled;
+    this.maxWaitNanos = maxWaitNanos;
+    Comparator<Entry<E>> entryComparator = (a, b) -> {
+      int comparison = comparator.compare(a.element, b.element);
+      return comparison != 0 ? comparison : Long.compare(a.sequence, b.sequence);
+    };
+    this.byPriority = new PriorityQueue<>(capacity, entryComparator);
+    this.byAge = isAgingEnabled ? new ArrayDeque<>(capacity) : null;
+  }
+
+  /**
+   * Create a PriorityChute with aging, where the priority of each element is a numeric level.
+   *
+   * @param capacity The maximum number of elements that the chute can hold.
+   * @param priorityLevel A function that returns the priority level of an element. Elements with
+   *        lower levels are taken first.
+   * @param maxWait The magnitude of the wait time after which the oldest element is taken next,
+   *        regardless of its priority level.
+   * @param maxWaitUnit The unit of the maximum wait time.
+   * @param nanosSource A source of the current time.
+   * @param <E> The type of object that can be sent through the PriorityChute.
+   * @return The chute.
+   */
+  public static <E> PriorityChute<E> byPriorityLevel(int capacity,
+      ToIntFunction<? super E> priorityLevel, long maxWait, TimeUnit maxWaitUnit,
+      CurrentNanosSource nanosSource) {
+    checkNotNull(priorityLevel);
+    return new PriorityChute<>(capacity, Comparator.comparingInt(priorityLevel), maxWait,
+        maxWaitUnit, nanosSource);
+  }
+
+  /**
+   * Get the number of elements in the chute.
+   *
+   * @return The number of elements that have been put but not yet taken.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the next element, which must exist. The caller must hold the lock.
+   */
+  private E dequeue() {
+    Entry<E> entry = null;
+    if (isAgingEnabled) {
+      while (byAge.peekFirst().isTaken) {
+        byAge.removeFirst();
+        numTakenInByAge--;
+      }
+      Entry<E> oldest = byAge.peekFirst();
+      if (nanosSource.currentTimeNanoPrecision() - oldest.putTimeNanos >= maxWaitNanos) {
+        entry = byAge.removeFirst();
+        numTakenInByPriority++;
+      }
+    }
+    if (entry == null) {
+      while (byPriority.peek().isTaken) {
+        byPriority.remove();
+        numTakenInByPriority--;
+      }
+      entry = byPriority.remove();
+      if (isAgingEnabled) {
+        numTakenInByAge++;
+      }
+    }
+    entry.isTaken = true;
+    size--;
+    purgeTakenEntries();
+    notFull.signal();
+    return entry.element;
+  }
+
+  /**
+   * Remove taken entries from an index once they outnumber the elements in the chute, so that the
+   * indexes can't fill up with taken entries that never reach the front. The caller must hold the
+   * lock.
+   */
+  private void purgeTakenEntries() {
+    if (numTakenInByPriority > size) {
+      byPriority.removeIf(e -> e.isTaken);
+      numTakenInByPriority = 0;
+    }
+    if (isAgingEnabled && numTakenInByAge > size) {
+      byAge.removeIf(e -> e.isTaken);
+      numTakenInByAge = 0;
+    }
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Blocked putters need to throw IllegalStateException, and blocked takers may need to return
+      // Optional.empty().
+      notFull.signalAll();
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    lock.lockInterruptibly();
+    try {
+      while (!isClosed && size == capacity) {
+        notFull.await();
+      }
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      long putTimeNanos = isAgingEnabled ? nanosSource.currentTimeNanoPrecision() : 0;
+      Entry<E> entry = new Entry<>(element, nextSequence++, putTimeNanos);
+      byPriority.add(entry);
+      if (isAgingEnabled) {
+        byAge.addLast(entry);
+      }
+      size++;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (size == 0) {
+        if (isClosed || remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      if (size == 0) {
+        return Optional.empty();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (size == 0) {
+        if (isClosed) {
+          return Optional.empty();
+        }
+        notEmpty.await();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && size == 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import javax.management.ObjectName;
+
+/**
+ * Base class of the MXBean implementations registered by {@link ChuteRegistry}. Each instance only
+ * weakly refers to the object that it monitors, so that registering an object never prevents it
+ * from being garbage collected. Once the monitored object has been collected, this instance will be
+ * enqueued in the registry's ReferenceQueue, so that the registry can unregister it.
+ *
+ * @param <T> The type of object being monitored.
+ */
+abstract class RegisteredMonitor<T> extends WeakReference<T> {
+  private final ObjectName objectName;
+
+  protected RegisteredMonitor(T monitored, ObjectName objectName,
+      ReferenceQueue<Object> collectedQueue) {
+    super(checkNotNull(monitored), checkNotNull(collectedQueue));
+    this.objectName = checkNotNull(objectName);
+  }
+
+  public ObjectName objectName() {
+    return objectName;
+  }
+
+  public boolean isCollected() {
+    return get() == null;
+  }
+}
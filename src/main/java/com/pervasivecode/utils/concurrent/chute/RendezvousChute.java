@@ -0,0 +1,314 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Chute} with no buffer, where each put() waits until a consumer has taken the element,
+ * like a {@link java.util.concurrent.SynchronousQueue SynchronousQueue}. No elements are ever held
+ * in the chute, so the latency of a handoff is only the time it takes for a waiting thread to be
+ * woken up.
+ * <p>
+ * A thread that has to wait for a counterpart (a putter with no waiting taker, or a taker with no
+ * waiting putter) joins a queue of waiting threads. The first of them is also offered in an
+ * exchange slot, so that a counterpart that arrives while it is waiting can complete the handoff
+ * with a single atomic compare-and-set operation, without acquiring the lock that guards the
+ * queues.
+ * <p>
+ * When the chute is closed, putters that are waiting for a taker throw
+ * {@link IllegalStateException}, and takers that are waiting for a putter return
+ * {@link Optional#empty()}, since no more elements can arrive.
+ *
+ * @param <E> The type of object that can be sent through the RendezvousChute.
+ */
+public final class RendezvousChute<E> implements Chute<E> {
+  // Values of a Node other than null (which means that the waiting thread hasn't been matched yet)
+  // and, for a taker's node, the element it was given.
+  private static final Object TAKEN = new Object();
+  private static final Object CANCELLED = new Object();
+  private static final Object CLOSED = new Object();
+
+  // Spinning before parking only helps if the counterpart can run at the same time.
+  private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+
+  /**
+   * A waiting thread. Its value changes exactly once, from null to the outcome of the wait.
+   */
+  @SuppressWarnings("serial")
+  private static final class Node<E> extends AtomicReference<Object> {
+    final boolean isPutter;
+    // The element being put, for a putter's node.
+    final @Nullable E element;
+    final Thread waiter;
+
+    Node(boolean isPutter, @Nullable E element) {
+      this.isPutter = isPutter;
+      this.element = element;
+      this.waiter = Thread.currentThread();
+    }
+
+    boolean isWaiting() {
+      return get() == null;
+    }
+
+    /**
+     * Complete this node's wait with the specified outcome, if it hasn't already been completed.
+     *
+     * @return true if this call completed the wait.
+     */
+    boolean complete(Object outcome) {
+      if (compareAndSet(null, outcome)) {
+        LockSupport.unpark(waiter);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  // The first waiting node, if any, which a counterpart can match without acquiring the lock.
+  private final AtomicReference<Node<E>> exchangeSlot = new AtomicReference<>();
+  private volatile boolean isClosed = false;
+
+  // All of the following fields are guarded by lock. At most one of the queues has nodes that are
+  // still waiting. Nodes that are matched via the exchange slot are removed from the queue lazily.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final ArrayDeque<Node<E>> waitingPutters = new ArrayDeque<>();
+  private final ArrayDeque<Node<E>> waitingTakers = new ArrayDeque<>();
+
+  /**
+   * Try to complete the wait of the node in the exchange slot, if it is waiting for this kind of
+   * counterpart.
+   *
+   * @return The node whose wait was completed, or null if there was none.
+   */
+  private @Nullable Node<E> matchExchangeSlot(boolean isPutter, Object outcome) {
+    Node<E> node;
+    while ((node = exchangeSlot.get()) != null) {
+      if (node.isWaiting() && node.isPutter == isPutter) {
+        if (node.complete(outcome)) {
+          exchangeSlot.compareAndSet(node, null);
+          return node;
+        }
+      } else if (node.isWaiting()) {
+        // The waiting node is the same kind of party as the caller.
+        return null;
+      }
+      exchangeSlot.compareAndSet(node, null);
+    }
+    return null;
+  }
+
+  /**
+   * Complete the wait of the first waiting node in the queue. The caller must hold the lock.
+   *
+   * @return The node whose wait was completed, or null if there was none.
+   */
+  private @Nullable Node<E> matchQueue(ArrayDeque<Node<E>> queue, Object outcome) {
+    Node<E> node;
+    while ((node = queue.pollFirst()) != null) {
+      if (node.complete(outcome)) {
+        exchangeSlot.compareAndSet(node, null);
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Add a node for the current thread to a queue of waiting threads. The caller must hold the
+   * lock.
+   */
+  private Node<E> enqueue(ArrayDeque<Node<E>> queue, boolean isPutter, @Nullable E element) {
+    // Nodes matched via the exchange slot are usually at one end of the queue or the other.
+    while (!queue.isEmpty() && !queue.peekFirst().isWaiting()) {
+      queue.pollFirst();
+    }
+    while (!queue.isEmpty() && !queue.peekLast().isWaiting()) {
+      queue.pollLast();
+    }
+    Node<E> node = new Node<>(isPutter, element);
+    queue.addLast(node);
+    Node<E> slotNode = exchangeSlot.get();
+    if (slotNode == null || !slotNode.isWaiting()) {
+      exchangeSlot.compareAndSet(slotNode, node);
+    }
+    return node;
+  }
+
+  /**
+   * Wait until the node is completed by a counterpart or by close(), or until the deadline.
+   *
+   * @param timeoutNanos The maximum time to wait, if timed is true.
+   * @return The outcome of the wait, which is {@link #CANCELLED} if the wait timed out.
+   * @throws InterruptedException if the thread was interrupted before the node was completed.
+   */
+  private Object await(Node<E> node, boolean timed, long timeoutNanos)
+      throws InterruptedException {
+    long deadline = timed ? System.nanoTime() + timeoutNanos : 0;
+    int spins = SPINS;
+    Object outcome;
+    while ((outcome = node.get()) == null) {
+      if (Thread.interrupted()) {
+        if (node.compareAndSet(null, CANCELLED)) {
+          exchangeSlot.compareAndSet(node, null);
+          throw new InterruptedException();
+        }
+        // A counterpart completed the handoff first, so report the interrupt later instead.
+        Thread.currentThread().interrupt();
+        return node.get();
+      }
+      if (spins > 0) {
+        spins--;
+      } else if (!timed) {
+        LockSupport.park(this);
+      } else {
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+          if (node.compareAndSet(null, CANCELLED)) {
+            exchangeSlot.compareAndSet(node, null);
+            return CANCELLED;
+          }
+        } else {
+          LockSupport.parkNanos(this, remainingNanos);
+        }
+      }
+    }
+    return outcome;
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Waiting putters need to throw IllegalStateException, and waiting takers need to return
+      // Optional.empty().
+      for (Node<E> node : waitingPutters) {
+        node.complete(CLOSED);
+      }
+      for (Node<E> node : waitingTakers) {
+        node.complete(CLOSED);
+      }
+      waitingPutters.clear();
+      waitingTakers.clear();
+      exchangeSlot.set(null);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    return isClosed;
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    if (isClosed) {
+      throw new IllegalStateException("Channel is already closed.");
+    }
+    if (matchExchangeSlot(false, element) != null) {
+      return;
+    }
+
+    Node<E> node;
+    lock.lockInterruptibly();
+    try {
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      if (matchQueue(waitingTakers, element) != null) {
+        return;
+      }
+      node = enqueue(waitingPutters, true, element);
+    } finally {
+      lock.unlock();
+    }
+
+    if (await(node, false, 0) == CLOSED) {
+      throw new IllegalStateException("Channel is already closed.");
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  private Optional<E> takeOrWait(boolean timed, long timeoutNanos) throws InterruptedException {
+    Node<E> putter = matchExchangeSlot(true, TAKEN);
+    if (putter != null) {
+      return Optional.of(putter.element);
+    }
+
+    Node<E> node;
+    lock.lockInterruptibly();
+    try {
+      putter = matchQueue(waitingPutters, TAKEN);
+      if (putter != null) {
+        return Optional.of(putter.element);
+      }
+      if (isClosed || (timed && timeoutNanos <= 0)) {
+        return Optional.empty();
+      }
+      node = enqueue(waitingTakers, false, null);
+    } finally {
+      lock.unlock();
+    }
+
+    Object outcome = await(node, timed, timeoutNanos);
+    if (outcome == CANCELLED || outcome == CLOSED) {
+      return Optional.empty();
+    }
+    @SuppressWarnings("unchecked")
+    E element = (E) outcome;
+    return Optional.of(element);
+  }
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    return takeOrWait(true, timeoutUnit.toNanos(timeout));
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    Node<E> putter = matchExchangeSlot(true, TAKEN);
+    if (putter == null) {
+      if (!lock.tryLock()) {
+        return Optional.empty();
+      }
+      try {
+        putter = matchQueue(waitingPutters, TAKEN);
+      } finally {
+        lock.unlock();
+      }
+    }
+    return putter == null ? Optional.empty() : Optional.of(putter.element);
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    return takeOrWait(false, 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Since a RendezvousChute never holds any elements, this is the same as {@link #isClosed()}.
+   */
+  @Override
+  public boolean isClosedAndEmpty() {
+    return isClosed;
+  }
+}
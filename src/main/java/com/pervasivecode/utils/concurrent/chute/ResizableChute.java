@@ -0,0 +1,306 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Chute} with a buffer whose capacity can be changed while the chute is in use.
+ * <p>
+ * Growing the capacity immediately lets blocked producers put their elements. Shrinking it never
+ * discards elements: if the chute holds more elements than the new capacity, producers block until
+ * consumers have taken enough elements to bring the occupancy below the new capacity. Changing
+ * the capacity only holds the chute's lock for as long as it takes to update a field and wake up
+ * any blocked producers, so it doesn't delay puts and takes that are in progress.
+ * <p>
+ * The chute counts the puts and takes that had to block, so that an autoscaler can adjust the
+ * capacity based on observed blocking, either by reading the counts and calling
+ * {@link #setCapacity(int)}, or by periodically calling {@link #adjustCapacity(CapacityPolicy)}.
+ *
+ * @param <E> The type of object that can be sent through the ResizableChute.
+ */
+public final class ResizableChute<E> implements Chute<E> {
+  /**
+   * Decides the new capacity of a {@link ResizableChute}, based on how much blocking was observed
+   * since the previous adjustment.
+   */
+  @FunctionalInterface
+  public interface CapacityPolicy {
+    /**
+     * Decide the new capacity of the chute. This is called while holding the chute's lock, so it
+     * should return quickly and must not use the chute.
+     *
+     * @param capacity The current capacity of the chute.
+     * @param size The number of elements in the chute.
+     * @param numPutsBlocked The number of puts that had to block because the chute was full, since
+     *        the previous adjustment.
+     * @param numTakesBlocked The number of takes that had to block because the chute was empty,
+     *        since the previous adjustment.
+     * @return The new capacity of the chute, which must be at least 1.
+     */
+    int newCapacity(int capacity, int size, long numPutsBlocked, long numTakesBlocked);
+  }
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final ArrayDeque<E> buffer = new ArrayDeque<>();
+  private int capacity;
+  private long numPutsBlocked = 0;
+  private long numTakesBlocked = 0;
+  private long numPutsBlockedAtLastAdjustment = 0;
+  private long numTakesBlockedAtLastAdjustment = 0;
+  private boolean isClosed = false;
+
+  /**
+   * Create a ResizableChute.
+   *
+   * @param initialCapacity The maximum number of elements that the chute can hold, until it is
+   *        changed.
+   */
+  public ResizableChute(int initialCapacity) {
+    checkArgument(initialCapacity > 0, "Capacity must be at least 1.");
+    this.capacity = initialCapacity;
+  }
+
+  /**
+   * Get the current capacity of the chute.
+   *
+   * @return The maximum number of elements that the chute can hold.
+   */
+  public int capacity() {
+    lock.lock();
+    try {
+      return capacity;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Change the capacity of the chute. If the chute holds more elements than the new capacity, the
+   * elements are kept, and producers block until the occupancy drops below the new capacity.
+   *
+   * @param newCapacity The maximum number of elements that the chute can hold.
+   */
+  public void setCapacity(int newCapacity) {
+    checkArgument(newCapacity > 0, "Capacity must be at least 1.");
+    lock.lock();
+    try {
+      updateCapacity(newCapacity);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Change the capacity of the chute to the capacity chosen by a policy, based on how many puts and
+   * takes blocked since the previous adjustment.
+   *
+   * @param policy The policy that decides the new capacity.
+   * @return The new capacity.
+   */
+  public int adjustCapacity(CapacityPolicy policy) {
+    checkNotNull(policy);
+    lock.lock();
+    try {
+      int newCapacity = policy.newCapacity(capacity, buffer.size(),
+          numPutsBlocked - numPutsBlockedAtLastAdjustment,
+          numTakesBlocked - numTakesBlockedAtLastAdjustment);
+      checkArgument(newCapacity > 0, "Capacity must be at least 1. Got %s", newCapacity);
+      numPutsBlockedAtLastAdjustment = numPutsBlocked;
+      numTakesBlockedAtLastAdjustment = numTakesBlocked;
+      updateCapacity(newCapacity);
+      return newCapacity;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Set the capacity, waking up blocked producers if there is now room for them. The caller must
+   * hold the lock.
+   */
+  private void updateCapacity(int newCapacity) {
+    capacity = newCapacity;
+    if (buffer.size() < capacity) {
+      notFull.signalAll();
+    }
+  }
+
+  /**
+   * Get the number of elements in the chute.
+   *
+   * @return The number of elements that have been put but not yet taken.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return buffer.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of puts that have had to block because the chute was full.
+   *
+   * @return The number of blocked puts.
+   */
+  public long numPutsBlocked() {
+    lock.lock();
+    try {
+      return numPutsBlocked;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of takes that have had to block because the chute was empty.
+   *
+   * @return The number of blocked takes.
+   */
+  public long numTakesBlocked() {
+    lock.lock();
+    try {
+      return numTakesBlocked;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the first element, which must exist. The caller must hold the lock.
+   */
+  private E dequeue() {
+    E element = buffer.removeFirst();
+    if (buffer.size() < capacity) {
+      notFull.signal();
+    }
+    return element;
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Blocked putters need to throw IllegalStateException, and blocked takers may need to return
+      // Optional.empty().
+      notFull.signalAll();
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    lock.lockInterruptibly();
+    try {
+      if (!isClosed && buffer.size() >= capacity) {
+        numPutsBlocked++;
+        while (!isClosed && buffer.size() >= capacity) {
+          notFull.await();
+        }
+      }
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      buffer.addLast(element);
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      if (buffer.isEmpty() && !isClosed && remainingNanos > 0) {
+        numTakesBlocked++;
+      }
+      while (buffer.isEmpty()) {
+        if (isClosed || remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      if (buffer.isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      if (buffer.isEmpty() && !isClosed) {
+        numTakesBlocked++;
+      }
+      while (buffer.isEmpty()) {
+        if (isClosed) {
+          return Optional.empty();
+        }
+        notEmpty.await();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && buffer.isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
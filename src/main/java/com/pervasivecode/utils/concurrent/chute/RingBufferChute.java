@@ -0,0 +1,322 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Chute} with a fixed-size, lock-free ring buffer, which handles elements put while it is
+ * full according to an {@link OverflowPolicy}.
+ * <p>
+ * Putting and taking elements only uses atomic compare-and-set operations on the ring (as in
+ * Dmitry Vyukov's bounded multi-producer multi-consumer queue), so producers and consumers never
+ * wait for each other's locks. In particular, when the chute is full and its policy drops
+ * elements, put() drops an element and returns without acquiring any locks. A lock is only used
+ * to park threads that have to wait: consumers of an empty chute, and producers of a full chute
+ * whose policy is {@link OverflowPolicy#block()}.
+ * <p>
+ * The number of elements dropped so far is available from {@link #numDropped()}.
+ *
+ * @param <E> The type of object that can be sent through the RingBufferChute.
+ */
+public final class RingBufferChute<E> implements Chute<E> {
+  private final int capacity;
+  private final OverflowPolicy policy;
+  // The occupancy at which the SAMPLE policy starts dropping elements.
+  private final int samplingThreshold;
+
+  // Each slot has a sequence number that tells producers and consumers whether it is ready for
+  // them: a slot is ready to be filled by the producer that claims position p when its sequence is
+  // 2p, and ready to be emptied by the consumer that claims position p when its sequence is 2p + 1.
+  // (Vyukov's queue uses p and p + 1, but then a full one-slot ring would look empty to the next
+  // producer, since p + 1 is also the position that producer claims.)
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong putPosition = new AtomicLong();
+  private final AtomicLong takePosition = new AtomicLong();
+
+  private final LongAdder numDropped = new LongAdder();
+  private volatile boolean isClosed = false;
+  // The number of puts that have checked isClosed but not yet finished. The chute is only closed
+  // and empty when this is zero, so that an element put concurrently with close() is not stranded
+  // after a taker has seen the chute as closed and empty.
+  private final AtomicInteger numPutsInProgress = new AtomicInteger();
+
+  // Used only to park and wake up waiting threads. Threads increment the counters before their last
+  // check of the ring, and the other side only acquires the lock if a counter is nonzero.
+  private final ReentrantLock waitLock = new ReentrantLock();
+  private final Condition notEmpty = waitLock.newCondition();
+  private final Condition notFull = waitLock.newCondition();
+  private final AtomicInteger numWaitingTakers = new AtomicInteger();
+  private final AtomicInteger numWaitingPutters = new AtomicInteger();
+
+  /**
+   * Create a RingBufferChute.
+   *
+   * @param capacity The maximum number of elements that the chute can hold.
+   * @param policy What to do with elements that are put while the chute is full.
+   */
+  public RingBufferChute(int capacity, OverflowPolicy policy) {
+    checkArgument(capacity > 0, "Capacity must be at least 1.");
+    this.capacity = capacity;
+    this.policy = checkNotNull(policy);
+    this.samplingThreshold = (int) (capacity * policy.samplingThreshold());
+    this.elements = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, 2L * i);
+    }
+  }
+
+  /**
+   * Get the number of elements that have been dropped because of the chute's overflow policy.
+   *
+   * @return The number of dropped elements.
+   */
+  public long numDropped() {
+    return numDropped.sum();
+  }
+
+  /**
+   * Get the approximate number of elements in the chute. The value may be out of date by the time
+   * it is returned, if other threads are putting or taking elements.
+   *
+   * @return The number of elements that have been put but not yet taken.
+   */
+  public int size() {
+    long size = putPosition.get() - takePosition.get();
+    return (int) Math.max(0, Math.min(size, capacity));
+  }
+
+  private int slotOf(long position) {
+    return (int) (position % capacity);
+  }
+
+  /**
+   * Add an element to the ring, if there is room.
+   *
+   * @return false if the ring was full.
+   */
+  private boolean offer(E element) {
+    long position = putPosition.get();
+    while (true) {
+      int slot = slotOf(position);
+      long difference = sequences.get(slot) - 2 * position;
+      if (difference == 0) {
+        if (putPosition.compareAndSet(position, position + 1)) {
+          elements.lazySet(slot, element);
+          sequences.set(slot, 2 * position + 1);
+          return true;
+        }
+        position = putPosition.get();
+      } else if (difference < 0) {
+        // The consumer that claimed this slot one lap ago hasn't emptied it yet.
+        return false;
+      } else {
+        // Another producer claimed this position.
+        position = putPosition.get();
+      }
+    }
+  }
+
+  /**
+   * Remove an element from the ring, if there is one.
+   *
+   * @return The element, or null if the ring was empty.
+   */
+  private E poll() {
+    long position = takePosition.get();
+    while (true) {
+      int slot = slotOf(position);
+      long difference = sequences.get(slot) - (2 * position + 1);
+      if (difference == 0) {
+        if (takePosition.compareAndSet(position, position + 1)) {
+          E element = elements.get(slot);
+          elements.lazySet(slot, null);
+          sequences.set(slot, 2 * (position + capacity));
+          return element;
+        }
+        position = takePosition.get();
+      } else if (difference < 0) {
+        // The producer that claimed this slot hasn't filled it yet.
+        return null;
+      } else {
+        // Another consumer claimed this position.
+        position = takePosition.get();
+      }
+    }
+  }
+
+  private void signal(AtomicInteger numWaiting, Condition condition) {
+    if (numWaiting.get() > 0) {
+      waitLock.lock();
+      try {
+        condition.signalAll();
+      } finally {
+        waitLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Decide whether the SAMPLE policy should accept an element, given the current occupancy.
+   */
+  private boolean isSampled() {
+    int size = size();
+    if (size < samplingThreshold) {
+      return true;
+    }
+    double acceptProbability = (double) (capacity - size) / (capacity - samplingThreshold);
+    return ThreadLocalRandom.current().nextDouble() < acceptProbability;
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    waitLock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Blocked putters need to throw IllegalStateException, and blocked takers may need to return
+      // Optional.empty().
+      notFull.signalAll();
+      notEmpty.signalAll();
+    } finally {
+      waitLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    return isClosed;
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    numPutsInProgress.incrementAndGet();
+    try {
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      switch (policy.kind()) {
+        case BLOCK:
+          if (!offer(element)) {
+            awaitRoomAndOffer(element);
+          }
+          break;
+        case DROP_NEWEST:
+          if (!offer(element)) {
+            numDropped.increment();
+          }
+          break;
+        case DROP_OLDEST:
+          while (!offer(element)) {
+            if (poll() != null) {
+              numDropped.increment();
+            }
+          }
+          break;
+        case SAMPLE:
+          if (!isSampled() || !offer(element)) {
+            numDropped.increment();
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown overflow policy: " + policy.kind());
+      }
+    } finally {
+      numPutsInProgress.decrementAndGet();
+      signal(numWaitingTakers, notEmpty);
+    }
+  }
+
+  private void awaitRoomAndOffer(E element) throws InterruptedException {
+    numWaitingPutters.incrementAndGet();
+    waitLock.lockInterruptibly();
+    try {
+      while (true) {
+        if (isClosed) {
+          throw new IllegalStateException("Channel is already closed.");
+        }
+        if (offer(element)) {
+          return;
+        }
+        notFull.await();
+      }
+    } finally {
+      numWaitingPutters.decrementAndGet();
+      waitLock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  private Optional<E> awaitElement(long timeoutNanos, boolean waitForever)
+      throws InterruptedException {
+    E element = poll();
+    if (element == null) {
+      long remainingNanos = timeoutNanos;
+      numWaitingTakers.incrementAndGet();
+      waitLock.lockInterruptibly();
+      try {
+        while ((element = poll()) == null) {
+          if (isClosedAndEmpty()) {
+            return Optional.empty();
+          }
+          if (waitForever) {
+            notEmpty.await();
+          } else if (remainingNanos <= 0) {
+            return Optional.empty();
+          } else {
+            remainingNanos = notEmpty.awaitNanos(remainingNanos);
+          }
+        }
+      } finally {
+        numWaitingTakers.decrementAndGet();
+        waitLock.unlock();
+      }
+    }
+    signal(numWaitingPutters, notFull);
+    return Optional.of(element);
+  }
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    return awaitElement(timeoutUnit.toNanos(timeout), false);
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    E element = poll();
+    if (element == null) {
+      return Optional.empty();
+    }
+    signal(numWaitingPutters, notFull);
+    return Optional.of(element);
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    return awaitElement(0, true);
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    return isClosed && numPutsInProgress.get() == 0 && putPosition.get() == takePosition.get();
+  }
+}
@@ -0,0 +1,294 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An unbounded {@link Chute} that stores its elements in a linked list of fixed-size array
+ * segments.
+ * <p>
+ * Unlike a {@link java.util.concurrent.LinkedBlockingQueue LinkedBlockingQueue}, which allocates a
+ * node for every element, a SegmentedChute only allocates when a segment fills up, so the cost of
+ * allocation is shared by all of the elements in a segment. Segments that have been emptied are
+ * kept for reuse (up to a small number of spare segments), so a chute whose occupancy rises and
+ * falls doesn't need to allocate new segments each time it grows.
+ * <p>
+ * Since putting an element never blocks, a slow consumer can make the chute grow without limit.
+ * To make that visible, a soft limit can be specified along with a {@link SoftLimitListener},
+ * which is notified when the number of elements in the chute rises above the soft limit, and again
+ * when it falls back to half of the soft limit or less. (The gap between the two thresholds keeps
+ * an occupancy that hovers around the soft limit from producing a flood of notifications.) The soft
+ * limit is only advisory: elements are still accepted while the chute is above it.
+ *
+ * @param <E> The type of object that can be sent through the SegmentedChute.
+ */
+public final class SegmentedChute<E> implements Chute<E> {
+  /**
+   * A listener that is notified when the occupancy of a {@link SegmentedChute} crosses its soft
+   * limit.
+   * <p>
+   * Listener methods are called by the thread that is putting or taking the element that caused
+   * the occupancy to cross the limit, while that thread holds the chute's lock. They should return
+   * quickly (for example, by updating a gauge or incrementing a counter), and must not use the
+   * chute.
+   */
+  public interface SoftLimitListener {
+    /**
+     * Called when the number of elements in the chute rises above the soft limit.
+     *
+     * @param size The number of elements in the chute.
+     */
+    void softLimitExceeded(int size);
+
+    /**
+     * Called when the number of elements in the chute falls back to half of the soft limit or
+     * less, after the soft limit was exceeded.
+     *
+     * @param size The number of elements in the chute.
+     */
+    void softLimitCleared(int size);
+  }
+
+  private static final class Segment {
+    final Object[] elements;
+    @Nullable
+    Segment next = null;
+
+    Segment(int segmentSize) {
+      this.elements = new Object[segmentSize];
+    }
+  }
+
+  // Used when there is no soft limit, in which case it is never notified.
+  private static final SoftLimitListener NO_LISTENER = new SoftLimitListener() {
+    @Override
+    public void softLimitExceeded(int size) {}
+
+    @Override
+    public void softLimitCleared(int size) {}
+  };
+
+  private static final int MAX_SPARE_SEGMENTS = 4;
+
+  private final int segmentSize;
+  private final int softLimit;
+  private final int softLimitClearedSize;
+  private final SoftLimitListener softLimitListener;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  // Elements are taken from head and put into tail, which are the same segment when all of the
+  // elements fit in one segment.
+  private Segment head;
+  private int headIndex = 0;
+  private Segment tail;
+  private int tailIndex = 0;
+  private final ArrayDeque<Segment> spareSegments = new ArrayDeque<>(MAX_SPARE_SEGMENTS);
+  private int size = 0;
+  private boolean isAboveSoftLimit = false;
+  private boolean isClosed = false;
+
+  /**
+   * Create a SegmentedChute without a soft limit.
+   *
+   * @param segmentSize The number of elements in each segment.
+   */
+  public SegmentedChute(int segmentSize) {
+    this(segmentSize, Integer.MAX_VALUE, NO_LISTENER);
+  }
+
+  /**
+   * Create a SegmentedChute with a soft limit.
+   *
+   * @param segmentSize The number of elements in each segment.
+   * @param softLimit The number of elements above which the listener is notified.
+   * @param softLimitListener The listener to notify when the soft limit is crossed.
+   */
+  public SegmentedChute(int segmentSize, int softLimit, SoftLimitListener softLimitListener) {
+    checkArgument(segmentSize > 0, "Segment size must be at least 1.");
+    checkArgument(softLimit > 0, "Soft limit must be at least 1.");
+    this.segmentSize = segmentSize;
+    this.softLimit = softLimit;
+    this.softLimitClearedSize = softLimit / 2;
+    this.softLimitListener = checkNotNull(softLimitListener);
+    this.head = new Segment(segmentSize);
+    this.tail = head;
+  }
+
+  /**
+   * Get the number of elements in the chute.
+   *
+   * @return The number of elements that have been put but not yet taken.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add an element to the tail segment, linking a new segment first if the tail segment is full.
+   * The caller must hold the lock.
+   */
+  private void enqueue(E element) {
+    if (tailIndex == segmentSize) {
+      Segment segment = spareSegments.pollFirst();
+      if (segment == null) {
+        segment = new Segment(segmentSize);
+      }
+      tail.next = segment;
+      tail = segment;
+      tailIndex = 0;
+    }
+    tail.elements[tailIndex++] = element;
+    size++;
+    if (!isAboveSoftLimit && size > softLimit) {
+      isAboveSoftLimit = true;
+      softLimitListener.softLimitExceeded(size);
+    }
+    notEmpty.signal();
+  }
+
+  /**
+   * Take the first element of the head segment, which must exist, unlinking the head segment first
+   * if all of its elements have been taken. The caller must hold the lock.
+   */
+  private E dequeue() {
+    if (headIndex == segmentSize) {
+      Segment emptied = head;
+      head = emptied.next;
+      headIndex = 0;
+      emptied.next = null;
+      if (spareSegments.size() < MAX_SPARE_SEGMENTS) {
+        spareSegments.addLast(emptied);
+      }
+    }
+    @SuppressWarnings("unchecked")
+    E element = (E) head.elements[headIndex];
+    head.elements[headIndex++] = null;
+    size--;
+    if (size == 0) {
+      // The head and tail are the same segment now, so it can be refilled from the start.
+      headIndex = 0;
+      tailIndex = 0;
+    }
+    if (isAboveSoftLimit && size <= softLimitClearedSize) {
+      isAboveSoftLimit = false;
+      softLimitListener.softLimitCleared(size);
+    }
+    return element;
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      // Wake up all blocked takers, since they may need to return Optional.empty().
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    lock.lockInterruptibly();
+    try {
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      enqueue(element);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (size == 0) {
+        if (isClosed || remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      if (size == 0) {
+        return Optional.empty();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (size == 0) {
+        if (isClosed) {
+          return Optional.empty();
+        }
+        notEmpty.await();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && size == 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
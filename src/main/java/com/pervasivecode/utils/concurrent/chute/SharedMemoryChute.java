@@ -0,0 +1,385 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Chute} whose ring buffer is a memory-mapped file, so that elements can be passed
+ * between JVMs running on the same host. Each process opens the same file (preferably on a
+ * memory-backed filesystem such as {@code /dev/shm}) via
+ * {@link #open(Path, int, ElementSerializer)}; one process uses the chute as a
+ * {@link ChuteEntrance} and the other uses it as a {@link ChuteExit}.
+ * <p>
+ * Elements are serialized into the ring by an {@link ElementSerializer}, and the read and write
+ * positions are stored in the file alongside it, so putting and taking an element does not
+ * involve any system calls unless the chute is full or empty. A producer that finds the ring full
+ * (or a consumer that finds it empty) polls the other process's position, yielding and then
+ * parking for increasing amounts of time up to 1 millisecond, so a waiting thread responds to
+ * new elements or space within about a millisecond.
+ * <p>
+ * Any number of threads in the producing process may put elements, and any number of threads in
+ * the consuming process may take them, but at most one process may put and one process may take,
+ * since the positions are only coordinated between processes, not within them. Closing the chute
+ * is visible to both processes. The file keeps its contents (including the closed state) after
+ * both processes are done with it, so it should be deleted rather than reused for a new stream of
+ * elements.
+ *
+ * @param <E> The type of object that can be sent through the SharedMemoryChute.
+ */
+public final class SharedMemoryChute<E> implements Chute<E> {
+  // The file starts with a header, in which the write position, read position, and closed flag are
+  // on separate cache lines so that the producer and consumer don't contend for them. The rest of
+  // the file is the ring, which uses the same record format as OffHeapChute: each record is a
+  // 4-byte length followed by the serialized element, padded so that the next record is 8-byte
+  // aligned, with a PADDING marker in place of a record that would wrap around the end of the ring.
+  private static final int MAGIC = 0x43687574; // "Chut"
+  private static final int VERSION = 1;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 4;
+  private static final int CAPACITY_OFFSET = 8;
+  private static final int WRITE_POSITION_OFFSET = 64;
+  private static final int READ_POSITION_OFFSET = 128;
+  private static final int CLOSED_OFFSET = 192;
+  private static final int HEADER_SIZE = 256;
+
+  private static final int ALIGNMENT = Long.BYTES;
+  private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+  private static final int PADDING = -1;
+
+  private static final int NUM_YIELDS = 100;
+  private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final MappedByteBuffer shared;
+  private final ByteBuffer ring;
+  private final int capacityBytes;
+  private final ElementSerializer<E> serializer;
+
+  // These only coordinate threads within this process. A thread waiting for space or elements holds
+  // the lock while it polls, since the other process can't signal it.
+  private final ReentrantLock putLock = new ReentrantLock();
+  private final ReentrantLock takeLock = new ReentrantLock();
+
+  // The most recently observed read position, so that the producer doesn't have to read the
+  // consumer's cache line on every put. Guarded by putLock.
+  private long cachedReadPosition;
+
+  // Set by close() before it acquires putLock, so that a put waiting for space (which holds
+  // putLock) gives up instead of keeping close() waiting.
+  private volatile boolean isClosing = false;
+
+  // Java 8 has no ordered accesses for ByteBuffers, so a write to this field is used as a memory
+  // fence between accesses to the shared file. HotSpot implements a volatile write as a full fence
+  // on all of the platforms it supports.
+  @SuppressWarnings("unused")
+  private volatile int fence;
+
+  private SharedMemoryChute(MappedByteBuffer shared, int capacityBytes,
+      ElementSerializer<E> serializer) {
+    this.shared = shared;
+    this.capacityBytes = capacityBytes;
+    this.serializer = serializer;
+    ByteBuffer ringView = shared.duplicate();
+    ringView.position(HEADER_SIZE);
+    this.ring = ringView.slice();
+    this.cachedReadPosition = shared.getLong(READ_POSITION_OFFSET);
+  }
+
+  /**
+   * Open a SharedMemoryChute, creating the file if it does not exist. Both the producing and the
+   * consuming process should call this method with the same arguments.
+   *
+   * @param file The file that holds the ring buffer and the shared state of the chute.
+   * @param capacityBytes The size of the ring buffer in bytes, which will be rounded up to a
+   *        multiple of 8. Each element uses 4 bytes more than its serialized size, rounded up to a
+   *        multiple of 8, and may use at most half of the ring.
+   * @param serializer The serializer used to convert elements to and from bytes.
+   * @param <E> The type of object that can be sent through the SharedMemoryChute.
+   * @return The chute.
+   * @throws IOException if the file could not be opened, or is not a SharedMemoryChute file.
+   * @throws IllegalArgumentException if the file was created with a different capacity.
+   */
+  public static <E> SharedMemoryChute<E> open(Path file, int capacityBytes,
+      ElementSerializer<E> serializer) throws IOException {
+    checkNotNull(file);
+    checkArgument(capacityBytes > 0, "Capacity must be at least 1 byte.");
+    checkArgument(capacityBytes <= Integer.MAX_VALUE - HEADER_SIZE - ALIGNMENT,
+        "Capacity is too large.");
+    checkNotNull(serializer);
+    int alignedCapacity = alignedSize(capacityBytes);
+    long fileSize = HEADER_SIZE + alignedCapacity;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The lock keeps the other process from reading the header before it has been written.
+      FileLock lock = channel.lock();
+      try {
+        long existingSize = channel.size();
+        checkArgument(existingSize == 0 || existingSize == fileSize,
+            "File %s is %s bytes, but a %s-byte chute needs %s bytes.", file, existingSize,
+            alignedCapacity, fileSize);
+        // The mapping remains valid after the channel is closed.
+        MappedByteBuffer shared = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        if (existingSize == 0) {
+          shared.putInt(VERSION_OFFSET, VERSION);
+          shared.putInt(CAPACITY_OFFSET, alignedCapacity);
+          shared.putInt(MAGIC_OFFSET, MAGIC);
+        } else if (shared.getInt(MAGIC_OFFSET) != MAGIC
+            || shared.getInt(VERSION_OFFSET) != VERSION
+            || shared.getInt(CAPACITY_OFFSET) != alignedCapacity) {
+          throw new IOException("Not a SharedMemoryChute file: " + file);
+        }
+        return new SharedMemoryChute<>(shared, alignedCapacity, serializer);
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  private static int alignedSize(int size) {
+    return (size + ALIGNMENT - 1) & -ALIGNMENT;
+  }
+
+  private int offsetOf(long position) {
+    return (int) (position % capacityBytes);
+  }
+
+  private void fullFence() {
+    fence = 0;
+  }
+
+  private long sharedWritePosition() {
+    long position = shared.getLong(WRITE_POSITION_OFFSET);
+    fullFence();
+    return position;
+  }
+
+  private long sharedReadPosition() {
+    long position = shared.getLong(READ_POSITION_OFFSET);
+    fullFence();
+    return position;
+  }
+
+  /**
+   * Wait a little while for the other process to make progress, waiting longer on each attempt.
+   */
+  private static void backOff(int attempt, long maxNanos) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (attempt < NUM_YIELDS) {
+      Thread.yield();
+    } else {
+      int doublings = Math.min(attempt - NUM_YIELDS, 10);
+      LockSupport.parkNanos(Math.min(Math.min(MIN_PARK_NANOS << doublings, MAX_PARK_NANOS),
+          maxNanos));
+    }
+  }
+
+  /**
+   * Get the size of the ring buffer.
+   *
+   * @return The capacity of the chute, in bytes.
+   */
+  public int capacityBytes() {
+    return capacityBytes;
+  }
+
+  /**
+   * Get the number of bytes of the ring buffer that are currently in use by elements (including
+   * their length prefixes and alignment padding).
+   *
+   * @return The number of bytes in use.
+   */
+  public long usedBytes() {
+    long readPosition = sharedReadPosition();
+    return sharedWritePosition() - readPosition;
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() {
+    isClosing = true;
+    // Holding putLock while setting the closed flag means that no put in this process can add an
+    // element after the flag is set.
+    putLock.lock();
+    try {
+      // Make sure that previously put elements are visible before the closed flag is.
+      fullFence();
+      shared.putInt(CLOSED_OFFSET, 1);
+      fullFence();
+    } finally {
+      putLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    int closed = shared.getInt(CLOSED_OFFSET);
+    fullFence();
+    return closed != 0;
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    int size = serializer.serializedSize(element);
+    int recordSize = alignedSize(LENGTH_PREFIX_SIZE + size);
+    checkArgument(size >= 0 && recordSize <= capacityBytes / 2,
+        "Element needs %s bytes, which is too large for a %s-byte chute.", recordSize,
+        capacityBytes);
+    putLock.lockInterruptibly();
+    try {
+      if (isClosed()) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      long position = shared.getLong(WRITE_POSITION_OFFSET);
+      int offset = offsetOf(position);
+      int bytesToEnd = capacityBytes - offset;
+      int paddingSize = (recordSize > bytesToEnd) ? bytesToEnd : 0;
+      awaitFreeBytes(position, paddingSize + recordSize);
+      if (paddingSize > 0) {
+        ring.putInt(offset, PADDING);
+        offset = 0;
+      }
+      ring.putInt(offset, size);
+      ByteBuffer destination = ring.duplicate();
+      destination.limit(offset + LENGTH_PREFIX_SIZE + size);
+      destination.position(offset + LENGTH_PREFIX_SIZE);
+      destination = destination.slice();
+      serializer.serialize(element, destination);
+      if (destination.position() != size) {
+        throw new IllegalStateException(
+            String.format("Serializer wrote %d bytes, but said it would write %d bytes.",
+                destination.position(), size));
+      }
+      // Make sure that the record is visible before the new write position is.
+      fullFence();
+      shared.putLong(WRITE_POSITION_OFFSET, position + paddingSize + recordSize);
+    } finally {
+      putLock.unlock();
+    }
+  }
+
+  /**
+   * Wait until the specified number of bytes are free. The caller must hold putLock.
+   */
+  private void awaitFreeBytes(long writePosition, int numBytes) throws InterruptedException {
+    int attempt = 0;
+    while (capacityBytes - (writePosition - cachedReadPosition) < numBytes) {
+      cachedReadPosition = sharedReadPosition();
+      if (capacityBytes - (writePosition - cachedReadPosition) >= numBytes) {
+        return;
+      }
+      if (isClosing || isClosed()) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      backOff(attempt++, MAX_PARK_NANOS);
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  /**
+   * Take the record at the specified position, which must exist. The caller must hold takeLock.
+   */
+  private <R> R readRecord(long position, Function<? super ByteBuffer, ? extends R> reader) {
+    int offset = offsetOf(position);
+    int paddingSize = 0;
+    int size = ring.getInt(offset);
+    if (size == PADDING) {
+      paddingSize = capacityBytes - offset;
+      offset = 0;
+      size = ring.getInt(offset);
+    }
+    ByteBuffer view = ring.asReadOnlyBuffer();
+    view.limit(offset + LENGTH_PREFIX_SIZE + size);
+    view.position(offset + LENGTH_PREFIX_SIZE);
+    try {
+      return reader.apply(view.slice());
+    } finally {
+      // Make sure that the record has been read before the producer can overwrite it.
+      fullFence();
+      shared.putLong(READ_POSITION_OFFSET,
+          position + paddingSize + alignedSize(LENGTH_PREFIX_SIZE + size));
+    }
+  }
+
+  private Optional<E> takeElement(long timeoutNanos, boolean waitForever)
+      throws InterruptedException {
+    takeLock.lockInterruptibly();
+    try {
+      long position = shared.getLong(READ_POSITION_OFFSET);
+      long deadline = System.nanoTime() + timeoutNanos;
+      int attempt = 0;
+      while (sharedWritePosition() == position) {
+        // Elements put before the chute was closed are visible once the closed flag is, so check
+        // for them again before reporting that the chute is closed and empty.
+        if (isClosed() && sharedWritePosition() == position) {
+          return Optional.empty();
+        }
+        long remainingNanos = waitForever ? MAX_PARK_NANOS : deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        backOff(attempt++, remainingNanos);
+      }
+      return Optional.of(readRecord(position, serializer::deserialize));
+    } finally {
+      takeLock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    return takeElement(timeoutUnit.toNanos(timeout), false);
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!takeLock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      long position = shared.getLong(READ_POSITION_OFFSET);
+      if (sharedWritePosition() == position) {
+        return Optional.empty();
+      }
+      return Optional.of(readRecord(position, serializer::deserialize));
+    } finally {
+      takeLock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    return takeElement(0, true);
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    if (!isClosed()) {
+      return false;
+    }
+    long readPosition = sharedReadPosition();
+    return sharedWritePosition() == readPosition;
+  }
+}
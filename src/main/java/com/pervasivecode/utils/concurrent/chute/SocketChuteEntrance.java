@@ -0,0 +1,371 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link ChuteEntrance} that sends elements over a socket to a {@link SocketChuteExit} on the
+ * other end of the connection, which may be in another process on another host.
+ * <p>
+ * Each element is converted to bytes by an {@link ElementSerializer} and sent as a frame
+ * consisting of a 4-byte length followed by the serialized element. Small elements are not sent
+ * right away: as in Nagle's algorithm, frames are collected into a batch, which is sent when it
+ * reaches a specified size or when its first element has waited for a specified linger time, so
+ * that many elements can be sent with a single write. (Since batching is done here, the socket's
+ * own Nagle algorithm is disabled.)
+ * <p>
+ * The SocketChuteExit grants this entrance one credit per element of space in its buffer, and
+ * grants more credits as elements are taken from it. Each put() uses one credit, and blocks while
+ * there are none, so the remote buffer can never overflow and the producer is slowed down to the
+ * rate at which the remote consumer takes elements, just as with a local {@link BufferingChute}.
+ * <p>
+ * Closing this entrance sends a close frame after all of the elements that were already put, and
+ * blocks until the remote exit has received it, after which the exit's
+ * {@link SocketChuteExit#isClosedAndEmpty()} will become true once its remaining elements have
+ * been taken.
+ * <p>
+ * The socket is used in non-blocking mode by a daemon thread which is started by the constructor
+ * and which stops once the connection is closed. If the connection fails, subsequent calls to
+ * put() and close() will throw an {@link UncheckedIOException}.
+ *
+ * @param <E> The type of object that can be sent through the SocketChuteEntrance.
+ */
+public final class SocketChuteEntrance<E> implements ChuteEntrance<E> {
+  // A frame length that marks the end of the stream, rather than an element.
+  static final int CLOSE_FRAME = -1;
+  static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+
+  private final SocketChannel channel;
+  private final Selector selector;
+  private final SelectionKey key;
+  private final ElementSerializer<E> serializer;
+  private final int batchSizeBytes;
+  private final long lingerNanos;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition hasCredit = lock.newCondition();
+  private final Condition closeCompleted = lock.newCondition();
+  // Frames that have been put but not yet handed to the I/O thread.
+  private ByteBuffer pending;
+  private long pendingSinceNanos = 0;
+  private int credits = 0;
+  private boolean isClosed = false;
+  private boolean isCloseCompleted = false;
+  private IOException failure = null;
+
+  // The following fields are only used by the I/O thread.
+  // Frames that are being written to the socket. (This is in read mode; pending is in write mode.)
+  private ByteBuffer sending;
+  private final ByteBuffer received = ByteBuffer.allocate(64 * Integer.BYTES);
+  private boolean isOutputShutDown = false;
+
+  /**
+   * Create a SocketChuteEntrance that will send elements via a connected socket.
+   *
+   * @param channel A socket that is connected to a {@link SocketChuteExit}. It will be put into
+   *        non-blocking mode, and will be closed when this entrance is closed.
+   * @param serializer The serializer used to convert elements to bytes.
+   * @param batchSizeBytes The number of bytes of frames that will be sent as soon as they are
+   *        available, without waiting for the linger time to expire.
+   * @param linger The magnitude of the maximum time that an element will be held back while
+   *        waiting for more elements to fill a batch. Zero means that elements will be sent as
+   *        soon as the socket is ready for them. Nonzero values are rounded up to a whole number
+   *        of milliseconds.
+   * @param lingerUnit The unit of the linger time.
+   * @throws IOException if the socket could not be configured.
+   */
+  public SocketChuteEntrance(SocketChannel channel, ElementSerializer<E> serializer,
+      int batchSizeBytes, long linger, TimeUnit lingerUnit) throws IOException {
+    this.channel = checkNotNull(channel);
+    this.serializer = checkNotNull(serializer);
+    checkArgument(batchSizeBytes > LENGTH_PREFIX_SIZE, "Batch size must be greater than %s bytes.",
+        LENGTH_PREFIX_SIZE);
+    checkArgument(linger >= 0, "Linger time cannot be negative.");
+    this.batchSizeBytes = batchSizeBytes;
+    this.lingerNanos = lingerUnit.toNanos(linger);
+    this.pending = ByteBuffer.allocate(batchSizeBytes);
+    this.sending = ByteBuffer.allocate(batchSizeBytes);
+    this.sending.flip();
+
+    channel.configureBlocking(false);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    this.selector = Selector.open();
+    this.key = channel.register(selector, SelectionKey.OP_READ);
+
+    Thread ioThread = new Thread(this::runIoLoop, "SocketChuteEntrance I/O");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+
+  /**
+   * Make sure that there is enough room in the pending buffer for the specified number of bytes.
+   * The caller must hold the lock.
+   */
+  private void ensurePendingRoom(int numBytes) {
+    if (pending.remaining() < numBytes) {
+      ByteBuffer larger =
+          ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + numBytes));
+      pending.flip();
+      larger.put(pending);
+      pending = larger;
+    }
+  }
+
+  private void throwIfFailed() {
+    if (failure != null) {
+      throw new UncheckedIOException("The connection failed.", failure);
+    }
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This method blocks until the remote {@link SocketChuteExit} has received all of the elements
+   * put before it was called, followed by the close frame, or until the connection fails.
+   *
+   * @throws UncheckedIOException if the connection failed before the close frame was sent, in
+   *         which case the remote SocketChuteExit may not have received it.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      if (!isClosed) {
+        isClosed = true;
+        ensurePendingRoom(LENGTH_PREFIX_SIZE);
+        if (pending.position() == 0) {
+          pendingSinceNanos = System.nanoTime();
+        }
+        pending.putInt(CLOSE_FRAME);
+        // Blocked putters need to throw IllegalStateException.
+        hasCredit.signalAll();
+        selector.wakeup();
+      }
+      while (!isCloseCompleted && failure == null) {
+        closeCompleted.await();
+      }
+      throwIfFailed();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    int size = serializer.serializedSize(element);
+    checkArgument(size >= 0, "Serialized size cannot be negative.");
+    lock.lockInterruptibly();
+    try {
+      while (credits == 0 && !isClosed && failure == null) {
+        hasCredit.await();
+      }
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      throwIfFailed();
+
+      ensurePendingRoom(LENGTH_PREFIX_SIZE + size);
+      boolean wasEmpty = pending.position() == 0;
+      pending.putInt(size);
+      ByteBuffer destination = pending.slice();
+      destination.limit(size);
+      serializer.serialize(element, destination);
+      if (destination.position() != size) {
+        pending.position(pending.position() - LENGTH_PREFIX_SIZE);
+        throw new IllegalStateException(
+            String.format("Serializer wrote %d bytes, but said it would write %d bytes.",
+                destination.position(), size));
+      }
+      pending.position(pending.position() + size);
+      credits--;
+
+      if (wasEmpty) {
+        pendingSinceNanos = System.nanoTime();
+      }
+      // The I/O thread needs to start the linger timer for a new batch, or send a full batch.
+      if (wasEmpty || pending.position() >= batchSizeBytes) {
+        selector.wakeup();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods used by the I/O thread
+  //
+
+  /**
+   * Check whether the pending frames should be sent now. The caller must hold the lock.
+   */
+  private boolean isPendingDue() {
+    return pending.position() > 0 && (isClosed || pending.position() >= batchSizeBytes
+        || System.nanoTime() - pendingSinceNanos >= lingerNanos);
+  }
+
+  /**
+   * If the frames that were previously being sent have all been written, and the pending frames
+   * should be sent now, swap the buffers so that the pending frames will be sent.
+   */
+  private void swapBuffersIfDue() {
+    lock.lock();
+    try {
+      if (!sending.hasRemaining() && isPendingDue()) {
+        ByteBuffer toSend = pending;
+        pending = sending;
+        pending.clear();
+        sending = toSend;
+        sending.flip();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Determine how long to wait in select() for the socket to become readable or writable.
+   *
+   * @return The time to wait in milliseconds, where 0 means forever and -1 means not to wait.
+   */
+  private long selectTimeoutMillis() {
+    lock.lock();
+    try {
+      if (sending.hasRemaining() || pending.position() == 0) {
+        // Wait until the socket is writable, or until put() or close() wakes up the selector.
+        return 0;
+      }
+      if (isPendingDue()) {
+        return -1;
+      }
+      long remainingNanos = lingerNanos - (System.nanoTime() - pendingSinceNanos);
+      long nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+      return (remainingNanos + nanosPerMilli - 1) / nanosPerMilli;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isCloseFrameSent() {
+    lock.lock();
+    try {
+      // The close frame is the last frame, so it was sent if there is nothing left to send.
+      return isClosed && pending.position() == 0 && !sending.hasRemaining();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Read credit grants from the socket.
+   *
+   * @return false if the remote SocketChuteExit has closed the connection.
+   */
+  private boolean readCredits() throws IOException {
+    int numRead = channel.read(received);
+    received.flip();
+    int numGranted = 0;
+    while (received.remaining() >= Integer.BYTES) {
+      numGranted += received.getInt();
+    }
+    received.compact();
+    if (numGranted > 0) {
+      lock.lock();
+      try {
+        credits += numGranted;
+        hasCredit.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return numRead >= 0;
+  }
+
+  private void runIoLoop() {
+    IOException ioFailure = null;
+    try {
+      while (true) {
+        swapBuffersIfDue();
+        if (sending.hasRemaining()) {
+          channel.write(sending);
+        }
+        if (!isOutputShutDown && isCloseFrameSent()) {
+          // Tell the SocketChuteExit that nothing else will be sent, but keep reading until it
+          // closes the connection, so that its unread data isn't discarded.
+          channel.shutdownOutput();
+          isOutputShutDown = true;
+        }
+        key.interestOps(
+            sending.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+        long timeoutMillis = selectTimeoutMillis();
+        if (timeoutMillis < 0) {
+          selector.selectNow();
+        } else {
+          selector.select(timeoutMillis);
+        }
+        boolean isReadable = selector.selectedKeys().contains(key) && key.isReadable();
+        selector.selectedKeys().clear();
+        if (isReadable && !readCredits()) {
+          if (!isOutputShutDown) {
+            ioFailure = new IOException("The connection was closed by the SocketChuteExit.");
+          }
+          break;
+        }
+      }
+    } catch (IOException e) {
+      ioFailure = e;
+    } catch (CancelledKeyException e) {
+      // The socket was closed by something other than this entrance.
+      ioFailure = new IOException("The socket was closed.", e);
+    } finally {
+      try {
+        selector.close();
+        channel.close();
+      } catch (IOException e) {
+        if (ioFailure == null) {
+          ioFailure = e;
+        }
+      }
+      lock.lock();
+      try {
+        if (isOutputShutDown) {
+          isCloseCompleted = true;
+        } else {
+          failure = ioFailure;
+        }
+        hasCredit.signalAll();
+        closeCompleted.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
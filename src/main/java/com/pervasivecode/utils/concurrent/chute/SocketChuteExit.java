@@ -0,0 +1,292 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.pervasivecode.utils.concurrent.chute.SocketChuteEntrance.CLOSE_FRAME;
+import static com.pervasivecode.utils.concurrent.chute.SocketChuteEntrance.LENGTH_PREFIX_SIZE;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ChuteExit} that receives elements over a socket from a {@link SocketChuteEntrance} on
+ * the other end of the connection, which may be in another process on another host.
+ * <p>
+ * Received elements are held in a fixed-size buffer until they are taken. The buffer never
+ * overflows, since the SocketChuteEntrance may only send as many elements as it has been granted
+ * credits for: this exit grants one credit per element of buffer space when it is created, and
+ * grants more as elements are taken, in batches of a quarter of the buffer size so that credits
+ * don't need to be sent for every element.
+ * <p>
+ * This exit becomes closed when the SocketChuteEntrance is closed, after all of the elements that
+ * were put into the entrance before it was closed have been received. If the connection is lost
+ * before then, the exit also becomes closed, and {@link #isConnectionLost()} becomes true.
+ * <p>
+ * The socket is used in non-blocking mode by a daemon thread which is started by the constructor
+ * and which stops once the connection is closed.
+ *
+ * @param <E> The type of object that can be taken from the SocketChuteExit.
+ */
+public final class SocketChuteExit<E> implements ChuteExit<E> {
+  private static final int INITIAL_RECEIVE_BUFFER_SIZE = 64 * 1024;
+
+  private final SocketChannel channel;
+  private final Selector selector;
+  private final SelectionKey key;
+  private final ElementSerializer<E> serializer;
+  private final int creditBatchSize;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final ArrayDeque<E> buffer;
+  private int creditsToGrant;
+  private boolean isClosed = false;
+  private boolean isConnectionLost = false;
+
+  // The following fields are only used by the I/O thread.
+  private ByteBuffer received = ByteBuffer.allocate(INITIAL_RECEIVE_BUFFER_SIZE);
+  private final ByteBuffer creditGrant = ByteBuffer.allocate(Integer.BYTES);
+
+  /**
+   * Create a SocketChuteExit that will receive elements via a connected socket.
+   *
+   * @param channel A socket that is connected to a {@link SocketChuteEntrance}. It will be put
+   *        into non-blocking mode, and will be closed when the entrance is closed.
+   * @param bufferSize The maximum number of received elements that can be waiting to be taken.
+   * @param serializer The serializer used to convert bytes back into elements.
+   * @throws IOException if the socket could not be configured.
+   */
+  public SocketChuteExit(SocketChannel channel, int bufferSize, ElementSerializer<E> serializer)
+      throws IOException {
+    this.channel = checkNotNull(channel);
+    checkArgument(bufferSize > 0, "Buffer size must be at least 1.");
+    this.serializer = checkNotNull(serializer);
+    this.buffer = new ArrayDeque<>(bufferSize);
+    this.creditsToGrant = bufferSize;
+    this.creditBatchSize = (bufferSize + 3) / 4;
+    this.creditGrant.flip();
+
+    channel.configureBlocking(false);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    this.selector = Selector.open();
+    this.key = channel.register(selector, SelectionKey.OP_READ);
+
+    Thread ioThread = new Thread(this::runIoLoop, "SocketChuteExit I/O");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+
+  /**
+   * Find out whether the connection to the SocketChuteEntrance was lost before the entrance was
+   * closed, in which case some elements that were put into the entrance may not have been
+   * received.
+   *
+   * @return Whether the connection was lost.
+   */
+  public boolean isConnectionLost() {
+    lock.lock();
+    try {
+      return isConnectionLost;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  /**
+   * Take the first element in the buffer, which must not be empty. The caller must hold the lock.
+   */
+  private E dequeue() {
+    E element = buffer.removeFirst();
+    creditsToGrant++;
+    if (creditsToGrant == creditBatchSize && !isClosed) {
+      selector.wakeup();
+    }
+    return element;
+  }
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (buffer.isEmpty()) {
+        if (isClosed || remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      if (buffer.isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (buffer.isEmpty()) {
+        if (isClosed) {
+          return Optional.empty();
+        }
+        notEmpty.await();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && buffer.isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods used by the I/O thread
+  //
+
+  /**
+   * If the previous credit grant has been sent and enough elements have been taken since then,
+   * prepare a new credit grant to be sent.
+   */
+  private void prepareCreditGrant() {
+    lock.lock();
+    try {
+      if (!creditGrant.hasRemaining() && creditsToGrant >= creditBatchSize) {
+        creditGrant.clear();
+        creditGrant.putInt(creditsToGrant);
+        creditGrant.flip();
+        creditsToGrant = 0;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Read as many complete frames as are available from the socket, and add their elements to the
+   * buffer.
+   *
+   * @return false if the close frame was received, or if the connection was closed.
+   */
+  private boolean readFrames() throws IOException {
+    int numRead = channel.read(received);
+    received.flip();
+    List<E> elements = new ArrayList<>();
+    boolean isCloseFrameReceived = false;
+    while (received.remaining() >= LENGTH_PREFIX_SIZE) {
+      int size = received.getInt(received.position());
+      if (size == CLOSE_FRAME) {
+        isCloseFrameReceived = true;
+        break;
+      }
+      if (received.remaining() < LENGTH_PREFIX_SIZE + size) {
+        break;
+      }
+      received.position(received.position() + LENGTH_PREFIX_SIZE);
+      ByteBuffer source = received.slice();
+      source.limit(size);
+      elements.add(serializer.deserialize(source));
+      received.position(received.position() + size);
+    }
+    received.compact();
+    if (received.position() == received.capacity()) {
+      // The next frame is larger than the receive buffer.
+      received.flip();
+      received = ByteBuffer.allocate(received.capacity() * 2).put(received);
+    }
+
+    lock.lock();
+    try {
+      buffer.addAll(elements);
+      if (!elements.isEmpty()) {
+        notEmpty.signalAll();
+      }
+      if (numRead < 0 && !isCloseFrameReceived) {
+        isConnectionLost = true;
+      }
+    } finally {
+      lock.unlock();
+    }
+    return !isCloseFrameReceived && numRead >= 0;
+  }
+
+  private void runIoLoop() {
+    try {
+      while (true) {
+        prepareCreditGrant();
+        if (creditGrant.hasRemaining()) {
+          channel.write(creditGrant);
+        }
+        key.interestOps(creditGrant.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+            : SelectionKey.OP_READ);
+        selector.select();
+        boolean isReadable = selector.selectedKeys().contains(key) && key.isReadable();
+        selector.selectedKeys().clear();
+        if (isReadable && !readFrames()) {
+          break;
+        }
+      }
+    } catch (@SuppressWarnings("unused") IOException | CancelledKeyException e) {
+      // CancelledKeyException means that the socket was closed by something other than this exit.
+      lock.lock();
+      try {
+        isConnectionLost = true;
+      } finally {
+        lock.unlock();
+      }
+    } finally {
+      try {
+        selector.close();
+        channel.close();
+      } catch (@SuppressWarnings("unused") IOException e) {
+        // The connection is finished either way.
+      }
+      lock.lock();
+      try {
+        isClosed = true;
+        // Wake up all blocked takers, since they may need to return Optional.empty().
+        notEmpty.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,284 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * A {@link ChuteExit} that merges elements from several input ChuteExits, each of which emits
+ * elements in sorted order, into a single sorted stream, such as merging per-partition streams of
+ * timestamped events into one stream in timestamp order.
+ * <p>
+ * The merge uses a loser tree, so each element taken costs O(log n) comparisons, where n is the
+ * number of inputs. Elements that compare as equal are taken from the input with the lowest index
+ * first.
+ * <p>
+ * An element can only be taken once every input that isn't closed and empty has an element
+ * available (otherwise, an input that is temporarily empty might later produce an element that
+ * should have been taken first), so taking waits for inputs that are empty but still open. Inputs
+ * that are {@link ListenableChuteExit}s are waited for via listeners; other inputs are waited for
+ * by blocking in their own take methods. Inputs may be closed at different times, and this exit is
+ * closed and empty once all of the inputs are.
+ *
+ * @param <E> The type of object that can be taken from the SortedMergeExit.
+ */
+public final class SortedMergeExit<E> implements ChuteExit<E> {
+  // Some chutes' tryTakeNow() methods can return Optional.empty() while an element is available,
+  // so waits for a listener notification are limited to this long before trying again.
+  private static final long MAX_LISTENER_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final ImmutableList<ChuteExit<E>> inputs;
+  private final Comparator<? super E> comparator;
+  private final int numInputs;
+
+  // All of the following fields are guarded by takeLock.
+  private final ReentrantLock takeLock = new ReentrantLock();
+  // The next element from each input, or null if it hasn't been taken from the input yet.
+  private final Object[] heads;
+  private final boolean[] isExhausted;
+  // The loser tree: tree[0] is the index of the input with the least head, and tree[1] through
+  // tree[numInputs - 1] are the losers of the comparisons at each internal node. The leaf for
+  // input i is at position numInputs + i, and the parent of position p is p / 2.
+  private final int[] tree;
+  private boolean isTreeBuilt = false;
+  // The input whose head was taken last, which has to be refilled and replayed up the tree before
+  // the next element can be taken, or -1 if there is none.
+  private int inputToReplay = -1;
+
+  // Used to wait for listener notifications from ListenableChuteExit inputs.
+  private final ReentrantLock notificationLock = new ReentrantLock();
+  private final Condition inputChanged = notificationLock.newCondition();
+  private long numNotifications = 0;
+
+  /**
+   * Create a SortedMergeExit.
+   *
+   * @param inputs The ChuteExits to merge, each of which must emit elements in the order specified
+   *        by the comparator.
+   * @param comparator The comparator that determines the order of elements.
+   */
+  public SortedMergeExit(List<? extends ChuteExit<E>> inputs, Comparator<? super E> comparator) {
+    this.inputs = ImmutableList.copyOf(inputs);
+    checkArgument(!this.inputs.isEmpty(), "There must be at least one input.");
+    this.comparator = checkNotNull(comparator);
+    this.numInputs = this.inputs.size();
+    this.heads = new Object[numInputs];
+    this.isExhausted = new boolean[numInputs];
+    this.tree = new int[numInputs];
+
+    for (ChuteExit<E> input : this.inputs) {
+      if (input instanceof ListenableChuteExit) {
+        ((ListenableChuteExit<E>) input).addListener(this::notifyInputChanged,
+            MoreExecutors.directExecutor());
+      }
+    }
+  }
+
+  private void notifyInputChanged() {
+    notificationLock.lock();
+    try {
+      numNotifications++;
+      inputChanged.signalAll();
+    } finally {
+      notificationLock.unlock();
+    }
+  }
+
+  private long numNotifications() {
+    notificationLock.lock();
+    try {
+      return numNotifications;
+    } finally {
+      notificationLock.unlock();
+    }
+  }
+
+  /**
+   * Wait until a listener notification arrives after the specified number of notifications, or
+   * until the deadline.
+   */
+  private void awaitNotification(long numNotificationsSeen, boolean timed, long deadlineNanos)
+      throws InterruptedException {
+    notificationLock.lockInterruptibly();
+    try {
+      long remainingNanos = MAX_LISTENER_WAIT_NANOS;
+      if (timed) {
+        remainingNanos = Math.min(remainingNanos, deadlineNanos - System.nanoTime());
+      }
+      while (numNotifications == numNotificationsSeen && remainingNanos > 0) {
+        remainingNanos = inputChanged.awaitNanos(remainingNanos);
+      }
+    } finally {
+      notificationLock.unlock();
+    }
+  }
+
+  /**
+   * Make sure that the input has a head element, unless it is closed and empty. The caller must
+   * hold takeLock.
+   *
+   * @return false if the deadline passed before the input had a head element.
+   */
+  private boolean fillHead(int i, boolean timed, long deadlineNanos) throws InterruptedException {
+    ChuteExit<E> input = inputs.get(i);
+    while (heads[i] == null && !isExhausted[i]) {
+      long numNotificationsSeen = numNotifications();
+      Optional<E> element = input.tryTakeNow();
+      if (element.isPresent()) {
+        heads[i] = element.get();
+        break;
+      }
+      if (input.isClosedAndEmpty()) {
+        isExhausted[i] = true;
+        break;
+      }
+      long remainingNanos = deadlineNanos - System.nanoTime();
+      if (timed && remainingNanos <= 0) {
+        return false;
+      }
+      if (input instanceof ListenableChuteExit) {
+        awaitNotification(numNotificationsSeen, timed, deadlineNanos);
+      } else {
+        element = timed ? input.tryTake(remainingNanos, TimeUnit.NANOSECONDS) : input.take();
+        if (element.isPresent()) {
+          heads[i] = element.get();
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Find out whether input a's head should be taken before input b's head.
+   */
+  private boolean beats(int a, int b) {
+    if (isExhausted[a]) {
+      return false;
+    }
+    if (isExhausted[b]) {
+      return true;
+    }
+    @SuppressWarnings("unchecked")
+    E headA = (E) heads[a];
+    @SuppressWarnings("unchecked")
+    E headB = (E) heads[b];
+    int comparison = comparator.compare(headA, headB);
+    return comparison != 0 ? comparison < 0 : a < b;
+  }
+
+  private void buildTree() {
+    int[] winners = new int[2 * numInputs];
+    for (int i = 0; i < numInputs; i++) {
+      winners[numInputs + i] = i;
+    }
+    for (int node = numInputs - 1; node >= 1; node--) {
+      int left = winners[2 * node];
+      int right = winners[2 * node + 1];
+      if (beats(left, right)) {
+        winners[node] = left;
+        tree[node] = right;
+      } else {
+        winners[node] = right;
+        tree[node] = left;
+      }
+    }
+    tree[0] = winners[1];
+  }
+
+  /**
+   * Update the tree after the head of an input has changed, by replaying the comparisons on the
+   * path from its leaf to the root.
+   */
+  private void replay(int input) {
+    int winner = input;
+    for (int node = (numInputs + input) / 2; node >= 1; node /= 2) {
+      if (beats(tree[node], winner)) {
+        int loser = winner;
+        winner = tree[node];
+        tree[node] = loser;
+      }
+    }
+    tree[0] = winner;
+  }
+
+  private Optional<E> takeOrWait(boolean timed, long timeoutNanos) throws InterruptedException {
+    long deadlineNanos = timed ? System.nanoTime() + timeoutNanos : 0;
+    takeLock.lockInterruptibly();
+    try {
+      if (!isTreeBuilt) {
+        for (int i = 0; i < numInputs; i++) {
+          if (!fillHead(i, timed, deadlineNanos)) {
+            return Optional.empty();
+          }
+        }
+        buildTree();
+        isTreeBuilt = true;
+      } else if (inputToReplay >= 0) {
+        if (!fillHead(inputToReplay, timed, deadlineNanos)) {
+          return Optional.empty();
+        }
+        replay(inputToReplay);
+        inputToReplay = -1;
+      }
+
+      int winner = tree[0];
+      if (isExhausted[winner]) {
+        // The winner is only exhausted if all of the inputs are.
+        return Optional.empty();
+      }
+      @SuppressWarnings("unchecked")
+      E element = (E) heads[winner];
+      heads[winner] = null;
+      inputToReplay = winner;
+      return Optional.of(element);
+    } finally {
+      takeLock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    return takeOrWait(true, timeoutUnit.toNanos(timeout));
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    try {
+      return takeOrWait(true, 0);
+    } catch (@SuppressWarnings("unused") InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    return takeOrWait(false, 0);
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    takeLock.lock();
+    try {
+      for (int i = 0; i < numInputs; i++) {
+        if (heads[i] != null || !(isExhausted[i] || inputs.get(i).isClosedAndEmpty())) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      takeLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,385 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Chute} with a fixed-size in-memory buffer, which overflows to memory-mapped segment
+ * files on disk rather than blocking producers when the in-memory buffer is full.
+ * <p>
+ * Elements that overflow are converted to bytes by an {@link ElementSerializer} and appended to the
+ * current segment file. When the current segment file is full, the next one is a segment file
+ * whose elements have all been taken, or a new one created in the spill directory if there are
+ * none. Elements are always taken in the order in which they were put: once any element has been
+ * spilled, new elements are also spilled until consumers have taken all of the spilled elements.
+ * <p>
+ * Producers only block when both the in-memory buffer is full and the total size of the segment
+ * files has reached the specified limit, so a burst of elements much larger than the heap can be
+ * absorbed without blocking. Consumers block when the chute is empty, as with
+ * {@link BufferingChute}.
+ * <p>
+ * Segment files are reused rather than deleted while the chute is open, since the disk space used
+ * by a deleted file is not freed until its mapping is garbage-collected; this way the spill
+ * directory never holds more than the specified limit. The segment files are deleted once the
+ * chute is closed and all of its elements have been taken. Segment files that still contain
+ * elements are left in the spill directory when the chute is garbage-collected, so the spill
+ * directory should be a temporary directory.
+ *
+ * @param <E> The type of object that can be sent through the SpillingChute.
+ */
+public final class SpillingChute<E> implements Chute<E> {
+  // Each spilled element is stored as a 4-byte length followed by the serialized element.
+  private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+
+  /**
+   * A memory-mapped file containing length-prefixed serialized elements. Elements are appended at
+   * writePosition and read from readPosition.
+   */
+  private static final class Segment {
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int writePosition = 0;
+    private int readPosition = 0;
+
+    Segment(Path path, int sizeBytes) throws IOException {
+      this.path = path;
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        // The mapping remains valid after the channel is closed.
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+      }
+    }
+
+    boolean hasRoomFor(int recordSize) {
+      return buffer.capacity() - writePosition >= recordSize;
+    }
+
+    boolean isFullyRead() {
+      return readPosition == writePosition;
+    }
+
+    void rewind() {
+      writePosition = 0;
+      readPosition = 0;
+    }
+
+    <E> void append(E element, int elementSize, ElementSerializer<E> serializer) {
+      ByteBuffer destination = buffer.duplicate();
+      destination.position(writePosition);
+      destination.putInt(elementSize);
+      ByteBuffer elementDestination = destination.slice();
+      elementDestination.limit(elementSize);
+      serializer.serialize(element, elementDestination);
+      if (elementDestination.position() != elementSize) {
+        throw new IllegalStateException(String.format(
+            "Serializer wrote %d bytes, but said it would write %d bytes.",
+            elementDestination.position(), elementSize));
+      }
+      writePosition += LENGTH_PREFIX_SIZE + elementSize;
+    }
+
+    <E> E readNext(ElementSerializer<E> serializer) {
+      ByteBuffer source = buffer.duplicate();
+      source.position(readPosition);
+      int elementSize = source.getInt();
+      ByteBuffer elementSource = source.slice();
+      elementSource.limit(elementSize);
+      // The element is consumed even if the serializer fails, so that it doesn't fail again forever.
+      readPosition += LENGTH_PREFIX_SIZE + elementSize;
+      return serializer.deserialize(elementSource);
+    }
+
+    void delete() {
+      try {
+        Files.deleteIfExists(path);
+      } catch (@SuppressWarnings("unused") IOException e) {
+        // Some platforms can't delete a file that's still mapped. Try again later.
+        path.toFile().deleteOnExit();
+      }
+    }
+  }
+
+  private final int memoryCapacity;
+  private final Path spillDirectory;
+  private final int segmentSizeBytes;
+  private final long maxSpilledBytes;
+  private final ElementSerializer<E> serializer;
+
+  // All of the following fields are guarded by lock.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final ArrayDeque<E> memoryBuffer;
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  // Segment files whose elements have all been taken, waiting to be reused.
+  private final ArrayDeque<Segment> spareSegments = new ArrayDeque<>();
+  private long numSpilled = 0;
+  private long spilledBytes = 0;
+  private boolean isClosed = false;
+
+  /**
+   * Create a SpillingChute.
+   *
+   * @param memoryCapacity The maximum number of elements to hold in memory before spilling
+   *        elements to disk.
+   * @param spillDirectory The directory in which to create segment files.
+   * @param segmentSizeBytes The size of each segment file. The largest element that can be
+   *        spilled is 4 bytes smaller than this.
+   * @param maxSpilledBytes The maximum total size of segment files. When this limit is reached,
+   *        producers will block until consumers have taken enough elements to allow a segment
+   *        file to be reused.
+   * @param serializer The serializer used to write spilled elements to segment files and read them
+   *        back.
+   */
+  public SpillingChute(int memoryCapacity, Path spillDirectory, int segmentSizeBytes,
+      long maxSpilledBytes, ElementSerializer<E> serializer) {
+    checkArgument(memoryCapacity > 0, "Memory capacity must be at least 1.");
+    checkArgument(segmentSizeBytes > LENGTH_PREFIX_SIZE,
+        "Segment size must be greater than %s bytes.", LENGTH_PREFIX_SIZE);
+    checkArgument(maxSpilledBytes >= segmentSizeBytes,
+        "Max spilled bytes must be at least one segment.");
+    this.spillDirectory = checkNotNull(spillDirectory);
+    checkArgument(Files.isDirectory(spillDirectory), "Spill directory does not exist: %s",
+        spillDirectory);
+    this.memoryCapacity = memoryCapacity;
+    this.segmentSizeBytes = segmentSizeBytes;
+    this.maxSpilledBytes = maxSpilledBytes;
+    this.serializer = checkNotNull(serializer);
+    this.memoryBuffer = new ArrayDeque<>(memoryCapacity);
+  }
+
+  /**
+   * Get the number of elements that are currently in the segment files, waiting to be taken.
+   *
+   * @return The number of spilled elements.
+   */
+  public long numSpilled() {
+    lock.lock();
+    try {
+      return numSpilled;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of segment files that currently exist, including those waiting to be reused.
+   *
+   * @return The number of segment files.
+   */
+  public int numSegments() {
+    lock.lock();
+    try {
+      return segments.size() + spareSegments.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isEmpty() {
+    return memoryBuffer.isEmpty() && numSpilled == 0;
+  }
+
+  private boolean canAccept(int recordSize) {
+    if (numSpilled == 0 && memoryBuffer.size() < memoryCapacity) {
+      return true;
+    }
+    Segment last = segments.peekLast();
+    return (last != null && last.hasRoomFor(recordSize)) || !spareSegments.isEmpty()
+        || spilledBytes + segmentSizeBytes <= maxSpilledBytes;
+  }
+
+  private void spill(E element, int elementSize) {
+    int recordSize = LENGTH_PREFIX_SIZE + elementSize;
+    Segment last = segments.peekLast();
+    if (last == null || !last.hasRoomFor(recordSize)) {
+      last = spareSegments.pollFirst();
+      if (last == null) {
+        try {
+          last = new Segment(Files.createTempFile(spillDirectory, "chute-", ".spill"),
+              segmentSizeBytes);
+        } catch (IOException e) {
+          throw new UncheckedIOException("Could not create a segment file.", e);
+        }
+        spilledBytes += segmentSizeBytes;
+      }
+      segments.addLast(last);
+    }
+    last.append(element, elementSize, serializer);
+    numSpilled++;
+  }
+
+  private void deleteAll(ArrayDeque<Segment> segmentsToDelete) {
+    Segment segment;
+    while ((segment = segmentsToDelete.pollFirst()) != null) {
+      segment.delete();
+      spilledBytes -= segmentSizeBytes;
+    }
+  }
+
+  private E dequeue() {
+    try {
+      if (!memoryBuffer.isEmpty()) {
+        // Elements in memory are always older than spilled elements.
+        return memoryBuffer.removeFirst();
+      }
+      Segment first = segments.getFirst();
+      try {
+        return first.readNext(serializer);
+      } finally {
+        numSpilled--;
+        if (first.isFullyRead()) {
+          if (isClosed) {
+            segments.removeFirst().delete();
+            spilledBytes -= segmentSizeBytes;
+          } else {
+            // Keep the segment file for the next burst, rather than creating a new one.
+            first.rewind();
+            if (segments.size() > 1) {
+              spareSegments.addLast(segments.removeFirst());
+            }
+          }
+        }
+      }
+    } finally {
+      if (isClosed && isEmpty()) {
+        // A drained segment may have been kept for reuse before the chute was closed.
+        deleteAll(segments);
+      }
+      notFull.signal();
+    }
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      isClosed = true;
+      deleteAll(spareSegments);
+      if (isEmpty()) {
+        deleteAll(segments);
+      }
+      // Wake up all blocked takers, since they may need to return Optional.empty().
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    lock.lock();
+    try {
+      return isClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    int elementSize = serializer.serializedSize(element);
+    int recordSize = LENGTH_PREFIX_SIZE + elementSize;
+    checkArgument(recordSize <= segmentSizeBytes,
+        "Element needs %s bytes, which is too large for a %s-byte segment.", recordSize,
+        segmentSizeBytes);
+    lock.lockInterruptibly();
+    try {
+      while (!isClosed && !canAccept(recordSize)) {
+        notFull.await();
+      }
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      if (numSpilled == 0 && memoryBuffer.size() < memoryCapacity) {
+        memoryBuffer.addLast(element);
+      } else {
+        spill(element, elementSize);
+      }
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    long remainingNanos = timeoutUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (isEmpty()) {
+        if (isClosed || remainingNanos <= 0) {
+          return Optional.empty();
+        }
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    if (!lock.tryLock()) {
+      return Optional.empty();
+    }
+    try {
+      if (isEmpty()) {
+        return Optional.empty();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (isEmpty()) {
+        if (isClosed) {
+          return Optional.empty();
+        }
+        notEmpty.await();
+      }
+      return Optional.of(dequeue());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    lock.lock();
+    try {
+      return isClosed && isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Chute} made of several independent lanes, each with its own lock and fixed-size
+ * buffer, for workloads with many producer and consumer threads that don't need elements to be
+ * taken in the order in which they were put.
+ * <p>
+ * Each producer thread puts elements into the lane selected by a hash of the thread's ID, and
+ * blocks when that lane is full, so producers in different lanes don't contend with each other.
+ * Consumers scan the lanes starting from a random lane, and take from the first lane that has an
+ * element. Elements put by one producer thread stay in order relative to each other, but elements
+ * put by different threads may be taken in any order.
+ * <p>
+ * Once the chute is closed, no more elements can be put into any lane, and the chute is closed and
+ * empty once all of the lanes are empty.
+ *
+ * @param <E> The type of object that can be sent through the StripedChute.
+ */
+public final class StripedChute<E> implements Chute<E> {
+  /**
+   * A bounded queue with its own lock.
+   */
+  private static final class Lane<E> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // Guarded by lock.
+    private final ArrayDeque<E> elements;
+    private final int capacity;
+    // Written while holding lock, and read without it so that takers can skip empty lanes.
+    private volatile int size = 0;
+
+    Lane(int capacity) {
+      this.capacity = capacity;
+      this.elements = new ArrayDeque<>(capacity);
+    }
+
+    @Nullable
+    E poll() {
+      lock.lock();
+      try {
+        E element = elements.pollFirst();
+        if (element != null) {
+          size = elements.size();
+          notFull.signal();
+        }
+        return element;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private final Lane<E>[] lanes;
+
+  private volatile boolean isClosed = false;
+  // Set once close() has held every lane's lock after setting isClosed, so that no put can be in
+  // progress that would add another element.
+  private volatile boolean isSealed = false;
+
+  // Used only to park and wake up waiting takers. Takers increment numWaitingTakers before their
+  // last check of the lanes, and putters only acquire waitLock if it is nonzero.
+  private final ReentrantLock waitLock = new ReentrantLock();
+  private final Condition notEmpty = waitLock.newCondition();
+  private final AtomicInteger numWaitingTakers = new AtomicInteger();
+
+  /**
+   * Create a StripedChute.
+   *
+   * @param numLanes The number of independent lanes.
+   * @param capacityPerLane The maximum number of elements that each lane can hold.
+   */
+  public StripedChute(int numLanes, int capacityPerLane) {
+    checkArgument(numLanes > 0, "numLanes must be at least 1.");
+    checkArgument(capacityPerLane > 0, "Capacity must be at least 1.");
+    @SuppressWarnings("unchecked")
+    Lane<E>[] newLanes = (Lane<E>[]) new Lane<?>[numLanes];
+    for (int i = 0; i < numLanes; i++) {
+      newLanes[i] = new Lane<>(capacityPerLane);
+    }
+    this.lanes = newLanes;
+  }
+
+  /**
+   * Get the number of elements in the chute. Since the lanes are counted one at a time, the result
+   * is only approximate while other threads are putting or taking elements.
+   *
+   * @return The number of elements in all of the lanes.
+   */
+  public int size() {
+    int size = 0;
+    for (Lane<E> lane : lanes) {
+      size += lane.size;
+    }
+    return size;
+  }
+
+  private Lane<E> laneForCurrentThread() {
+    // Thread IDs are sequential, so they are mixed before being reduced to a lane index.
+    long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return lanes[(int) ((hash >>> 32) % lanes.length)];
+  }
+
+  /**
+   * Take an element from the first nonempty lane, starting with a random lane.
+   *
+   * @return The element, or null if all of the lanes were empty.
+   */
+  @Nullable
+  private E poll() {
+    int numLanes = lanes.length;
+    int start = numLanes == 1 ? 0 : ThreadLocalRandom.current().nextInt(numLanes);
+    for (int i = 0; i < numLanes; i++) {
+      Lane<E> lane = lanes[(start + i) % numLanes];
+      if (lane.size > 0) {
+        E element = lane.poll();
+        if (element != null) {
+          return element;
+        }
+      }
+    }
+    return null;
+  }
+
+  private Optional<E> awaitElement(long timeoutNanos, boolean waitForever)
+      throws InterruptedException {
+    E element = poll();
+    if (element != null) {
+      return Optional.of(element);
+    }
+    long remainingNanos = timeoutNanos;
+    numWaitingTakers.incrementAndGet();
+    waitLock.lockInterruptibly();
+    try {
+      while ((element = poll()) == null) {
+        if (isClosedAndEmpty()) {
+          return Optional.empty();
+        }
+        if (waitForever) {
+          notEmpty.await();
+        } else if (remainingNanos <= 0) {
+          return Optional.empty();
+        } else {
+          remainingNanos = notEmpty.awaitNanos(remainingNanos);
+        }
+      }
+      return Optional.of(element);
+    } finally {
+      numWaitingTakers.decrementAndGet();
+      // Each put only wakes one taker, so if this taker is leaving without the element it was woken
+      // for (or there are more elements), another taker has to be woken in its place.
+      if (element == null || size() > 0) {
+        notEmpty.signal();
+      }
+      waitLock.unlock();
+    }
+  }
+
+  private void signalNotEmpty(boolean signalAll) {
+    waitLock.lock();
+    try {
+      if (signalAll) {
+        notEmpty.signalAll();
+      } else {
+        notEmpty.signal();
+      }
+    } finally {
+      waitLock.unlock();
+    }
+  }
+
+  //
+  // Methods from ChuteEntrance
+  //
+
+  @Override
+  public void close() throws InterruptedException {
+    isClosed = true;
+    // Once each lane's lock has been held after isClosed was set, no put can add another element
+    // to that lane. Blocked putters need to throw IllegalStateException.
+    for (Lane<E> lane : lanes) {
+      lane.lock.lock();
+      try {
+        lane.notFull.signalAll();
+      } finally {
+        lane.lock.unlock();
+      }
+    }
+    isSealed = true;
+    // Blocked takers may need to return Optional.empty().
+    signalNotEmpty(true);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return isClosed;
+  }
+
+  @Override
+  public void put(@Nonnull E element) throws InterruptedException {
+    checkNotNull(element, "Null elements are not allowed");
+    Lane<E> lane = laneForCurrentThread();
+    lane.lock.lockInterruptibly();
+    try {
+      while (!isClosed && lane.elements.size() == lane.capacity) {
+        lane.notFull.await();
+      }
+      if (isClosed) {
+        throw new IllegalStateException("Channel is already closed.");
+      }
+      lane.elements.addLast(element);
+      lane.size = lane.elements.size();
+    } finally {
+      lane.lock.unlock();
+    }
+    if (numWaitingTakers.get() > 0) {
+      signalNotEmpty(false);
+    }
+  }
+
+  //
+  // Methods from ChuteExit
+  //
+
+  @Override
+  public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+    return awaitElement(timeoutUnit.toNanos(timeout), false);
+  }
+
+  @Override
+  public Optional<E> tryTakeNow() {
+    return Optional.ofNullable(poll());
+  }
+
+  @Override
+  public Optional<E> take() throws InterruptedException {
+    return awaitElement(0, true);
+  }
+
+  @Override
+  public boolean isClosedAndEmpty() {
+    return isSealed && size() == 0;
+  }
+}
@@ -5,6 +5,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import com.google.common.collect.ImmutableList;
 
 /**
@@ -18,6 +19,8 @@ public final class SynchronousMultiplexer<E> {
   private final AtomicInteger numInputChutesStillOpen;
   private final ImmutableList<ChuteEntrance<E>> inputChutes;
   private final ChuteEntrance<E> outputChute;
+  // Running total of elements put via all inputs, for monitoring.
+  private final LongAdder numPut = new LongAdder();
 
   /**
    * Create a multiplexer with the specified number of inputs, which places elements into the
@@ -79,6 +82,7 @@ public final class SynchronousMultiplexer<E> {
         throw new IllegalStateException("This ChuteEntrance was already closed.");
       }
       outputChute.put(element);
+      numPut.increment();
     }
 
     private SynchronousMultiplexer<?> enclosingInstance() {
@@ -105,9 +109,29 @@ public final class SynchronousMultiplexer<E> {
     }
   }
 
+  //
+  // Monitoring methods, used by SynchronousMultiplexerMonitor
+  //
+
+  int numInputs() {
+    return inputChutes.size();
+  }
+
+  int numInputsStillOpen() {
+    return Math.max(numInputChutesStillOpen.get(), 0);
+  }
+
+  boolean isOutputClosed() {
+    return outputChute.isClosed();
+  }
+
+  long numPut() {
+    return numPut.sum();
+  }
+
   @Override
   public int hashCode() {
-    return Objects.hash(numInputChutesStillOpen, inputChutes, outputChute);
+    return Objects.hash(numInputChutesStillOpen, inputChutes, outputChute, numPut);
   }
 
   @Override
@@ -121,6 +145,7 @@ public final class SynchronousMultiplexer<E> {
     SynchronousMultiplexer<?> otherMux = (SynchronousMultiplexer<?>) other;
     return Objects.equals(otherMux.numInputChutesStillOpen, this.numInputChutesStillOpen)
         && Objects.equals(otherMux.inputChutes, this.inputChutes)
-        && Objects.equals(otherMux.outputChute, this.outputChute);
+        && Objects.equals(otherMux.outputChute, this.outputChute)
+        && Objects.equals(otherMux.numPut, this.numPut);
   }
 }
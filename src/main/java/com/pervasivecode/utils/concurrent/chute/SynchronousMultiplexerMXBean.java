@@ -0,0 +1,37 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+/**
+ * The management interface of a {@link SynchronousMultiplexer} that has been registered with a
+ * {@link ChuteRegistry}, for use by JMX clients such as jconsole.
+ * <p>
+ * All values are snapshots that may already be out of date by the time they are returned, since
+ * the multiplexer may be in use by other threads.
+ */
+public interface SynchronousMultiplexerMXBean {
+  /**
+   * @return The number of input ChuteEntrances provided by the multiplexer.
+   */
+  public int getInputCount();
+
+  /**
+   * @return The number of input ChuteEntrances that have not been closed yet.
+   */
+  public int getOpenInputCount();
+
+  /**
+   * @return Whether the output ChuteEntrance of the multiplexer has been closed.
+   */
+  public boolean isClosed();
+
+  /**
+   * @return The total number of elements that have been put into the multiplexer's inputs. Sampling
+   *         this value periodically yields the throughput of the multiplexer.
+   */
+  public long getPutCount();
+
+  /**
+   * @return Whether the multiplexer has been garbage collected. If true, all of the other
+   *         attributes will have default values.
+   */
+  public boolean isCollected();
+}
@@ -0,0 +1,37 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import java.lang.ref.ReferenceQueue;
+import javax.management.ObjectName;
+
+final class SynchronousMultiplexerMonitor extends RegisteredMonitor<SynchronousMultiplexer<?>>
+    implements SynchronousMultiplexerMXBean {
+
+  public SynchronousMultiplexerMonitor(SynchronousMultiplexer<?> multiplexer,
+      ObjectName objectName, ReferenceQueue<Object> collectedQueue) {
+    super(multiplexer, objectName, collectedQueue);
+  }
+
+  @Override
+  public int getInputCount() {
+    SynchronousMultiplexer<?> multiplexer = get();
+    return multiplexer == null ? 0 : multiplexer.numInputs();
+  }
+
+  @Override
+  public int getOpenInputCount() {
+    SynchronousMultiplexer<?> multiplexer = get();
+    return multiplexer == null ? 0 : multiplexer.numInputsStillOpen();
+  }
+
+  @Override
+  public boolean isClosed() {
+    SynchronousMultiplexer<?> multiplexer = get();
+    return multiplexer == null ? false : multiplexer.isOutputClosed();
+  }
+
+  @Override
+  public long getPutCount() {
+    SynchronousMultiplexer<?> multiplexer = get();
+    return multiplexer == null ? 0 : multiplexer.numPut();
+  }
+}
@@ -0,0 +1,77 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+/**
+ * Carries the origin time of traced elements from the ChuteExit they were taken from to the
+ * ChuteEntrance that the same worker puts the results into, so that end-to-end latency can be
+ * measured across a chain of chutes and workers even though elements are transformed (and
+ * therefore replaced) along the way.
+ * <p>
+ * Origin times are only carried while a thread is running a worker via
+ * {@link #runPropagating(Runnable)}. Elements put by any other thread are treated as entering a
+ * chain of chutes at the time they are put. (Otherwise, a thread that took a traced element long
+ * ago and then put an unrelated element would make that element appear to be much older than it
+ * is.)
+ * <p>
+ * When a worker takes several traced elements before putting a result (as a batching worker does),
+ * the earliest origin time is carried forward.
+ */
+final class TraceContext {
+  private static final long NO_ORIGIN = Long.MAX_VALUE;
+
+  private static final ThreadLocal<TraceContext> current = new ThreadLocal<>();
+
+  private long pendingOriginNanos = NO_ORIGIN;
+
+  private TraceContext() {}
+
+  /**
+   * Run a worker, carrying the origin times of the traced elements it takes to the traced elements
+   * it puts.
+   *
+   * @param worker The worker to run in the current thread.
+   */
+  static void runPropagating(Runnable worker) {
+    TraceContext previous = current.get();
+    current.set(new TraceContext());
+    try {
+      worker.run();
+    } finally {
+      if (previous == null) {
+        current.remove();
+      } else {
+        current.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Remember the origin time of an element that the current thread has taken from a traced chute.
+   *
+   * @param originNanos The time at which the element (or the element it was derived from) was put
+   *        into the first traced chute of the chain.
+   */
+  static void elementTaken(long originNanos) {
+    TraceContext context = current.get();
+    if (context != null) {
+      context.pendingOriginNanos = Math.min(context.pendingOriginNanos, originNanos);
+    }
+  }
+
+  /**
+   * Get the origin time to use for an element that the current thread is putting into a traced
+   * chute, and forget the remembered origin time.
+   *
+   * @param nowNanos The current time, which is used as the origin time if the current thread has
+   *        not taken any traced elements since it last put one.
+   * @return The origin time of the element being put.
+   */
+  static long originForPut(long nowNanos) {
+    TraceContext context = current.get();
+    if (context == null || context.pendingOriginNanos == NO_ORIGIN) {
+      return nowNanos;
+    }
+    long origin = context.pendingOriginNanos;
+    context.pendingOriginNanos = NO_ORIGIN;
+    return origin;
+  }
+}
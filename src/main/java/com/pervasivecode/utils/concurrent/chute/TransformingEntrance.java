@@ -13,6 +13,26 @@ final class TransformingEntrance<S1, S2> implements ChuteEntrance<S1> {
     this.transformer = checkNotNull(transformer);
   }
 
+  /**
+   * Create a TransformingEntrance, or if the receiver is itself a TransformingEntrance, fuse the
+   * two into one TransformingEntrance that applies both functions and puts the results into the
+   * inner receiver, so that a chain of transforming entrances costs one put no matter how long the
+   * chain is.
+   */
+  static <T, V> ChuteEntrance<T> create(ChuteEntrance<V> receiver, Function<T, V> transformer) {
+    checkNotNull(receiver);
+    checkNotNull(transformer);
+    if (receiver instanceof TransformingEntrance) {
+      return fuse((TransformingEntrance<V, ?>) receiver, transformer);
+    }
+    return new TransformingEntrance<T, V>(receiver, transformer);
+  }
+
+  private static <T, V, R> TransformingEntrance<T, R> fuse(TransformingEntrance<V, R> inner,
+      Function<T, V> transformer) {
+    return new TransformingEntrance<T, R>(inner.receiver, transformer.andThen(inner.transformer));
+  }
+
   @Override
   public void close() throws InterruptedException {
     receiver.close();
@@ -11,8 +11,32 @@ final class TransformingExit<S1, S2> implements ChuteExit<S2> {
   private final OptionalTransformer<S1, S2> transformer;
 
   public TransformingExit(ChuteExit<S1> supplier, Function<S1, S2> transformer) {
+    this(supplier, new OptionalTransformer<>(checkNotNull(transformer)));
+  }
+
+  private TransformingExit(ChuteExit<S1> supplier, OptionalTransformer<S1, S2> transformer) {
     this.supplier = checkNotNull(supplier);
-    this.transformer = new OptionalTransformer<>(checkNotNull(transformer));
+    this.transformer = transformer;
+  }
+
+  /**
+   * Create a TransformingExit, or if the supplier is itself a TransformingExit, fuse the two into
+   * one TransformingExit that applies both functions to elements of the inner supplier. This way,
+   * a chain of transforming exits only takes one Optional from the underlying exit and creates one
+   * Optional per element, no matter how long the chain is.
+   */
+  static <T, V> ChuteExit<V> create(ChuteExit<T> supplier, Function<T, V> transformer) {
+    checkNotNull(supplier);
+    checkNotNull(transformer);
+    if (supplier instanceof TransformingExit) {
+      return fuse((TransformingExit<?, T>) supplier, transformer);
+    }
+    return new TransformingExit<T, V>(supplier, transformer);
+  }
+
+  private static <R, T, V> TransformingExit<R, V> fuse(TransformingExit<R, T> inner,
+      Function<T, V> transformer) {
+    return new TransformingExit<R, V>(inner.supplier, inner.transformer.thenApply(transformer));
   }
 
   @Override
@@ -0,0 +1,371 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A group of chutes that share one {@link ChuteEntrance} and give each consumer its own
+ * {@link ChuteExit}, balancing the load between consumers by work stealing.
+ * <p>
+ * Each consumer has a local queue with its own lock, so consumers don't contend with each other
+ * the way that many consumers of one {@link BufferingChute} contend for its take lock. The entrance
+ * distributes elements among the local queues in round-robin order (skipping queues that are
+ * full), and a consumer whose local queue is empty steals half of the elements from the fullest
+ * other queue, so that a slow consumer's backlog is picked up by the others.
+ * <p>
+ * Elements are not taken in the order in which they were put, except that elements put into one
+ * local queue are taken from it in order. Producers block only when every local queue is full, and
+ * consumers block only when every local queue is empty. Once the entrance is closed, each exit
+ * returns {@link Optional#empty()} when all of the local queues are empty.
+ *
+ * @param <E> The type of object that can be sent through the WorkStealingChuteGroup.
+ */
+public final class WorkStealingChuteGroup<E> {
+  /**
+   * A bounded queue with its own lock.
+   */
+  private static final class LocalQueue<E> {
+    private final int index;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock.
+    private final ArrayDeque<E> elements;
+    private final int capacity;
+    // Written while holding lock, and read without it to choose a queue to steal from.
+    private volatile int size = 0;
+
+    LocalQueue(int index, int capacity) {
+      this.index = index;
+      this.capacity = capacity;
+      this.elements = new ArrayDeque<>(capacity);
+    }
+
+    boolean offer(E element) {
+      lock.lock();
+      try {
+        if (elements.size() == capacity) {
+          return false;
+        }
+        elements.addLast(element);
+        size = elements.size();
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Nullable
+    E poll() {
+      lock.lock();
+      try {
+        E element = elements.pollFirst();
+        size = elements.size();
+        return element;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Remove the oldest half of the elements (rounded up) and add them to another queue, returning
+     * the first of them instead of adding it.
+     */
+    @Nullable
+    E stealHalfInto(LocalQueue<E> thief) {
+      // Two consumers can try to steal from each other at once, so the locks are always acquired
+      // in the order of the queues' indexes.
+      ReentrantLock firstLock = index < thief.index ? lock : thief.lock;
+      ReentrantLock secondLock = index < thief.index ? thief.lock : lock;
+      firstLock.lock();
+      secondLock.lock();
+      try {
+        E first = elements.pollFirst();
+        if (first == null) {
+          return null;
+        }
+        int numToMove = elements.size() / 2;
+        for (int i = 0; i < numToMove && thief.elements.size() < thief.capacity; i++) {
+          thief.elements.addLast(elements.pollFirst());
+        }
+        thief.size = thief.elements.size();
+        size = elements.size();
+        return first;
+      } finally {
+        secondLock.unlock();
+        firstLock.unlock();
+      }
+    }
+  }
+
+  private final ImmutableList<LocalQueue<E>> queues;
+  private final ImmutableList<ChuteExit<E>> exits;
+  private final ChuteEntrance<E> entrance = new GroupEntrance();
+  private final AtomicInteger nextQueue = new AtomicInteger();
+  private final LongAdder numSteals = new LongAdder();
+
+  private volatile boolean isClosed = false;
+  // The number of puts that have started but not yet finished, which consumers have to wait for
+  // before they can decide that the group is closed and empty.
+  private final AtomicInteger numPutsInProgress = new AtomicInteger();
+
+  // Used only to park and wake up waiting threads. Threads increment the counters before their last
+  // check of the queues, and the other side only acquires the lock if a counter is nonzero.
+  private final ReentrantLock waitLock = new ReentrantLock();
+  private final Condition notEmpty = waitLock.newCondition();
+  private final Condition notFull = waitLock.newCondition();
+  private final AtomicInteger numWaitingTakers = new AtomicInteger();
+  private final AtomicInteger numWaitingPutters = new AtomicInteger();
+
+  /**
+   * Create a WorkStealingChuteGroup.
+   *
+   * @param numConsumers The number of ChuteExits to provide, one per consumer.
+   * @param capacityPerConsumer The maximum number of elements that each consumer's local queue can
+   *        hold.
+   */
+  public WorkStealingChuteGroup(int numConsumers, int capacityPerConsumer) {
+    checkArgument(numConsumers > 0, "numConsumers must be at least 1.");
+    checkArgument(capacityPerConsumer > 0, "Capacity must be at least 1.");
+    ImmutableList.Builder<LocalQueue<E>> queuesBuilder = ImmutableList.builder();
+    ImmutableList.Builder<ChuteExit<E>> exitsBuilder = ImmutableList.builder();
+    for (int i = 0; i < numConsumers; i++) {
+      LocalQueue<E> queue = new LocalQueue<>(i, capacityPerConsumer);
+      queuesBuilder.add(queue);
+      exitsBuilder.add(new ConsumerExit(queue));
+    }
+    this.queues = queuesBuilder.build();
+    this.exits = exitsBuilder.build();
+  }
+
+  /**
+   * Get the ChuteEntrance into which producers put elements for all of the consumers.
+   *
+   * @return The entrance.
+   */
+  public ChuteEntrance<E> entrance() {
+    return entrance;
+  }
+
+  /**
+   * Get the ChuteExits from which consumers take elements, one per consumer. Each exit should only
+   * be used by its own consumer.
+   *
+   * @return A list of the exits.
+   */
+  public List<ChuteExit<E>> exits() {
+    return exits;
+  }
+
+  /**
+   * Get the number of times that a consumer has stolen elements from another consumer's queue.
+   *
+   * @return The number of steals.
+   */
+  public long numSteals() {
+    return numSteals.sum();
+  }
+
+  private void signal(AtomicInteger numWaiting, Condition condition) {
+    if (numWaiting.get() > 0) {
+      waitLock.lock();
+      try {
+        condition.signalAll();
+      } finally {
+        waitLock.unlock();
+      }
+    }
+  }
+
+  private boolean areAllQueuesEmpty() {
+    for (LocalQueue<E> queue : queues) {
+      if (queue.size > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isClosedAndEmpty() {
+    return isClosed && numPutsInProgress.get() == 0 && areAllQueuesEmpty();
+  }
+
+  final class GroupEntrance implements ChuteEntrance<E> {
+    @Override
+    public void close() throws InterruptedException {
+      waitLock.lockInterruptibly();
+      try {
+        isClosed = true;
+        // Blocked putters need to throw IllegalStateException, and blocked takers may need to
+        // return Optional.empty().
+        notFull.signalAll();
+        notEmpty.signalAll();
+      } finally {
+        waitLock.unlock();
+      }
+    }
+
+    @Override
+    public boolean isClosed() {
+      return isClosed;
+    }
+
+    /**
+     * Put the element into the first queue that has room, starting with the next queue in
+     * round-robin order.
+     *
+     * @return false if all of the queues were full.
+     */
+    private boolean offer(E element) {
+      int numQueues = queues.size();
+      int first = Math.floorMod(nextQueue.getAndIncrement(), numQueues);
+      for (int i = 0; i < numQueues; i++) {
+        if (queues.get((first + i) % numQueues).offer(element)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public void put(@Nonnull E element) throws InterruptedException {
+      checkNotNull(element, "Null elements are not allowed");
+      numPutsInProgress.incrementAndGet();
+      try {
+        if (isClosed) {
+          throw new IllegalStateException("Channel is already closed.");
+        }
+        if (!offer(element)) {
+          awaitRoomAndOffer(element);
+        }
+      } finally {
+        numPutsInProgress.decrementAndGet();
+        signal(numWaitingTakers, notEmpty);
+      }
+    }
+
+    private void awaitRoomAndOffer(E element) throws InterruptedException {
+      numWaitingPutters.incrementAndGet();
+      waitLock.lockInterruptibly();
+      try {
+        while (!offer(element)) {
+          if (isClosed) {
+            throw new IllegalStateException("Channel is already closed.");
+          }
+          notFull.await();
+        }
+      } finally {
+        numWaitingPutters.decrementAndGet();
+        waitLock.unlock();
+      }
+    }
+  }
+
+  final class ConsumerExit implements ChuteExit<E> {
+    private final LocalQueue<E> localQueue;
+
+    ConsumerExit(LocalQueue<E> localQueue) {
+      this.localQueue = localQueue;
+    }
+
+    /**
+     * Take an element from the local queue, or steal some from the fullest other queue if the local
+     * queue is empty.
+     *
+     * @return The element, or null if all of the queues were empty.
+     */
+    @Nullable
+    private E poll() {
+      E element = localQueue.poll();
+      if (element == null) {
+        element = steal();
+      }
+      if (element != null) {
+        signal(numWaitingPutters, notFull);
+      }
+      return element;
+    }
+
+    @Nullable
+    private E steal() {
+      while (true) {
+        LocalQueue<E> victim = null;
+        int victimSize = 0;
+        for (LocalQueue<E> queue : queues) {
+          int size = queue.size;
+          if (queue != localQueue && size > victimSize) {
+            victim = queue;
+            victimSize = size;
+          }
+        }
+        if (victim == null) {
+          return null;
+        }
+        E element = victim.stealHalfInto(localQueue);
+        if (element != null) {
+          numSteals.increment();
+          return element;
+        }
+        // The victim's owner took its elements first, so look for another victim.
+      }
+    }
+
+    private Optional<E> awaitElement(long timeoutNanos, boolean waitForever)
+        throws InterruptedException {
+      E element = poll();
+      if (element != null) {
+        return Optional.of(element);
+      }
+      long remainingNanos = timeoutNanos;
+      numWaitingTakers.incrementAndGet();
+      waitLock.lockInterruptibly();
+      try {
+        while ((element = poll()) == null) {
+          if (WorkStealingChuteGroup.this.isClosedAndEmpty()) {
+            return Optional.empty();
+          }
+          if (waitForever) {
+            notEmpty.await();
+          } else if (remainingNanos <= 0) {
+            return Optional.empty();
+          } else {
+            remainingNanos = notEmpty.awaitNanos(remainingNanos);
+          }
+        }
+        return Optional.of(element);
+      } finally {
+        numWaitingTakers.decrementAndGet();
+        waitLock.unlock();
+      }
+    }
+
+    @Override
+    public Optional<E> tryTake(long timeout, TimeUnit timeoutUnit) throws InterruptedException {
+      return awaitElement(timeoutUnit.toNanos(timeout), false);
+    }
+
+    @Override
+    public Optional<E> tryTakeNow() {
+      return Optional.ofNullable(poll());
+    }
+
+    @Override
+    public Optional<E> take() throws InterruptedException {
+      return awaitElement(0, true);
+    }
+
+    @Override
+    public boolean isClosedAndEmpty() {
+      return WorkStealingChuteGroup.this.isClosedAndEmpty();
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+/**
+ * The management interface of a worker {@link Runnable} that has been registered with a
+ * {@link ChuteRegistry}, for use by JMX clients such as jconsole.
+ * <p>
+ * All values are snapshots that may already be out of date by the time they are returned.
+ */
+public interface WorkerMXBean {
+  /**
+   * @return The number of threads that are currently running the worker.
+   */
+  public int getActiveThreadCount();
+
+  /**
+   * @return The number of threads running the worker that are currently blocked or waiting, such
+   *         as a worker that is blocked taking from an empty ChuteExit or putting into a full
+   *         ChuteEntrance.
+   */
+  public int getBlockedThreadCount();
+
+  /**
+   * @return The number of times the worker has run to completion without throwing an exception.
+   */
+  public long getCompletedRunCount();
+
+  /**
+   * @return The number of times the worker has stopped by throwing an exception.
+   */
+  public long getFailedRunCount();
+
+  /**
+   * @return Whether the worker has been garbage collected. If true, all of the other attributes
+   *         will have default values.
+   */
+  public boolean isCollected();
+}
@@ -1,9 +1,20 @@
 package com.pervasivecode.utils.concurrent.chute;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import com.google.common.hash.Hashing;
 import com.pervasivecode.utils.time.TimeSource;
 
 /**
@@ -69,7 +80,7 @@ public class Workers {
     checkNotNull(input);
     checkNotNull(output);
     checkNotNull(converter);
-    return () -> {
+    return () -> TraceContext.runPropagating(() -> {
       try {
         for (T inputElement : Chutes.asIterable(input)) {
           output.put(converter.apply(inputElement));
@@ -82,7 +93,84 @@ public class Workers {
       } catch (@SuppressWarnings("unused") InterruptedException e) {
         // Just stop processing and exit.
       }
-    };
+    });
+  }
+
+  /**
+   * Create a Runnable worker that will take elements from a ChuteExit and put the ones that match
+   * a predicate into a ChuteEntrance, discarding the rest, until the ChuteExit is closed (or the
+   * Runnable worker is interrupted).
+   *
+   * @param input The ChuteExit from which elements should be taken.
+   * @param output The ChuteEntrance into which the matching elements should be put.
+   * @param predicate The predicate that elements must match in order to be put into the output.
+   * @param closeOutputWhenDone If true, when the input ChuteExit closes and the last matching
+   *        element has been placed into the output ChuteEntrance, the worker will close the output
+   *        ChuteEntrance.
+   * @param <T> The type of object that the input chute emits and the output chute accepts.
+   *
+   * @return A Runnable worker that will perform the specified filtering and optional closing of the
+   *         output ChuteEntrance.
+   */
+  public static <T> Runnable filteringWorker(ChuteExit<T> input, ChuteEntrance<T> output,
+      Predicate<? super T> predicate, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkNotNull(predicate);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        for (T inputElement : Chutes.asIterable(input)) {
+          if (predicate.test(inputElement)) {
+            output.put(inputElement);
+          }
+        }
+        if (closeOutputWhenDone && input.isClosedAndEmpty()) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
+  }
+
+  /**
+   * Create a Runnable worker that will apply a function to each element from a ChuteExit, and put
+   * each of the resulting elements into a ChuteEntrance, until the ChuteExit is closed (or the
+   * Runnable worker is interrupted). The function may produce any number of results for an
+   * element, including none.
+   *
+   * @param input The ChuteExit from which elements should be taken.
+   * @param output The ChuteEntrance into which the resulting elements should be put.
+   * @param mapper The function that produces the output elements for an input element.
+   * @param closeOutputWhenDone If true, when the input ChuteExit closes and the last resulting
+   *        element has been placed into the output ChuteEntrance, the worker will close the output
+   *        ChuteEntrance.
+   * @param <T> The type of object that the input chute emits, and the input type of the mapper.
+   * @param <V> The type of object that the mapper produces Iterables of, and the type of the output
+   *        chute.
+   *
+   * @return A Runnable worker that will perform the specified mapping and optional closing of the
+   *         output ChuteEntrance.
+   */
+  public static <T, V> Runnable flatMappingWorker(ChuteExit<T> input, ChuteEntrance<V> output,
+      Function<? super T, ? extends Iterable<? extends V>> mapper, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkNotNull(mapper);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        for (T inputElement : Chutes.asIterable(input)) {
+          for (V outputElement : mapper.apply(inputElement)) {
+            output.put(outputElement);
+          }
+        }
+        if (closeOutputWhenDone && input.isClosedAndEmpty()) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
   }
 
   /**
@@ -111,4 +199,318 @@ public class Workers {
       int maxBatchSize, boolean closeOutputWhenDone) {
     return new BatchingWorker<I>(input, output, maxBatchSize, closeOutputWhenDone);
   }
+
+  /**
+   * Returns a Runnable that will take all of the elements from the input ChuteExit, and put each
+   * one into the output ChuteEntrance chosen by a partition function, such as one output per
+   * worker that handles a shard of the elements.
+   * <p>
+   * Elements routed to the same output are collected into batches of up to the specified size,
+   * which are put into that output together, so that the worker doesn't switch between outputs for
+   * every element. Partial batches are put into their outputs whenever no more input elements are
+   * immediately available, so elements don't wait in a batch while the input is idle. Elements
+   * routed to the same output are put into it in the order in which they were taken.
+   *
+   * @param input The ChuteExit from which elements should be taken.
+   * @param outputs The ChuteEntrances into which elements should be routed.
+   * @param partitioner A function that returns the index in the outputs list of the ChuteEntrance
+   *        to which an element should be routed.
+   * @param maxBatchSize The maximum number of elements routed to one output that are held before
+   *        being put into it.
+   * @param closeOutputsWhenDone If true, when the input ChuteExit closes and the last element has
+   *        been put into its output, the worker will close all of the output ChuteEntrances.
+   * @param <E> The type of object that the input chute emits and the output chutes accept.
+   *
+   * @return A Runnable worker that will do the specified routing work and optional closing of the
+   *         output chutes.
+   */
+  public static <E> Runnable partitioningWorker(ChuteExit<E> input,
+      List<? extends ChuteEntrance<E>> outputs, ToIntFunction<? super E> partitioner,
+      int maxBatchSize, boolean closeOutputsWhenDone) {
+    return new PartitioningWorker<>(input, outputs, partitioner, maxBatchSize,
+        closeOutputsWhenDone);
+  }
+
+  /**
+   * Returns a Runnable that will take all of the elements from the input ChuteExit, and route each
+   * one to an output ChuteEntrance chosen by consistent hashing of the element's key, so that all
+   * elements with the same key reach the same output. If the number of outputs changes (for
+   * example, when a sharded pipeline is reconfigured with another worker), consistent hashing
+   * keeps most keys routed to the same output as before.
+   * <p>
+   * Batching and closing work as described for
+   * {@link #partitioningWorker(ChuteExit, List, ToIntFunction, int, boolean)}.
+   *
+   * @param input The ChuteExit from which elements should be taken.
+   * @param outputs The ChuteEntrances into which elements should be routed.
+   * @param keyExtractor A function that returns the key of an element. Keys must have consistent
+   *        {@link Object#hashCode() hashCode} methods, and must not be null.
+   * @param maxBatchSize The maximum number of elements routed to one output that are held before
+   *        being put into it.
+   * @param closeOutputsWhenDone If true, when the input ChuteExit closes and the last element has
+   *        been put into its output, the worker will close all of the output ChuteEntrances.
+   * @param <E> The type of object that the input chute emits and the output chutes accept.
+   *
+   * @return A Runnable worker that will do the specified routing work and optional closing of the
+   *         output chutes.
+   */
+  public static <E> Runnable keyPartitioningWorker(ChuteExit<E> input,
+      List<? extends ChuteEntrance<E>> outputs, Function<? super E, ?> keyExtractor,
+      int maxBatchSize, boolean closeOutputsWhenDone) {
+    checkNotNull(keyExtractor);
+    int numOutputs = outputs.size();
+    ToIntFunction<E> partitioner =
+        e -> Hashing.consistentHash(keyExtractor.apply(e).hashCode(), numOutputs);
+    return new PartitioningWorker<>(input, outputs, partitioner, maxBatchSize,
+        closeOutputsWhenDone);
+  }
+
+  /**
+   * Create a Runnable worker that will transform long values from a LongChuteExit using a
+   * function, putting the resulting values into a LongChuteEntrance, until the LongChuteExit is
+   * closed (or the Runnable worker is interrupted). Values are not boxed.
+   *
+   * @param input The LongChuteExit from which values should be taken.
+   * @param output The LongChuteEntrance into which the transformed values should be put.
+   * @param converter The function that transforms input values into output values.
+   * @param closeOutputWhenDone If true, when the input LongChuteExit closes and the last
+   *        transformed value has been placed into the output LongChuteEntrance, the worker will
+   *        close the output LongChuteEntrance.
+   *
+   * @return A Runnable worker that will perform the specified transformation and optional closing
+   *         of the output LongChuteEntrance.
+   * @see #transformingWorker(ChuteExit, ChuteEntrance, Function, boolean)
+   */
+  public static Runnable longTransformingWorker(LongChuteExit input, LongChuteEntrance output,
+      LongUnaryOperator converter, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkNotNull(converter);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        OptionalLong taken;
+        while ((taken = input.take()).isPresent()) {
+          output.put(converter.applyAsLong(taken.getAsLong()));
+        }
+        if (closeOutputWhenDone) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
+  }
+
+  /**
+   * Returns a Runnable that will take all of the values from the input LongChuteExit, group them
+   * into long[] batches of the specified size, and put them in the output ChuteEntrance. Values are
+   * taken in bulk via {@link LongChuteExit#drainTo(long[], int, int)}, and are not boxed.
+   *
+   * @param input The source of values to be collected into batches.
+   * @param output The chute into which batches of values will be placed.
+   * @param maxBatchSize The maximum size of each batch. The last batch (created when the input
+   *        chute is closed and empty) may be smaller than this size; all others will be exactly
+   *        this size.
+   * @param closeOutputWhenDone Whether to close the output chute after the last batch has been
+   *        sent.
+   *
+   * @return A Runnable worker that will do the specified batching work and optional closing of the
+   *         output chute.
+   * @see #batchingWorker(ChuteExit, ChuteEntrance, int, boolean)
+   */
+  public static Runnable longBatchingWorker(LongChuteExit input, ChuteEntrance<long[]> output,
+      int maxBatchSize, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be greater than 0. Got %s", maxBatchSize);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        long[] batch = new long[maxBatchSize];
+        int batchLength = 0;
+        int numTaken;
+        while ((numTaken = input.drainTo(batch, batchLength, maxBatchSize - batchLength)) > 0) {
+          batchLength += numTaken;
+          if (batchLength == maxBatchSize) {
+            output.put(batch);
+            batch = new long[maxBatchSize];
+            batchLength = 0;
+          }
+        }
+        if (batchLength > 0) {
+          output.put(Arrays.copyOf(batch, batchLength));
+        }
+        if (closeOutputWhenDone) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
+  }
+
+  /**
+   * Create a Runnable worker that will transform int values from an IntChuteExit using a function,
+   * putting the resulting values into an IntChuteEntrance, until the IntChuteExit is closed (or the
+   * Runnable worker is interrupted). Values are not boxed.
+   *
+   * @param input The IntChuteExit from which values should be taken.
+   * @param output The IntChuteEntrance into which the transformed values should be put.
+   * @param converter The function that transforms input values into output values.
+   * @param closeOutputWhenDone If true, when the input IntChuteExit closes and the last
+   *        transformed value has been placed into the output IntChuteEntrance, the worker will
+   *        close the output IntChuteEntrance.
+   *
+   * @return A Runnable worker that will perform the specified transformation and optional closing
+   *         of the output IntChuteEntrance.
+   * @see #transformingWorker(ChuteExit, ChuteEntrance, Function, boolean)
+   */
+  public static Runnable intTransformingWorker(IntChuteExit input, IntChuteEntrance output,
+      IntUnaryOperator converter, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkNotNull(converter);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        OptionalInt taken;
+        while ((taken = input.take()).isPresent()) {
+          output.put(converter.applyAsInt(taken.getAsInt()));
+        }
+        if (closeOutputWhenDone) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
+  }
+
+  /**
+   * Returns a Runnable that will take all of the values from the input IntChuteExit, group them
+   * into int[] batches of the specified size, and put them in the output ChuteEntrance. Values are
+   * taken in bulk via {@link IntChuteExit#drainTo(int[], int, int)}, and are not boxed.
+   *
+   * @param input The source of values to be collected into batches.
+   * @param output The chute into which batches of values will be placed.
+   * @param maxBatchSize The maximum size of each batch. The last batch (created when the input
+   *        chute is closed and empty) may be smaller than this size; all others will be exactly
+   *        this size.
+   * @param closeOutputWhenDone Whether to close the output chute after the last batch has been
+   *        sent.
+   *
+   * @return A Runnable worker that will do the specified batching work and optional closing of the
+   *         output chute.
+   * @see #batchingWorker(ChuteExit, ChuteEntrance, int, boolean)
+   */
+  public static Runnable intBatchingWorker(IntChuteExit input, ChuteEntrance<int[]> output,
+      int maxBatchSize, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be greater than 0. Got %s", maxBatchSize);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        int[] batch = new int[maxBatchSize];
+        int batchLength = 0;
+        int numTaken;
+        while ((numTaken = input.drainTo(batch, batchLength, maxBatchSize - batchLength)) > 0) {
+          batchLength += numTaken;
+          if (batchLength == maxBatchSize) {
+            output.put(batch);
+            batch = new int[maxBatchSize];
+            batchLength = 0;
+          }
+        }
+        if (batchLength > 0) {
+          output.put(Arrays.copyOf(batch, batchLength));
+        }
+        if (closeOutputWhenDone) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
+  }
+
+  /**
+   * Create a Runnable worker that will transform double values from a DoubleChuteExit using a
+   * function, putting the resulting values into a DoubleChuteEntrance, until the DoubleChuteExit is
+   * closed (or the Runnable worker is interrupted). Values are not boxed.
+   *
+   * @param input The DoubleChuteExit from which values should be taken.
+   * @param output The DoubleChuteEntrance into which the transformed values should be put.
+   * @param converter The function that transforms input values into output values.
+   * @param closeOutputWhenDone If true, when the input DoubleChuteExit closes and the last
+   *        transformed value has been placed into the output DoubleChuteEntrance, the worker will
+   *        close the output DoubleChuteEntrance.
+   *
+   * @return A Runnable worker that will perform the specified transformation and optional closing
+   *         of the output DoubleChuteEntrance.
+   * @see #transformingWorker(ChuteExit, ChuteEntrance, Function, boolean)
+   */
+  public static Runnable doubleTransformingWorker(DoubleChuteExit input,
+      DoubleChuteEntrance output, DoubleUnaryOperator converter, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkNotNull(converter);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        OptionalDouble taken;
+        while ((taken = input.take()).isPresent()) {
+          output.put(converter.applyAsDouble(taken.getAsDouble()));
+        }
+        if (closeOutputWhenDone) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
+  }
+
+  /**
+   * Returns a Runnable that will take all of the values from the input DoubleChuteExit, group them
+   * into double[] batches of the specified size, and put them in the output ChuteEntrance. Values
+   * are taken in bulk via {@link DoubleChuteExit#drainTo(double[], int, int)}, and are not boxed.
+   *
+   * @param input The source of values to be collected into batches.
+   * @param output The chute into which batches of values will be placed.
+   * @param maxBatchSize The maximum size of each batch. The last batch (created when the input
+   *        chute is closed and empty) may be smaller than this size; all others will be exactly
+   *        this size.
+   * @param closeOutputWhenDone Whether to close the output chute after the last batch has been
+   *        sent.
+   *
+   * @return A Runnable worker that will do the specified batching work and optional closing of the
+   *         output chute.
+   * @see #batchingWorker(ChuteExit, ChuteEntrance, int, boolean)
+   */
+  public static Runnable doubleBatchingWorker(DoubleChuteExit input,
+      ChuteEntrance<double[]> output, int maxBatchSize, boolean closeOutputWhenDone) {
+    checkNotNull(input);
+    checkNotNull(output);
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be greater than 0. Got %s", maxBatchSize);
+    return () -> TraceContext.runPropagating(() -> {
+      try {
+        double[] batch = new double[maxBatchSize];
+        int batchLength = 0;
+        int numTaken;
+        while ((numTaken = input.drainTo(batch, batchLength, maxBatchSize - batchLength)) > 0) {
+          batchLength += numTaken;
+          if (batchLength == maxBatchSize) {
+            output.put(batch);
+            batch = new double[maxBatchSize];
+            batchLength = 0;
+          }
+        }
+        if (batchLength > 0) {
+          output.put(Arrays.copyOf(batch, batchLength));
+        }
+        if (closeOutputWhenDone) {
+          output.close();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        // Just stop processing and exit.
+      }
+    });
+  }
 }
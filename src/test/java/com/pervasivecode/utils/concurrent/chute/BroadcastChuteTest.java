@@ -0,0 +1,202 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAllAvailable;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class BroadcastChuteTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroCapacity_shouldThrow() {
+    new BroadcastChute<String>(0, LagPolicy.BLOCK);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullPolicy_shouldThrow() {
+    new BroadcastChute<String>(1, null);
+  }
+
+  @Test
+  public void put_shouldDeliverEachElementToEverySubscriber() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(4, LagPolicy.BLOCK);
+    chute.put("before");
+    BroadcastChute.Subscription<String> indexer = chute.subscribe();
+    BroadcastChute.Subscription<String> archiver = chute.subscribe();
+    assertThat(chute.numSubscribers()).isEqualTo(2);
+    chute.put("a");
+    chute.put("b");
+    assertThat(takeAllAvailable(indexer)).containsExactly("a", "b").inOrder();
+    chute.put("c");
+    assertThat(takeAllAvailable(archiver)).containsExactly("a", "b", "c").inOrder();
+    assertThat(takeAllAvailable(indexer)).containsExactly("c");
+  }
+
+  @Test
+  public void take_byEverySubscriber_shouldReleaseElement() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(4, LagPolicy.BLOCK);
+    chute.put("unsubscribed");
+    assertThat(chute.numRetainedElements()).isEqualTo(0);
+
+    BroadcastChute.Subscription<String> fast = chute.subscribe();
+    BroadcastChute.Subscription<String> slow = chute.subscribe();
+    chute.put("a");
+    chute.put("b");
+    assertThat(takeAllAvailable(fast)).containsExactly("a", "b").inOrder();
+    assertThat(chute.numRetainedElements()).isEqualTo(2);
+    assertThat(slow.take()).isEqualTo(Optional.of("a"));
+    assertThat(chute.numRetainedElements()).isEqualTo(1);
+    slow.unsubscribe();
+    assertThat(chute.numRetainedElements()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_withDropOldestPolicy_shouldReleaseSkippedElements() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(2, LagPolicy.DROP_OLDEST);
+    BroadcastChute.Subscription<String> fast = chute.subscribe();
+    BroadcastChute.Subscription<String> slow = chute.subscribe();
+    for (String element : new String[] {"a", "b", "c", "d"}) {
+      chute.put(element);
+      assertThat(fast.take()).isEqualTo(Optional.of(element));
+    }
+    assertThat(chute.numRetainedElements()).isEqualTo(2);
+    assertThat(takeAllAvailable(slow)).containsExactly("c", "d").inOrder();
+    assertThat(chute.numRetainedElements()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_withBlockPolicy_shouldWaitForSlowestSubscriber() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(2, LagPolicy.BLOCK);
+    BroadcastChute.Subscription<String> fast = chute.subscribe();
+    BroadcastChute.Subscription<String> slow = chute.subscribe();
+    chute.put("a");
+    chute.put("b");
+    assertThat(takeAllAvailable(fast)).containsExactly("a", "b").inOrder();
+
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("c");
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(slow.take()).isEqualTo(Optional.of("a"));
+    putResult.get(1, SECONDS);
+    assertThat(takeAllAvailable(slow)).containsExactly("b", "c").inOrder();
+    assertThat(slow.numDropped()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_withBlockPolicy_shouldBeReleasedWhenSlowSubscriberUnsubscribes()
+      throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(1, LagPolicy.BLOCK);
+    BroadcastChute.Subscription<String> slow = chute.subscribe();
+    chute.put("a");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("b");
+      return null;
+    });
+    assertStillRunning(putResult);
+    slow.unsubscribe();
+    putResult.get(1, SECONDS);
+    assertThat(slow.isDisconnected()).isTrue();
+    assertThat(slow.isClosedAndEmpty()).isTrue();
+    assertThat(slow.take()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void put_withDropOldestPolicy_shouldMakeSlowSubscriberSkipElements() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(2, LagPolicy.DROP_OLDEST);
+    BroadcastChute.Subscription<String> fast = chute.subscribe();
+    BroadcastChute.Subscription<String> slow = chute.subscribe();
+    for (String element : new String[] {"a", "b", "c", "d"}) {
+      chute.put(element);
+      assertThat(fast.take()).isEqualTo(Optional.of(element));
+    }
+    assertThat(takeAllAvailable(slow)).containsExactly("c", "d").inOrder();
+    assertThat(slow.numDropped()).isEqualTo(2);
+    assertThat(fast.numDropped()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_withDisconnectPolicy_shouldDisconnectSlowSubscriber() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(2, LagPolicy.DISCONNECT);
+    BroadcastChute.Subscription<String> fast = chute.subscribe();
+    BroadcastChute.Subscription<String> slow = chute.subscribe();
+    chute.put("a");
+    chute.put("b");
+    assertThat(takeAllAvailable(fast)).containsExactly("a", "b").inOrder();
+    chute.put("c");
+    assertThat(slow.isDisconnected()).isTrue();
+    assertThat(slow.take()).isEqualTo(Optional.empty());
+    assertThat(chute.numSubscribers()).isEqualTo(1);
+    assertThat(fast.take()).isEqualTo(Optional.of("c"));
+    assertThat(fast.isDisconnected()).isFalse();
+  }
+
+  @Test
+  public void take_whenDisconnectedWhileBlocked_shouldReturnEmpty() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(2, LagPolicy.BLOCK);
+    BroadcastChute.Subscription<String> subscription = chute.subscribe();
+    Future<Optional<String>> takeResult = executorService.submit(() -> subscription.take());
+    assertStillRunning(takeResult);
+    subscription.unsubscribe();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void close_shouldLetSubscribersTakeRemainingElementsThenReturnEmpty() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(2, LagPolicy.BLOCK);
+    BroadcastChute.Subscription<String> subscription = chute.subscribe();
+    Future<Optional<String>> takeResult = executorService.submit(() -> {
+      subscription.take();
+      return subscription.take();
+    });
+    chute.put("a");
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+    assertThat(subscription.isClosedAndEmpty()).isTrue();
+    assertThat(subscription.tryTake(1, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(chute.subscribe().isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    BroadcastChute<String> chute = new BroadcastChute<>(1, LagPolicy.BLOCK);
+    chute.subscribe();
+    chute.put("a");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("b");
+      return null;
+    });
+    assertStillRunning(putResult);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+}
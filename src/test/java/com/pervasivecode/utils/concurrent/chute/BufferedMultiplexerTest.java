@@ -0,0 +1,185 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+import com.pervasivecode.utils.time.testing.FakeNanoSource;
+
+public class BufferedMultiplexerTest {
+  private FakeNanoSource nanosSource;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() {
+    nanosSource = new FakeNanoSource();
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroInputs_shouldThrow() {
+    new BufferedMultiplexer<>(0, 4, 4, new BufferingChute<String>(10, nanosSource));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroBufferSize_shouldThrow() {
+    new BufferedMultiplexer<>(1, 0, 4, new BufferingChute<String>(10, nanosSource));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroBatchSize_shouldThrow() {
+    new BufferedMultiplexer<>(1, 4, 0, new BufferingChute<String>(10, nanosSource));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullOutputChute_shouldThrow() {
+    new BufferedMultiplexer<String>(1, 4, 4, null);
+  }
+
+  @Test
+  public void inputChutes_shouldForwardAllElementsAndCloseOutputWhenAllInputsAreClosed()
+      throws Exception {
+    BufferingChute<Integer> output = new BufferingChute<>(10, nanosSource);
+    BufferedMultiplexer<Integer> mux = new BufferedMultiplexer<>(3, 4, 2, output);
+    List<ChuteEntrance<Integer>> inputs = mux.inputChutes();
+    assertThat(inputs).hasSize(3);
+
+    List<Future<?>> putResults = new ArrayList<>();
+    for (int i = 0; i < inputs.size(); i++) {
+      ChuteEntrance<Integer> input = inputs.get(i);
+      int base = i * 1000;
+      putResults.add(executorService.submit(() -> {
+        for (int j = 0; j < 100; j++) {
+          input.put(base + j);
+        }
+        input.close();
+        return null;
+      }));
+    }
+    List<Integer> taken = takeAll(output);
+    for (Future<?> putResult : putResults) {
+      putResult.get(1, SECONDS);
+    }
+
+    assertThat(taken).hasSize(300);
+    for (int i = 0; i < 3; i++) {
+      // Elements from each input keep their relative order.
+      List<Integer> fromInput = new ArrayList<>();
+      for (Integer element : taken) {
+        if (element / 1000 == i) {
+          fromInput.add(element);
+        }
+      }
+      assertThat(fromInput).hasSize(100);
+      for (int j = 0; j < 100; j++) {
+        assertThat(fromInput.get(j)).isEqualTo(i * 1000 + j);
+      }
+    }
+    assertThat(output.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void output_shouldStayOpenUntilTheLastInputIsClosed() throws Exception {
+    BufferingChute<String> output = new BufferingChute<>(10, nanosSource);
+    BufferedMultiplexer<String> mux = new BufferedMultiplexer<>(2, 4, 4, output);
+    mux.inputChutes().get(0).close();
+    assertThat(output.tryTake(50, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(output.isClosed()).isFalse();
+
+    mux.inputChutes().get(1).put("a");
+    mux.inputChutes().get(1).close();
+    assertThat(output.tryTake(1, SECONDS)).isEqualTo(Optional.of("a"));
+    assertThat(output.take()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void mergeThread_shouldTakeBatchesFromInputsInRoundRobinOrder() throws Exception {
+    BufferingChute<String> output = new BufferingChute<>(1, nanosSource);
+    // Fill the output so that the merge thread blocks while forwarding the first element.
+    output.put("x");
+    BufferedMultiplexer<String> mux = new BufferedMultiplexer<>(2, 4, 1, output);
+    ChuteEntrance<String> input0 = mux.inputChutes().get(0);
+    ChuteEntrance<String> input1 = mux.inputChutes().get(1);
+    input0.put("a1");
+    Thread.sleep(50);
+    input0.put("a2");
+    input0.put("a3");
+    input1.put("b1");
+    input1.put("b2");
+    input0.close();
+    input1.close();
+
+    assertThat(takeAll(output)).containsExactly("x", "a1", "b1", "a2", "b2", "a3").inOrder();
+  }
+
+  @Test
+  public void put_whenInputBufferIsFull_shouldBlockUntilMergeThreadMakesRoom() throws Exception {
+    BufferingChute<String> output = new BufferingChute<>(1, nanosSource);
+    output.put("x");
+    BufferedMultiplexer<String> mux = new BufferedMultiplexer<>(1, 1, 1, output);
+    ChuteEntrance<String> input = mux.inputChutes().get(0);
+    // One element is held by the blocked merge thread, and one fills the input buffer.
+    input.put("a");
+    Thread.sleep(50);
+    input.put("b");
+    Future<?> putResult = executorService.submit(() -> {
+      input.put("c");
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(output.take()).isEqualTo(Optional.of("x"));
+    putResult.get(1, SECONDS);
+    input.close();
+    assertThat(takeAll(output)).containsExactly("a", "b", "c").inOrder();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    BufferedMultiplexer<String> mux =
+        new BufferedMultiplexer<>(2, 4, 4, new BufferingChute<>(10, nanosSource));
+    ChuteEntrance<String> input = mux.inputChutes().get(0);
+    input.close();
+    assertThat(input.isClosed()).isTrue();
+    input.put("a");
+  }
+
+  @Test
+  public void put_whenOutputIsClosedExternally_shouldThrow() throws Exception {
+    BufferingChute<String> output = new BufferingChute<>(10, nanosSource);
+    BufferedMultiplexer<String> mux = new BufferedMultiplexer<>(1, 1, 1, output);
+    ChuteEntrance<String> input = mux.inputChutes().get(0);
+    output.close();
+    // The merge thread finds out that the output is closed when it tries to forward an element.
+    input.put("a");
+    Future<?> putResult = executorService.submit(() -> {
+      while (true) {
+        input.put("b");
+      }
+    });
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected put to fail once the output was closed.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    assertThat(input.isClosed()).isTrue();
+  }
+}
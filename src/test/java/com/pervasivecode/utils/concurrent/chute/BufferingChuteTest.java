@@ -10,6 +10,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -452,6 +454,154 @@ public class BufferingChuteTest {
     es.shutdownNow();
   }
 
+  // --------------------------------------------------------------------------
+  //
+  // Tests for latency tracing
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void latencyHistograms_withoutTracing_shouldBeAbsent() {
+    BufferingChute<String> c = new BufferingChute<>(1, currentNanoSource);
+    assertThat(c.residenceTimes().isPresent()).isFalse();
+    assertThat(c.endToEndTimes().isPresent()).isFalse();
+  }
+
+  @Test
+  public void latencyHistograms_withTracing_shouldRecordTimeInChute() throws Exception {
+    AtomicLong clock = new AtomicLong(1_000);
+    BufferingChute<String> c = new BufferingChute<>(2, () -> clock.get(), true);
+
+    c.put("a");
+    clock.addAndGet(100);
+    c.put("b");
+    clock.addAndGet(100);
+    assertThat(c.take().get()).isEqualTo("a");
+    clock.addAndGet(100);
+    assertThat(c.tryTake(1, SECONDS).get()).isEqualTo("b");
+    c.close();
+    assertThat(c.tryTakeNow().isPresent()).isFalse();
+
+    LatencyHistogram residenceTimes = c.residenceTimes().get();
+    assertThat(residenceTimes.getTotalCount()).isEqualTo(2);
+    assertThat(residenceTimes.getValueAtPercentile(0.0)).isEqualTo(200);
+    assertThat(residenceTimes.getMaxValue()).isEqualTo(200);
+  }
+
+  @Test
+  public void latencyHistograms_acrossChainedChutes_shouldRecordEndToEndTime() throws Exception {
+    AtomicLong clock = new AtomicLong(1_000);
+    BufferingChute<String> first = new BufferingChute<>(10, () -> clock.get(), true);
+    BufferingChute<Integer> second = new BufferingChute<>(10, () -> clock.get(), true);
+
+    first.put("12345");
+    clock.addAndGet(30);
+    // Move the element to the next chute the same way that a worker would.
+    TraceContext.runPropagating(() -> {
+      try {
+        Integer converted = Integer.valueOf(first.tryTakeNow().get());
+        clock.addAndGet(5);
+        second.put(converted);
+      } catch (InterruptedException ie) {
+        Truth.assert_().fail("Interrupted: " + ie.getMessage());
+      }
+    });
+    clock.addAndGet(20);
+    assertThat(second.take().get()).isEqualTo(12345);
+
+    assertThat(first.residenceTimes().get().getMaxValue()).isEqualTo(30);
+    assertThat(first.endToEndTimes().get().getMaxValue()).isEqualTo(30);
+    assertThat(second.residenceTimes().get().getMaxValue()).isEqualTo(20);
+    assertThat(second.endToEndTimes().get().getMaxValue()).isEqualTo(55);
+
+    // Outside of a worker, elements are not considered to be derived from elements taken earlier.
+    second.put(54321);
+    clock.addAndGet(10);
+    second.take();
+    assertThat(second.endToEndTimes().get().getValueAtPercentile(0.0)).isEqualTo(10);
+  }
+
+  @Test
+  public void latencyHistograms_whenPutBlocksOnFullBuffer_shouldNotCountTimeBlocked()
+      throws Exception {
+    AtomicLong clock = new AtomicLong(1_000);
+    BufferingChute<String> c = new BufferingChute<>(1, () -> clock.get(), true);
+    ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      c.put("a");
+      Future<?> putResult = es.submit(() -> {
+        c.put("b");
+        return null;
+      });
+      while (c.numBlockedPutters() == 0) {
+        Thread.sleep(1);
+      }
+      clock.addAndGet(100);
+      assertThat(c.take().get()).isEqualTo("a");
+      putResult.get(1, SECONDS);
+      clock.addAndGet(10);
+      assertThat(c.take().get()).isEqualTo("b");
+    } finally {
+      es.shutdownNow();
+    }
+
+    LatencyHistogram residenceTimes = c.residenceTimes().get();
+    assertThat(residenceTimes.getValueAtPercentile(0.0)).isEqualTo(10);
+    assertThat(residenceTimes.getMaxValue()).isEqualTo(100);
+  }
+
+  @Test
+  public void latencyHistograms_whenPutIntoClosedChute_shouldKeepOriginForNextPut()
+      throws Exception {
+    AtomicLong clock = new AtomicLong(1_000);
+    BufferingChute<String> first = new BufferingChute<>(10, () -> clock.get(), true);
+    BufferingChute<String> closed = new BufferingChute<>(10, () -> clock.get(), true);
+    BufferingChute<String> second = new BufferingChute<>(10, () -> clock.get(), true);
+    closed.close();
+
+    first.put("a");
+    clock.addAndGet(30);
+    TraceContext.runPropagating(() -> {
+      try {
+        String taken = first.tryTakeNow().get();
+        try {
+          closed.put(taken);
+          Truth.assert_().fail("Expected put into a closed chute to fail.");
+        } catch (@SuppressWarnings("unused") IllegalStateException e) {
+          // expected
+        }
+        second.put(taken);
+      } catch (InterruptedException ie) {
+        Truth.assert_().fail("Interrupted: " + ie.getMessage());
+      }
+    });
+    clock.addAndGet(20);
+    assertThat(second.take().get()).isEqualTo("a");
+    assertThat(second.endToEndTimes().get().getMaxValue()).isEqualTo(50);
+  }
+
+  @Test
+  public void latencyHistograms_withTransformingWorker_shouldRecordEndToEndTime()
+      throws Exception {
+    BufferingChute<String> first = new BufferingChute<>(10, () -> System.nanoTime(), true);
+    BufferingChute<Integer> second = new BufferingChute<>(10, () -> System.nanoTime(), true);
+    ExecutorService es = Executors.newSingleThreadExecutor();
+    es.submit(Workers.transformingWorker(first, second, Integer::valueOf, true));
+
+    long beforePut = System.nanoTime();
+    first.put("1");
+    Thread.sleep(5);
+    first.close();
+    assertThat(second.take().get()).isEqualTo(1);
+    long elapsed = System.nanoTime() - beforePut;
+
+    LatencyHistogram endToEndTimes = second.endToEndTimes().get();
+    assertThat(endToEndTimes.getTotalCount()).isEqualTo(1);
+    assertThat(endToEndTimes.getMaxValue()).isAtLeast(second.residenceTimes().get().getMaxValue());
+    assertThat(endToEndTimes.getMaxValue()).isAtMost(elapsed);
+    es.shutdownNow();
+  }
+
   // --------------------------------------------------------------------------
   //
   // Tests for equals, hashCode
@@ -461,6 +611,9 @@ public class BufferingChuteTest {
   @Test
   public void equals_shouldWorkCorrectly() {
     EqualsVerifier.forClass(BufferingChute.Datum.class).verify();
-    EqualsVerifier.forClass(BufferingChute.class).verify();
+    EqualsVerifier.forClass(BufferingChute.StampedDatum.class)
+        .withIgnoredFields("enqueuedNanos", "originNanos").verify();
+    EqualsVerifier.forClass(BufferingChute.class)
+        .withPrefabValues(ReentrantLock.class, new ReentrantLock(), new ReentrantLock()).verify();
   }
 }
@@ -0,0 +1,186 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.OptionalDouble;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class BufferingDoubleChuteTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  // Returns count consecutive values with a fractional part, starting at first + 0.5.
+  private static double[] valuesFrom(int first, int count) {
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = first + i + 0.5;
+    }
+    return values;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectZeroSize() {
+    new BufferingDoubleChute(0);
+  }
+
+  @Test
+  public void putAndTake_shouldPreserveOrderAcrossWrapAround() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(3);
+    double nextToPut = 0.5;
+    double nextToTake = 0.5;
+    for (int round = 0; round < 5; round++) {
+      chute.put(nextToPut++);
+      chute.put(nextToPut++);
+      assertThat(chute.size()).isEqualTo(2);
+      assertThat(chute.take()).isEqualTo(OptionalDouble.of(nextToTake++));
+      assertThat(chute.tryTakeNow()).isEqualTo(OptionalDouble.of(nextToTake++));
+    }
+    assertThat(chute.tryTakeNow()).isEqualTo(OptionalDouble.empty());
+  }
+
+  @Test
+  public void put_whenFull_shouldBlockUntilValueIsTaken() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(1);
+    chute.put(1.5);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(2.5);
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(OptionalDouble.of(1.5));
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(OptionalDouble.of(2.5));
+  }
+
+  @Test
+  public void close_whenFull_shouldNotBlock() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(1);
+    chute.put(1.5);
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    assertThat(chute.take()).isEqualTo(OptionalDouble.of(1.5));
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+    assertThat(chute.take()).isEqualTo(OptionalDouble.empty());
+  }
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(1);
+    chute.put(1.5);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(2.5);
+      return null;
+    });
+    Thread.sleep(20);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilClosed() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(1);
+    Future<OptionalDouble> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(OptionalDouble.empty());
+  }
+
+  @Test
+  public void tryTake_shouldTimeOutOrReturnValue() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(1);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(OptionalDouble.empty());
+    chute.put(7.5);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(OptionalDouble.of(7.5));
+  }
+
+  @Test
+  public void putAll_largerThanBuffer_shouldBlockUntilDrained() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(4);
+    chute.put(-1.5);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.putAll(valuesFrom(0, 12), 1, 10);
+      chute.close();
+      return null;
+    });
+    double[] drained = new double[20];
+    int numDrained = 0;
+    int numTaken;
+    while ((numTaken = chute.drainTo(drained, numDrained, 3)) > 0) {
+      assertThat(numTaken).isAtMost(3);
+      numDrained += numTaken;
+    }
+    putResult.get(1, SECONDS);
+    assertThat(numDrained).isEqualTo(11);
+    assertThat(drained[0]).isEqualTo(-1.5);
+    for (int i = 1; i < numDrained; i++) {
+      assertThat(drained[i]).isEqualTo(i + 0.5);
+    }
+  }
+
+  @Test
+  public void putAll_whenClosedWhileWaitingForSpace_shouldReturnNumberPut() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(4);
+    Future<Integer> putResult =
+        executorService.submit(() -> chute.putAll(valuesFrom(0, 10), 0, 10));
+    assertStillRunning(putResult);
+    chute.close();
+    assertThat(putResult.get(1, SECONDS)).isEqualTo(4);
+    double[] drained = new double[10];
+    assertThat(chute.drainTo(drained, 0, 10)).isEqualTo(4);
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void putAll_afterClose_shouldThrow() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(4);
+    chute.close();
+    chute.putAll(valuesFrom(0, 2), 0, 2);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void putAll_withInvalidRange_shouldThrow() throws Exception {
+    new BufferingDoubleChute(4).putAll(new double[2], 1, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void drainTo_withZeroMax_shouldThrow() throws Exception {
+    new BufferingDoubleChute(4).drainTo(new double[2], 0, 0);
+  }
+
+  @Test
+  public void drainTo_acrossWrapAround_shouldPreserveOrder() throws Exception {
+    BufferingDoubleChute chute = new BufferingDoubleChute(4);
+    chute.putAll(valuesFrom(0, 3), 0, 3);
+    chute.take();
+    chute.take();
+    chute.putAll(valuesFrom(3, 3), 0, 3);
+    double[] drained = new double[4];
+    assertThat(chute.drainTo(drained, 0, 4)).isEqualTo(4);
+    assertThat(drained).isEqualTo(valuesFrom(2, 4));
+  }
+}
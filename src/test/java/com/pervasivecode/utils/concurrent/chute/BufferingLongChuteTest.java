@@ -0,0 +1,185 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class BufferingLongChuteTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  private static long[] valuesFrom(int first, int count) {
+    long[] values = new long[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = (long) (first + i);
+    }
+    return values;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectZeroSize() {
+    new BufferingLongChute(0);
+  }
+
+  @Test
+  public void putAndTake_shouldPreserveOrderAcrossWrapAround() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(3);
+    int nextToPut = 0;
+    int nextToTake = 0;
+    for (int round = 0; round < 5; round++) {
+      chute.put((long) nextToPut++);
+      chute.put((long) nextToPut++);
+      assertThat(chute.size()).isEqualTo(2);
+      assertThat(chute.take()).isEqualTo(OptionalLong.of((long) nextToTake++));
+      assertThat(chute.tryTakeNow()).isEqualTo(OptionalLong.of((long) nextToTake++));
+    }
+    assertThat(chute.tryTakeNow()).isEqualTo(OptionalLong.empty());
+  }
+
+  @Test
+  public void put_whenFull_shouldBlockUntilValueIsTaken() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(1);
+    chute.put((long) 1);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put((long) 2);
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(OptionalLong.of((long) 1));
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(OptionalLong.of((long) 2));
+  }
+
+  @Test
+  public void close_whenFull_shouldNotBlock() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(1);
+    chute.put((long) 1);
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    assertThat(chute.take()).isEqualTo(OptionalLong.of((long) 1));
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+    assertThat(chute.take()).isEqualTo(OptionalLong.empty());
+  }
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(1);
+    chute.put((long) 1);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put((long) 2);
+      return null;
+    });
+    Thread.sleep(20);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilClosed() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(1);
+    Future<OptionalLong> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(OptionalLong.empty());
+  }
+
+  @Test
+  public void tryTake_shouldTimeOutOrReturnValue() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(1);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(OptionalLong.empty());
+    chute.put((long) 7);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(OptionalLong.of((long) 7));
+  }
+
+  @Test
+  public void putAll_largerThanBuffer_shouldBlockUntilDrained() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(4);
+    chute.put((long) -1);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.putAll(valuesFrom(0, 12), 1, 10);
+      chute.close();
+      return null;
+    });
+    long[] drained = new long[20];
+    int numDrained = 0;
+    int numTaken;
+    while ((numTaken = chute.drainTo(drained, numDrained, 3)) > 0) {
+      assertThat(numTaken).isAtMost(3);
+      numDrained += numTaken;
+    }
+    putResult.get(1, SECONDS);
+    assertThat(numDrained).isEqualTo(11);
+    assertThat(drained[0]).isEqualTo((long) -1);
+    for (int i = 1; i < numDrained; i++) {
+      assertThat(drained[i]).isEqualTo((long) i);
+    }
+  }
+
+  @Test
+  public void putAll_whenClosedWhileWaitingForSpace_shouldReturnNumberPut() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(4);
+    Future<Integer> putResult =
+        executorService.submit(() -> chute.putAll(valuesFrom(0, 10), 0, 10));
+    assertStillRunning(putResult);
+    chute.close();
+    assertThat(putResult.get(1, SECONDS)).isEqualTo(4);
+    long[] drained = new long[10];
+    assertThat(chute.drainTo(drained, 0, 10)).isEqualTo(4);
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void putAll_afterClose_shouldThrow() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(4);
+    chute.close();
+    chute.putAll(valuesFrom(0, 2), 0, 2);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void putAll_withInvalidRange_shouldThrow() throws Exception {
+    new BufferingLongChute(4).putAll(new long[2], 1, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void drainTo_withZeroMax_shouldThrow() throws Exception {
+    new BufferingLongChute(4).drainTo(new long[2], 0, 0);
+  }
+
+  @Test
+  public void drainTo_acrossWrapAround_shouldPreserveOrder() throws Exception {
+    BufferingLongChute chute = new BufferingLongChute(4);
+    chute.putAll(valuesFrom(0, 3), 0, 3);
+    chute.take();
+    chute.take();
+    chute.putAll(valuesFrom(3, 3), 0, 3);
+    long[] drained = new long[4];
+    assertThat(chute.drainTo(drained, 0, 4)).isEqualTo(4);
+    assertThat(drained).isEqualTo(valuesFrom(2, 4));
+  }
+}
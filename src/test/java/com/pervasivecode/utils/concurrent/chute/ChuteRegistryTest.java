@@ -0,0 +1,283 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+import com.pervasivecode.utils.time.testing.FakeNanoSource;
+
+public class ChuteRegistryTest {
+  private FakeNanoSource nanosSource;
+  private MBeanServer mbeanServer;
+  private ChuteRegistry registry;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    nanosSource = new FakeNanoSource();
+    mbeanServer = MBeanServerFactory.newMBeanServer();
+    registry = new ChuteRegistry(mbeanServer);
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullMBeanServer_shouldThrow() {
+    new ChuteRegistry(null);
+  }
+
+  @Test
+  public void constructor_withNoArgs_shouldUsePlatformMBeanServer() throws Exception {
+    ChuteRegistry platformRegistry = new ChuteRegistry();
+    BufferingChute<String> chute = new BufferingChute<>(1, nanosSource);
+    ObjectName name = platformRegistry.register("platform chute", chute);
+    try {
+      assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name)).isTrue();
+    } finally {
+      platformRegistry.unregisterAll();
+    }
+  }
+
+  @Test
+  public void register_bufferingChute_shouldExposeAttributes() throws Exception {
+    BufferingChute<String> chute = new BufferingChute<>(3, nanosSource);
+    ObjectName name = registry.register("input", chute);
+    assertThat(name.getDomain()).isEqualTo(ChuteRegistry.DOMAIN);
+    assertThat(name.getKeyProperty("type")).isEqualTo("BufferingChute");
+    assertThat(ObjectName.unquote(name.getKeyProperty("name"))).isEqualTo("input");
+
+    BufferingChuteMXBean bean = JMX.newMXBeanProxy(mbeanServer, name, BufferingChuteMXBean.class);
+    assertThat(bean.getCapacity()).isEqualTo(3);
+    assertThat(bean.getSize()).isEqualTo(0);
+    assertThat(bean.isCollected()).isFalse();
+
+    chute.put("a");
+    chute.put("b");
+    chute.take();
+    assertThat(bean.getPutCount()).isEqualTo(2);
+    assertThat(bean.getTakeCount()).isEqualTo(1);
+    assertThat(bean.getSize()).isEqualTo(1);
+    assertThat(bean.isClosed()).isFalse();
+
+    chute.close();
+    assertThat(bean.isClosed()).isTrue();
+    assertThat(bean.isClosedAndEmpty()).isFalse();
+    chute.tryTakeNow();
+    assertThat(bean.isClosedAndEmpty()).isTrue();
+    assertThat(bean.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void register_bufferingChute_withConcurrentPutsAndTakes_shouldNeverReportNegativeSize()
+      throws Exception {
+    BufferingChute<Integer> chute = new BufferingChute<>(1, nanosSource);
+    ObjectName name = registry.register("busy", chute);
+    BufferingChuteMXBean bean = JMX.newMXBeanProxy(mbeanServer, name, BufferingChuteMXBean.class);
+
+    Future<?> putResult = executorService.submit(() -> {
+      for (int i = 0; i < 20_000; i++) {
+        chute.put(i);
+      }
+      chute.close();
+      return null;
+    });
+    Future<?> takeResult = executorService.submit(() -> {
+      while (chute.take().isPresent()) {
+        // Discard the element.
+      }
+      return null;
+    });
+    while (!takeResult.isDone()) {
+      assertThat(bean.getSize()).isAtLeast(0L);
+    }
+    putResult.get(1, SECONDS);
+    takeResult.get(1, SECONDS);
+    assertThat(bean.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void register_bufferingChute_shouldCountBlockedThreads() throws Exception {
+    BufferingChute<String> chute = new BufferingChute<>(1, nanosSource);
+    ObjectName name = registry.register("blocking", chute);
+    BufferingChuteMXBean bean = JMX.newMXBeanProxy(mbeanServer, name, BufferingChuteMXBean.class);
+
+    CountDownLatch aboutToTake = new CountDownLatch(1);
+    Future<?> takeResult = executorService.submit(() -> {
+      aboutToTake.countDown();
+      return chute.take();
+    });
+    aboutToTake.await(1, SECONDS);
+    waitFor(() -> bean.getBlockedTakerCount() == 1);
+    chute.put("unblock");
+    takeResult.get(1, SECONDS);
+    assertThat(bean.getBlockedTakerCount()).isEqualTo(0);
+
+    chute.put("fill");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("blocked");
+      return null;
+    });
+    waitFor(() -> bean.getBlockedPutterCount() == 1);
+    chute.take();
+    putResult.get(1, SECONDS);
+    assertThat(bean.getBlockedPutterCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void register_withDuplicateName_shouldThrow() {
+    registry.register("dup", new BufferingChute<String>(1, nanosSource));
+    try {
+      registry.register("dup", new BufferingChute<String>(1, nanosSource));
+      Truth.assert_().fail("Expected the duplicate registration to fail.");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae).hasMessageThat().contains("Already registered");
+    }
+  }
+
+  @Test
+  public void register_withUnusualName_shouldQuoteIt() {
+    ObjectName name =
+        registry.register("a,b=c:\"d\"*", new BufferingChute<String>(1, nanosSource));
+    assertThat(mbeanServer.isRegistered(name)).isTrue();
+  }
+
+  @Test
+  public void register_synchronousMultiplexer_shouldExposeAttributes() throws Exception {
+    BufferingChute<Integer> output = new BufferingChute<>(10, nanosSource);
+    SynchronousMultiplexer<Integer> mux = new SynchronousMultiplexer<>(2, output);
+    ObjectName name = registry.register("mux", mux);
+    assertThat(name.getKeyProperty("type")).isEqualTo("SynchronousMultiplexer");
+
+    SynchronousMultiplexerMXBean bean =
+        JMX.newMXBeanProxy(mbeanServer, name, SynchronousMultiplexerMXBean.class);
+    assertThat(bean.getInputCount()).isEqualTo(2);
+    assertThat(bean.getOpenInputCount()).isEqualTo(2);
+
+    mux.inputChutes().get(0).put(1);
+    mux.inputChutes().get(1).put(2);
+    mux.inputChutes().get(1).put(3);
+    assertThat(bean.getPutCount()).isEqualTo(3);
+
+    mux.inputChutes().get(0).close();
+    assertThat(bean.getOpenInputCount()).isEqualTo(1);
+    assertThat(bean.isClosed()).isFalse();
+    mux.inputChutes().get(1).close();
+    assertThat(bean.getOpenInputCount()).isEqualTo(0);
+    assertThat(bean.isClosed()).isTrue();
+    assertThat(bean.isCollected()).isFalse();
+  }
+
+  @Test
+  public void registerWorker_shouldTrackRunningThreads() throws Exception {
+    BufferingChute<String> input = new BufferingChute<>(10, nanosSource);
+    BufferingChute<String> output = new BufferingChute<>(10, nanosSource);
+    Runnable worker = registry.registerWorker("trimmer",
+        Workers.transformingWorker(input, output, String::trim, true));
+    ObjectName name = registry.registeredNames().iterator().next();
+    assertThat(name.getKeyProperty("type")).isEqualTo("Worker");
+    WorkerMXBean bean = JMX.newMXBeanProxy(mbeanServer, name, WorkerMXBean.class);
+    assertThat(bean.getActiveThreadCount()).isEqualTo(0);
+
+    Future<?> workerResult = executorService.submit(worker);
+    waitFor(() -> bean.getBlockedThreadCount() == 1);
+    assertThat(bean.getActiveThreadCount()).isEqualTo(1);
+
+    input.put(" hello ");
+    assertThat(output.take().get()).isEqualTo("hello");
+    input.close();
+    workerResult.get(1, SECONDS);
+
+    assertThat(bean.getActiveThreadCount()).isEqualTo(0);
+    assertThat(bean.getBlockedThreadCount()).isEqualTo(0);
+    assertThat(bean.getCompletedRunCount()).isEqualTo(1);
+    assertThat(bean.getFailedRunCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void registerWorker_withFailingWorker_shouldCountFailure() throws Exception {
+    Runnable worker = registry.registerWorker("failing", () -> {
+      throw new IllegalStateException("oops");
+    });
+    ObjectName name = registry.registeredNames().iterator().next();
+    WorkerMXBean bean = JMX.newMXBeanProxy(mbeanServer, name, WorkerMXBean.class);
+    try {
+      worker.run();
+      Truth.assert_().fail("Expected the worker to throw.");
+    } catch (IllegalStateException ise) {
+      assertThat(ise).hasMessageThat().isEqualTo("oops");
+    }
+    assertThat(bean.getFailedRunCount()).isEqualTo(1);
+    assertThat(bean.getCompletedRunCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void unregister_shouldRemoveMXBean() {
+    ObjectName name = registry.register("temp", new BufferingChute<String>(1, nanosSource));
+    assertThat(registry.unregister(name)).isTrue();
+    assertThat(mbeanServer.isRegistered(name)).isFalse();
+    assertThat(registry.unregister(name)).isFalse();
+    assertThat(registry.registeredNames()).isEmpty();
+  }
+
+  @Test
+  public void unregisterAll_shouldRemoveAllMXBeans() {
+    ObjectName name1 = registry.register("one", new BufferingChute<String>(1, nanosSource));
+    ObjectName name2 = registry.register("two",
+        new SynchronousMultiplexer<>(1, new BufferingChute<String>(1, nanosSource)));
+    registry.unregisterAll();
+    assertThat(mbeanServer.isRegistered(name1)).isFalse();
+    assertThat(mbeanServer.isRegistered(name2)).isFalse();
+    assertThat(registry.registeredNames()).isEmpty();
+  }
+
+  @Test
+  public void purgeCollected_afterChuteIsCollected_shouldUnregisterIt() throws Exception {
+    BufferingChute<String> chute = new BufferingChute<>(1, nanosSource);
+    WeakReference<BufferingChute<String>> chuteRef = new WeakReference<>(chute);
+    ObjectName name = registry.register("discarded", chute);
+    BufferingChuteMXBean bean = JMX.newMXBeanProxy(mbeanServer, name, BufferingChuteMXBean.class);
+    chute = null;
+
+    // The registry must not keep the chute alive.
+    waitFor(() -> {
+      System.gc();
+      return chuteRef.get() == null;
+    });
+    assertThat(bean.isCollected()).isTrue();
+    assertThat(bean.getCapacity()).isEqualTo(0);
+
+    waitFor(() -> registry.purgeCollected() == 1);
+    assertThat(mbeanServer.isRegistered(name)).isFalse();
+  }
+
+  private interface Condition {
+    boolean isMet() throws Exception;
+  }
+
+  private static void waitFor(Condition condition) throws Exception {
+    long deadline = System.nanoTime() + SECONDS.toNanos(5);
+    while (!condition.isMet()) {
+      if (System.nanoTime() > deadline) {
+        Truth.assert_().fail("Timed out waiting for condition.");
+      }
+      Thread.sleep(1);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import com.google.common.truth.Truth;
+
+/**
+ * Helpers shared by the tests of chutes and their exits.
+ */
+final class ChuteTestUtils {
+  private ChuteTestUtils() {}
+
+  /**
+   * Assert that a task submitted to an executor is still blocked, by waiting briefly for it to
+   * finish.
+   *
+   * @param future The Future of the task that should be blocked.
+   */
+  static void assertStillRunning(Future<?> future) throws Exception {
+    try {
+      future.get(50, MILLISECONDS);
+      Truth.assert_().fail("Expected the task to be blocked.");
+    } catch (@SuppressWarnings("unused") TimeoutException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Take elements from an exit until it is closed and empty, blocking as needed.
+   *
+   * @param exit The exit to take elements from.
+   * @param <E> The type of element taken from the exit.
+   * @return The elements that were taken, in the order in which they were taken.
+   */
+  static <E> List<E> takeAll(ChuteExit<E> exit) throws InterruptedException {
+    List<E> taken = new ArrayList<>();
+    Optional<E> element;
+    while ((element = exit.take()).isPresent()) {
+      taken.add(element.get());
+    }
+    return taken;
+  }
+
+  /**
+   * Take the elements that are immediately available from an exit, without blocking.
+   *
+   * @param exit The exit to take elements from.
+   * @param <E> The type of element taken from the exit.
+   * @return The elements that were taken, in the order in which they were taken.
+   */
+  static <E> List<E> takeAllAvailable(ChuteExit<E> exit) {
+    List<E> taken = new ArrayList<>();
+    Optional<E> element;
+    while ((element = exit.tryTakeNow()).isPresent()) {
+      taken.add(element.get());
+    }
+    return taken;
+  }
+}
@@ -0,0 +1,137 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAllAvailable;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class ConflatingChuteTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  // Quotes look like "SYMBOL=price"; the key is the symbol.
+  private static ConflatingChute<String> newQuoteChute(int maxKeys) {
+    return new ConflatingChute<>(maxKeys, quote -> quote.substring(0, quote.indexOf('=')));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroMaxKeys_shouldThrow() {
+    newQuoteChute(0);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullKeyExtractor_shouldThrow() {
+    new ConflatingChute<String>(1, null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void put_withNullKey_shouldThrow() throws Exception {
+    new ConflatingChute<String>(1, s -> null).put("a");
+  }
+
+  @Test
+  public void put_withSameKey_shouldReplaceInFirstArrivalOrder() throws Exception {
+    ConflatingChute<String> chute = newQuoteChute(10);
+    chute.put("ABC=1");
+    chute.put("XYZ=5");
+    chute.put("ABC=2");
+    chute.put("DEF=7");
+    chute.put("ABC=3");
+    assertThat(chute.size()).isEqualTo(3);
+    assertThat(chute.numReplaced()).isEqualTo(2);
+    assertThat(takeAllAvailable(chute)).containsExactly("ABC=3", "XYZ=5", "DEF=7").inOrder();
+  }
+
+  @Test
+  public void put_afterKeyWasTaken_shouldQueueAtTheEnd() throws Exception {
+    ConflatingChute<String> chute = newQuoteChute(10);
+    chute.put("ABC=1");
+    chute.put("XYZ=5");
+    assertThat(chute.take()).isEqualTo(Optional.of("ABC=1"));
+    chute.put("ABC=2");
+    assertThat(takeAllAvailable(chute)).containsExactly("XYZ=5", "ABC=2").inOrder();
+  }
+
+  @Test
+  public void put_withNewKeyWhenFull_shouldBlockButReplacementShouldNot() throws Exception {
+    ConflatingChute<String> chute = newQuoteChute(1);
+    chute.put("ABC=1");
+    chute.put("ABC=2");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("XYZ=1");
+      return null;
+    });
+    assertStillRunning(putResult);
+    chute.put("ABC=3");
+    assertThat(chute.take()).isEqualTo(Optional.of("ABC=3"));
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(Optional.of("XYZ=1"));
+  }
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    ConflatingChute<String> chute = newQuoteChute(1);
+    chute.put("ABC=1");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("XYZ=1");
+      return null;
+    });
+    Thread.sleep(20);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_withExistingKeyAfterClose_shouldThrow() throws Exception {
+    ConflatingChute<String> chute = newQuoteChute(1);
+    chute.put("ABC=1");
+    chute.close();
+    chute.put("ABC=2");
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilClosed() throws Exception {
+    ConflatingChute<String> chute = newQuoteChute(1);
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void close_shouldStillAllowRemainingElementsToBeTaken() throws Exception {
+    ConflatingChute<String> chute = newQuoteChute(2);
+    chute.put("ABC=1");
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.of("ABC=1"));
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+  }
+}
@@ -0,0 +1,403 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAllAvailable;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.common.truth.Truth;
+import com.pervasivecode.utils.time.testing.FakeNanoSource;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class DurableChuteTest {
+  // Each Long record takes 8 bytes of header plus 8 bytes of data.
+  private static final int LONG_RECORD_SIZE = 16;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path logDirectory;
+  private FakeNanoSource nanosSource;
+  private ExecutorService executorService;
+  private List<DurableChute<?>> openChutes;
+
+  @Before
+  public void setup() {
+    logDirectory = temporaryFolder.getRoot().toPath().resolve("log");
+    nanosSource = new FakeNanoSource();
+    executorService = Executors.newFixedThreadPool(4);
+    openChutes = new ArrayList<>();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+    for (DurableChute<?> chute : openChutes) {
+      chute.release();
+    }
+  }
+
+  private DurableChute<Long> openLongChute(int recordsPerSegment, FsyncPolicy policy)
+      throws IOException {
+    DurableChute<Long> chute = DurableChute.open(logDirectory,
+        LONG_RECORD_SIZE * recordsPerSegment, ElementSerializers.longs(), policy, nanosSource);
+    openChutes.add(chute);
+    return chute;
+  }
+
+  private DurableChute<Long> openLongChute(int recordsPerSegment) throws IOException {
+    return openLongChute(recordsPerSegment, FsyncPolicy.never());
+  }
+
+  private int numSegmentFiles() {
+    File[] files = logDirectory.toFile().listFiles((dir, name) -> name.endsWith(".log"));
+    return files == null ? 0 : files.length;
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for open
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = IllegalArgumentException.class)
+  public void open_withTinySegments_shouldThrow() throws Exception {
+    DurableChute.open(logDirectory, 8, ElementSerializers.longs(), FsyncPolicy.never(),
+        nanosSource);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void open_withNullSerializer_shouldThrow() throws Exception {
+    DurableChute.open(logDirectory, 100, null, FsyncPolicy.never(), nanosSource);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void open_withNullPolicy_shouldThrow() throws Exception {
+    DurableChute.open(logDirectory, 100, ElementSerializers.longs(), null, nanosSource);
+  }
+
+  @Test
+  public void open_withNewDirectory_shouldCreateEmptyChute() throws Exception {
+    DurableChute<Long> chute = openLongChute(4);
+    assertThat(logDirectory.toFile().isDirectory()).isTrue();
+    assertThat(chute.isClosed()).isFalse();
+    assertThat(chute.nextPutPosition()).isEqualTo(0);
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+    assertThat(numSegmentFiles()).isEqualTo(0);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for put and take
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void putAndTake_shouldPreserveOrderAcrossSegments() throws Exception {
+    DurableChute<Long> chute = openLongChute(3);
+    for (long i = 0; i < 10; i++) {
+      chute.put(i);
+    }
+    assertThat(chute.numSegments()).isEqualTo(4);
+    for (long i = 0; i < 10; i++) {
+      Optional<DurableChute.Entry<Long>> entry = chute.takeEntry();
+      assertThat(entry.get().position()).isEqualTo(i);
+      assertThat(entry.get().element()).isEqualTo(i);
+    }
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void put_withElementLargerThanSegment_shouldThrow() throws Exception {
+    DurableChute<String> chute = DurableChute.open(logDirectory, 16,
+        ElementSerializers.utf8Strings(), FsyncPolicy.never(), nanosSource);
+    openChutes.add(chute);
+    chute.put("much too large for the segment");
+  }
+
+  @Test
+  public void put_withEmptyElement_shouldRoundTrip() throws Exception {
+    DurableChute<String> chute = DurableChute.open(logDirectory, 64,
+        ElementSerializers.utf8Strings(), FsyncPolicy.never(), nanosSource);
+    openChutes.add(chute);
+    chute.put("");
+    chute.put("x");
+    chute.release();
+    chute = DurableChute.open(logDirectory, 64, ElementSerializers.utf8Strings(),
+        FsyncPolicy.never(), nanosSource);
+    openChutes.add(chute);
+    assertThat(chute.take()).isEqualTo(Optional.of(""));
+    assertThat(chute.take()).isEqualTo(Optional.of("x"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    DurableChute<Long> chute = openLongChute(4);
+    chute.close();
+    chute.put(1L);
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilClosed() throws Exception {
+    DurableChute<Long> chute = openLongChute(4);
+    Future<Optional<Long>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void tryTake_shouldTimeOutOrReturnElement() throws Exception {
+    DurableChute<Long> chute = openLongChute(4);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    Future<Optional<Long>> takeResult =
+        executorService.submit(() -> chute.tryTake(5, SECONDS));
+    chute.put(42L);
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of(42L));
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for acknowledgement and recovery
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void reopen_shouldReplayUnacknowledgedElements() throws Exception {
+    DurableChute<Long> chute = openLongChute(3);
+    for (long i = 0; i < 8; i++) {
+      chute.put(i);
+    }
+    for (long i = 0; i < 5; i++) {
+      chute.take();
+    }
+    chute.acknowledge(3);
+    chute.release();
+
+    DurableChute<Long> reopened = openLongChute(3);
+    assertThat(reopened.nextPutPosition()).isEqualTo(8);
+    // Element 4 was taken, but not acknowledged, so it is delivered again.
+    assertThat(reopened.takeEntry().get().position()).isEqualTo(4);
+    reopened.put(8L);
+    assertThat(takeAllAvailable(reopened)).containsExactly(5L, 6L, 7L, 8L).inOrder();
+  }
+
+  @Test
+  public void acknowledge_shouldDeleteFullyAcknowledgedSegments() throws Exception {
+    DurableChute<Long> chute = openLongChute(2);
+    for (long i = 0; i < 6; i++) {
+      chute.put(i);
+    }
+    assertThat(numSegmentFiles()).isEqualTo(3);
+    takeAllAvailable(chute);
+    chute.acknowledge(2);
+    assertThat(numSegmentFiles()).isEqualTo(2);
+    chute.acknowledgeAllTaken();
+    // The last segment is kept for appending.
+    assertThat(numSegmentFiles()).isEqualTo(1);
+    chute.put(6L);
+    assertThat(chute.take()).isEqualTo(Optional.of(6L));
+  }
+
+  @Test
+  public void acknowledge_ofUntakenPosition_shouldThrow() throws Exception {
+    DurableChute<Long> chute = openLongChute(2);
+    chute.put(1L);
+    try {
+      chute.acknowledge(0);
+      Truth.assert_().fail("Expected acknowledging an untaken element to fail.");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae).hasMessageThat().contains("not been taken");
+    }
+  }
+
+  @Test
+  public void acknowledge_ofOlderPosition_shouldBeIgnored() throws Exception {
+    DurableChute<Long> chute = openLongChute(2);
+    chute.put(0L);
+    chute.put(1L);
+    chute.take();
+    chute.take();
+    chute.acknowledge(1);
+    chute.acknowledge(0);
+    chute.release();
+    assertThat(openLongChute(2).tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void reopen_afterClose_shouldStillBeClosed() throws Exception {
+    DurableChute<Long> chute = openLongChute(2);
+    chute.put(1L);
+    chute.put(2L);
+    chute.close();
+    chute.release();
+
+    DurableChute<Long> reopened = openLongChute(2);
+    assertThat(reopened.isClosed()).isTrue();
+    assertThat(reopened.isClosedAndEmpty()).isFalse();
+    assertThat(takeAllAvailable(reopened)).containsExactly(1L, 2L).inOrder();
+    assertThat(reopened.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void reopen_withTornRecord_shouldDiscardIt() throws Exception {
+    DurableChute<Long> chute = openLongChute(4);
+    chute.put(1L);
+    chute.put(2L);
+    chute.release();
+
+    // Corrupt the last byte of the second record, as if the write had been interrupted.
+    File segmentFile = logDirectory.resolve(String.format("%020d.log", 0)).toFile();
+    try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+      file.seek(2 * LONG_RECORD_SIZE - 1);
+      file.write(0xff);
+    }
+
+    DurableChute<Long> reopened = openLongChute(4);
+    assertThat(reopened.nextPutPosition()).isEqualTo(1);
+    reopened.put(3L);
+    assertThat(takeAllAvailable(reopened)).containsExactly(1L, 3L).inOrder();
+    reopened.release();
+    assertThat(takeAllAvailable(openLongChute(4))).containsExactly(1L, 3L).inOrder();
+  }
+
+  @Test
+  public void reopen_withCorruptAckFile_shouldReplayEverything() throws Exception {
+    DurableChute<Long> chute = openLongChute(4);
+    chute.put(1L);
+    chute.put(2L);
+    chute.take();
+    chute.acknowledgeAllTaken();
+    chute.release();
+
+    try (RandomAccessFile file = new RandomAccessFile(logDirectory.resolve("ack").toFile(), "rw")) {
+      file.seek(0);
+      file.write(0x7f);
+    }
+    assertThat(takeAllAvailable(openLongChute(4))).containsExactly(1L, 2L).inOrder();
+  }
+
+  @Test
+  public void release_shouldMakeFurtherUseFail() throws Exception {
+    DurableChute<Long> chute = openLongChute(2);
+    Future<Optional<Long>> takeResult = executorService.submit(() -> chute.take());
+    Thread.sleep(20);
+    chute.release();
+    try {
+      takeResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked take to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    try {
+      chute.put(1L);
+      Truth.assert_().fail("Expected put to fail.");
+    } catch (IllegalStateException ise) {
+      assertThat(ise).hasMessageThat().contains("released");
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for fsync policies
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void put_withAlwaysPolicy_fromManyThreads_shouldKeepEveryElement() throws Exception {
+    DurableChute<Long> chute = openLongChute(64, FsyncPolicy.always());
+    int numThreads = 4;
+    int numPerThread = 100;
+    List<Future<?>> producers = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      long firstElement = t * numPerThread;
+      producers.add(executorService.submit(() -> {
+        for (long i = firstElement; i < firstElement + numPerThread; i++) {
+          chute.put(i);
+        }
+        return null;
+      }));
+    }
+    for (Future<?> producer : producers) {
+      producer.get(10, SECONDS);
+    }
+    chute.release();
+    List<Long> taken = takeAllAvailable(openLongChute(64));
+    assertThat(taken).hasSize(numThreads * numPerThread);
+    assertThat(taken).containsNoDuplicates();
+  }
+
+  @Test
+  public void put_withPeriodicPolicy_shouldWork() throws Exception {
+    AtomicLong currentNanos = new AtomicLong();
+    DurableChute<Long> chute = DurableChute.open(logDirectory, 4 * LONG_RECORD_SIZE,
+        ElementSerializers.longs(), FsyncPolicy.periodically(1, SECONDS), currentNanos::get);
+    openChutes.add(chute);
+    chute.put(1L);
+    currentNanos.addAndGet(SECONDS.toNanos(2));
+    chute.put(2L);
+    chute.sync();
+    chute.take();
+    chute.acknowledgeAllTaken();
+    chute.release();
+    assertThat(takeAllAvailable(openLongChute(4))).containsExactly(2L);
+  }
+
+  @Test
+  public void sync_afterFullSegmentWasAcknowledgedAndDeleted_shouldSucceed() throws Exception {
+    DurableChute<Long> chute = openLongChute(2);
+    for (long i = 0; i < 3; i++) {
+      chute.put(i);
+    }
+    assertThat(chute.numSegments()).isEqualTo(2);
+    chute.take();
+    chute.take();
+    // This deletes the full first segment, closing its channel before it was ever forced.
+    chute.acknowledge(1);
+    assertThat(chute.numSegments()).isEqualTo(1);
+    chute.sync();
+    assertThat(chute.syncedPosition()).isEqualTo(3);
+  }
+
+  @Test
+  public void put_withPeriodicPolicyAndNoLaterPuts_shouldSyncInBackground() throws Exception {
+    DurableChute<Long> chute = openLongChute(4, FsyncPolicy.periodically(10, MILLISECONDS));
+    chute.put(1L);
+    // The fake clock never advances, so put() never forces the log itself.
+    long deadline = System.nanoTime() + SECONDS.toNanos(5);
+    while (chute.syncedPosition() < 1 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(chute.syncedPosition()).isEqualTo(1);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for equals, hashCode
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void equals_shouldWorkCorrectly() {
+    EqualsVerifier.forClass(DurableChute.Entry.class).verify();
+  }
+}
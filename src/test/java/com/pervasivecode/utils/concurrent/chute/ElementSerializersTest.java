@@ -0,0 +1,38 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class ElementSerializersTest {
+  private static <E> E roundTrip(ElementSerializer<E> serializer, E element) {
+    int size = serializer.serializedSize(element);
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    serializer.serialize(element, buffer);
+    assertThat(buffer.position()).isEqualTo(size);
+    buffer.flip();
+    return serializer.deserialize(buffer);
+  }
+
+  @Test
+  public void utf8Strings_shouldRoundTrip() {
+    ElementSerializer<String> serializer = ElementSerializers.utf8Strings();
+    assertThat(roundTrip(serializer, "")).isEqualTo("");
+    assertThat(roundTrip(serializer, "hello")).isEqualTo("hello");
+    assertThat(roundTrip(serializer, "héllo ☃")).isEqualTo("héllo ☃");
+  }
+
+  @Test
+  public void utf8Strings_serializedSize_shouldCountBytesNotChars() {
+    assertThat(ElementSerializers.utf8Strings().serializedSize("☃")).isEqualTo(3);
+  }
+
+  @Test
+  public void longs_shouldRoundTrip() {
+    ElementSerializer<Long> serializer = ElementSerializers.longs();
+    assertThat(serializer.serializedSize(1L)).isEqualTo(8);
+    assertThat(roundTrip(serializer, 0L)).isEqualTo(0L);
+    assertThat(roundTrip(serializer, Long.MIN_VALUE)).isEqualTo(Long.MIN_VALUE);
+    assertThat(roundTrip(serializer, Long.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+  }
+}
@@ -0,0 +1,117 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class FilteringExitTest {
+  private BufferingChute<String> testChute;
+  private ChuteExit<String> exit;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    testChute = new BufferingChute<>(10, () -> System.nanoTime());
+    exit = Chutes.filteringExit(testChute, (s) -> s.startsWith("a"));
+    executorService = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void filteringExit_withNullSupplier_shouldThrow() {
+    Chutes.filteringExit(null, (s) -> true);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void filteringExit_withNullPredicate_shouldThrow() {
+    Chutes.filteringExit(testChute, null);
+  }
+
+  @Test
+  public void take_shouldSkipElementsThatDontMatch() throws Exception {
+    testChute.put("b1");
+    testChute.put("a1");
+    testChute.put("b2");
+    testChute.put("b3");
+    testChute.put("a2");
+    testChute.put("b4");
+
+    assertThat(exit.take()).isEqualTo(Optional.of("a1"));
+    assertThat(exit.tryTakeNow()).isEqualTo(Optional.of("a2"));
+    assertThat(exit.tryTakeNow()).isEqualTo(Optional.empty());
+    assertThat(testChute.tryTakeNow()).isEqualTo(Optional.empty());
+
+    testChute.put("b5");
+    testChute.close();
+    assertThat(exit.isClosedAndEmpty()).isFalse();
+    assertThat(exit.take()).isEqualTo(Optional.empty());
+    assertThat(exit.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void tryTake_afterSkippingElement_shouldKeepWaitingUntilMatch() throws Exception {
+    Future<?> putResult = executorService.submit(() -> {
+      testChute.put("b1");
+      Thread.sleep(50);
+      testChute.put("a1");
+      return null;
+    });
+
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.of("a1"));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void tryTake_withOnlyElementsThatDontMatch_shouldWaitUntilDeadline() throws Exception {
+    Future<?> putResult = executorService.submit(() -> {
+      for (int i = 0; i < 5; i++) {
+        testChute.put("b" + i);
+        Thread.sleep(10);
+      }
+      return null;
+    });
+
+    long startNanos = System.nanoTime();
+    assertThat(exit.tryTake(100, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(System.nanoTime() - startNanos).isAtLeast(MILLISECONDS.toNanos(100));
+    putResult.get(1, SECONDS);
+    assertThat(testChute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void tryTake_withZeroTimeout_shouldSkipToMatchingElementThatIsAvailable()
+      throws Exception {
+    testChute.put("b1");
+    testChute.put("b2");
+    testChute.put("a1");
+    assertThat(exit.tryTake(0, MILLISECONDS)).isEqualTo(Optional.of("a1"));
+    testChute.put("b3");
+    assertThat(exit.tryTake(0, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(testChute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void tryTake_whenSupplierClosesAfterSkippingElement_shouldReturnEmpty() throws Exception {
+    testChute.put("b1");
+    testChute.close();
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void equals_shouldWorkCorrectly() {
+    EqualsVerifier.forClass(FilteringExit.class).verify();
+  }
+}
@@ -0,0 +1,161 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import nl.jqno.equalsverifier.EqualsVerifier;
+import nl.jqno.equalsverifier.Warning;
+
+public class FlatMappingExitTest {
+  private BufferingChute<String> testChute;
+  // Splits each element into its characters, so an empty string produces no results.
+  private ChuteExit<String> exit;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    testChute = new BufferingChute<>(10, () -> System.nanoTime());
+    exit = Chutes.flatMappingExit(testChute,
+        (s) -> s.isEmpty() ? Collections.emptyList() : Arrays.asList(s.split("")));
+    executorService = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void flatMappingExit_withNullSupplier_shouldThrow() {
+    Chutes.flatMappingExit(null, (s) -> Collections.singleton(s));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void flatMappingExit_withNullMapper_shouldThrow() {
+    Chutes.flatMappingExit(testChute, null);
+  }
+
+  @Test
+  public void take_shouldProvideAllResultsInOrder() throws Exception {
+    testChute.put("ab");
+    testChute.put("");
+    testChute.put("c");
+    testChute.put("");
+    testChute.put("def");
+    testChute.close();
+
+    assertThat(exit.tryTakeNow()).isEqualTo(Optional.of("a"));
+    assertThat(exit.isClosedAndEmpty()).isFalse();
+    assertThat(exit.tryTake(10, MILLISECONDS)).isEqualTo(Optional.of("b"));
+    assertThat(takeAll(exit)).containsExactly("c", "d", "e", "f").inOrder();
+    assertThat(exit.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void isClosedAndEmpty_withPendingResults_shouldReturnFalse() throws Exception {
+    testChute.put("ab");
+    testChute.close();
+    assertThat(exit.take()).isEqualTo(Optional.of("a"));
+    assertThat(testChute.isClosedAndEmpty()).isTrue();
+    assertThat(exit.isClosedAndEmpty()).isFalse();
+    assertThat(exit.take()).isEqualTo(Optional.of("b"));
+    assertThat(exit.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void tryTake_afterElementWithNoResults_shouldKeepWaitingUntilResult() throws Exception {
+    Future<?> putResult = executorService.submit(() -> {
+      testChute.put("");
+      Thread.sleep(50);
+      testChute.put("x");
+      return null;
+    });
+
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.of("x"));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void tryTake_withOnlyElementsWithNoResults_shouldWaitUntilDeadline() throws Exception {
+    Future<?> putResult = executorService.submit(() -> {
+      for (int i = 0; i < 5; i++) {
+        testChute.put("");
+        Thread.sleep(10);
+      }
+      return null;
+    });
+
+    long startNanos = System.nanoTime();
+    assertThat(exit.tryTake(100, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(System.nanoTime() - startNanos).isAtLeast(MILLISECONDS.toNanos(100));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void tryTake_withZeroTimeout_shouldSkipToElementWithResultsThatIsAvailable()
+      throws Exception {
+    testChute.put("");
+    testChute.put("");
+    testChute.put("x");
+    assertThat(exit.tryTake(0, MILLISECONDS)).isEqualTo(Optional.of("x"));
+    testChute.put("");
+    assertThat(exit.tryTake(0, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(testChute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void take_withNullResult_shouldThrow() throws Exception {
+    ChuteExit<String> nullExit =
+        Chutes.flatMappingExit(testChute, (s) -> Collections.singletonList((String) null));
+    testChute.put("a");
+    nullExit.take();
+  }
+
+  @Test
+  public void take_withSeveralConsumers_shouldProvideEachResultOnce() throws Exception {
+    ExecutorService consumers = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        results.add(consumers.submit(() -> takeAll(exit)));
+      }
+      for (int i = 0; i < 1000; i++) {
+        testChute.put("abc");
+      }
+      testChute.close();
+
+      List<String> allTaken = new ArrayList<>();
+      for (Future<List<String>> result : results) {
+        allTaken.addAll(result.get(10, SECONDS));
+      }
+      assertThat(allTaken).hasSize(3000);
+      assertThat(Collections.frequency(allTaken, "a")).isEqualTo(1000);
+      assertThat(Collections.frequency(allTaken, "b")).isEqualTo(1000);
+      assertThat(Collections.frequency(allTaken, "c")).isEqualTo(1000);
+    } finally {
+      consumers.shutdownNow();
+      consumers.awaitTermination(1, SECONDS);
+    }
+  }
+
+  @Test
+  public void equals_shouldWorkCorrectly() {
+    EqualsVerifier.forClass(FlatMappingExit.class)
+        .withPrefabValues(ReentrantLock.class, new ReentrantLock(), new ReentrantLock())
+        .suppress(Warning.NONFINAL_FIELDS).verify();
+  }
+}
@@ -0,0 +1,40 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import org.junit.Test;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class FsyncPolicyTest {
+  @Test
+  public void always_shouldHaveKindAlways() {
+    assertThat(FsyncPolicy.always().kind()).isEqualTo(FsyncPolicy.Kind.ALWAYS);
+  }
+
+  @Test
+  public void never_shouldHaveKindNever() {
+    assertThat(FsyncPolicy.never().kind()).isEqualTo(FsyncPolicy.Kind.NEVER);
+  }
+
+  @Test
+  public void periodically_shouldConvertIntervalToNanos() {
+    FsyncPolicy policy = FsyncPolicy.periodically(5, MILLISECONDS);
+    assertThat(policy.kind()).isEqualTo(FsyncPolicy.Kind.PERIODICALLY);
+    assertThat(policy.intervalNanos()).isEqualTo(5_000_000L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void periodically_withZeroInterval_shouldThrow() {
+    FsyncPolicy.periodically(0, MILLISECONDS);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void periodically_withNullUnit_shouldThrow() {
+    FsyncPolicy.periodically(1, null);
+  }
+
+  @Test
+  public void equals_shouldWorkCorrectly() {
+    EqualsVerifier.forClass(FsyncPolicy.class).verify();
+  }
+}
@@ -0,0 +1,122 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+  private LatencyHistogram histogram;
+
+  @Before
+  public void setup() {
+    histogram = new LatencyHistogram();
+  }
+
+  @Test
+  public void emptyHistogram_shouldReportZeroes() {
+    assertThat(histogram.getTotalCount()).isEqualTo(0);
+    assertThat(histogram.getMaxValue()).isEqualTo(0);
+    assertThat(histogram.getMean()).isEqualTo(0.0);
+    assertThat(histogram.getValueAtPercentile(50.0)).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getValueAtPercentile_withNegativePercentile_shouldThrow() {
+    histogram.getValueAtPercentile(-0.1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getValueAtPercentile_withPercentileOver100_shouldThrow() {
+    histogram.getValueAtPercentile(100.1);
+  }
+
+  @Test
+  public void recordValue_withSmallValues_shouldBeExact() {
+    for (int i = 1; i <= 100; i++) {
+      histogram.recordValue(i);
+    }
+    assertThat(histogram.getTotalCount()).isEqualTo(100);
+    assertThat(histogram.getMaxValue()).isEqualTo(100);
+    assertThat(histogram.getMean()).isEqualTo(50.5);
+    assertThat(histogram.getValueAtPercentile(0.0)).isEqualTo(1);
+    assertThat(histogram.getValueAtPercentile(50.0)).isEqualTo(50);
+    assertThat(histogram.getValueAtPercentile(99.0)).isEqualTo(99);
+    assertThat(histogram.getValueAtPercentile(100.0)).isEqualTo(100);
+  }
+
+  @Test
+  public void recordValue_withLargeValues_shouldBeWithinPrecision() {
+    for (long i = 1; i <= 10_000; i++) {
+      histogram.recordValue(i * 1_000_000L);
+    }
+    assertPercentileNear(50.0, 5_000_000_000L);
+    assertPercentileNear(99.0, 9_900_000_000L);
+    assertPercentileNear(99.9, 9_990_000_000L);
+    assertPercentileNear(99.99, 9_999_000_000L);
+    assertThat(histogram.getValueAtPercentile(100.0)).isEqualTo(10_000_000_000L);
+  }
+
+  private void assertPercentileNear(double percentile, long expectedValue) {
+    long value = histogram.getValueAtPercentile(percentile);
+    assertThat((double) value).isWithin(expectedValue / 64.0).of(expectedValue);
+  }
+
+  @Test
+  public void recordValue_withNegativeValue_shouldRecordZero() {
+    histogram.recordValue(-5);
+    assertThat(histogram.getTotalCount()).isEqualTo(1);
+    assertThat(histogram.getValueAtPercentile(100.0)).isEqualTo(0);
+  }
+
+  @Test
+  public void recordValue_withMaxValue_shouldWork() {
+    histogram.recordValue(Long.MAX_VALUE);
+    assertThat(histogram.getMaxValue()).isEqualTo(Long.MAX_VALUE);
+    assertThat(histogram.getValueAtPercentile(100.0)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void bucketIndex_shouldBeMonotonicAndConsistentWithHighestEquivalentValue() {
+    int previousIndex = -1;
+    for (long value = 0; value < 1_000_000; value += 7) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertThat(index).isAtLeast(previousIndex);
+      assertThat(LatencyHistogram.highestEquivalentValue(index)).isAtLeast(value);
+      assertThat(LatencyHistogram.bucketIndex(LatencyHistogram.highestEquivalentValue(index)))
+          .isEqualTo(index);
+      previousIndex = index;
+    }
+  }
+
+  @Test
+  public void reset_shouldDiscardValues() {
+    histogram.recordValue(1234);
+    histogram.reset();
+    assertThat(histogram.getTotalCount()).isEqualTo(0);
+    assertThat(histogram.getMaxValue()).isEqualTo(0);
+    assertThat(histogram.getMean()).isEqualTo(0.0);
+  }
+
+  @Test
+  public void recordValue_fromManyThreads_shouldCountEveryValue() throws Exception {
+    ExecutorService es = Executors.newFixedThreadPool(4);
+    Future<?>[] results = new Future<?>[4];
+    for (int t = 0; t < 4; t++) {
+      results[t] = es.submit(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          histogram.recordValue(i);
+        }
+      });
+    }
+    for (Future<?> result : results) {
+      result.get(1, TimeUnit.SECONDS);
+    }
+    assertThat(histogram.getTotalCount()).isEqualTo(40_000);
+    assertThat(histogram.getMaxValue()).isEqualTo(9_999);
+    es.shutdownNow();
+  }
+}
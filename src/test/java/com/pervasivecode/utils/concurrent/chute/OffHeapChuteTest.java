@@ -0,0 +1,286 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class OffHeapChuteTest {
+  // Each Long record uses a 4-byte length and 8 bytes of data, aligned to 16 bytes.
+  private static final int LONG_RECORD_SIZE = 16;
+
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Constructor tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectZeroCapacity() {
+    new OffHeapChute<>(0, ElementSerializers.longs());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_shouldRejectNullSerializer() {
+    new OffHeapChute<Long>(64, null);
+  }
+
+  @Test
+  public void constructor_shouldRoundCapacityUpToAlignment() {
+    assertThat(new OffHeapChute<>(61, ElementSerializers.longs()).capacityBytes()).isEqualTo(64);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for put and take
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void putAndTake_shouldPreserveOrderAcrossWrapAround() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(4 * LONG_RECORD_SIZE, ElementSerializers.longs());
+    long nextToPut = 0;
+    long nextToTake = 0;
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 3; i++) {
+        chute.put(nextToPut++);
+      }
+      for (int i = 0; i < 3; i++) {
+        assertThat(chute.take()).isEqualTo(Optional.of(nextToTake++));
+      }
+    }
+    assertThat(chute.usedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_withVariableSizeElements_shouldPadAtEndOfRing() throws Exception {
+    OffHeapChute<String> chute = new OffHeapChute<>(64, ElementSerializers.utf8Strings());
+    chute.put("0123456789abcdefghijklmn"); // 28 bytes -> 32-byte record
+    chute.put("abcd"); // 8-byte record, leaving 24 bytes at the end.
+    assertThat(chute.take()).isEqualTo(Optional.of("0123456789abcdefghijklmn"));
+    // This needs 32 bytes, so it's put at the start of the ring after 24 bytes of padding.
+    chute.put("ABCDEFGHIJKLMNOPQRSTUVWX");
+    assertThat(chute.usedBytes()).isEqualTo(8 + 24 + 32);
+    assertThat(chute.take()).isEqualTo(Optional.of("abcd"));
+    assertThat(chute.take()).isEqualTo(Optional.of("ABCDEFGHIJKLMNOPQRSTUVWX"));
+    assertThat(chute.usedBytes()).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void put_withElementLargerThanHalfTheRing_shouldThrow() throws Exception {
+    OffHeapChute<String> chute = new OffHeapChute<>(64, ElementSerializers.utf8Strings());
+    chute.put("0123456789abcdefghijklmnopqrstuvwxyz");
+  }
+
+  @Test
+  public void put_whenFull_shouldBlockUntilSpaceIsFreed() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(2 * LONG_RECORD_SIZE, ElementSerializers.longs());
+    chute.put(1L);
+    chute.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(3L);
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of(1L));
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(Optional.of(2L));
+    assertThat(chute.take()).isEqualTo(Optional.of(3L));
+  }
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(2 * LONG_RECORD_SIZE, ElementSerializers.longs());
+    chute.put(1L);
+    chute.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(3L);
+      return null;
+    });
+    Thread.sleep(20);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    assertThat(chute.take()).isEqualTo(Optional.of(1L));
+    assertThat(chute.take()).isEqualTo(Optional.of(2L));
+    assertThat(chute.take()).isEqualTo(Optional.empty());
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(64, ElementSerializers.longs());
+    chute.close();
+    chute.put(1L);
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilPut() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(64, ElementSerializers.longs());
+    Future<Optional<Long>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.put(5L);
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of(5L));
+  }
+
+  @Test
+  public void tryTake_andTryTakeNow_whenEmpty_shouldReturnEmpty() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(64, ElementSerializers.longs());
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+    chute.put(1L);
+    chute.put(2L);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.of(1L));
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.of(2L));
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for zero-copy takes
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void takeSerialized_shouldPassReadOnlyViewOfElement() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(64, ElementSerializers.longs());
+    chute.put(0x0102030405060708L);
+    Optional<Integer> firstByte = chute.takeSerialized(buffer -> {
+      assertThat(buffer.isReadOnly()).isTrue();
+      assertThat(buffer.isDirect()).isTrue();
+      assertThat(buffer.remaining()).isEqualTo(8);
+      try {
+        buffer.put(0, (byte) 0);
+        Truth.assert_().fail("Expected the buffer to be read-only.");
+      } catch (@SuppressWarnings("unused") ReadOnlyBufferException e) {
+        // expected
+      }
+      return (int) buffer.get(0);
+    });
+    assertThat(firstByte).isEqualTo(Optional.of(1));
+    assertThat(chute.usedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void takeSerialized_whenReaderThrows_shouldStillConsumeElement() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(64, ElementSerializers.longs());
+    chute.put(1L);
+    chute.put(2L);
+    try {
+      chute.takeSerialized(buffer -> {
+        throw new IllegalStateException("oops");
+      });
+      Truth.assert_().fail("Expected the reader's exception to propagate.");
+    } catch (IllegalStateException ise) {
+      assertThat(ise).hasMessageThat().isEqualTo("oops");
+    }
+    assertThat(chute.take()).isEqualTo(Optional.of(2L));
+  }
+
+  @Test
+  public void take_whenDeserializerThrows_shouldStillWakeBlockedPutter() throws Exception {
+    ElementSerializer<Long> longs = ElementSerializers.longs();
+    ElementSerializer<Long> failsOnOne = new ElementSerializer<Long>() {
+      @Override
+      public int serializedSize(Long element) {
+        return longs.serializedSize(element);
+      }
+
+      @Override
+      public void serialize(Long element, ByteBuffer destination) {
+        longs.serialize(element, destination);
+      }
+
+      @Override
+      public Long deserialize(ByteBuffer source) {
+        Long element = longs.deserialize(source);
+        if (element == 1L) {
+          throw new IllegalArgumentException("cannot deserialize 1");
+        }
+        return element;
+      }
+    };
+    OffHeapChute<Long> chute = new OffHeapChute<>(2 * LONG_RECORD_SIZE, failsOnOne);
+    chute.put(1L);
+    chute.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(3L);
+      return null;
+    });
+    assertStillRunning(putResult);
+    try {
+      chute.take();
+      Truth.assert_().fail("Expected the deserializer's exception to propagate.");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae).hasMessageThat().isEqualTo("cannot deserialize 1");
+    }
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(Optional.of(2L));
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.of(3L));
+  }
+
+  @Test
+  public void tryTakeSerialized_shouldTimeOutOrReturnResult() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(64, ElementSerializers.longs());
+    assertThat(chute.tryTakeSerialized(10, MILLISECONDS, ByteBuffer::getLong))
+        .isEqualTo(Optional.empty());
+    chute.put(9L);
+    assertThat(chute.tryTakeSerialized(10, MILLISECONDS, ByteBuffer::getLong))
+        .isEqualTo(Optional.of(9L));
+  }
+
+  @Test
+  public void takeSerialized_afterClose_shouldReturnEmpty() throws Exception {
+    OffHeapChute<Long> chute = new OffHeapChute<>(64, ElementSerializers.longs());
+    chute.close();
+    assertThat(chute.takeSerialized(ByteBuffer::getLong)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void concurrentProducerAndConsumer_shouldDeliverEveryElement() throws Exception {
+    OffHeapChute<String> chute = new OffHeapChute<>(256, ElementSerializers.utf8Strings());
+    int numElements = 20_000;
+    Future<?> producer = executorService.submit(() -> {
+      for (int i = 0; i < numElements; i++) {
+        // Vary the size, so that padding is exercised.
+        chute.put(Integer.toString(i, 2));
+      }
+      chute.close();
+      return null;
+    });
+    int expected = 0;
+    Optional<String> taken;
+    while ((taken = chute.take()).isPresent()) {
+      assertThat(taken.get()).isEqualTo(Integer.toString(expected++, 2));
+    }
+    producer.get(1, SECONDS);
+    assertThat(expected).isEqualTo(numElements);
+  }
+}
@@ -24,6 +24,18 @@ public class OptionalTransformerTest {
     assertThat(!result.isPresent()).isTrue();
   }
 
+  @Test
+  public void thenApply_shouldApplyBothFunctions() {
+    OptionalTransformer<String, Integer> transformer =
+        new OptionalTransformer<String, Integer>((s) -> s.length()).thenApply((i) -> i * 2);
+
+    Optional<Integer> result = transformer.apply(Optional.of("abc"));
+    assertThat(result).isEqualTo(Optional.of(6));
+
+    result = transformer.apply(Optional.empty());
+    assertThat(result.isPresent()).isFalse();
+  }
+
   @Test
   public void equals_shouldWorkCorrectly() {
     EqualsVerifier.forClass(OptionalTransformer.class).verify();
@@ -0,0 +1,44 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import org.junit.Test;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class OverflowPolicyTest {
+  @Test
+  public void block_shouldHaveKindBlock() {
+    assertThat(OverflowPolicy.block().kind()).isEqualTo(OverflowPolicy.Kind.BLOCK);
+  }
+
+  @Test
+  public void dropNewest_shouldHaveKindDropNewest() {
+    assertThat(OverflowPolicy.dropNewest().kind()).isEqualTo(OverflowPolicy.Kind.DROP_NEWEST);
+  }
+
+  @Test
+  public void dropOldest_shouldHaveKindDropOldest() {
+    assertThat(OverflowPolicy.dropOldest().kind()).isEqualTo(OverflowPolicy.Kind.DROP_OLDEST);
+  }
+
+  @Test
+  public void sample_shouldKeepThreshold() {
+    OverflowPolicy policy = OverflowPolicy.sample(0.75);
+    assertThat(policy.kind()).isEqualTo(OverflowPolicy.Kind.SAMPLE);
+    assertThat(policy.samplingThreshold()).isEqualTo(0.75);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sample_withNegativeThreshold_shouldThrow() {
+    OverflowPolicy.sample(-0.1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sample_withThresholdOfOne_shouldThrow() {
+    OverflowPolicy.sample(1.0);
+  }
+
+  @Test
+  public void equals_shouldWorkCorrectly() {
+    EqualsVerifier.forClass(OverflowPolicy.class).verify();
+  }
+}
@@ -0,0 +1,154 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.collect.ImmutableList;
+import com.google.common.truth.Truth;
+import com.pervasivecode.utils.time.CurrentNanosSource;
+
+public class PartitioningWorkerTest {
+  private CurrentNanosSource nanosSource;
+  private ExecutorService executorService;
+  private BufferingChute<Integer> input;
+  private List<BufferingChute<Integer>> outputs;
+
+  @Before
+  public void setup() {
+    nanosSource = () -> System.nanoTime();
+    executorService = Executors.newFixedThreadPool(2);
+    input = new BufferingChute<>(100, nanosSource);
+    outputs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      outputs.add(new BufferingChute<>(100, nanosSource));
+    }
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNoOutputs_shouldThrow() {
+    new PartitioningWorker<Integer>(input, ImmutableList.of(), e -> 0, 1, true);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroBatchSize_shouldThrow() {
+    new PartitioningWorker<>(input, outputs, e -> 0, 0, true);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullPartitioner_shouldThrow() {
+    new PartitioningWorker<>(input, outputs, null, 1, true);
+  }
+
+  @Test
+  public void partitioningWorker_shouldRouteInOrderAndCloseOutputsWhenInputCloses()
+      throws Exception {
+    Future<?> result = executorService
+        .submit(Workers.partitioningWorker(input, outputs, e -> e % 3, 4, true));
+    for (int i = 0; i < 30; i++) {
+      input.put(i);
+    }
+    input.close();
+    result.get(1, SECONDS);
+
+    for (int p = 0; p < 3; p++) {
+      List<Integer> expected = new ArrayList<>();
+      for (int i = p; i < 30; i += 3) {
+        expected.add(i);
+      }
+      assertThat(takeAll(outputs.get(p))).containsExactlyElementsIn(expected).inOrder();
+      assertThat(outputs.get(p).isClosedAndEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void partitioningWorker_shouldFlushPartialBatchesWhenInputIsIdle() throws Exception {
+    executorService.submit(Workers.partitioningWorker(input, outputs, e -> 1, 100, true));
+    input.put(7);
+    assertThat(outputs.get(1).tryTake(1, SECONDS)).isEqualTo(Optional.of(7));
+    assertThat(outputs.get(1).isClosed()).isFalse();
+  }
+
+  @Test
+  public void partitioningWorker_withCloseOutputsFalse_shouldLeaveOutputsOpen() throws Exception {
+    Future<?> result =
+        executorService.submit(Workers.partitioningWorker(input, outputs, e -> 0, 4, false));
+    input.put(1);
+    input.close();
+    result.get(1, SECONDS);
+    assertThat(outputs.get(0).tryTakeNow()).isEqualTo(Optional.of(1));
+    for (BufferingChute<Integer> output : outputs) {
+      assertThat(output.isClosed()).isFalse();
+    }
+  }
+
+  @Test
+  public void partitioningWorker_withOutOfRangePartition_shouldThrow() throws Exception {
+    Future<?> result =
+        executorService.submit(Workers.partitioningWorker(input, outputs, e -> 3, 4, true));
+    input.put(1);
+    try {
+      result.get(1, SECONDS);
+      Truth.assert_().fail("Expected the worker to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+  }
+
+  @Test
+  public void keyPartitioningWorker_shouldRouteEachKeyToOneOutput() throws Exception {
+    Future<?> result = executorService
+        .submit(Workers.keyPartitioningWorker(input, outputs, e -> "key" + (e % 10), 4, true));
+    for (int i = 0; i < 50; i++) {
+      input.put(i);
+    }
+    input.close();
+    result.get(1, SECONDS);
+
+    Map<Integer, Integer> outputByKey = new HashMap<>();
+    int numTaken = 0;
+    for (int p = 0; p < 3; p++) {
+      for (Integer element : takeAll(outputs.get(p))) {
+        Integer previous = outputByKey.put(element % 10, p);
+        if (previous != null) {
+          assertThat(previous).isEqualTo(p);
+        }
+        numTaken++;
+      }
+    }
+    assertThat(numTaken).isEqualTo(50);
+    assertThat(outputByKey).hasSize(10);
+  }
+
+  @Test
+  public void keyPartitioningWorker_whenInterrupted_shouldStopWithoutClosingOutputs()
+      throws Exception {
+    Future<?> result = executorService
+        .submit(Workers.keyPartitioningWorker(input, outputs, e -> e, 4, true));
+    Thread.sleep(20);
+    result.cancel(true);
+    Thread.sleep(20);
+    for (BufferingChute<Integer> output : outputs) {
+      assertThat(output.tryTake(1, MILLISECONDS)).isEqualTo(Optional.empty());
+      assertThat(output.isClosed()).isFalse();
+    }
+  }
+}
@@ -0,0 +1,234 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.collect.ImmutableList;
+import com.google.common.truth.Truth;
+
+public class PipelineTest {
+  private BufferingChute<String> output;
+
+  @Before
+  public void setup() {
+    output = new BufferingChute<>(100, () -> System.nanoTime());
+  }
+
+  private static List<Integer> range(int size) {
+    List<Integer> numbers = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      numbers.add(i);
+    }
+    return numbers;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parallel_withZeroThreads_shouldThrow() {
+    Pipeline.from(ImmutableList.of("a")).parallel(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void batch_withZeroBatchSize_shouldThrow() {
+    Pipeline.from(ImmutableList.of("a")).batch(0);
+  }
+
+  @Test
+  public void sequentialStages_shouldBeFusedIntoOneThread() throws Exception {
+    Pipeline pipeline = Pipeline.from(ImmutableList.of("a", "bb", "", "ccc"))
+        .filter((s) -> !s.isEmpty())
+        .map(String::length)
+        .map((n) -> "#" + n)
+        .into(output);
+    assertThat(pipeline.numThreads()).isEqualTo(1);
+
+    pipeline.start();
+    assertThat(pipeline.await(1, SECONDS)).isTrue();
+    assertThat(pipeline.isDone()).isTrue();
+    assertThat(takeAll(output)).containsExactly("#1", "#2", "#3").inOrder();
+    assertThat(output.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void flatMapAndBatch_shouldExpandAndGroupElements() throws Exception {
+    List<List<String>> batches = new CopyOnWriteArrayList<>();
+    Pipeline pipeline = Pipeline.from(ImmutableList.of("a b c", "", "d e"))
+        .flatMap((s) -> s.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(s.split(" ")))
+        .batch(2)
+        .forEach(batches::add);
+
+    pipeline.start();
+    pipeline.await();
+    assertThat(batches).containsExactly(ImmutableList.of("a", "b"), ImmutableList.of("c", "d"),
+        ImmutableList.of("e")).inOrder();
+  }
+
+  @Test
+  public void parallel_fromChuteExit_shouldTakeFromSourceDirectly() throws Exception {
+    BufferingChute<Integer> source = new BufferingChute<>(10, () -> System.nanoTime());
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    Pipeline pipeline = Pipeline.from(source)
+        .parallel(4)
+        .map((n) -> {
+          threadNames.add(Thread.currentThread().getName());
+          return "n" + n;
+        })
+        .into(output);
+    assertThat(pipeline.numThreads()).isEqualTo(4);
+
+    pipeline.start();
+    for (int i = 0; i < 50; i++) {
+      source.put(i);
+    }
+    source.close();
+    pipeline.await();
+
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      expected.add("n" + i);
+    }
+    assertThat(takeAll(output)).containsExactlyElementsIn(expected);
+    assertThat(output.isClosedAndEmpty()).isTrue();
+    assertThat(threadNames).isNotEmpty();
+    for (String threadName : threadNames) {
+      assertThat(threadName).startsWith("chute-pipeline-");
+    }
+  }
+
+  @Test
+  public void severalSegments_shouldDeliverEveryElementAndCloseOutput() throws Exception {
+    BufferingChute<List<Integer>> batchOutput = new BufferingChute<>(1000, () -> System.nanoTime());
+    Pipeline pipeline = Pipeline.from(range(1000))
+        .filter((n) -> n % 2 == 0)
+        .parallel(3)
+        .map((n) -> n * 10)
+        .parallel(1)
+        .batch(7)
+        .into(batchOutput);
+    // One thread for the source and the filter, three for the map, and one for the batch.
+    assertThat(pipeline.numThreads()).isEqualTo(5);
+
+    pipeline.start();
+    assertThat(pipeline.await(10, SECONDS)).isTrue();
+
+    List<Integer> results = new ArrayList<>();
+    for (List<Integer> batch : takeAll(batchOutput)) {
+      assertThat(batch.size()).isAtMost(7);
+      results.addAll(batch);
+    }
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 1000; i += 2) {
+      expected.add(i * 10);
+    }
+    assertThat(results).containsExactlyElementsIn(expected);
+    assertThat(batchOutput.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void await_whenStageThrows_shouldReportFailureAndStopOtherThreads() throws Exception {
+    BufferingChute<Integer> source = new BufferingChute<>(10, () -> System.nanoTime());
+    Pipeline pipeline = Pipeline.from(source)
+        .parallel(2)
+        .map((n) -> {
+          if (n == 3) {
+            throw new IllegalArgumentException("bad element");
+          }
+          return "n" + n;
+        })
+        .into(output);
+    pipeline.start();
+    for (int i = 0; i < 5; i++) {
+      source.put(i);
+    }
+    // The source is never closed, so the pipeline only finishes because of the failure.
+
+    try {
+      pipeline.await(5, SECONDS);
+      Truth.assert_().fail("Expected the pipeline to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+      assertThat(e.getCause()).hasMessageThat().isEqualTo("bad element");
+    }
+    assertThat(pipeline.isDone()).isTrue();
+    assertThat(output.isClosed()).isFalse();
+  }
+
+  @Test
+  public void cancel_shouldStopAllThreads() throws Exception {
+    BufferingChute<Integer> source = new BufferingChute<>(10, () -> System.nanoTime());
+    Pipeline pipeline = Pipeline.from(source).map((n) -> "n" + n).parallel(2).into(output);
+    pipeline.start();
+    source.put(1);
+    assertThat(pipeline.await(50, MILLISECONDS)).isFalse();
+    assertThat(pipeline.isDone()).isFalse();
+
+    pipeline.cancel();
+    try {
+      pipeline.await(5, SECONDS);
+      Truth.assert_().fail("Expected the pipeline to be cancelled.");
+    } catch (@SuppressWarnings("unused") CancellationException e) {
+      // expected
+    }
+    assertThat(pipeline.isDone()).isTrue();
+  }
+
+  @Test
+  public void cancel_afterPipelineFinished_shouldHaveNoEffect() throws Exception {
+    Pipeline pipeline = Pipeline.from(ImmutableList.of("a")).into(output);
+    pipeline.start();
+    pipeline.await();
+    pipeline.cancel();
+    pipeline.await();
+  }
+
+  @Test
+  public void cancel_beforeStart_shouldPreventStart() throws Exception {
+    Pipeline pipeline = Pipeline.from(ImmutableList.of("a")).into(output);
+    pipeline.cancel();
+    assertThat(pipeline.isDone()).isTrue();
+    try {
+      pipeline.start();
+      Truth.assert_().fail("Expected start to fail.");
+    } catch (@SuppressWarnings("unused") IllegalStateException e) {
+      // expected
+    }
+    try {
+      pipeline.await();
+      Truth.assert_().fail("Expected the pipeline to be cancelled.");
+    } catch (@SuppressWarnings("unused") CancellationException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void start_whenAlreadyStarted_shouldThrow() throws Exception {
+    Pipeline pipeline = Pipeline.from(ImmutableList.of("a")).into(output);
+    pipeline.start();
+    pipeline.start();
+  }
+
+  @Test
+  public void builder_shouldBeImmutable() throws Exception {
+    Pipeline.Builder<String> base = Pipeline.from(ImmutableList.of("a", "b"));
+    Pipeline.Builder<String> upper = base.map(String::toUpperCase);
+    List<String> fromBase = new CopyOnWriteArrayList<>();
+
+    Pipeline pipeline = base.forEach(fromBase::add);
+    upper.parallel(2);
+    pipeline.start();
+    pipeline.await();
+    assertThat(pipeline.numThreads()).isEqualTo(1);
+    assertThat(fromBase).containsExactly("a", "b").inOrder();
+  }
+}
@@ -0,0 +1,189 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAllAvailable;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+import com.pervasivecode.utils.time.CurrentNanosSource;
+
+public class PriorityChuteTest {
+  private AtomicLong currentNanos;
+  private CurrentNanosSource nanosSource;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    currentNanos = new AtomicLong(1_000_000L);
+    nanosSource = currentNanos::get;
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  private static void putAll(PriorityChute<String> chute, String... elements)
+      throws InterruptedException {
+    for (String element : elements) {
+      chute.put(element);
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Constructor tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroCapacity_shouldThrow() {
+    new PriorityChute<String>(0, Comparator.naturalOrder(), nanosSource);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNegativeMaxWait_shouldThrow() {
+    new PriorityChute<String>(1, Comparator.naturalOrder(), -1, SECONDS, nanosSource);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullComparator_shouldThrow() {
+    new PriorityChute<String>(1, null, nanosSource);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Ordering tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void take_shouldReturnElementsInPriorityOrder() throws Exception {
+    PriorityChute<String> chute = new PriorityChute<>(10, Comparator.naturalOrder(), nanosSource);
+    putAll(chute, "d", "b", "e", "a", "c");
+    assertThat(chute.size()).isEqualTo(5);
+    assertThat(takeAllAvailable(chute)).containsExactly("a", "b", "c", "d", "e").inOrder();
+  }
+
+  @Test
+  public void take_withEqualPriorities_shouldReturnElementsInPutOrder() throws Exception {
+    PriorityChute<String> chute = PriorityChute.byPriorityLevel(10,
+        s -> s.startsWith("control") ? 0 : 1, 1, SECONDS, nanosSource);
+    putAll(chute, "bulk1", "control1", "bulk2", "control2", "bulk3");
+    assertThat(takeAllAvailable(chute))
+        .containsExactly("control1", "control2", "bulk1", "bulk2", "bulk3").inOrder();
+  }
+
+  @Test
+  public void take_withOldestElementPastMaxWait_shouldTakeOldestFirst() throws Exception {
+    PriorityChute<String> chute = PriorityChute.byPriorityLevel(10,
+        s -> s.startsWith("high") ? 0 : 1, 100, MILLISECONDS, nanosSource);
+    putAll(chute, "low1", "low2");
+    currentNanos.addAndGet(MILLISECONDS.toNanos(60));
+    putAll(chute, "high1", "high2");
+    assertThat(chute.take()).isEqualTo(Optional.of("high1"));
+
+    // low1 and low2 have now waited for 100ms, but high2 has only waited for 40ms.
+    currentNanos.addAndGet(MILLISECONDS.toNanos(40));
+    assertThat(chute.take()).isEqualTo(Optional.of("low1"));
+    assertThat(chute.take()).isEqualTo(Optional.of("low2"));
+    assertThat(chute.take()).isEqualTo(Optional.of("high2"));
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void take_withManyAgedTakes_shouldKeepPriorityOrderForTheRest() throws Exception {
+    PriorityChute<Integer> chute =
+        new PriorityChute<>(4, Comparator.<Integer>naturalOrder(), 10, MILLISECONDS, nanosSource);
+    // Alternate between taking aged elements and elements in priority order, many times over, to
+    // exercise the removal of taken entries from each index.
+    for (int round = 0; round < 100; round++) {
+      chute.put(round * 10 + 9);
+      chute.put(round * 10 + 1);
+      currentNanos.addAndGet(MILLISECONDS.toNanos(10));
+      assertThat(chute.take()).isEqualTo(Optional.of(round * 10 + 9));
+      assertThat(chute.take()).isEqualTo(Optional.of(round * 10 + 1));
+    }
+    assertThat(chute.size()).isEqualTo(0);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Blocking and closing tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void put_whenFull_shouldBlockUntilElementIsTaken() throws Exception {
+    PriorityChute<String> chute = new PriorityChute<>(1, Comparator.naturalOrder(), nanosSource);
+    chute.put("b");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("a");
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of("b"));
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+  }
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    PriorityChute<String> chute = new PriorityChute<>(1, Comparator.naturalOrder(), nanosSource);
+    chute.put("a");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("b");
+      return null;
+    });
+    Thread.sleep(20);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilClosed() throws Exception {
+    PriorityChute<String> chute = new PriorityChute<>(1, Comparator.naturalOrder(), nanosSource);
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void close_shouldStillAllowRemainingElementsToBeTaken() throws Exception {
+    PriorityChute<String> chute = new PriorityChute<>(2, Comparator.naturalOrder(), nanosSource);
+    putAll(chute, "b", "a");
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.of("a"));
+    assertThat(chute.take()).isEqualTo(Optional.of("b"));
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    PriorityChute<String> chute = new PriorityChute<>(2, Comparator.naturalOrder(), nanosSource);
+    chute.close();
+    chute.put("a");
+  }
+}
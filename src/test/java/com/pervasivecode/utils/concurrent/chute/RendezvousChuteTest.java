@@ -0,0 +1,171 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class RendezvousChuteTest {
+  private ExecutorService executorService;
+  private RendezvousChute<String> chute;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(4);
+    chute = new RendezvousChute<>();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void put_withNullElement_shouldThrow() throws Exception {
+    chute.put(null);
+  }
+
+  @Test
+  public void put_shouldBlockUntilTaken() throws Exception {
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("a");
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void take_shouldBlockUntilPut() throws Exception {
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.put("a");
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of("a"));
+  }
+
+  @Test
+  public void tryTakeNow_withNoWaitingPutter_shouldReturnEmpty() {
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void tryTakeNow_withWaitingPutter_shouldTakeElement() throws Exception {
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("a");
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.of("a"));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void tryTake_withNoPutter_shouldTimeOutAndNotReceiveLaterElements() throws Exception {
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    // The timed-out taker must not be matched with a later putter.
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("a");
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.tryTake(1, SECONDS)).isEqualTo(Optional.of("a"));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void close_shouldMakeWaitingPuttersThrow() throws Exception {
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("a");
+      return null;
+    });
+    assertStillRunning(putResult);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the waiting put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void close_shouldMakeWaitingTakersReturnEmpty() throws Exception {
+    Future<Optional<String>> takeResult1 = executorService.submit(() -> chute.take());
+    Future<Optional<String>> takeResult2 =
+        executorService.submit(() -> chute.tryTake(10, SECONDS));
+    assertStillRunning(takeResult1);
+    chute.close();
+    assertThat(takeResult1.get(1, SECONDS)).isEqualTo(Optional.empty());
+    assertThat(takeResult2.get(1, SECONDS)).isEqualTo(Optional.empty());
+    assertThat(chute.take()).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    chute.close();
+    chute.put("a");
+  }
+
+  @Test
+  public void take_whenInterrupted_shouldThrowAndNotConsumeLaterElements() throws Exception {
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    takeResult.cancel(true);
+
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("a");
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void manyPuttersAndTakers_shouldHandOffEveryElementExactlyOnce() throws Exception {
+    RendezvousChute<Integer> intChute = new RendezvousChute<>();
+    int numPerPutter = 2000;
+    List<Future<?>> putResults = new ArrayList<>();
+    for (int p = 0; p < 2; p++) {
+      int base = p * numPerPutter;
+      putResults.add(executorService.submit(() -> {
+        for (int i = 0; i < numPerPutter; i++) {
+          intChute.put(base + i);
+        }
+        return null;
+      }));
+    }
+    List<Future<List<Integer>>> takeResults = new ArrayList<>();
+    for (int t = 0; t < 2; t++) {
+      takeResults.add(executorService.submit(() -> takeAll(intChute)));
+    }
+    for (Future<?> putResult : putResults) {
+      putResult.get(10, SECONDS);
+    }
+    intChute.close();
+    List<Integer> allTaken = new ArrayList<>();
+    for (Future<List<Integer>> takeResult : takeResults) {
+      allTaken.addAll(takeResult.get(10, SECONDS));
+    }
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 2 * numPerPutter; i++) {
+      expected.add(i);
+    }
+    assertThat(allTaken).containsExactlyElementsIn(expected);
+  }
+}
@@ -0,0 +1,146 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class ResizableChuteTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  private Future<?> submitPut(ResizableChute<String> chute, String element) {
+    return executorService.submit(() -> {
+      chute.put(element);
+      return null;
+    });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroCapacity_shouldThrow() {
+    new ResizableChute<String>(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setCapacity_withZeroCapacity_shouldThrow() {
+    new ResizableChute<String>(1).setCapacity(0);
+  }
+
+  @Test
+  public void setCapacity_whenGrowing_shouldUnblockPutters() throws Exception {
+    ResizableChute<String> chute = new ResizableChute<>(1);
+    chute.put("a");
+    Future<?> putResult = submitPut(chute, "b");
+    assertStillRunning(putResult);
+    assertThat(chute.numPutsBlocked()).isEqualTo(1);
+
+    chute.setCapacity(2);
+    putResult.get(1, SECONDS);
+    assertThat(chute.capacity()).isEqualTo(2);
+    assertThat(chute.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void setCapacity_whenShrinking_shouldKeepElementsAndBlockUntilBelowNewCapacity()
+      throws Exception {
+    ResizableChute<String> chute = new ResizableChute<>(3);
+    chute.put("a");
+    chute.put("b");
+    chute.put("c");
+    chute.setCapacity(1);
+    assertThat(chute.size()).isEqualTo(3);
+
+    Future<?> putResult = submitPut(chute, "d");
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+    assertThat(chute.take()).isEqualTo(Optional.of("b"));
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of("c"));
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(Optional.of("d"));
+  }
+
+  @Test
+  public void adjustCapacity_shouldPassBlockingCountsSinceLastAdjustment() throws Exception {
+    ResizableChute<String> chute = new ResizableChute<>(1);
+    assertThat(chute.tryTake(1, MILLISECONDS)).isEqualTo(Optional.empty());
+    chute.put("a");
+    Future<?> putResult = submitPut(chute, "b");
+    assertStillRunning(putResult);
+
+    // Double the capacity if any puts blocked.
+    ResizableChute.CapacityPolicy doubleIfBlocked = (capacity, size, putsBlocked,
+        takesBlocked) -> putsBlocked > 0 ? capacity * 2 : capacity;
+    assertThat(chute.adjustCapacity((capacity, size, putsBlocked, takesBlocked) -> {
+      assertThat(capacity).isEqualTo(1);
+      assertThat(size).isEqualTo(1);
+      assertThat(putsBlocked).isEqualTo(1);
+      assertThat(takesBlocked).isEqualTo(1);
+      return doubleIfBlocked.newCapacity(capacity, size, putsBlocked, takesBlocked);
+    })).isEqualTo(2);
+    putResult.get(1, SECONDS);
+
+    assertThat(chute.adjustCapacity(doubleIfBlocked)).isEqualTo(2);
+    assertThat(chute.numPutsBlocked()).isEqualTo(1);
+    assertThat(chute.numTakesBlocked()).isEqualTo(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void adjustCapacity_withInvalidNewCapacity_shouldThrow() {
+    new ResizableChute<String>(1).adjustCapacity((capacity, size, putsBlocked, takesBlocked) -> 0);
+  }
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    ResizableChute<String> chute = new ResizableChute<>(1);
+    chute.put("a");
+    Future<?> putResult = submitPut(chute, "b");
+    assertStillRunning(putResult);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void take_whenBlockedAndClosed_shouldReturnEmpty() throws Exception {
+    ResizableChute<String> chute = new ResizableChute<>(1);
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void close_shouldStillAllowRemainingElementsToBeTaken() throws Exception {
+    ResizableChute<String> chute = new ResizableChute<>(2);
+    chute.put("a");
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.of("a"));
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+}
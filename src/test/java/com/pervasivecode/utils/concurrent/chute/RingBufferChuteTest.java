@@ -0,0 +1,266 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAllAvailable;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class RingBufferChuteTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  private static void putRange(RingBufferChute<Integer> chute, int first, int count)
+      throws InterruptedException {
+    for (int i = first; i < first + count; i++) {
+      chute.put(i);
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Constructor tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroCapacity_shouldThrow() {
+    new RingBufferChute<String>(0, OverflowPolicy.block());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullPolicy_shouldThrow() {
+    new RingBufferChute<String>(1, null);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Overflow policy tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void put_withBlockPolicyWhenFull_shouldBlockUntilElementIsTaken() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(2, OverflowPolicy.block());
+    putRange(chute, 0, 2);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(2);
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of(0));
+    putResult.get(1, SECONDS);
+    assertThat(takeAllAvailable(chute)).containsExactly(1, 2).inOrder();
+    assertThat(chute.numDropped()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_withDropNewestPolicyWhenFull_shouldDropNewElements() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(3, OverflowPolicy.dropNewest());
+    putRange(chute, 0, 5);
+    assertThat(chute.numDropped()).isEqualTo(2);
+    assertThat(takeAllAvailable(chute)).containsExactly(0, 1, 2).inOrder();
+  }
+
+  @Test
+  public void put_withDropOldestPolicyWhenFull_shouldOverwriteOldElements() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(3, OverflowPolicy.dropOldest());
+    putRange(chute, 0, 5);
+    assertThat(chute.numDropped()).isEqualTo(2);
+    assertThat(chute.size()).isEqualTo(3);
+    assertThat(takeAllAvailable(chute)).containsExactly(2, 3, 4).inOrder();
+  }
+
+  @Test
+  public void put_withSamplePolicyBelowThreshold_shouldAcceptAll() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(10, OverflowPolicy.sample(0.5));
+    putRange(chute, 0, 5);
+    assertThat(chute.numDropped()).isEqualTo(0);
+    assertThat(chute.size()).isEqualTo(5);
+  }
+
+  @Test
+  public void put_withSamplePolicyUnderPressure_shouldDropSomeButNotAll() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(1000, OverflowPolicy.sample(0.0));
+    putRange(chute, 0, 10_000);
+    assertThat(chute.numDropped()).isAtLeast(9000L);
+    assertThat(chute.numDropped() + chute.size()).isEqualTo(10_000L);
+    List<Integer> taken = takeAllAvailable(chute);
+    // Elements were dropped long before the chute was full, so some of the accepted elements were
+    // put after more than 1000 elements had been put. The accepted elements are still in order.
+    assertThat(taken.get(taken.size() - 1)).isGreaterThan(999);
+    for (int i = 1; i < taken.size(); i++) {
+      assertThat(taken.get(i)).isGreaterThan(taken.get(i - 1));
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Concurrency tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void putAndTake_withConcurrentProducers_shouldDeliverEveryElementOnce() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(8, OverflowPolicy.block());
+    int numProducers = 3;
+    int numPerProducer = 2000;
+    List<Future<?>> producers = new ArrayList<>();
+    for (int p = 0; p < numProducers; p++) {
+      int first = p * numPerProducer;
+      producers.add(executorService.submit(() -> {
+        putRange(chute, first, numPerProducer);
+        return null;
+      }));
+    }
+    boolean[] seen = new boolean[numProducers * numPerProducer];
+    for (int i = 0; i < seen.length; i++) {
+      int element = chute.tryTake(5, SECONDS).get();
+      assertThat(seen[element]).isFalse();
+      seen[element] = true;
+    }
+    for (Future<?> producer : producers) {
+      producer.get(1, SECONDS);
+    }
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void putAndTake_withDropOldestAndConcurrentConsumer_shouldAccountForEveryElement()
+      throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(4, OverflowPolicy.dropOldest());
+    Future<Integer> numTaken = executorService.submit(() -> {
+      int count = 0;
+      while (chute.take().isPresent()) {
+        count++;
+      }
+      return count;
+    });
+    putRange(chute, 0, 10_000);
+    chute.close();
+    assertThat(numTaken.get(5, SECONDS) + chute.numDropped()).isEqualTo(10_000L);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Blocking and closing tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void put_whenBlockedAndClosed_shouldThrow() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(1, OverflowPolicy.block());
+    chute.put(1);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(2);
+      return null;
+    });
+    Thread.sleep(20);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(1, OverflowPolicy.dropNewest());
+    chute.close();
+    chute.put(1);
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilElementIsPutOrClosed() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(1, OverflowPolicy.block());
+    Future<Optional<Integer>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.put(7);
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of(7));
+
+    takeResult = executorService.submit(() -> chute.take());
+    Thread.sleep(20);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void tryTake_shouldTimeOutOrReturnElement() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(1, OverflowPolicy.block());
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    chute.put(5);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.of(5));
+  }
+
+  @Test
+  public void close_shouldStillAllowRemainingElementsToBeTaken() throws Exception {
+    RingBufferChute<Integer> chute = new RingBufferChute<>(2, OverflowPolicy.block());
+    putRange(chute, 0, 2);
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    assertThat(chute.take()).isEqualTo(Optional.of(0));
+    assertThat(chute.take()).isEqualTo(Optional.of(1));
+    assertThat(chute.take()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void put_racingClose_shouldNeverStrandAnElement() throws Exception {
+    for (int round = 0; round < 50; round++) {
+      RingBufferChute<Integer> chute = new RingBufferChute<>(4, OverflowPolicy.block());
+      List<Future<Integer>> numPut = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        numPut.add(executorService.submit(() -> {
+          int count = 0;
+          try {
+            while (true) {
+              chute.put(count);
+              count++;
+            }
+          } catch (@SuppressWarnings("unused") IllegalStateException e) {
+            return count;
+          }
+        }));
+      }
+      Future<Integer> numTaken = executorService.submit(() -> {
+        int count = 0;
+        while (chute.take().isPresent()) {
+          count++;
+        }
+        return count;
+      });
+      Thread.sleep(1);
+      chute.close();
+
+      int totalTaken = numTaken.get(5, SECONDS);
+      assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+      assertThat(chute.isClosedAndEmpty()).isTrue();
+      int totalPut = numPut.get(0).get(5, SECONDS) + numPut.get(1).get(5, SECONDS);
+      assertThat(totalTaken).isEqualTo(totalPut);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentedChuteTest {
+  private static class RecordingListener implements SegmentedChute.SoftLimitListener {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void softLimitExceeded(int size) {
+      events.add("exceeded:" + size);
+    }
+
+    @Override
+    public void softLimitCleared(int size) {
+      events.add("cleared:" + size);
+    }
+  }
+
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroSegmentSize_shouldThrow() {
+    new SegmentedChute<String>(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroSoftLimit_shouldThrow() {
+    new SegmentedChute<String>(4, 0, new RecordingListener());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullListener_shouldThrow() {
+    new SegmentedChute<String>(4, 10, null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void put_withNullElement_shouldThrow() throws Exception {
+    new SegmentedChute<String>(4).put(null);
+  }
+
+  @Test
+  public void put_withManySegments_shouldPreserveOrder() throws Exception {
+    SegmentedChute<Integer> chute = new SegmentedChute<>(3);
+    for (int i = 0; i < 100; i++) {
+      chute.put(i);
+    }
+    assertThat(chute.size()).isEqualTo(100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(chute.tryTakeNow()).isEqualTo(Optional.of(i));
+    }
+    assertThat(chute.size()).isEqualTo(0);
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void putAndTake_interleavedAcrossSegmentBoundaries_shouldPreserveOrder() throws Exception {
+    SegmentedChute<Integer> chute = new SegmentedChute<>(2);
+    int nextPut = 0;
+    int nextTake = 0;
+    // Grow and shrink repeatedly, so that emptied segments are recycled.
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 7; i++) {
+        chute.put(nextPut++);
+      }
+      for (int i = 0; i < 5; i++) {
+        assertThat(chute.take()).isEqualTo(Optional.of(nextTake++));
+      }
+    }
+    while (nextTake < nextPut) {
+      assertThat(chute.take()).isEqualTo(Optional.of(nextTake++));
+    }
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void softLimit_shouldNotifyOnceEachWayWithHysteresis() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    SegmentedChute<Integer> chute = new SegmentedChute<>(4, 10, listener);
+    for (int i = 0; i < 10; i++) {
+      chute.put(i);
+    }
+    assertThat(listener.events).isEmpty();
+    chute.put(10);
+    chute.put(11);
+    assertThat(listener.events).containsExactly("exceeded:11");
+
+    // Dropping back to the soft limit doesn't clear it; dropping to half of it does.
+    for (int i = 0; i < 6; i++) {
+      chute.take();
+    }
+    assertThat(listener.events).containsExactly("exceeded:11");
+    chute.put(100);
+    chute.take();
+    chute.take();
+    assertThat(listener.events).containsExactly("exceeded:11", "cleared:5").inOrder();
+
+    for (int i = 0; i < 6; i++) {
+      chute.put(i);
+    }
+    assertThat(listener.events).containsExactly("exceeded:11", "cleared:5", "exceeded:11")
+        .inOrder();
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilPut() throws Exception {
+    SegmentedChute<String> chute = new SegmentedChute<>(4);
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.put("a");
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of("a"));
+  }
+
+  @Test
+  public void take_whenBlockedAndClosed_shouldReturnEmpty() throws Exception {
+    SegmentedChute<String> chute = new SegmentedChute<>(4);
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    Thread.sleep(20);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void tryTake_whenEmpty_shouldTimeOut() throws Exception {
+    SegmentedChute<String> chute = new SegmentedChute<>(4);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    SegmentedChute<String> chute = new SegmentedChute<>(4);
+    chute.close();
+    chute.put("a");
+  }
+
+  @Test
+  public void close_shouldStillAllowRemainingElementsToBeTaken() throws Exception {
+    SegmentedChute<String> chute = new SegmentedChute<>(1);
+    chute.put("a");
+    chute.put("b");
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+    assertThat(chute.take()).isEqualTo(Optional.of("b"));
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+    assertThat(chute.take()).isEqualTo(Optional.empty());
+  }
+}
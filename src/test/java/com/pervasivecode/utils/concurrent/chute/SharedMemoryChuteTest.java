@@ -0,0 +1,254 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.common.truth.Truth;
+
+public class SharedMemoryChuteTest {
+  // Each Long takes 4 bytes of length prefix plus 8 bytes of data, padded to 16 bytes.
+  private static final int LONG_RECORD_SIZE = 16;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path file;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    file = temporaryFolder.getRoot().toPath().resolve("chute.shm");
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  private SharedMemoryChute<Long> openLongChute(int numRecords) throws IOException {
+    return SharedMemoryChute.open(file, LONG_RECORD_SIZE * numRecords, ElementSerializers.longs());
+  }
+
+  /**
+   * Puts the Longs from 0 up to a specified count into a SharedMemoryChute, then closes it. Run in
+   * a separate JVM by {@link SharedMemoryChuteTest#take_fromAnotherProcess_shouldReceiveAll()}.
+   */
+  public static final class Producer {
+    public static void main(String[] args) throws Exception {
+      SharedMemoryChute<Long> chute = SharedMemoryChute.open(Paths.get(args[0]),
+          Integer.parseInt(args[1]), ElementSerializers.longs());
+      long count = Long.parseLong(args[2]);
+      for (long i = 0; i < count; i++) {
+        chute.put(i);
+      }
+      chute.close();
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for open
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = IllegalArgumentException.class)
+  public void open_withZeroCapacity_shouldThrow() throws Exception {
+    SharedMemoryChute.open(file, 0, ElementSerializers.longs());
+  }
+
+  @Test
+  public void open_shouldRoundCapacityUpToMultipleOf8() throws Exception {
+    assertThat(SharedMemoryChute.open(file, 61, ElementSerializers.longs()).capacityBytes())
+        .isEqualTo(64);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void open_withDifferentCapacity_shouldThrow() throws Exception {
+    openLongChute(4);
+    openLongChute(8);
+  }
+
+  @Test(expected = IOException.class)
+  public void open_withUnrelatedFile_shouldThrow() throws Exception {
+    Files.write(file, new byte[256 + LONG_RECORD_SIZE * 4]);
+    openLongChute(4);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for put and take
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void putAndTake_viaSeparateMappings_shouldPreserveOrderAcrossWrapAround()
+      throws Exception {
+    SharedMemoryChute<Long> entrance = openLongChute(3);
+    SharedMemoryChute<Long> exit = openLongChute(3);
+    long nextToPut = 0;
+    long nextToTake = 0;
+    for (int round = 0; round < 5; round++) {
+      entrance.put(nextToPut++);
+      entrance.put(nextToPut++);
+      assertThat(exit.usedBytes()).isEqualTo(2 * LONG_RECORD_SIZE);
+      assertThat(exit.take()).isEqualTo(Optional.of(nextToTake++));
+      assertThat(exit.tryTakeNow()).isEqualTo(Optional.of(nextToTake++));
+    }
+    assertThat(exit.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void put_withVariableSizedElements_shouldPadAtEndOfRing() throws Exception {
+    SharedMemoryChute<String> entrance =
+        SharedMemoryChute.open(file, 64, ElementSerializers.utf8Strings());
+    SharedMemoryChute<String> exit =
+        SharedMemoryChute.open(file, 64, ElementSerializers.utf8Strings());
+    for (int i = 0; i < 10; i++) {
+      String element = (i % 2 == 0) ? "a" : "abcdefghijklmnopqrst";
+      entrance.put(element);
+      assertThat(exit.take()).isEqualTo(Optional.of(element));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void put_withElementLargerThanHalfTheRing_shouldThrow() throws Exception {
+    SharedMemoryChute.open(file, 32, ElementSerializers.utf8Strings()).put("0123456789abcdef");
+  }
+
+  @Test
+  public void put_whenFull_shouldBlockUntilSpaceIsFreed() throws Exception {
+    SharedMemoryChute<Long> entrance = openLongChute(2);
+    SharedMemoryChute<Long> exit = openLongChute(2);
+    entrance.put(1L);
+    entrance.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      entrance.put(3L);
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(exit.take()).isEqualTo(Optional.of(1L));
+    putResult.get(1, SECONDS);
+    assertThat(exit.take()).isEqualTo(Optional.of(2L));
+    assertThat(exit.take()).isEqualTo(Optional.of(3L));
+  }
+
+  @Test
+  public void put_whenBlockedAndClosedByAnotherMapping_shouldThrow() throws Exception {
+    SharedMemoryChute<Long> entrance = openLongChute(2);
+    entrance.put(1L);
+    entrance.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      entrance.put(3L);
+      return null;
+    });
+    Thread.sleep(20);
+    openLongChute(2).close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void put_whenBlockedAndClosedBySameMapping_shouldThrow() throws Exception {
+    SharedMemoryChute<Long> chute = openLongChute(2);
+    chute.put(1L);
+    chute.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(3L);
+      return null;
+    });
+    Thread.sleep(20);
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    assertThat(chute.take()).isEqualTo(Optional.of(1L));
+    assertThat(chute.take()).isEqualTo(Optional.of(2L));
+    assertThat(chute.take()).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    SharedMemoryChute<Long> chute = openLongChute(2);
+    chute.close();
+    chute.put(1L);
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilClosedByAnotherMapping() throws Exception {
+    SharedMemoryChute<Long> entrance = openLongChute(2);
+    SharedMemoryChute<Long> exit = openLongChute(2);
+    Future<Optional<Long>> takeResult = executorService.submit(() -> exit.take());
+    assertStillRunning(takeResult);
+    entrance.put(7L);
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of(7L));
+
+    takeResult = executorService.submit(() -> exit.take());
+    entrance.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+    assertThat(exit.isClosed()).isTrue();
+    assertThat(exit.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void close_shouldStillDeliverElementsPutBeforehand() throws Exception {
+    SharedMemoryChute<Long> entrance = openLongChute(2);
+    entrance.put(1L);
+    entrance.close();
+    SharedMemoryChute<Long> exit = openLongChute(2);
+    assertThat(exit.isClosedAndEmpty()).isFalse();
+    assertThat(exit.take()).isEqualTo(Optional.of(1L));
+    assertThat(exit.take()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void tryTake_shouldTimeOutOrReturnElement() throws Exception {
+    SharedMemoryChute<Long> chute = openLongChute(2);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    chute.put(5L);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.of(5L));
+  }
+
+  @Test(timeout = 60_000)
+  public void take_fromAnotherProcess_shouldReceiveAll() throws Exception {
+    int capacityBytes = LONG_RECORD_SIZE * 16;
+    int count = 10_000;
+    SharedMemoryChute<Long> exit =
+        SharedMemoryChute.open(file, capacityBytes, ElementSerializers.longs());
+    Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+    Process producer = new ProcessBuilder(java.toString(), "-cp",
+        System.getProperty("java.class.path"), Producer.class.getName(), file.toString(),
+        Integer.toString(capacityBytes), Integer.toString(count)).inheritIO().start();
+
+    long expected = 0;
+    Optional<Long> taken;
+    while ((taken = exit.take()).isPresent()) {
+      assertThat(taken.get()).isEqualTo(expected++);
+    }
+    assertThat(producer.waitFor()).isEqualTo(0);
+    assertThat(expected).isEqualTo(count);
+  }
+}
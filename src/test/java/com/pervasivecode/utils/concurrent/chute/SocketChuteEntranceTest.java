@@ -0,0 +1,188 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class SocketChuteEntranceTest {
+  private ServerSocketChannel server;
+  private SocketChannel entranceSocket;
+  private SocketChannel exitSocket;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() throws Exception {
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    entranceSocket = SocketChannel.open(server.getLocalAddress());
+    exitSocket = server.accept();
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+    entranceSocket.close();
+    exitSocket.close();
+    server.close();
+  }
+
+  private SocketChuteEntrance<Long> newEntrance(int batchSizeBytes, long lingerMillis)
+      throws Exception {
+    return new SocketChuteEntrance<>(entranceSocket, ElementSerializers.longs(), batchSizeBytes,
+        lingerMillis, MILLISECONDS);
+  }
+
+  private static void grantCredits(SocketChannel peer, int numCredits) throws Exception {
+    ByteBuffer grant = ByteBuffer.allocate(Integer.BYTES).putInt(numCredits);
+    grant.flip();
+    peer.write(grant);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withTinyBatchSize_shouldThrow() throws Exception {
+    newEntrance(4, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNegativeLinger_shouldThrow() throws Exception {
+    newEntrance(1024, -1);
+  }
+
+  @Test
+  public void put_withConcurrentConsumer_shouldDeliverAllInOrderThenClose() throws Exception {
+    SocketChuteEntrance<Long> entrance = newEntrance(256, 1);
+    SocketChuteExit<Long> exit = new SocketChuteExit<>(exitSocket, 8, ElementSerializers.longs());
+    Future<Long> numTaken = executorService.submit(() -> {
+      long expected = 0;
+      Optional<Long> taken;
+      while ((taken = exit.take()).isPresent()) {
+        assertThat(taken.get()).isEqualTo(expected++);
+      }
+      return expected;
+    });
+
+    for (long i = 0; i < 5000; i++) {
+      entrance.put(i);
+    }
+    entrance.close();
+
+    assertThat(numTaken.get(10, SECONDS)).isEqualTo(5000L);
+    assertThat(entrance.isClosed()).isTrue();
+    assertThat(exit.isClosedAndEmpty()).isTrue();
+    assertThat(exit.isConnectionLost()).isFalse();
+  }
+
+  @Test
+  public void put_withoutCredits_shouldBlockUntilRemoteElementIsTaken() throws Exception {
+    SocketChuteEntrance<Long> entrance = newEntrance(1024, 0);
+    SocketChuteExit<Long> exit = new SocketChuteExit<>(exitSocket, 2, ElementSerializers.longs());
+    entrance.put(1L);
+    entrance.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      entrance.put(3L);
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(exit.take()).isEqualTo(Optional.of(1L));
+    putResult.get(1, SECONDS);
+    assertThat(exit.take()).isEqualTo(Optional.of(2L));
+    assertThat(exit.take()).isEqualTo(Optional.of(3L));
+  }
+
+  @Test
+  public void put_withSmallElements_shouldHoldThemBackForLingerTime() throws Exception {
+    SocketChuteEntrance<Long> entrance = newEntrance(1024, 300);
+    SocketChuteExit<Long> exit = new SocketChuteExit<>(exitSocket, 8, ElementSerializers.longs());
+    entrance.put(1L);
+    assertThat(exit.tryTake(50, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.of(1L));
+  }
+
+  @Test
+  public void put_fillingBatch_shouldSendWithoutWaitingForLingerTime() throws Exception {
+    // Each frame is 4 bytes of length plus 8 bytes of data, so 2 frames fill the batch.
+    SocketChuteEntrance<Long> entrance = newEntrance(24, HOURS.toMillis(1));
+    SocketChuteExit<Long> exit = new SocketChuteExit<>(exitSocket, 8, ElementSerializers.longs());
+    entrance.put(1L);
+    entrance.put(2L);
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.of(1L));
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.of(2L));
+  }
+
+  @Test
+  public void close_shouldSendLingeringElementsImmediately() throws Exception {
+    SocketChuteEntrance<Long> entrance = newEntrance(1024, HOURS.toMillis(1));
+    SocketChuteExit<Long> exit = new SocketChuteExit<>(exitSocket, 8, ElementSerializers.longs());
+    entrance.put(1L);
+    entrance.close();
+    assertThat(exit.take()).isEqualTo(Optional.of(1L));
+    assertThat(exit.take()).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    SocketChuteEntrance<Long> entrance = newEntrance(1024, 0);
+    new SocketChuteExit<>(exitSocket, 8, ElementSerializers.longs());
+    entrance.close();
+    entrance.put(1L);
+  }
+
+  @Test
+  public void put_whenPeerDisconnects_shouldThrow() throws Exception {
+    SocketChuteEntrance<Long> entrance = newEntrance(1024, 0);
+    Future<?> putResult = executorService.submit(() -> {
+      entrance.put(1L);
+      return null;
+    });
+    Thread.sleep(20);
+    exitSocket.close();
+    try {
+      putResult.get(5, SECONDS);
+      Truth.assert_().fail("Expected the blocked put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(UncheckedIOException.class);
+    }
+    // Closing after the connection failed should not block, and should report the failure.
+    try {
+      entrance.close();
+      Truth.assert_().fail("Expected close to fail.");
+    } catch (UncheckedIOException e) {
+      assertThat(e).hasMessageThat().isEqualTo("The connection failed.");
+    }
+    assertThat(entrance.isClosed()).isTrue();
+  }
+
+  @Test
+  public void put_shouldUseOneCreditPerElement() throws Exception {
+    SocketChuteEntrance<Long> entrance = newEntrance(1024, 0);
+    grantCredits(exitSocket, 2);
+    entrance.put(1L);
+    entrance.put(2L);
+    Future<?> putResult = executorService.submit(() -> {
+      entrance.put(3L);
+      return null;
+    });
+    assertStillRunning(putResult);
+    grantCredits(exitSocket, 1);
+    putResult.get(1, SECONDS);
+  }
+}
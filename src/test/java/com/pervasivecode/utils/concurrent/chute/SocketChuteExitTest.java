@@ -0,0 +1,144 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SocketChuteExitTest {
+  private ServerSocketChannel server;
+  private SocketChannel entranceSocket;
+  private SocketChannel exitSocket;
+
+  @Before
+  public void setup() throws Exception {
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    entranceSocket = SocketChannel.open(server.getLocalAddress());
+    exitSocket = server.accept();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    entranceSocket.close();
+    exitSocket.close();
+    server.close();
+  }
+
+  private int readCreditGrant() throws Exception {
+    ByteBuffer grant = ByteBuffer.allocate(Integer.BYTES);
+    while (grant.hasRemaining()) {
+      assertThat(entranceSocket.read(grant)).isAtLeast(0);
+    }
+    grant.flip();
+    return grant.getInt();
+  }
+
+  private void writeBytes(byte[] bytes) throws Exception {
+    ByteBuffer source = ByteBuffer.wrap(bytes);
+    while (source.hasRemaining()) {
+      entranceSocket.write(source);
+    }
+  }
+
+  private static byte[] frame(String element) {
+    byte[] data = element.getBytes(StandardCharsets.UTF_8);
+    return ByteBuffer.allocate(Integer.BYTES + data.length).putInt(data.length).put(data).array();
+  }
+
+  private static byte[] closeFrame() {
+    return ByteBuffer.allocate(Integer.BYTES).putInt(SocketChuteEntrance.CLOSE_FRAME).array();
+  }
+
+  private SocketChuteExit<String> newExit(int bufferSize) throws Exception {
+    return new SocketChuteExit<>(exitSocket, bufferSize, ElementSerializers.utf8Strings());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroBufferSize_shouldThrow() throws Exception {
+    newExit(0);
+  }
+
+  @Test
+  public void constructor_shouldGrantOneCreditPerBufferSlot() throws Exception {
+    newExit(7);
+    assertThat(readCreditGrant()).isEqualTo(7);
+  }
+
+  @Test
+  public void take_shouldReassembleFramesSplitAcrossWrites() throws Exception {
+    SocketChuteExit<String> exit = newExit(4);
+    byte[] first = frame("first");
+    byte[] second = frame("second");
+    byte[] both = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, both, first.length, second.length);
+
+    writeBytes(Arrays.copyOfRange(both, 0, 2));
+    assertThat(exit.tryTake(50, MILLISECONDS)).isEqualTo(Optional.empty());
+    writeBytes(Arrays.copyOfRange(both, 2, first.length + 3));
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.of("first"));
+    writeBytes(Arrays.copyOfRange(both, first.length + 3, both.length));
+    assertThat(exit.tryTake(5, SECONDS)).isEqualTo(Optional.of("second"));
+  }
+
+  @Test
+  public void take_withFrameLargerThanReceiveBuffer_shouldReceiveIt() throws Exception {
+    SocketChuteExit<String> exit = newExit(2);
+    char[] chars = new char[200_000];
+    Arrays.fill(chars, 'x');
+    String large = new String(chars);
+    writeBytes(frame(large));
+    writeBytes(frame("small"));
+    assertThat(exit.take()).isEqualTo(Optional.of(large));
+    assertThat(exit.take()).isEqualTo(Optional.of("small"));
+  }
+
+  @Test
+  public void take_shouldGrantCreditsInBatches() throws Exception {
+    SocketChuteExit<String> exit = newExit(8);
+    assertThat(readCreditGrant()).isEqualTo(8);
+    for (int i = 0; i < 8; i++) {
+      writeBytes(frame("e" + i));
+    }
+    // Credits are granted a quarter of the buffer size at a time.
+    assertThat(exit.take()).isEqualTo(Optional.of("e0"));
+    assertThat(exit.take()).isEqualTo(Optional.of("e1"));
+    assertThat(readCreditGrant()).isEqualTo(2);
+    assertThat(exit.tryTakeNow()).isEqualTo(Optional.of("e2"));
+  }
+
+  @Test
+  public void closeFrame_shouldCloseExitAfterRemainingElementsAreTaken() throws Exception {
+    SocketChuteExit<String> exit = newExit(4);
+    writeBytes(frame("last"));
+    writeBytes(closeFrame());
+    assertThat(exit.take()).isEqualTo(Optional.of("last"));
+    assertThat(exit.take()).isEqualTo(Optional.empty());
+    assertThat(exit.isClosedAndEmpty()).isTrue();
+    assertThat(exit.isConnectionLost()).isFalse();
+    // The exit closes its end of the connection after the close frame.
+    readCreditGrant();
+    assertThat(entranceSocket.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+  }
+
+  @Test
+  public void disconnect_withoutCloseFrame_shouldCloseExitAndReportConnectionLost()
+      throws Exception {
+    SocketChuteExit<String> exit = newExit(4);
+    writeBytes(frame("only"));
+    entranceSocket.close();
+    assertThat(exit.take()).isEqualTo(Optional.of("only"));
+    assertThat(exit.take()).isEqualTo(Optional.empty());
+    assertThat(exit.isConnectionLost()).isTrue();
+  }
+}
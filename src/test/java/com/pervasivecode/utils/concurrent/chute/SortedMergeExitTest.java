@@ -0,0 +1,165 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.collect.ImmutableList;
+import com.pervasivecode.utils.time.CurrentNanosSource;
+
+public class SortedMergeExitTest {
+  private CurrentNanosSource nanosSource;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    nanosSource = () -> System.nanoTime();
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  private List<Chute<Integer>> createInputs(int numInputs, boolean listenable) {
+    List<Chute<Integer>> inputs = new ArrayList<>();
+    for (int i = 0; i < numInputs; i++) {
+      Chute<Integer> chute = new BufferingChute<>(1000, nanosSource);
+      inputs.add(listenable ? Chutes.asListenableChute(chute) : chute);
+    }
+    return inputs;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNoInputs_shouldThrow() {
+    new SortedMergeExit<Integer>(ImmutableList.of(), Comparator.naturalOrder());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_withNullComparator_shouldThrow() {
+    new SortedMergeExit<>(createInputs(1, false), null);
+  }
+
+  @Test
+  public void take_withSingleInput_shouldPassElementsThrough() throws Exception {
+    List<Chute<Integer>> inputs = createInputs(1, false);
+    SortedMergeExit<Integer> merged = new SortedMergeExit<>(inputs, Comparator.naturalOrder());
+    inputs.get(0).put(1);
+    inputs.get(0).put(5);
+    inputs.get(0).close();
+    assertThat(takeAll(merged)).containsExactly(1, 5).inOrder();
+    assertThat(merged.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void take_withRandomSortedInputs_shouldProduceSortedStream() throws Exception {
+    for (boolean listenable : new boolean[] {false, true}) {
+      Random random = new Random(42);
+      List<Chute<Integer>> inputs = createInputs(7, listenable);
+      List<Integer> expected = new ArrayList<>();
+      for (Chute<Integer> input : inputs) {
+        int value = 0;
+        int numElements = random.nextInt(50);
+        for (int i = 0; i < numElements; i++) {
+          value += random.nextInt(10);
+          input.put(value);
+          expected.add(value);
+        }
+        input.close();
+      }
+      expected.sort(Comparator.naturalOrder());
+      SortedMergeExit<Integer> merged = new SortedMergeExit<>(inputs, Comparator.naturalOrder());
+      assertThat(takeAll(merged)).containsExactlyElementsIn(expected).inOrder();
+    }
+  }
+
+  @Test
+  public void take_withEqualElements_shouldPreferLowerInputIndex() throws Exception {
+    List<Chute<String>> inputs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      inputs.add(new BufferingChute<>(10, nanosSource));
+    }
+    inputs.get(2).put("a2");
+    inputs.get(0).put("a0");
+    inputs.get(1).put("a1");
+    for (Chute<String> input : inputs) {
+      input.close();
+    }
+    SortedMergeExit<String> merged =
+        new SortedMergeExit<>(inputs, Comparator.comparing(s -> s.charAt(0)));
+    assertThat(merged.take()).isEqualTo(Optional.of("a0"));
+    assertThat(merged.take()).isEqualTo(Optional.of("a1"));
+    assertThat(merged.take()).isEqualTo(Optional.of("a2"));
+    assertThat(merged.take()).isEqualTo(Optional.empty());
+  }
+
+  private void checkWaitsForOpenEmptyInput(boolean listenable) throws Exception {
+    List<Chute<Integer>> inputs = createInputs(2, listenable);
+    SortedMergeExit<Integer> merged = new SortedMergeExit<>(inputs, Comparator.naturalOrder());
+    inputs.get(0).put(5);
+    Future<Optional<Integer>> takeResult = executorService.submit(() -> merged.take());
+    assertStillRunning(takeResult);
+    inputs.get(1).put(3);
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of(3));
+
+    // Input 1 is empty again, so the merge can't know whether 5 is next until input 1 closes.
+    assertThat(merged.tryTake(20, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(merged.tryTakeNow()).isEqualTo(Optional.empty());
+    inputs.get(1).close();
+    assertThat(merged.tryTake(1, SECONDS)).isEqualTo(Optional.of(5));
+    assertThat(merged.isClosedAndEmpty()).isFalse();
+    inputs.get(0).close();
+    assertThat(merged.take()).isEqualTo(Optional.empty());
+    assertThat(merged.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void take_withOrdinaryInputs_shouldWaitForOpenEmptyInput() throws Exception {
+    checkWaitsForOpenEmptyInput(false);
+  }
+
+  @Test
+  public void take_withListenableInputs_shouldWaitForOpenEmptyInput() throws Exception {
+    checkWaitsForOpenEmptyInput(true);
+  }
+
+  @Test
+  public void take_withConcurrentProducers_shouldProduceSortedStream() throws Exception {
+    List<Chute<Integer>> inputs = createInputs(2, true);
+    SortedMergeExit<Integer> merged = new SortedMergeExit<>(inputs, Comparator.naturalOrder());
+    List<Future<?>> putResults = new ArrayList<>();
+    for (int p = 0; p < 2; p++) {
+      Chute<Integer> input = inputs.get(p);
+      int offset = p;
+      putResults.add(executorService.submit(() -> {
+        for (int i = 0; i < 500; i++) {
+          input.put(i * 2 + offset);
+        }
+        input.close();
+        return null;
+      }));
+    }
+    List<Integer> taken = takeAll(merged);
+    for (Future<?> putResult : putResults) {
+      putResult.get(1, SECONDS);
+    }
+    assertThat(taken).hasSize(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(taken.get(i)).isEqualTo(i);
+    }
+  }
+}
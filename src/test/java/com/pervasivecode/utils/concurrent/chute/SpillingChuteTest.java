@@ -0,0 +1,386 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.common.truth.Truth;
+
+public class SpillingChuteTest {
+  // Each spilled Long takes 4 bytes of length prefix plus 8 bytes of data.
+  private static final int LONG_RECORD_SIZE = 12;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path spillDirectory;
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    spillDirectory = temporaryFolder.getRoot().toPath();
+    executorService = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  private SpillingChute<Long> newLongChute(int memoryCapacity, int recordsPerSegment,
+      int maxSegments) {
+    int segmentSize = LONG_RECORD_SIZE * recordsPerSegment;
+    return new SpillingChute<>(memoryCapacity, spillDirectory, segmentSize,
+        (long) segmentSize * maxSegments, ElementSerializers.longs());
+  }
+
+  private int numSpillFiles() {
+    File[] files = spillDirectory.toFile().listFiles();
+    return files == null ? 0 : files.length;
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Constructor tests
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectZeroMemoryCapacity() {
+    newLongChute(0, 1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectTinySegments() {
+    new SpillingChute<>(1, spillDirectory, 4, 100, ElementSerializers.longs());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectMaxSpilledBytesSmallerThanSegment() {
+    new SpillingChute<>(1, spillDirectory, 100, 99, ElementSerializers.longs());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectMissingSpillDirectory() {
+    new SpillingChute<>(1, spillDirectory.resolve("nonexistent"), 100, 100,
+        ElementSerializers.longs());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void constructor_shouldRejectNullSerializer() {
+    new SpillingChute<Long>(1, spillDirectory, 100, 100, null);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for spilling
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void put_withinMemoryCapacity_shouldNotSpill() throws Exception {
+    SpillingChute<Long> chute = newLongChute(3, 4, 1);
+    chute.put(1L);
+    chute.put(2L);
+    chute.put(3L);
+    assertThat(chute.numSpilled()).isEqualTo(0);
+    assertThat(chute.numSegments()).isEqualTo(0);
+    assertThat(numSpillFiles()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_beyondMemoryCapacity_shouldSpillAndPreserveOrder() throws Exception {
+    SpillingChute<Long> chute = newLongChute(2, 3, 10);
+    for (long i = 0; i < 20; i++) {
+      chute.put(i);
+    }
+    assertThat(chute.numSpilled()).isEqualTo(18);
+    assertThat(chute.numSegments()).isEqualTo(6);
+    assertThat(numSpillFiles()).isEqualTo(6);
+
+    // Interleave more puts while taking, to check that new elements don't jump the queue.
+    for (long i = 0; i < 10; i++) {
+      assertThat(chute.take()).isEqualTo(Optional.of(i));
+    }
+    chute.put(20L);
+    chute.close();
+    for (long i = 10; i <= 20; i++) {
+      assertThat(chute.take()).isEqualTo(Optional.of(i));
+    }
+    assertThat(chute.take()).isEqualTo(Optional.empty());
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+    assertThat(chute.numSegments()).isEqualTo(0);
+    assertThat(numSpillFiles()).isEqualTo(0);
+  }
+
+  @Test
+  public void take_ofAllSpilledElements_shouldKeepSegmentsForReuse() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 10);
+    for (long i = 0; i < 7; i++) {
+      chute.put(i);
+    }
+    assertThat(chute.numSegments()).isEqualTo(3);
+    for (long i = 0; i < 7; i++) {
+      assertThat(chute.tryTakeNow()).isEqualTo(Optional.of(i));
+    }
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+    assertThat(chute.numSpilled()).isEqualTo(0);
+    assertThat(chute.numSegments()).isEqualTo(3);
+    assertThat(numSpillFiles()).isEqualTo(3);
+
+    // The drained segments are reused for the next overflow, rather than creating new ones.
+    for (long i = 0; i < 7; i++) {
+      chute.put(i);
+    }
+    assertThat(chute.numSegments()).isEqualTo(3);
+    assertThat(numSpillFiles()).isEqualTo(3);
+
+    chute.close();
+    for (long i = 0; i < 7; i++) {
+      assertThat(chute.take()).isEqualTo(Optional.of(i));
+    }
+    assertThat(chute.numSegments()).isEqualTo(0);
+    assertThat(numSpillFiles()).isEqualTo(0);
+  }
+
+  @Test
+  public void spill_withSpareSegments_shouldNeverExceedSpillLimit() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 3);
+    for (int round = 0; round < 10; round++) {
+      for (long i = 0; i < 7; i++) {
+        chute.put(i);
+      }
+      assertThat(numSpillFiles()).isAtMost(3);
+      for (long i = 0; i < 7; i++) {
+        assertThat(chute.take()).isEqualTo(Optional.of(i));
+      }
+    }
+    assertThat(chute.numSegments()).isEqualTo(3);
+  }
+
+  @Test
+  public void close_whenEmpty_shouldDeleteRemainingSegment() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 10);
+    chute.put(1L);
+    chute.put(2L);
+    chute.take();
+    chute.take();
+    assertThat(numSpillFiles()).isEqualTo(1);
+    chute.close();
+    assertThat(numSpillFiles()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_withVariableSizeElements_shouldStartNewSegmentWhenCurrentIsFull()
+      throws Exception {
+    SpillingChute<String> chute = new SpillingChute<>(1, spillDirectory, 16, 1024,
+        ElementSerializers.utf8Strings());
+    chute.put("in memory");
+    chute.put("twelve bytes"); // 4 + 12 = 16 bytes; fills a segment exactly.
+    chute.put("a");
+    chute.put("☃☃☃☃");
+    assertThat(chute.numSegments()).isEqualTo(3);
+    assertThat(chute.take()).isEqualTo(Optional.of("in memory"));
+    assertThat(chute.take()).isEqualTo(Optional.of("twelve bytes"));
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+    assertThat(chute.take()).isEqualTo(Optional.of("☃☃☃☃"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void put_withElementLargerThanSegment_shouldThrow() throws Exception {
+    SpillingChute<String> chute = new SpillingChute<>(1, spillDirectory, 16, 1024,
+        ElementSerializers.utf8Strings());
+    chute.put("this string is much too large to fit");
+  }
+
+  @Test
+  public void put_withLyingSerializer_shouldThrow() throws Exception {
+    ElementSerializer<Long> liar = new ElementSerializer<Long>() {
+      @Override
+      public int serializedSize(Long element) {
+        return 4;
+      }
+
+      @Override
+      public void serialize(Long element, ByteBuffer destination) {
+        destination.putLong(element);
+      }
+
+      @Override
+      public Long deserialize(ByteBuffer source) {
+        return source.getLong();
+      }
+    };
+    SpillingChute<Long> chute = new SpillingChute<>(1, spillDirectory, 100, 100, liar);
+    chute.put(1L);
+    try {
+      chute.put(2L);
+      Truth.assert_().fail("Expected the oversized write to fail.");
+    } catch (RuntimeException e) {
+      // Either the serializer overflowed the slice, or the chute caught the size mismatch.
+      assertThat(e.getClass().getName()).isAnyOf("java.nio.BufferOverflowException",
+          IllegalStateException.class.getName());
+    }
+  }
+
+  @Test
+  public void take_whenDeserializerThrows_shouldStillConsumeElement() throws Exception {
+    ElementSerializer<Long> longs = ElementSerializers.longs();
+    ElementSerializer<Long> failsOnTwo = new ElementSerializer<Long>() {
+      @Override
+      public int serializedSize(Long element) {
+        return longs.serializedSize(element);
+      }
+
+      @Override
+      public void serialize(Long element, ByteBuffer destination) {
+        longs.serialize(element, destination);
+      }
+
+      @Override
+      public Long deserialize(ByteBuffer source) {
+        Long element = longs.deserialize(source);
+        if (element == 2L) {
+          throw new IllegalArgumentException("cannot deserialize 2");
+        }
+        return element;
+      }
+    };
+    SpillingChute<Long> chute =
+        new SpillingChute<>(1, spillDirectory, 2 * LONG_RECORD_SIZE, 2 * LONG_RECORD_SIZE,
+            failsOnTwo);
+    for (long i = 0; i < 3; i++) {
+      chute.put(i); // 1 in memory, 2 in the only segment allowed.
+    }
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(3L);
+      return null;
+    });
+    assertStillRunning(putResult);
+    assertThat(chute.take()).isEqualTo(Optional.of(0L));
+    assertThat(chute.take()).isEqualTo(Optional.of(1L));
+    try {
+      chute.take();
+      Truth.assert_().fail("Expected the deserializer's exception to propagate.");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae).hasMessageThat().isEqualTo("cannot deserialize 2");
+    }
+    // Reading the failed element emptied the segment, so the blocked put can reuse it.
+    putResult.get(1, SECONDS);
+    assertThat(chute.numSpilled()).isEqualTo(0);
+    chute.close();
+    assertThat(chute.take()).isEqualTo(Optional.of(3L));
+    assertThat(chute.take()).isEqualTo(Optional.empty());
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+    assertThat(numSpillFiles()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_whenSpillLimitReached_shouldBlockUntilSegmentIsFreed() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 2);
+    for (long i = 0; i < 5; i++) {
+      chute.put(i); // 1 in memory, 4 in 2 segments.
+    }
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put(5L);
+      return null;
+    });
+    assertStillRunning(putResult);
+    // Taking from memory doesn't free a segment.
+    assertThat(chute.take()).isEqualTo(Optional.of(0L));
+    // Taking all of the first segment's elements lets it be reused.
+    assertThat(chute.take()).isEqualTo(Optional.of(1L));
+    assertThat(chute.take()).isEqualTo(Optional.of(2L));
+    putResult.get(1, SECONDS);
+    for (long i = 3; i <= 5; i++) {
+      assertThat(chute.take()).isEqualTo(Optional.of(i));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 2);
+    chute.close();
+    chute.put(1L);
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for take methods
+  //
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilClosed() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 2);
+    Future<Optional<Long>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void take_whenEmpty_shouldBlockUntilPut() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 2);
+    Future<Optional<Long>> takeResult = executorService.submit(() -> chute.take());
+    chute.put(7L);
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of(7L));
+  }
+
+  @Test
+  public void tryTake_whenEmpty_shouldTimeOut() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 2);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(chute.tryTake(0, MILLISECONDS)).isEqualTo(Optional.empty());
+    chute.put(3L);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.of(3L));
+  }
+
+  @Test
+  public void isClosedAndEmpty_shouldReflectRemainingElements() throws Exception {
+    SpillingChute<Long> chute = newLongChute(1, 2, 2);
+    chute.put(1L);
+    chute.put(2L);
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    chute.take();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+    chute.take();
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void concurrentProducersAndConsumer_shouldDeliverEveryElement() throws Exception {
+    SpillingChute<Long> chute = newLongChute(8, 16, 1000);
+    int numElements = 10_000;
+    Future<?> producer = executorService.submit(() -> {
+      for (long i = 0; i < numElements; i++) {
+        chute.put(i);
+      }
+      chute.close();
+      return null;
+    });
+    long expected = 0;
+    Optional<Long> taken;
+    while ((taken = chute.take()).isPresent()) {
+      assertThat(taken.get()).isEqualTo(expected++);
+    }
+    producer.get(1, SECONDS);
+    assertThat(expected).isEqualTo(numElements);
+    assertThat(numSpillFiles()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,190 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class StripedChuteTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(8);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroLanes_shouldThrow() {
+    new StripedChute<String>(0, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroCapacity_shouldThrow() {
+    new StripedChute<String>(1, 0);
+  }
+
+  @Test
+  public void take_withOneProducerThread_shouldReturnElementsInOrder() throws Exception {
+    StripedChute<String> chute = new StripedChute<>(4, 3);
+    chute.put("a");
+    chute.put("b");
+    chute.put("c");
+    assertThat(chute.size()).isEqualTo(3);
+
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.of("b"));
+    assertThat(chute.tryTake(1, SECONDS)).isEqualTo(Optional.of("c"));
+    assertThat(chute.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_whenLaneIsFull_shouldWaitForTake() throws Exception {
+    StripedChute<String> chute = new StripedChute<>(1, 1);
+    chute.put("a");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("b");
+      return null;
+    });
+    assertStillRunning(putResult);
+
+    assertThat(chute.take()).isEqualTo(Optional.of("a"));
+    putResult.get(1, SECONDS);
+    assertThat(chute.take()).isEqualTo(Optional.of("b"));
+  }
+
+  @Test
+  public void take_shouldWaitForPut() throws Exception {
+    StripedChute<String> chute = new StripedChute<>(4, 1);
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+
+    chute.put("a");
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of("a"));
+  }
+
+  @Test
+  public void tryTake_withNoElements_shouldTimeOut() throws Exception {
+    StripedChute<String> chute = new StripedChute<>(4, 1);
+    assertThat(chute.tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    StripedChute<String> chute = new StripedChute<>(4, 1);
+    chute.close();
+    chute.put("a");
+  }
+
+  @Test
+  public void close_shouldMakeBlockedPutterThrow() throws Exception {
+    StripedChute<String> chute = new StripedChute<>(1, 1);
+    chute.put("a");
+    Future<?> putResult = executorService.submit(() -> {
+      chute.put("b");
+      return null;
+    });
+    assertStillRunning(putResult);
+
+    chute.close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void close_shouldMakeBlockedTakerReturnEmpty() throws Exception {
+    StripedChute<String> chute = new StripedChute<>(4, 1);
+    Future<Optional<String>> takeResult = executorService.submit(() -> chute.take());
+    assertStillRunning(takeResult);
+
+    chute.close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void close_shouldLetTakersDrainAllLanes() throws Exception {
+    StripedChute<Integer> chute = new StripedChute<>(8, 10);
+    List<Future<?>> producers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      int element = i;
+      producers.add(executorService.submit(() -> {
+        chute.put(element);
+        return null;
+      }));
+    }
+    for (Future<?> producer : producers) {
+      producer.get(1, SECONDS);
+    }
+    chute.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(chute.isClosedAndEmpty()).isFalse();
+
+    List<Integer> taken = takeAll(chute);
+    assertThat(taken).containsExactly(0, 1, 2, 3);
+    assertThat(chute.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void concurrentProducersAndConsumers_shouldDeliverEveryElementOnceInProducerOrder()
+      throws Exception {
+    int numProducers = 4;
+    int numPerProducer = 5_000;
+    StripedChute<int[]> chute = new StripedChute<>(4, 8);
+    List<Future<List<int[]>>> consumers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      consumers.add(executorService.submit(() -> takeAll(chute)));
+    }
+    List<Future<?>> producers = new ArrayList<>();
+    for (int p = 0; p < numProducers; p++) {
+      int producer = p;
+      producers.add(executorService.submit(() -> {
+        for (int i = 0; i < numPerProducer; i++) {
+          chute.put(new int[] {producer, i});
+        }
+        return null;
+      }));
+    }
+    for (Future<?> producer : producers) {
+      producer.get(10, SECONDS);
+    }
+    chute.close();
+
+    int numTaken = 0;
+    for (Future<List<int[]>> consumer : consumers) {
+      // Each consumer sees each producer's elements in the order in which they were put.
+      Map<Integer, Integer> lastSequenceNumbers = new HashMap<>();
+      for (int[] element : consumer.get(10, SECONDS)) {
+        Integer last = lastSequenceNumbers.put(element[0], element[1]);
+        if (last != null) {
+          assertThat(element[1]).isGreaterThan(last);
+        }
+        numTaken++;
+      }
+    }
+    assertThat(numTaken).isEqualTo(numProducers * numPerProducer);
+  }
+}
@@ -0,0 +1,43 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import org.junit.Test;
+
+public class TraceContextTest {
+  @Test
+  public void originForPut_outsideOfWorker_shouldBeNow() {
+    TraceContext.elementTaken(100);
+    assertThat(TraceContext.originForPut(500)).isEqualTo(500);
+  }
+
+  @Test
+  public void originForPut_withNothingTaken_shouldBeNow() {
+    TraceContext.runPropagating(() -> {
+      assertThat(TraceContext.originForPut(500)).isEqualTo(500);
+    });
+  }
+
+  @Test
+  public void originForPut_afterTakes_shouldBeEarliestOriginOnce() {
+    TraceContext.runPropagating(() -> {
+      TraceContext.elementTaken(300);
+      TraceContext.elementTaken(100);
+      TraceContext.elementTaken(200);
+      assertThat(TraceContext.originForPut(500)).isEqualTo(100);
+      assertThat(TraceContext.originForPut(600)).isEqualTo(600);
+    });
+  }
+
+  @Test
+  public void runPropagating_whenNested_shouldRestoreOuterContext() {
+    TraceContext.runPropagating(() -> {
+      TraceContext.elementTaken(100);
+      TraceContext.runPropagating(() -> {
+        assertThat(TraceContext.originForPut(500)).isEqualTo(500);
+      });
+      assertThat(TraceContext.originForPut(500)).isEqualTo(100);
+    });
+    TraceContext.elementTaken(100);
+    assertThat(TraceContext.originForPut(700)).isEqualTo(700);
+  }
+}
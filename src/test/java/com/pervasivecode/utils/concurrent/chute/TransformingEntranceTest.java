@@ -95,6 +95,31 @@ public class TransformingEntranceTest {
     executor.awaitTermination(1, SECONDS);
   }
 
+  @Test
+  public void transformingEntrance_withTransformingReceiver_shouldApplyFunctionsInOrder()
+      throws Exception {
+    BufferingChute<String> chute = new BufferingChute<>(10, () -> System.nanoTime());
+    ChuteEntrance<String> entrance = chute;
+    for (int i = 0; i < 8; i++) {
+      String prefix = String.valueOf(i);
+      entrance = Chutes.transformingEntrance(entrance, (s) -> prefix + s);
+    }
+    ChuteEntrance<Integer> intEntrance = Chutes.transformingEntrance(entrance, String::valueOf);
+
+    intEntrance.put(42);
+    assertThat(chute.tryTakeNow()).isEqualTo(Optional.of("0123456742"));
+
+    intEntrance.close();
+    assertThat(chute.isClosed()).isTrue();
+    assertThat(entrance.isClosed()).isTrue();
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void transformingEntrance_withTransformingReceiverAndNullTransformer_shouldThrow() {
+    BufferingChute<String> chute = new BufferingChute<>(10, () -> System.nanoTime());
+    Chutes.transformingEntrance(Chutes.transformingEntrance(chute, (s) -> s + "?"), null);
+  }
+
   @Test
   public void equals_shouldWorkCorrectly() {
     EqualsVerifier.forClass(TransformingEntrance.class).verify();
@@ -66,6 +66,37 @@ public class TransformingExitTest {
     assertThat(exit.isClosedAndEmpty()).isTrue();
   }
 
+  @Test
+  public void transformingExit_withTransformingSupplier_shouldApplyFunctionsInOrder()
+      throws Exception {
+    ChuteExit<String> exit = testChute;
+    for (int i = 0; i < 8; i++) {
+      String suffix = String.valueOf(i);
+      exit = Chutes.transformingExit(exit, (s) -> s + suffix);
+    }
+    ChuteExit<Integer> lengthExit = Chutes.transformingExit(exit, String::length);
+
+    testChute.put("x");
+    Optional<String> taken = exit.tryTakeNow();
+    assertThat(taken.isPresent()).isTrue();
+    assertThat(taken.get()).isEqualTo("x01234567");
+
+    testChute.put("yz");
+    Optional<Integer> length = lengthExit.take();
+    assertThat(length.isPresent()).isTrue();
+    assertThat(length.get()).isEqualTo(10);
+
+    assertThat(lengthExit.tryTakeNow().isPresent()).isFalse();
+    testChute.close();
+    assertThat(lengthExit.isClosedAndEmpty()).isTrue();
+    assertThat(lengthExit.take().isPresent()).isFalse();
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void transformingExit_withTransformingSupplierAndNullTransformer_shouldThrow() {
+    Chutes.transformingExit(Chutes.transformingExit(testChute, (s) -> s + "?"), null);
+  }
+
   @Test
   public void equals_shouldWorkCorrectly() {
     EqualsVerifier.forClass(TransformingExit.class).verify();
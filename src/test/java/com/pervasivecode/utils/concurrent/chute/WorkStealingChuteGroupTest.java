@@ -0,0 +1,220 @@
+package com.pervasivecode.utils.concurrent.chute;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.assertStillRunning;
+import static com.pervasivecode.utils.concurrent.chute.ChuteTestUtils.takeAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class WorkStealingChuteGroupTest {
+  private ExecutorService executorService;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executorService.shutdownNow();
+    executorService.awaitTermination(1, SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroConsumers_shouldThrow() {
+    new WorkStealingChuteGroup<String>(0, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroCapacity_shouldThrow() {
+    new WorkStealingChuteGroup<String>(1, 0);
+  }
+
+  @Test
+  public void exits_shouldHaveOneExitPerConsumer() {
+    assertThat(new WorkStealingChuteGroup<String>(3, 1).exits()).hasSize(3);
+  }
+
+  @Test
+  public void put_shouldDistributeElementsRoundRobin() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(2, 2);
+    group.entrance().put("a");
+    group.entrance().put("b");
+    group.entrance().put("c");
+    group.entrance().put("d");
+
+    List<ChuteExit<String>> exits = group.exits();
+    assertThat(exits.get(0).tryTakeNow()).isEqualTo(Optional.of("a"));
+    assertThat(exits.get(0).tryTakeNow()).isEqualTo(Optional.of("c"));
+    assertThat(exits.get(1).tryTakeNow()).isEqualTo(Optional.of("b"));
+    assertThat(exits.get(1).tryTakeNow()).isEqualTo(Optional.of("d"));
+    assertThat(group.numSteals()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_whenNextQueueIsFull_shouldUseAnotherQueue() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(2, 2);
+    group.entrance().put("a");
+    group.entrance().put("b");
+    group.exits().get(1).take();
+    group.entrance().put("c");
+    group.entrance().put("d");
+    // The queue for exit 0 is now full, so "e" goes into the queue for exit 1.
+    group.entrance().put("e");
+
+    assertThat(group.exits().get(0).tryTakeNow()).isEqualTo(Optional.of("a"));
+    assertThat(group.exits().get(0).tryTakeNow()).isEqualTo(Optional.of("c"));
+    assertThat(group.exits().get(1).tryTakeNow()).isEqualTo(Optional.of("d"));
+    assertThat(group.exits().get(1).tryTakeNow()).isEqualTo(Optional.of("e"));
+  }
+
+  @Test
+  public void take_withEmptyLocalQueue_shouldStealOldestHalfFromFullestQueue() throws Exception {
+    WorkStealingChuteGroup<Integer> group = new WorkStealingChuteGroup<>(3, 10);
+    // Put 0 through 14 into the queues for exits 0, 1, 2, 0, 1, 2, ...
+    for (int i = 0; i < 15; i++) {
+      group.entrance().put(i);
+    }
+    ChuteExit<Integer> exit0 = group.exits().get(0);
+    ChuteExit<Integer> exit1 = group.exits().get(1);
+    ChuteExit<Integer> exit2 = group.exits().get(2);
+    for (int i = 0; i < 5; i++) {
+      exit2.take();
+    }
+    for (int i = 0; i < 3; i++) {
+      exit1.take();
+    }
+
+    // Exit 2's queue is empty and exit 0's queue is the fullest, with 0, 3, 6, 9, 12.
+    assertThat(exit2.take()).isEqualTo(Optional.of(0));
+    assertThat(group.numSteals()).isEqualTo(1);
+    // Exit 2 also took 3 and 6, and exit 0 still has 9 and 12.
+    assertThat(exit2.tryTakeNow()).isEqualTo(Optional.of(3));
+    assertThat(exit2.tryTakeNow()).isEqualTo(Optional.of(6));
+    assertThat(exit0.tryTakeNow()).isEqualTo(Optional.of(9));
+    assertThat(exit0.tryTakeNow()).isEqualTo(Optional.of(12));
+    assertThat(group.numSteals()).isEqualTo(1);
+  }
+
+  @Test
+  public void take_shouldWaitForPut() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(2, 2);
+    Future<Optional<String>> takeResult = executorService.submit(() -> group.exits().get(1).take());
+    assertStillRunning(takeResult);
+
+    // The element goes into exit 0's queue, and the waiting exit 1 steals it.
+    group.entrance().put("a");
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.of("a"));
+  }
+
+  @Test
+  public void put_whenAllQueuesAreFull_shouldWaitForTake() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(2, 1);
+    group.entrance().put("a");
+    group.entrance().put("b");
+    Future<?> putResult = executorService.submit(() -> {
+      group.entrance().put("c");
+      return null;
+    });
+    assertStillRunning(putResult);
+
+    assertThat(group.exits().get(1).take()).isEqualTo(Optional.of("b"));
+    putResult.get(1, SECONDS);
+  }
+
+  @Test
+  public void tryTake_withNoElements_shouldTimeOut() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(2, 1);
+    assertThat(group.exits().get(0).tryTake(10, MILLISECONDS)).isEqualTo(Optional.empty());
+    assertThat(group.exits().get(0).tryTakeNow()).isEqualTo(Optional.empty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void put_afterClose_shouldThrow() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(1, 1);
+    group.entrance().close();
+    group.entrance().put("a");
+  }
+
+  @Test
+  public void close_shouldMakeBlockedPutterThrow() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(1, 1);
+    group.entrance().put("a");
+    Future<?> putResult = executorService.submit(() -> {
+      group.entrance().put("b");
+      return null;
+    });
+    assertStillRunning(putResult);
+
+    group.entrance().close();
+    try {
+      putResult.get(1, SECONDS);
+      Truth.assert_().fail("Expected the put to fail.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void close_shouldMakeBlockedTakerReturnEmpty() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(2, 2);
+    Future<Optional<String>> takeResult = executorService.submit(() -> group.exits().get(1).take());
+    assertStillRunning(takeResult);
+
+    group.entrance().close();
+    assertThat(takeResult.get(1, SECONDS)).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void close_shouldLetExitsDrainAllQueuesThenReturnEmpty() throws Exception {
+    WorkStealingChuteGroup<String> group = new WorkStealingChuteGroup<>(2, 2);
+    ChuteExit<String> exit0 = group.exits().get(0);
+    ChuteExit<String> exit1 = group.exits().get(1);
+    group.entrance().put("a");
+    group.entrance().put("b");
+    group.entrance().put("c");
+    group.entrance().close();
+    assertThat(group.entrance().isClosed()).isTrue();
+    assertThat(exit0.isClosedAndEmpty()).isFalse();
+
+    assertThat(exit0.take()).isEqualTo(Optional.of("a"));
+    assertThat(exit0.take()).isEqualTo(Optional.of("c"));
+    assertThat(exit0.take()).isEqualTo(Optional.of("b"));
+    assertThat(exit0.take()).isEqualTo(Optional.empty());
+    assertThat(exit1.take()).isEqualTo(Optional.empty());
+    assertThat(exit0.isClosedAndEmpty()).isTrue();
+    assertThat(exit1.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void concurrentProducersAndConsumers_shouldDeliverEveryElementOnce() throws Exception {
+    int numElements = 10_000;
+    WorkStealingChuteGroup<Integer> group = new WorkStealingChuteGroup<>(3, 8);
+    List<Future<List<Integer>>> consumers = new ArrayList<>();
+    for (ChuteExit<Integer> exit : group.exits()) {
+      consumers.add(executorService.submit(() -> takeAll(exit)));
+    }
+    for (int i = 0; i < numElements; i++) {
+      group.entrance().put(i);
+    }
+    group.entrance().close();
+
+    List<Integer> allTaken = new ArrayList<>();
+    for (Future<List<Integer>> consumer : consumers) {
+      allTaken.addAll(consumer.get(10, SECONDS));
+    }
+    assertThat(allTaken).hasSize(numElements);
+    assertThat(allTaken).containsNoDuplicates();
+  }
+}
@@ -3,7 +3,10 @@ package com.pervasivecode.utils.concurrent.chute;
 import static com.google.common.truth.Truth.assertThat;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -172,4 +175,132 @@ public class WorkersTest {
     // since it was interrupted.
     assertThat(stringOutput.isClosed()).isFalse();
   }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for filteringWorker and flatMappingWorker
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = NullPointerException.class)
+  public void filteringWorker_withNullPredicate_shouldThrow() {
+    Workers.filteringWorker(stringInput, stringOutput, null, false);
+  }
+
+  @Test
+  public void filteringWorker_shouldPutOnlyMatchingElementsAndCloseOutput() throws Exception {
+    putAll(stringInput, "apple", "banana", "avocado", "cherry");
+    stringInput.close();
+    Workers.filteringWorker(stringInput, stringOutput, (s) -> s.startsWith("a"), true).run();
+
+    assertThat(stringOutput.take()).isEqualTo(Optional.of("apple"));
+    assertThat(stringOutput.take()).isEqualTo(Optional.of("avocado"));
+    assertThat(stringOutput.take()).isEqualTo(Optional.empty());
+    assertThat(stringOutput.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void flatMappingWorker_withNullMapper_shouldThrow() {
+    Workers.flatMappingWorker(stringInput, stringOutput, null, false);
+  }
+
+  @Test
+  public void flatMappingWorker_shouldPutAllResultsAndLeaveOutputOpen() throws Exception {
+    putAll(stringInput, "a b", "", "c");
+    stringInput.close();
+    Workers.flatMappingWorker(stringInput, stringOutput,
+        (s) -> s.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(s.split(" ")), false)
+        .run();
+
+    assertThat(stringOutput.tryTakeNow()).isEqualTo(Optional.of("a"));
+    assertThat(stringOutput.tryTakeNow()).isEqualTo(Optional.of("b"));
+    assertThat(stringOutput.tryTakeNow()).isEqualTo(Optional.of("c"));
+    assertThat(stringOutput.tryTakeNow()).isEqualTo(Optional.empty());
+    assertThat(stringOutput.isClosed()).isFalse();
+  }
+
+  // --------------------------------------------------------------------------
+  //
+  // Tests for primitive transforming and batching workers
+  //
+  // --------------------------------------------------------------------------
+
+  @Test(expected = NullPointerException.class)
+  public void longTransformingWorker_withNullConverter_shouldThrow() {
+    Workers.longTransformingWorker(new BufferingLongChute(1), new BufferingLongChute(1), null,
+        false);
+  }
+
+  @Test
+  public void longTransformingWorker_shouldTransformAllValuesAndCloseOutput() throws Exception {
+    BufferingLongChute input = new BufferingLongChute(3);
+    BufferingLongChute output = new BufferingLongChute(3);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<?> result =
+        executor.submit(Workers.longTransformingWorker(input, output, v -> v * 10, true));
+
+    input.putAll(new long[] {1, 2, 3, 4}, 0, 4);
+    input.close();
+    long[] taken = new long[4];
+    int numTaken = 0;
+    while (numTaken < 4) {
+      numTaken += output.drainTo(taken, numTaken, 4 - numTaken);
+    }
+    result.get(1, SECONDS);
+    executor.shutdown();
+
+    assertThat(taken).isEqualTo(new long[] {10, 20, 30, 40});
+    assertThat(output.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void intTransformingWorker_withoutCloseWhenDone_shouldLeaveOutputOpen()
+      throws Exception {
+    BufferingIntChute input = new BufferingIntChute(3);
+    BufferingIntChute output = new BufferingIntChute(3);
+    input.put(5);
+    input.close();
+    Workers.intTransformingWorker(input, output, v -> -v, false).run();
+
+    assertThat(output.take()).isEqualTo(OptionalInt.of(-5));
+    assertThat(output.isClosed()).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void longBatchingWorker_withZeroBatchSize_shouldThrow() {
+    Workers.longBatchingWorker(new BufferingLongChute(1), new BufferingChute<>(1, nanosSource), 0,
+        false);
+  }
+
+  @Test
+  public void intBatchingWorker_shouldProduceFullBatchesThenRemainder() throws Exception {
+    BufferingIntChute input = new BufferingIntChute(10);
+    BufferingChute<int[]> batches = new BufferingChute<>(10, nanosSource);
+    input.putAll(new int[] {1, 2, 3, 4, 5, 6, 7}, 0, 7);
+    input.close();
+    Workers.intBatchingWorker(input, batches, 3, true).run();
+
+    assertThat(batches.take().get()).isEqualTo(new int[] {1, 2, 3});
+    assertThat(batches.take().get()).isEqualTo(new int[] {4, 5, 6});
+    assertThat(batches.take().get()).isEqualTo(new int[] {7});
+    assertThat(batches.isClosedAndEmpty()).isTrue();
+  }
+
+  @Test
+  public void doubleBatchingWorker_withConcurrentProducer_shouldBatchAllValues()
+      throws Exception {
+    BufferingDoubleChute input = new BufferingDoubleChute(2);
+    BufferingChute<double[]> batches = new BufferingChute<>(10, nanosSource);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<?> result = executor.submit(Workers.doubleBatchingWorker(input, batches, 4, false));
+
+    input.putAll(new double[] {0.5, 1.5, 2.5, 3.5, 4.5}, 0, 5);
+    input.close();
+    result.get(1, SECONDS);
+    executor.shutdown();
+
+    assertThat(batches.take().get()).isEqualTo(new double[] {0.5, 1.5, 2.5, 3.5});
+    assertThat(batches.take().get()).isEqualTo(new double[] {4.5});
+    assertThat(batches.isClosed()).isFalse();
+  }
 }